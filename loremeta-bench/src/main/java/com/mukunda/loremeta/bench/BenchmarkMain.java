@@ -0,0 +1,69 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/******************************************************************************
+ * Entry point of benchmarks.jar.
+ * 
+ * Takes the usual JMH command line, and always adds the gc profiler so 
+ * allocation rates are reported next to the times (gc.alloc.rate.norm 
+ * is bytes allocated per operation).
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class BenchmarkMain {
+	
+	// LoreMeta's default cache size, restored after benchmarks that change it.
+	static final int CACHE_CAPACITY = 1024;
+	
+	private BenchmarkMain() {}
+	
+	public static void main( String[] args ) throws Exception {
+		CommandLineOptions command = new CommandLineOptions( args );
+		if( command.shouldHelp() ) {
+			command.showHelp();
+			return;
+		}
+		
+		Options options = new OptionsBuilder()
+				.parent( command )
+				.addProfiler( GCProfiler.class )
+				.build();
+		
+		Runner runner = new Runner( options );
+		if( command.shouldList() ) {
+			runner.list();
+			return;
+		}
+		runner.run();
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mukunda.loremeta.DataType;
+import com.mukunda.loremeta.MetaCodec;
+import com.mukunda.loremeta.MetaCursor;
+import com.mukunda.loremeta.MetaKey;
+import com.mukunda.loremeta.MetaKeyInt;
+
+/******************************************************************************
+ * The codec on plain text, without items or the parse cache.
+ * 
+ * Shows the cost of a single lookup in a data line that hasn't been seen
+ * before, which is what tools scanning many lines pay. decodeAll and
+ * scanCursor read every entry, with and without allocating.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class CodecBenchmark {
+	
+	@Param({ "1", "10", "50" })
+	public int keys;
+	
+	@Param({ "V1", "V2", "V2_DIRECTORY" })
+	public Encoding encoding;
+	
+	private String data;
+	private char[] array;
+	private MetaKeyInt last;
+	private MetaKey missing;
+	private StringBuilder output;
+	private final MetaCursor cursor = new MetaCursor();
+	
+	@Setup
+	public void setup() {
+		data = Fixtures.dataLore( encoding, DataType.INT, keys ).get(0);
+		array = data.toCharArray();
+		last = (MetaKeyInt)Fixtures.key( DataType.INT, keys - 1 );
+		missing = Fixtures.key( DataType.INT, keys );
+		output = new StringBuilder();
+	}
+	
+	@Benchmark
+	public int getInt() {
+		return MetaCodec.getInt( data, last, 0 );
+	}
+	
+	@Benchmark
+	public int getIntFromArray() {
+		return MetaCodec.getInt( MetaCodec.wrap( array, 0, array.length ), last, 0 );
+	}
+	
+	@Benchmark
+	public boolean hasMissing() {
+		return MetaCodec.hasData( data, missing );
+	}
+	
+	@Benchmark
+	public int decodeAll() {
+		return MetaCodec.decodeAll( data ).size();
+	}
+	
+	@Benchmark
+	public long scanCursor() {
+		long sum = 0;
+		cursor.reset( data );
+		while( cursor.next() ) {
+			sum += cursor.getInt();
+		}
+		return sum;
+	}
+	
+	@Benchmark
+	public int setInt() {
+		encoding.select();
+		output.setLength( 0 );
+		output.append( data );
+		MetaCodec.setData( output, last, 12345 );
+		return output.length();
+	}
+}
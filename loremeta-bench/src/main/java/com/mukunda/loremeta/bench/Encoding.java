@@ -0,0 +1,61 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.bench;
+
+import com.mukunda.loremeta.LoreMeta;
+
+/******************************************************************************
+ * How the data line of a benchmark item is stored.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public enum Encoding {
+	
+	/**
+	 * original format, one byte per color code. Still read, but any write
+	 * converts it to V2.
+	 */
+	V1,
+	
+	/**
+	 * packed 14-bit units, without a directory.
+	 */
+	V2,
+	
+	/**
+	 * packed 14-bit units with an entry directory in front.
+	 */
+	V2_DIRECTORY;
+	
+	/**************************************************************************
+	 * Configure LoreMeta to write data lines in this encoding.
+	 * 
+	 * V1 can't be written anymore, so it writes V2 without a directory.
+	 **************************************************************************/
+	public void select() {
+		LoreMeta.setDirectoryEnabled( this == V2_DIRECTORY );
+	}
+}
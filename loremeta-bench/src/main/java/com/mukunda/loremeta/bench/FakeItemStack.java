@@ -0,0 +1,98 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.bench;
+
+import java.util.List;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+/******************************************************************************
+ * ItemStack that keeps its meta in a FakeItemMeta instead of asking the
+ * server's item factory, so LoreMeta can run on a plain JVM.
+ * 
+ * Like a real item, getItemMeta returns a copy.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public class FakeItemStack extends ItemStack {
+	
+	private FakeItemMeta meta;
+	
+	public FakeItemStack() {
+		super( Material.PAPER );
+	}
+	
+	/**************************************************************************
+	 * Create an item with some lore.
+	 * 
+	 * @param lore Lore to copy into the item meta
+	 **************************************************************************/
+	public FakeItemStack( List<String> lore ) {
+		this();
+		setLore( lore );
+	}
+	
+	/**************************************************************************
+	 * Replace the lore directly, without going through a meta copy.
+	 * 
+	 * Used by benchmarks to reset an item between writes.
+	 * 
+	 * @param lore New lore, or null to remove the meta
+	 **************************************************************************/
+	public void setLore( List<String> lore ) {
+		if( lore == null ) {
+			meta = null;
+			return;
+		}
+		meta = new FakeItemMeta();
+		meta.setLore( lore );
+	}
+	
+	@Override
+	public boolean hasItemMeta() {
+		return meta != null;
+	}
+	
+	@Override
+	public ItemMeta getItemMeta() {
+		return meta == null ? new FakeItemMeta() : meta.clone();
+	}
+	
+	@Override
+	public boolean setItemMeta( ItemMeta itemMeta ) {
+		if( itemMeta == null ) {
+			meta = null;
+			return true;
+		}
+		if( !(itemMeta instanceof FakeItemMeta) ) {
+			throw new IllegalArgumentException( "FakeItemStack only accepts FakeItemMeta" );
+		}
+		meta = ((FakeItemMeta)itemMeta).clone();
+		return true;
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mukunda.loremeta.LoreMeta;
+
+/******************************************************************************
+ * Reading and writing ## fields.
+ * 
+ * Field lookups use an index of the field lines, which is cached along
+ * with the data. With the cache off, every call scans the lore.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class FieldBenchmark {
+	
+	@Param({ "1", "10", "50" })
+	public int fields;
+	
+	@Param({ "true", "false" })
+	public boolean cached;
+	
+	private FakeItemStack item;
+	private String first;
+	private String middle;
+	private String last;
+	private Map<String,String> values;
+	
+	@Setup
+	public void setup() {
+		item = new FakeItemStack( Fixtures.fieldLore( fields ) );
+		first = "Field0";
+		middle = "Field" + (fields / 2);
+		last = "Field" + (fields - 1);
+		values = new LinkedHashMap<String,String>();
+		for( int i = 0; i < fields; i++ ) {
+			values.put( "Field" + i, Integer.toString( i ) );
+		}
+		LoreMeta.setCacheCapacity( cached ? BenchmarkMain.CACHE_CAPACITY : 0 );
+	}
+	
+	@TearDown
+	public void tearDown() {
+		LoreMeta.setCacheCapacity( BenchmarkMain.CACHE_CAPACITY );
+	}
+	
+	@Benchmark
+	public String getFirst() {
+		return LoreMeta.getField( item, first );
+	}
+	
+	@Benchmark
+	public String getLast() {
+		return LoreMeta.getField( item, last );
+	}
+	
+	@Benchmark
+	public String getMissing() {
+		return LoreMeta.getField( item, "Missing" );
+	}
+	
+	@Benchmark
+	public Map<String,String> getThree() {
+		return LoreMeta.getFields( item, first, middle, last );
+	}
+	
+	@Benchmark
+	public String getFromSnapshot() {
+		return LoreMeta.snapshot( item ).getField( last );
+	}
+	
+	/**************************************************************************
+	 * Set a field to the value it already has, so the item stays the same
+	 * between calls.
+	 **************************************************************************/
+	@Benchmark
+	public boolean setLast() {
+		return LoreMeta.setField( item, last, values.get( last ) );
+	}
+	
+	@Benchmark
+	public int setAll() {
+		return LoreMeta.setFields( item, values );
+	}
+}
@@ -0,0 +1,329 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.bukkit.inventory.ItemStack;
+
+import com.mukunda.loremeta.DataType;
+import com.mukunda.loremeta.LoreEditor;
+import com.mukunda.loremeta.LoreMeta;
+import com.mukunda.loremeta.MetaKey;
+import com.mukunda.loremeta.MetaKeyByte;
+import com.mukunda.loremeta.MetaKeyFlag;
+import com.mukunda.loremeta.MetaKeyInt;
+import com.mukunda.loremeta.MetaKeyLong;
+import com.mukunda.loremeta.MetaKeyShort;
+import com.mukunda.loremeta.MetaKeyText;
+import com.mukunda.loremeta.MetaKeyUUID;
+
+/******************************************************************************
+ * Builds the lore and keys used by the benchmarks.
+ * 
+ * Keys are named "key0", "key1", ... and all hold the same sample value
+ * for their type. 
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class Fixtures {
+	
+	private static final char COLOR_CHAR = '\u00A7';
+	
+	public static final UUID SAMPLE_UUID = 
+			new UUID( 0x0123456789ABCDEFL, 0xFEDCBA9876543210L );
+	public static final String SAMPLE_TEXT = "The quick brown fox";
+	
+	private Fixtures() {}
+	
+	/**************************************************************************
+	 * Create a key of the right MetaKey subclass for a type.
+	 * 
+	 * @param type  Type of key
+	 * @param index Key number, the name will be "key"+index
+	 * @return      New key
+	 **************************************************************************/
+	public static MetaKey key( DataType type, int index ) {
+		String name = "key" + index;
+		switch( type ) {
+		case BYTE:
+			return new MetaKeyByte( name );
+		case SHORT:
+			return new MetaKeyShort( name );
+		case INT:
+			return new MetaKeyInt( name );
+		case LONG:
+			return new MetaKeyLong( name );
+		case UID:
+			return new MetaKeyUUID( name );
+		case TEXT:
+			return new MetaKeyText( name );
+		case FLAG:
+			return new MetaKeyFlag( name );
+		}
+		throw new IllegalArgumentException( "unknown type" );
+	}
+	
+	/**************************************************************************
+	 * Get the value stored for every key of a type.
+	 **************************************************************************/
+	public static Object sampleValue( DataType type ) {
+		switch( type ) {
+		case BYTE:
+			return (byte)42;
+		case SHORT:
+			return (short)1234;
+		case INT:
+			return 1234567;
+		case LONG:
+			return 1234567890123L;
+		case UID:
+			return SAMPLE_UUID;
+		case TEXT:
+			return SAMPLE_TEXT;
+		case FLAG:
+			return Boolean.TRUE;
+		}
+		throw new IllegalArgumentException( "unknown type" );
+	}
+	
+	/**************************************************************************
+	 * Read a value with the typed LoreMeta.getData overload for the key.
+	 * 
+	 * @return Value read, or null if the key is missing. Flags read as 
+	 *         Boolean.
+	 **************************************************************************/
+	public static Object read( ItemStack item, MetaKey key ) {
+		switch( key.getDataType() ) {
+		case BYTE:
+			return LoreMeta.getData( item, (MetaKeyByte)key );
+		case SHORT:
+			return LoreMeta.getData( item, (MetaKeyShort)key );
+		case INT:
+			return LoreMeta.getData( item, (MetaKeyInt)key );
+		case LONG:
+			return LoreMeta.getData( item, (MetaKeyLong)key );
+		case UID:
+			return LoreMeta.getData( item, (MetaKeyUUID)key );
+		case TEXT:
+			return LoreMeta.getData( item, (MetaKeyText)key );
+		case FLAG:
+			return LoreMeta.getData( item, (MetaKeyFlag)key );
+		}
+		return null;
+	}
+	
+	/**************************************************************************
+	 * Write a value with the typed LoreMeta.setData overload for the key.
+	 * 
+	 * @param value Value to write, a Boolean for flags.
+	 **************************************************************************/
+	public static void write( ItemStack item, MetaKey key, Object value ) {
+		switch( key.getDataType() ) {
+		case BYTE:
+			LoreMeta.setData( item, (MetaKeyByte)key, (Byte)value );
+			break;
+		case SHORT:
+			LoreMeta.setData( item, (MetaKeyShort)key, (Short)value );
+			break;
+		case INT:
+			LoreMeta.setData( item, (MetaKeyInt)key, (Integer)value );
+			break;
+		case LONG:
+			LoreMeta.setData( item, (MetaKeyLong)key, (Long)value );
+			break;
+		case UID:
+			LoreMeta.setData( item, (MetaKeyUUID)key, (UUID)value );
+			break;
+		case TEXT:
+			LoreMeta.setData( item, (MetaKeyText)key, (String)value );
+			break;
+		case FLAG:
+			if( Boolean.TRUE.equals( value ) ) {
+				LoreMeta.setFlag( item, (MetaKeyFlag)key );
+			} else {
+				LoreMeta.clearFlag( item, (MetaKeyFlag)key );
+			}
+			break;
+		}
+	}
+	
+	/**************************************************************************
+	 * Queue a value in an editor, like write() does for a single value.
+	 **************************************************************************/
+	public static void stage( LoreEditor editor, MetaKey key, Object value ) {
+		switch( key.getDataType() ) {
+		case BYTE:
+			editor.setData( (MetaKeyByte)key, (Byte)value );
+			break;
+		case SHORT:
+			editor.setData( (MetaKeyShort)key, (Short)value );
+			break;
+		case INT:
+			editor.setData( (MetaKeyInt)key, (Integer)value );
+			break;
+		case LONG:
+			editor.setData( (MetaKeyLong)key, (Long)value );
+			break;
+		case UID:
+			editor.setData( (MetaKeyUUID)key, (UUID)value );
+			break;
+		case TEXT:
+			editor.setData( (MetaKeyText)key, (String)value );
+			break;
+		case FLAG:
+			if( Boolean.TRUE.equals( value ) ) {
+				editor.setFlag( (MetaKeyFlag)key );
+			} else {
+				editor.clearFlag( (MetaKeyFlag)key );
+			}
+			break;
+		}
+	}
+	
+	/**************************************************************************
+	 * Build the lore of an item holding data.
+	 * 
+	 * The first line holds "keys" entries of one type, followed by a couple
+	 * of normal lore lines.
+	 * 
+	 * @param encoding How to store the data line
+	 * @param type     Type of every entry
+	 * @param keys     Number of entries
+	 * @return         New lore list
+	 **************************************************************************/
+	public static List<String> dataLore( Encoding encoding, DataType type, int keys ) {
+		String data;
+		if( encoding == Encoding.V1 ) {
+			data = encodeV1( type, keys );
+		} else {
+			encoding.select();
+			try {
+				FakeItemStack item = new FakeItemStack();
+				Object value = sampleValue( type );
+				for( int i = 0; i < keys; i++ ) {
+					write( item, key( type, i ), value );
+				}
+				data = item.getItemMeta().getLore().get(0);
+			} finally {
+				LoreMeta.setDirectoryEnabled( false );
+			}
+		}
+		
+		List<String> lore = new ArrayList<String>();
+		lore.add( data );
+		lore.add( "A benchmark item" );
+		lore.add( "with some plain lore" );
+		return lore;
+	}
+	
+	/**************************************************************************
+	 * Build the lore of an item with fields.
+	 * 
+	 * The fields are named "Field0", "Field1", ... and placed after a
+	 * plain first line.
+	 * 
+	 * @param fields Number of fields
+	 * @return       New lore list
+	 **************************************************************************/
+	public static List<String> fieldLore( int fields ) {
+		List<String> source = new ArrayList<String>();
+		source.add( "A benchmark item" );
+		for( int i = 0; i < fields; i++ ) {
+			source.add( "##Field" + i + ": " + i );
+		}
+		return LoreMeta.compileTemplate( source ).getLore();
+	}
+	
+	/**************************************************************************
+	 * Build lore with data initializers for LoreMeta.initialize.
+	 * 
+	 * Each marker creates an INT entry, and one field is included.
+	 * 
+	 * @param markers Number of @@ markers
+	 * @return        New lore list
+	 **************************************************************************/
+	public static List<String> markerLore( int markers ) {
+		List<String> lore = new ArrayList<String>();
+		lore.add( "A benchmark item" );
+		lore.add( "##Charges: 3" );
+		for( int i = 0; i < markers; i++ ) {
+			lore.add( "@@[I:key" + i + ":" + (i * 1000) + "]" );
+		}
+		return lore;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// Version 1 writer. LoreMeta no longer writes this format, but still 
+	// reads it, and old items keep it until they are modified.
+	private static String encodeV1( DataType type, int keys ) {
+		Object value = sampleValue( type );
+		StringBuilder output = new StringBuilder();
+		for( int i = 0; i < keys; i++ ) {
+			output.append( type.getTag() );
+			for( char c : ("key" + i).toCharArray() ) {
+				output.append( COLOR_CHAR ).append( c );
+			}
+			switch( type ) {
+			case BYTE:
+				appendV1( output, (Byte)value, 1 );
+				break;
+			case SHORT:
+				appendV1( output, (Short)value, 2 );
+				break;
+			case INT:
+				appendV1( output, (Integer)value, 4 );
+				break;
+			case LONG:
+				appendV1( output, (Long)value, 8 );
+				break;
+			case UID:
+				appendV1( output, ((UUID)value).getLeastSignificantBits(), 8 );
+				appendV1( output, ((UUID)value).getMostSignificantBits(), 8 );
+				break;
+			case TEXT:
+				String text = (String)value;
+				appendV1( output, text.length(), 1 );
+				for( char c : text.toCharArray() ) {
+					output.append( COLOR_CHAR ).append( c );
+				}
+				break;
+			case FLAG:
+				break;
+			}
+		}
+		return output.toString();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void appendV1( StringBuilder output, long value, int bytes ) {
+		for( int i = 0; i < bytes; i++ ) {
+			output.append( COLOR_CHAR ).append( (char)(0x100 + ((value >> (i*8)) & 0xFF)) );
+		}
+	}
+}
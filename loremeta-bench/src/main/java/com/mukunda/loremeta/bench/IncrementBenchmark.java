@@ -0,0 +1,108 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mukunda.loremeta.DataType;
+import com.mukunda.loremeta.LoreMeta;
+import com.mukunda.loremeta.MetaKeyInt;
+
+/******************************************************************************
+ * Counter updates, like using a charge on every cast.
+ * 
+ * Compares increment with reading the value and setting it again. The 
+ * first key is changed, so a write that moves the entry has to shift 
+ * the whole line. The reset benchmark measures the reset alone.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class IncrementBenchmark {
+	
+	@Param({ "1", "10", "50" })
+	public int keys;
+	
+	@Param({ "V1", "V2", "V2_DIRECTORY" })
+	public Encoding encoding;
+	
+	private List<String> lore;
+	private FakeItemStack item;
+	private MetaKeyInt key;
+	
+	@Setup
+	public void setup() {
+		lore = Fixtures.dataLore( encoding, DataType.INT, keys );
+		item = new FakeItemStack( lore );
+		key = (MetaKeyInt)Fixtures.key( DataType.INT, 0 );
+		encoding.select();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		LoreMeta.setDirectoryEnabled( false );
+	}
+	
+	@Benchmark
+	public FakeItemStack reset() {
+		item.setLore( lore );
+		return item;
+	}
+	
+	@Benchmark
+	public FakeItemStack increment() {
+		item.setLore( lore );
+		LoreMeta.increment( item, key, -1, 0, Integer.MAX_VALUE );
+		return item;
+	}
+	
+	@Benchmark
+	public FakeItemStack getAndSet() {
+		item.setLore( lore );
+		int value = LoreMeta.getInt( item, key, 0 );
+		LoreMeta.setData( item, key, Math.max( 0, value - 1 ) );
+		return item;
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mukunda.loremeta.DataType;
+import com.mukunda.loremeta.LoreMeta;
+import com.mukunda.loremeta.MetaKey;
+import com.mukunda.loremeta.MetaKeyByte;
+import com.mukunda.loremeta.MetaKeyInt;
+import com.mukunda.loremeta.MetaKeyLong;
+import com.mukunda.loremeta.MetaKeyShort;
+import com.mukunda.loremeta.MetaKeyUUID;
+
+/******************************************************************************
+ * Reading data from items.
+ * 
+ * Compares the encodings against each other, and lookups with the parse
+ * cache on and off. With the cache off every read parses the data line, 
+ * which is what happens on a real server when many different items are
+ * read once each.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class ReadBenchmark {
+	
+	@Param({ "1", "10", "50" })
+	public int keys;
+	
+	@Param({ "BYTE", "SHORT", "INT", "LONG", "UID", "TEXT", "FLAG" })
+	public DataType type;
+	
+	@Param({ "V1", "V2", "V2_DIRECTORY" })
+	public Encoding encoding;
+	
+	@Param({ "true", "false" })
+	public boolean cached;
+	
+	private FakeItemStack item;
+	private MetaKey first;
+	private MetaKey last;
+	private MetaKey missing;
+	
+	@Setup
+	public void setup() {
+		item = new FakeItemStack( Fixtures.dataLore( encoding, type, keys ) );
+		first = Fixtures.key( type, 0 );
+		last = Fixtures.key( type, keys - 1 );
+		missing = Fixtures.key( type, keys );
+		LoreMeta.setCacheCapacity( cached ? BenchmarkMain.CACHE_CAPACITY : 0 );
+	}
+	
+	@TearDown
+	public void tearDown() {
+		LoreMeta.setCacheCapacity( BenchmarkMain.CACHE_CAPACITY );
+	}
+	
+	@Benchmark
+	public Object getFirst() {
+		return Fixtures.read( item, first );
+	}
+	
+	@Benchmark
+	public Object getLast() {
+		return Fixtures.read( item, last );
+	}
+	
+	/**************************************************************************
+	 * Read the last key with the primitive getters where there is one, 
+	 * to compare against the boxing getData.
+	 **************************************************************************/
+	@Benchmark
+	public long getLastPrimitive() {
+		switch( type ) {
+		case BYTE:
+			return LoreMeta.getByte( item, (MetaKeyByte)last, (byte)0 );
+		case SHORT:
+			return LoreMeta.getShort( item, (MetaKeyShort)last, (short)0 );
+		case INT:
+			return LoreMeta.getInt( item, (MetaKeyInt)last, 0 );
+		case LONG:
+			return LoreMeta.getLong( item, (MetaKeyLong)last, 0 );
+		case UID:
+			return LoreMeta.getUUIDMostBits( item, (MetaKeyUUID)last, 0 );
+		default:
+			return Fixtures.read( item, last ) == null ? 0 : 1;
+		}
+	}
+	
+	@Benchmark
+	public boolean hasMissing() {
+		return LoreMeta.hasData( item, missing );
+	}
+	
+	@Benchmark
+	public int decodeAll() {
+		return LoreMeta.decodeAll( item ).size();
+	}
+}
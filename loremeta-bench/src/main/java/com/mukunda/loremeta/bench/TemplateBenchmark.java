@@ -0,0 +1,99 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mukunda.loremeta.LoreMeta;
+import com.mukunda.loremeta.LoreTemplate;
+
+/******************************************************************************
+ * Processing @@ and ## markers.
+ * 
+ * Compares LoreMeta.initialize, which parses the markers for every item,
+ * with stamping a template that was compiled once.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class TemplateBenchmark {
+	
+	@Param({ "1", "10", "50" })
+	public int markers;
+	
+	private List<String> source;
+	private LoreTemplate template;
+	private FakeItemStack item;
+	
+	@Setup
+	public void setup() {
+		source = Fixtures.markerLore( markers );
+		template = LoreMeta.compileTemplate( source );
+		item = new FakeItemStack( source );
+	}
+	
+	@Benchmark
+	public FakeItemStack reset() {
+		item.setLore( source );
+		return item;
+	}
+	
+	@Benchmark
+	public FakeItemStack initialize() {
+		item.setLore( source );
+		LoreMeta.initialize( item );
+		return item;
+	}
+	
+	@Benchmark
+	public LoreTemplate compile() {
+		return LoreMeta.compileTemplate( source );
+	}
+	
+	@Benchmark
+	public FakeItemStack stamp() {
+		template.stamp( item );
+		return item;
+	}
+}
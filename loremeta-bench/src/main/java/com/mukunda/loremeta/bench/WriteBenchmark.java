@@ -0,0 +1,151 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mukunda.loremeta.DataType;
+import com.mukunda.loremeta.LoreEditor;
+import com.mukunda.loremeta.LoreMeta;
+import com.mukunda.loremeta.MetaKey;
+
+/******************************************************************************
+ * Writing data to items.
+ * 
+ * Every write starts from the original lore, so V1 items pay for their
+ * conversion each time, like the first write to an old item does. The
+ * reset benchmark measures the reset alone, subtract it from the others.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class WriteBenchmark {
+	
+	@Param({ "1", "10", "50" })
+	public int keys;
+	
+	@Param({ "BYTE", "SHORT", "INT", "LONG", "UID", "TEXT", "FLAG" })
+	public DataType type;
+	
+	@Param({ "V1", "V2", "V2_DIRECTORY" })
+	public Encoding encoding;
+	
+	private List<String> lore;
+	private FakeItemStack item;
+	private MetaKey[] all;
+	private MetaKey added;
+	private Object value;
+	
+	@Setup
+	public void setup() {
+		lore = Fixtures.dataLore( encoding, type, keys );
+		item = new FakeItemStack( lore );
+		all = new MetaKey[keys];
+		for( int i = 0; i < keys; i++ ) {
+			all[i] = Fixtures.key( type, i );
+		}
+		added = Fixtures.key( type, keys );
+		value = Fixtures.sampleValue( type );
+		encoding.select();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		LoreMeta.setDirectoryEnabled( false );
+	}
+	
+	@Benchmark
+	public FakeItemStack reset() {
+		item.setLore( lore );
+		return item;
+	}
+	
+	@Benchmark
+	public FakeItemStack setExisting() {
+		item.setLore( lore );
+		Fixtures.write( item, all[keys - 1], value );
+		return item;
+	}
+	
+	@Benchmark
+	public FakeItemStack setNew() {
+		item.setLore( lore );
+		Fixtures.write( item, added, value );
+		return item;
+	}
+	
+	@Benchmark
+	public FakeItemStack remove() {
+		item.setLore( lore );
+		Fixtures.write( item, all[keys - 1], null );
+		return item;
+	}
+	
+	/**************************************************************************
+	 * Rewrite every key with separate setData calls.
+	 **************************************************************************/
+	@Benchmark
+	public FakeItemStack setEach() {
+		item.setLore( lore );
+		for( MetaKey key : all ) {
+			Fixtures.write( item, key, value );
+		}
+		return item;
+	}
+	
+	/**************************************************************************
+	 * Rewrite every key with one editor, compare with setEach.
+	 **************************************************************************/
+	@Benchmark
+	public FakeItemStack editAll() {
+		item.setLore( lore );
+		LoreEditor editor = LoreMeta.edit( item );
+		for( MetaKey key : all ) {
+			Fixtures.stage( editor, key, value );
+		}
+		editor.commit();
+		return item;
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.Collection;
+import java.util.IllegalFormatException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/******************************************************************************
+ * A field whose value is rendered from a data entry.
+ * 
+ * The bindings of an item are kept in its data, in a TEXT entry under
+ * KEY. Writes that change a bound key render the field in the same pass
+ * over the lore, so the item meta is only written once.
+ * 
+ * Instances are immutable.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+final class FieldBinding {
+	
+	// data entry holding the bindings of an item
+	static final MetaKeyText KEY = (MetaKeyText)MetaKey.reserved( "~fields", DataType.TEXT );
+	
+	// separators in the KEY entry, records are field, type index, key name and format
+	private static final char PART = '\u0000';
+	private static final char RECORD = '\u0001';
+	
+	final String field;
+	final MetaKey key;
+	final String format;
+	
+	//---------------------------------------------------------------------------------------------
+	FieldBinding( String field, MetaKey key, String format ) {
+		this.field = field;
+		this.key = key;
+		this.format = format;
+	}
+	
+	/**************************************************************************
+	 * Read the bindings stored in a data line.
+	 * 
+	 * @param data Encoded line
+	 * @return     Bindings by field name, in the order they were added. 
+	 *             Empty if there are none.
+	 **************************************************************************/
+	static Map<String,FieldBinding> read( CharSequence data ) {
+		Map<String,FieldBinding> bindings = new LinkedHashMap<String,FieldBinding>();
+		String text = MetaCodec.getData( data, KEY );
+		if( text == null ) return bindings;
+		
+		for( String record : text.split( String.valueOf( RECORD ) ) ) {
+			String[] parts = record.split( String.valueOf( PART ), -1 );
+			if( parts.length != 4 ) continue;
+			DataType type;
+			try {
+				type = DataType.fromInt( Integer.parseInt( parts[1] ) );
+			} catch( NumberFormatException e ) {
+				type = null;
+			}
+			if( type == null ) continue;
+			bindings.put( parts[0], new FieldBinding( parts[0], createKey( parts[2], type ), parts[3] ) );
+		}
+		return bindings;
+	}
+	
+	/**************************************************************************
+	 * Encode bindings for the KEY entry.
+	 * 
+	 * @param bindings Bindings to store
+	 * @return         Value for KEY, or null if there are no bindings
+	 **************************************************************************/
+	static String write( Collection<FieldBinding> bindings ) {
+		if( bindings.isEmpty() ) return null;
+		StringBuilder text = new StringBuilder();
+		for( FieldBinding binding : bindings ) {
+			if( text.length() > 0 ) text.append( RECORD );
+			text.append( binding.field ).append( PART )
+				.append( binding.key.getDataType().getInt() ).append( PART )
+				.append( binding.key.getName() ).append( PART )
+				.append( binding.format );
+		}
+		return text.toString();
+	}
+	
+	/**************************************************************************
+	 * Render bound fields after a data change.
+	 * 
+	 * Bindings are only added by writing KEY, so when the old line is in 
+	 * the cache without them, the new line isn't read at all. Otherwise 
+	 * the line is read once, for the bindings.
+	 * 
+	 * @param lore    Lore to modify, with the new data line
+	 * @param before  The data line before the change, or null
+	 * @param data    The new data line
+	 * @param changed Keys that were written, or null to render every 
+	 *                bound field
+	 * @return        true if any field was rendered
+	 **************************************************************************/
+	static boolean render( List<String> lore, String before, CharSequence data, 
+			Collection<MetaKey> changed ) {
+		if( lore.size() < 2 ) return false;
+		if( changed != null && changed.contains( KEY ) ) {
+			changed = null;
+		} else if( changed != null && before != null ) {
+			DecodedLore cached = LoreMeta.cache.getIfPresent( before );
+			if( cached != null && !cached.contains( KEY ) ) return false;
+		}
+		
+		FieldIndex index = null;
+		for( FieldBinding binding : read( data ).values() ) {
+			if( changed != null && !changed.contains( binding.key ) ) continue;
+			if( index == null ) index = LoreMeta.cache.getFields( lore );
+			int line = index.getLine( binding.field );
+			if( line == -1 ) continue;
+			lore.set( line, LoreMeta.formatField( lore.get( line ), binding.render( data ) ) );
+		}
+		if( index == null ) return false;
+		
+		// the fields are still on the same lines
+		LoreMeta.cache.putFields( lore, index );
+		return true;
+	}
+	
+	/**************************************************************************
+	 * Create a binding from a field marker.
+	 * 
+	 * The value of the field has a {NAME} or {NAME|format} placeholder, 
+	 * where NAME is a data key created by an initializer and format is a
+	 * java.util.Formatter pattern for the value, "%s" if it's left out.
+	 * Text around the placeholder is kept.
+	 * 
+	 * @param field Field name
+	 * @param value Field value from the marker
+	 * @param keys  Keys created by the initializers
+	 * @return      Binding, or null if the value has no placeholder for
+	 *              one of the keys
+	 **************************************************************************/
+	static FieldBinding fromMarker( String field, String value, Collection<MetaKey> keys ) {
+		int open = value.indexOf( '{' );
+		if( open == -1 ) return null;
+		int close = value.indexOf( '}', open );
+		if( close == -1 ) return null;
+		
+		String name = value.substring( open+1, close );
+		String spec = "%s";
+		int bar = name.indexOf( '|' );
+		if( bar != -1 ) {
+			spec = name.substring( bar+1 );
+			name = name.substring( 0, bar );
+		}
+		
+		for( MetaKey key : keys ) {
+			if( !key.getName().equals( name ) ) continue;
+			String format = escape( value.substring( 0, open ) ) + spec + escape( value.substring( close+1 ) );
+			return new FieldBinding( field, key, format );
+		}
+		return null;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// the separators can't be stored
+	static void checkText( String text ) {
+		if( text.indexOf( PART ) != -1 || text.indexOf( RECORD ) != -1 ) {
+			throw new IllegalArgumentException( "binding text cannot contain \\u0000 or \\u0001" );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// field text for the current value, empty when the entry doesn't exist
+	String render( CharSequence data ) {
+		Object value = MetaCodec.getValue( data, key );
+		if( key.getDataType() == DataType.FLAG ) value = value != null;
+		if( value == null ) return "";
+		try {
+			return String.format( format, value );
+		} catch( IllegalFormatException e ) {
+			return String.valueOf( value ); // format doesn't fit the value
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// names read from items are not registered, see MetaKey.lookup
+	private static MetaKey createKey( String name, DataType type ) {
+		MetaKey key = MetaKey.lookup( name, type );
+		return key != null ? key : new MetaKey( name, type );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static String escape( String text ) {
+		return text.replace( "%", "%%" );
+	}
+}
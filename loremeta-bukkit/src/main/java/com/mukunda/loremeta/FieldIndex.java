@@ -0,0 +1,93 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/******************************************************************************
+ * Index of the fields in a lore list.
+ * 
+ * Maps each field name (without color codes) to the line it is on, so
+ * fields can be found without stripping and comparing every line. When a
+ * name appears more than once, the first line is used, the same as the
+ * field functions in LoreMeta. The first line holds the encoded data and 
+ * never has a field, so it is not part of the index.
+ * 
+ * Instances are immutable and cached by LoreCache.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+final class FieldIndex {
+	
+	private final Map<String,Integer> lines;
+	
+	//---------------------------------------------------------------------------------------------
+	private FieldIndex( Map<String,Integer> lines ) {
+		this.lines = lines;
+	}
+	
+	/**************************************************************************
+	 * Index the fields of a lore list.
+	 **************************************************************************/
+	static FieldIndex build( List<String> lore ) {
+		Map<String,Integer> lines = new LinkedHashMap<String,Integer>();
+		for( int i = 1; i < lore.size(); i++ ) {
+			String name = LoreMeta.getFieldName( lore.get(i) );
+			if( name == null || lines.containsKey( name ) ) continue;
+			lines.put( name, i );
+		}
+		return new FieldIndex( lines );
+	}
+	
+	/**************************************************************************
+	 * Find a field.
+	 * 
+	 * @param name Field name
+	 * @return     Line number of the field, or -1 if it doesn't exist.
+	 **************************************************************************/
+	int getLine( String name ) {
+		Integer line = lines.get( name );
+		return line == null ? -1 : line;
+	}
+	
+	/**************************************************************************
+	 * Get all field names, in the order they appear in the lore.
+	 **************************************************************************/
+	Set<String> getNames() {
+		return Collections.unmodifiableSet( lines.keySet() );
+	}
+	
+	/**************************************************************************
+	 * Get the number of fields.
+	 **************************************************************************/
+	int size() {
+		return lines.size();
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/******************************************************************************
+ * Bounded cache of parsed lore lines and field indexes.
+ * 
+ * Entries are keyed by the encoded string (or the lines after it for
+ * field indexes), so a cached view can never be out of date; a changed 
+ * line simply misses. The least recently used entries are evicted when
+ * the cache is full.
+ * 
+ * All methods are synchronized so the cache can be read from any thread.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+final class LoreCache {
+	
+	private int capacity;
+	private final Map<String,DecodedLore> views;
+	private final Map<List<String>,FieldIndex> fields;
+	
+	//---------------------------------------------------------------------------------------------
+	LoreCache( int capacity ) {
+		this.capacity = capacity;
+		views = createMap();
+		fields = createMap();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private <K,V> Map<K,V> createMap() {
+		return new LinkedHashMap<K,V>( 16, 0.75f, true ) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry( Map.Entry<K,V> eldest ) {
+				return size() > capacity;
+			}
+		};
+	}
+	
+	/**************************************************************************
+	 * Get the parsed view of a line, parsing it if it isn't cached.
+	 * 
+	 * @param data Encoded lore line
+	 * @return     Parsed view of the line
+	 **************************************************************************/
+	DecodedLore get( String data ) {
+		DecodedLore view;
+		synchronized( this ) {
+			view = views.get( data );
+		}
+		if( view != null ) return view;
+		
+		// parse outside of the lock, a race here only costs a second parse
+		view = DecodedLore.parse( data );
+		
+		synchronized( this ) {
+			if( capacity > 0 ) views.put( data, view );
+		}
+		return view;
+	}
+	
+	/**************************************************************************
+	 * Get the parsed view of a line only if it is already cached.
+	 * 
+	 * @param data Encoded lore line
+	 * @return     Parsed view of the line, or null if it isn't cached.
+	 **************************************************************************/
+	synchronized DecodedLore getIfPresent( String data ) {
+		return views.get( data );
+	}
+	
+	/**************************************************************************
+	 * Get the field index of a lore list, building it if it isn't cached.
+	 * 
+	 * @param lore Lore list, which must not be modified while the call is
+	 *             in progress
+	 * @return     Field index of the list
+	 **************************************************************************/
+	FieldIndex getFields( List<String> lore ) {
+		FieldIndex index;
+		synchronized( this ) {
+			index = fields.get( getFieldLines( lore ) );
+		}
+		if( index != null ) return index;
+		
+		index = FieldIndex.build( lore );
+		putFields( lore, index );
+		return index;
+	}
+	
+	/**************************************************************************
+	 * Store the field index of a lore list.
+	 * 
+	 * Used when a list is changed in a way that doesn't move any fields,
+	 * so the index of the old list can be reused.
+	 **************************************************************************/
+	void putFields( List<String> lore, FieldIndex index ) {
+		
+		// copy the key, the caller's list may be changed later
+		List<String> key = new ArrayList<String>( getFieldLines( lore ) );
+		synchronized( this ) {
+			if( capacity > 0 ) fields.put( key, index );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// fields are never on the data line, so changing data keeps the index
+	private static List<String> getFieldLines( List<String> lore ) {
+		return lore.size() <= 1 ? Collections.<String>emptyList() : lore.subList( 1, lore.size() );
+	}
+	
+	/**************************************************************************
+	 * Remove all cached views and field indexes.
+	 **************************************************************************/
+	synchronized void clear() {
+		views.clear();
+		fields.clear();
+	}
+	
+	/**************************************************************************
+	 * Change the maximum number of cached views (and field indexes).
+	 * 
+	 * @param capacity New capacity, 0 disables caching.
+	 **************************************************************************/
+	synchronized void setCapacity( int capacity ) {
+		this.capacity = capacity;
+		if( views.size() > capacity || fields.size() > capacity ) {
+			views.clear();
+			fields.clear();
+		}
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/******************************************************************************
+ * A queue of data and field changes to an item's lore.
+ * 
+ * This holds the parts shared by LoreEditor and LoreCommit. If the same 
+ * key or field is changed more than once, the last change wins.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public abstract class LoreChanges<T extends LoreChanges<T>> {
+	
+	// data changes, null values delete the entry
+	final Map<MetaKey,Object> data = new LinkedHashMap<MetaKey,Object>();
+	
+	// field changes, null values delete the field
+	final Map<String,String> fields = new LinkedHashMap<String,String>();
+	
+	//---------------------------------------------------------------------------------------------
+	LoreChanges() {}
+	
+	//---------------------------------------------------------------------------------------------
+	abstract T self();
+	
+	/**************************************************************************
+	 * Create or modify a byte data entry.
+	 * 
+	 * @param key   Byte key to access
+	 * @param value New value to set, or null to delete the entry
+	 * @return      This object
+	 **************************************************************************/
+	public T setData( MetaKeyByte key, Byte value ) {
+		data.put( key, value );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Create or modify a short data entry.
+	 * 
+	 * @param key   Short key to access
+	 * @param value New value to set, or null to delete the entry
+	 * @return      This object
+	 **************************************************************************/
+	public T setData( MetaKeyShort key, Short value ) {
+		data.put( key, value );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Create or modify an integer data entry.
+	 * 
+	 * @param key   Integer key to access
+	 * @param value New value to set, or null to delete the entry
+	 * @return      This object
+	 **************************************************************************/
+	public T setData( MetaKeyInt key, Integer value ) {
+		data.put( key, value );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Create or modify a long data entry.
+	 * 
+	 * @param key   Long key to access
+	 * @param value New value to set, or null to delete the entry
+	 * @return      This object
+	 **************************************************************************/
+	public T setData( MetaKeyLong key, Long value ) {
+		data.put( key, value );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Create or modify a UUID data entry.
+	 * 
+	 * @param key   UUID key to access
+	 * @param value New value to set, or null to delete the entry
+	 * @return      This object
+	 **************************************************************************/
+	public T setData( MetaKeyUUID key, UUID value ) {
+		data.put( key, value );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Create or modify a text (string) data entry.
+	 * 
+	 * @param key   Text key to access
+	 * @param value New value to set, or null to delete the entry
+	 * @return      This object
+	 * 
+	 * @see LoreMeta#setData(ItemStack, MetaKeyText, String)
+	 **************************************************************************/
+	public T setData( MetaKeyText key, String value ) {
+		data.put( key, value );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Create or modify a float data entry.
+	 * 
+	 * @param key   Float key to access
+	 * @param value New value to set, or null to delete the entry
+	 * @return      This object
+	 **************************************************************************/
+	public T setData( MetaKeyFloat key, Float value ) {
+		data.put( key, value );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Create or modify a double data entry.
+	 * 
+	 * @param key   Double key to access
+	 * @param value New value to set, or null to delete the entry
+	 * @return      This object
+	 **************************************************************************/
+	public T setData( MetaKeyDouble key, Double value ) {
+		data.put( key, value );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Create or modify an enum data entry.
+	 * 
+	 * @param key   Enum key to access
+	 * @param value New value to set, or null to delete the entry
+	 * @return      This object
+	 **************************************************************************/
+	public <E extends Enum<E>> T setData( MetaKeyEnum<E> key, E value ) {
+		data.put( key, value );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Set a flag data entry.
+	 * 
+	 * @param key Flag key to access
+	 * @return    This object
+	 **************************************************************************/
+	public T setFlag( MetaKeyFlag key ) {
+		data.put( key, Boolean.valueOf(true) );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Remove a flag data entry.
+	 * 
+	 * @param key Flag key to remove
+	 * @return    This object
+	 **************************************************************************/
+	public T clearFlag( MetaKeyFlag key ) {
+		data.put( key, null );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Delete a data entry of any type.
+	 * 
+	 * @param key Key to remove
+	 * @return    This object
+	 **************************************************************************/
+	public T removeData( MetaKey key ) {
+		data.put( key, null );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Set a field.
+	 * 
+	 * Fields that don't exist in the item lore are ignored when
+	 * committing.
+	 * 
+	 * @param key   Field name to write to
+	 * @param value Value to display for the field
+	 * @return      This object
+	 * 
+	 * @see LoreMeta#setField(ItemStack, String, String)
+	 **************************************************************************/
+	public T setField( String key, String value ) {
+		if( value == null ) throw new IllegalArgumentException( "value cannot be null" );
+		fields.put( key, value );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Remove a field from the item.
+	 * 
+	 * @param key Field name to delete
+	 * @return    This object
+	 * 
+	 * @see LoreMeta#removeField(ItemStack, String)
+	 **************************************************************************/
+	public T removeField( String key ) {
+		fields.put( key, null );
+		return self();
+	}
+	
+	/**************************************************************************
+	 * Check if there are changes waiting to be committed.
+	 **************************************************************************/
+	public boolean hasChanges() {
+		return !data.isEmpty() || !fields.isEmpty();
+	}
+	
+	/**************************************************************************
+	 * Discard all queued changes.
+	 **************************************************************************/
+	public void reset() {
+		data.clear();
+		fields.clear();
+	}
+	
+	/**************************************************************************
+	 * Apply queued changes to a lore list.
+	 * 
+	 * @param lore Lore to modify
+	 * @return     false if nothing had to change, e.g. when only missing 
+	 *             entries were removed
+	 * @throws LoreSizeException if the data goes over the size budget, in
+	 *             which case the lore isn't changed
+	 **************************************************************************/
+	boolean applyTo( List<String> lore ) {
+		boolean changed = false;
+		if( !data.isEmpty() ) {
+			String oldData = lore.size() == 0 ? "" : lore.get(0);
+			StringBuilder output = new StringBuilder( oldData );
+			boolean moved = false;
+			for( Map.Entry<MetaKey,Object> entry : data.entrySet() ) {
+				moved |= LoreCodec.writeEntry( output, entry.getKey(), entry.getValue() );
+			}
+			if( moved ) LoreCodec.updateDirectory( output );
+			LoreMeta.checkBudget( data.size() == 1 ? data.keySet().iterator().next() : null, 
+					oldData, output );
+			
+			if( !oldData.contentEquals( output ) ) {
+				if( lore.size() == 0 ) {
+					lore.add( output.toString() );
+				} else {
+					lore.set( 0, output.toString() );
+				}
+				
+				// before the field changes, so a field set in the same batch wins
+				FieldBinding.render( lore, oldData, output, data.keySet() );
+				changed = true;
+			}
+		}
+		
+		if( !fields.isEmpty() ) {
+			applyFields( lore );
+			changed = true;
+		}
+		return changed;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void applyFields( List<String> lore ) {
+		FieldIndex index = LoreMeta.cache.getFields( lore );
+		boolean removed = false;
+		
+		for( Map.Entry<String,String> entry : fields.entrySet() ) {
+			int line = index.getLine( entry.getKey() );
+			if( line == -1 ) continue;
+			if( entry.getValue() == null ) {
+				lore.set( line, null ); // deleted below
+				removed = true;
+			} else {
+				lore.set( line, LoreMeta.formatField( lore.get( line ), entry.getValue() ) );
+			}
+		}
+		
+		if( removed ) {
+			lore.removeAll( Collections.singleton( null ) );
+		} else {
+			LoreMeta.cache.putFields( lore, index );
+		}
+	}
+}
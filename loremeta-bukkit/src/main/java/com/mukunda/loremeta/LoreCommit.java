@@ -0,0 +1,178 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import com.mukunda.loremeta.LoreMetrics.Operation;
+
+/******************************************************************************
+ * Changes computed from a snapshot, to be applied to the live item later.
+ * 
+ * Created with LoreSnapshot.edit(). A worker thread can queue changes 
+ * here, and the main thread then calls apply( item ). Before anything is 
+ * written, every changed key and field (and any key passed to expect) 
+ * is compared with the item: if its current value is different from the
+ * value in the snapshot, the item was changed by someone else in the 
+ * meantime and the whole commit is rejected.
+ * 
+ *   // worker thread
+ *   LoreSnapshot snapshot = ...;
+ *   int charges = snapshot.getInt( CHARGES, 0 );
+ *   LoreCommit commit = snapshot.edit().setData( CHARGES, charges - 1 );
+ *   
+ *   // main thread
+ *   if( !commit.apply( item ) ) { ... retry with a new snapshot ... }
+ * 
+ * A commit is not thread-safe by itself. Hand it to the main thread
+ * through the scheduler (or another safe publication) after the last 
+ * change.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class LoreCommit extends LoreChanges<LoreCommit> {
+	
+	private final LoreSnapshot snapshot;
+	
+	// keys that are only checked, not changed
+	private final Set<MetaKey> expected = new LinkedHashSet<MetaKey>();
+	private final Set<String> expectedFields = new LinkedHashSet<String>();
+	
+	//---------------------------------------------------------------------------------------------
+	LoreCommit( LoreSnapshot snapshot ) {
+		this.snapshot = snapshot;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@Override
+	LoreCommit self() {
+		return this;
+	}
+	
+	/**************************************************************************
+	 * Get the snapshot that the changes are based on.
+	 **************************************************************************/
+	public LoreSnapshot getSnapshot() {
+		return snapshot;
+	}
+	
+	/**************************************************************************
+	 * Require a key to be unchanged without modifying it.
+	 * 
+	 * Use this for values that the changes were computed from.
+	 * 
+	 * @param key Key that must still have the value from the snapshot
+	 * @return    This commit
+	 **************************************************************************/
+	public LoreCommit expect( MetaKey key ) {
+		expected.add( key );
+		return this;
+	}
+	
+	/**************************************************************************
+	 * Require a field to be unchanged without modifying it.
+	 * 
+	 * @param key Field that must still have the value from the snapshot
+	 * @return    This commit
+	 **************************************************************************/
+	public LoreCommit expectField( String key ) {
+		expectedFields.add( key );
+		return this;
+	}
+	
+	/**************************************************************************
+	 * Apply the changes to an item, if it still matches the snapshot.
+	 * 
+	 * Must be called on the main thread. Either all changes are applied,
+	 * or none are.
+	 * 
+	 * @param item Item to modify
+	 * @return     true if the changes were applied, false if a checked key
+	 *             or field has a different value than in the snapshot.
+	 * @throws LoreSizeException if the data goes over the size budget, in
+	 *             which case the item isn't changed
+	 **************************************************************************/
+	public boolean apply( ItemStack item ) {
+		if( item == null ) return false;
+		ItemMeta meta = item.getItemMeta();
+		List<String> lore = meta.hasLore() ? meta.getLore() : new ArrayList<String>();
+		
+		if( !isCurrent( lore ) ) return false;
+		if( !hasChanges() ) return true;
+		
+		long timer = LoreMetrics.begin( Operation.COMMIT, null );
+		if( applyTo( lore ) ) {
+			meta.setLore( lore );
+			item.setItemMeta( meta );
+		}
+		LoreMetrics.end( timer, Operation.COMMIT, null, lore.isEmpty() ? null : lore.get(0) );
+		return true;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// compare-and-set check of every changed or expected key against the snapshot
+	private boolean isCurrent( List<String> lore ) {
+		DecodedLore current = LoreMeta.cache.get( lore.size() == 0 ? "" : lore.get(0) );
+		DecodedLore original = snapshot.getDecoded();
+		
+		for( MetaKey key : data.keySet() ) {
+			if( !same( original.get( key ), current.get( key ) ) ) return false;
+		}
+		for( MetaKey key : expected ) {
+			if( !same( original.get( key ), current.get( key ) ) ) return false;
+		}
+		
+		if( fields.isEmpty() && expectedFields.isEmpty() ) return true;
+		
+		FieldIndex index = LoreMeta.cache.getFields( lore );
+		Map<String,String> originalFields = snapshot.getFields();
+		for( String name : fields.keySet() ) {
+			if( !same( originalFields.get( name ), getField( lore, index, name ) ) ) return false;
+		}
+		for( String name : expectedFields ) {
+			if( !same( originalFields.get( name ), getField( lore, index, name ) ) ) return false;
+		}
+		return true;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static String getField( List<String> lore, FieldIndex index, String name ) {
+		int line = index.getLine( name );
+		return line == -1 ? null : LoreMeta.getFieldValue( lore.get( line ) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static boolean same( Object a, Object b ) {
+		return a == null ? b == null : a.equals( b );
+	}
+}
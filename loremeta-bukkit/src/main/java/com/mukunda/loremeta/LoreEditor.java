@@ -0,0 +1,102 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import com.mukunda.loremeta.LoreMetrics.Operation;
+
+/******************************************************************************
+ * A batch of changes to an item's lore.
+ * 
+ * Create an editor with LoreMeta.edit( item ), queue up data and field
+ * changes, and then call commit() to write all of them to the item at
+ * once. The item meta is read and written only once per commit, no matter
+ * how many changes are made.
+ * 
+ *   LoreMeta.edit( item )
+ *       .setData( POWER, 5 )
+ *       .setFlag( CURSED )
+ *       .setField( "Charges", "3" )
+ *       .commit();
+ * 
+ * If the same key or field is changed more than once, the last change
+ * wins. An editor can be reused after committing.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class LoreEditor extends LoreChanges<LoreEditor> {
+	
+	private final ItemStack item;
+	
+	//---------------------------------------------------------------------------------------------
+	LoreEditor( ItemStack item ) {
+		this.item = item;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@Override
+	LoreEditor self() {
+		return this;
+	}
+	
+	/**************************************************************************
+	 * Get the item that this editor modifies.
+	 **************************************************************************/
+	public ItemStack getItem() {
+		return item;
+	}
+	
+	/**************************************************************************
+	 * Apply all queued changes to the item.
+	 * 
+	 * The lore is rebuilt in one pass and written back with a single
+	 * setItemMeta call. The queue is cleared afterwards.
+	 * 
+	 * @throws LoreSizeException if the data goes over the size budget, in 
+	 *         which case the item and the queue are left as they were
+	 **************************************************************************/
+	public void commit() {
+		if( item == null || !hasChanges() ) {
+			reset();
+			return;
+		}
+		
+		long timer = LoreMetrics.begin( Operation.COMMIT, null );
+		ItemMeta meta = item.getItemMeta();
+		List<String> lore = meta.hasLore() ? meta.getLore() : new ArrayList<String>();
+		if( applyTo( lore ) ) {
+			meta.setLore( lore );
+			item.setItemMeta( meta );
+		}
+		reset();
+		LoreMetrics.end( timer, Operation.COMMIT, null, lore.isEmpty() ? null : lore.get(0) );
+	}
+}
@@ -0,0 +1,627 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.inventory.InventoryPickupItemEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerPickupItemEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.inventory.DoubleChestInventory;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/******************************************************************************
+ * Server-wide index of items by data entries.
+ * 
+ * Maps the values of a few chosen keys (e.g. an owner UUID or an item 
+ * serial) to the inventory slots holding items with those values, so 
+ * finding an item doesn't mean searching every inventory. Player 
+ * inventories with their armor, ender chests and the containers in 
+ * loaded chunks are indexed.
+ * 
+ * The index listens to inventory events and marks the inventories they 
+ * touch; marked inventories are indexed again on the next tick, which
+ * only costs a pass over their slots. Changes that don't fire an event,
+ * like plugins editing items directly, are picked up by a reconciliation
+ * pass that checks a few inventories every tick, or right away by 
+ * calling update(Inventory).
+ * 
+ * Results can be a tick behind the inventories. Like the rest of the 
+ * Bukkit API, the index must only be used from the main thread.
+ * 
+ * Usually created with LoreMetaPlugin.enableIndex.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class LoreIndex implements Listener {
+	
+	/**************************************************************************
+	 * An inventory slot holding an indexed item.
+	 * 
+	 * In a player inventory the armor slots come after the main slots, in 
+	 * the order of getArmorContents (boots first), which are the indexes
+	 * Inventory.getItem uses for them.
+	 **************************************************************************/
+	public static final class Slot {
+		private final Inventory inventory;
+		private final int index;
+		
+		//---------------------------------------------------------------------------------------------
+		Slot( Inventory inventory, int index ) {
+			this.inventory = inventory;
+			this.index = index;
+		}
+		
+		//---------------------------------------------------------------------------------------------
+		public Inventory getInventory() {
+			return inventory;
+		}
+		
+		//---------------------------------------------------------------------------------------------
+		public int getIndex() {
+			return index;
+		}
+		
+		//---------------------------------------------------------------------------------------------
+		public InventoryHolder getHolder() {
+			return inventory.getHolder();
+		}
+		
+		//---------------------------------------------------------------------------------------------
+		public ItemStack getItem() {
+			return inventory.getItem( index );
+		}
+		
+		//---------------------------------------------------------------------------------------------
+		@Override
+		public boolean equals( Object other ) {
+			if( !(other instanceof Slot) ) return false;
+			Slot slot = (Slot)other;
+			return index == slot.index && inventory.equals( slot.inventory );
+		}
+		
+		//---------------------------------------------------------------------------------------------
+		@Override
+		public int hashCode() {
+			return inventory.hashCode() * 31 + index;
+		}
+	}
+	
+	// inventories checked by the reconciliation pass per tick
+	private static final int DEFAULT_RECONCILE_RATE = 16;
+	
+	private final Plugin plugin;
+	private final MetaKey[] keys;
+	
+	// slots by value, for each key
+	private final Map<Object,Set<Slot>>[] slots;
+	private final Map<Inventory,Tracked> tracked = new HashMap<Inventory,Tracked>();
+	private final Set<Inventory> dirty = new LinkedHashSet<Inventory>();
+	private final ArrayDeque<Inventory> reconcileQueue = new ArrayDeque<Inventory>();
+	private int reconcileRate = DEFAULT_RECONCILE_RATE;
+	private BukkitTask task;
+	
+	//---------------------------------------------------------------------------------------------
+	// an indexed inventory
+	private static final class Tracked {
+		
+		// player for inventories that are kept until the player quits, null otherwise
+		final Player owner;
+		
+		// indexed values by slot and key, null if no slot has any
+		Object[][] values;
+		
+		Tracked( Player owner ) {
+			this.owner = owner;
+		}
+	}
+	
+	/**************************************************************************
+	 * Create an index.
+	 * 
+	 * Nothing is indexed until start() is called.
+	 * 
+	 * @param plugin Plugin to register the listener and task with
+	 * @param keys   Keys to index
+	 **************************************************************************/
+	@SuppressWarnings("unchecked")
+	public LoreIndex( Plugin plugin, MetaKey... keys ) {
+		if( keys.length == 0 ) throw new IllegalArgumentException( "No keys to index." );
+		this.plugin = plugin;
+		this.keys = keys.clone();
+		slots = new Map[keys.length];
+		for( int i = 0; i < keys.length; i++ ) {
+			slots[i] = new HashMap<Object,Set<Slot>>();
+		}
+	}
+	
+	/**************************************************************************
+	 * Get the indexed keys.
+	 * 
+	 * @return Read-only list of keys
+	 **************************************************************************/
+	public List<MetaKey> getKeys() {
+		return Collections.unmodifiableList( Arrays.asList( keys ) );
+	}
+	
+	/**************************************************************************
+	 * Start listening for changes and index the online players and loaded
+	 * chunks.
+	 * 
+	 * The first index is built right away, which reads every container in
+	 * the loaded chunks once.
+	 **************************************************************************/
+	public void start() {
+		if( task != null ) return;
+		Bukkit.getPluginManager().registerEvents( this, plugin );
+		task = Bukkit.getScheduler().runTaskTimer( plugin, new Runnable() {
+			@Override
+			public void run() {
+				tick();
+			}
+		}, 1, 1 );
+		rebuild();
+	}
+	
+	/**************************************************************************
+	 * Stop listening for changes and clear the index.
+	 **************************************************************************/
+	public void stop() {
+		if( task == null ) return;
+		task.cancel();
+		task = null;
+		HandlerList.unregisterAll( this );
+		clear();
+	}
+	
+	/**************************************************************************
+	 * Throw away the index and build it again from the online players and
+	 * loaded chunks.
+	 **************************************************************************/
+	public void rebuild() {
+		clear();
+		for( Player player : Bukkit.getOnlinePlayers() ) {
+			trackPlayer( player );
+		}
+		for( World world : Bukkit.getWorlds() ) {
+			for( Chunk chunk : world.getLoadedChunks() ) {
+				markChunk( chunk );
+			}
+		}
+		flush();
+	}
+	
+	/**************************************************************************
+	 * Set how many inventories the reconciliation pass checks each tick.
+	 * 
+	 * Every indexed inventory is checked in turn, so with N inventories 
+	 * indexed a change made without an event is found within N/rate ticks.
+	 * 
+	 * @param inventoriesPerTick Inventories to check per tick, 0 turns the
+	 *                           reconciliation off.
+	 **************************************************************************/
+	public void setReconcileRate( int inventoriesPerTick ) {
+		if( inventoriesPerTick < 0 ) throw new IllegalArgumentException( "rate cannot be negative" );
+		reconcileRate = inventoriesPerTick;
+	}
+	
+	/**************************************************************************
+	 * Index an inventory again on the next tick.
+	 * 
+	 * Call this after changing items in an inventory without an event, 
+	 * e.g. with LoreMeta.setData, to update the index before the 
+	 * reconciliation pass gets to it. Inventories that aren't indexed
+	 * yet are added.
+	 * 
+	 * @param inventory Inventory that changed
+	 **************************************************************************/
+	public void update( Inventory inventory ) {
+		mark( inventory );
+	}
+	
+	/**************************************************************************
+	 * Find an item by a data value.
+	 * 
+	 * @param key   Indexed key
+	 * @param value Value of the entry, of the key's type (e.g. a UUID for
+	 *              a MetaKeyUUID)
+	 * @return      Slot holding an item with the value, or null if there is
+	 *              none. If several items have the value any of them is 
+	 *              returned.
+	 **************************************************************************/
+	public Slot find( MetaKey key, Object value ) {
+		Set<Slot> result = slots[indexOf( key )].get( value );
+		return result == null ? null : result.iterator().next();
+	}
+	
+	/**************************************************************************
+	 * Find all items with a data value.
+	 * 
+	 * @param key   Indexed key
+	 * @param value Value of the entry
+	 * @return      Slots holding items with the value, empty if there are
+	 *              none.
+	 **************************************************************************/
+	public List<Slot> findAll( MetaKey key, Object value ) {
+		Set<Slot> result = slots[indexOf( key )].get( value );
+		return result == null ? new ArrayList<Slot>() : new ArrayList<Slot>( result );
+	}
+	
+	/**************************************************************************
+	 * Get the number of inventories being indexed.
+	 **************************************************************************/
+	public int getInventoryCount() {
+		return tracked.size();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR, ignoreCancelled = true )
+	public void onInventoryClick( InventoryClickEvent event ) {
+		mark( event.getView().getTopInventory() );
+		mark( event.getView().getBottomInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR, ignoreCancelled = true )
+	public void onInventoryDrag( InventoryDragEvent event ) {
+		mark( event.getView().getTopInventory() );
+		mark( event.getView().getBottomInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR, ignoreCancelled = true )
+	public void onInventoryOpen( InventoryOpenEvent event ) {
+		mark( event.getView().getTopInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR )
+	public void onInventoryClose( InventoryCloseEvent event ) {
+		mark( event.getView().getTopInventory() );
+		mark( event.getView().getBottomInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR, ignoreCancelled = true )
+	public void onInventoryMoveItem( InventoryMoveItemEvent event ) {
+		mark( event.getSource() );
+		mark( event.getDestination() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR, ignoreCancelled = true )
+	public void onInventoryPickupItem( InventoryPickupItemEvent event ) {
+		mark( event.getInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR, ignoreCancelled = true )
+	public void onPlayerPickupItem( PlayerPickupItemEvent event ) {
+		mark( event.getPlayer().getInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR, ignoreCancelled = true )
+	public void onPlayerDropItem( PlayerDropItemEvent event ) {
+		mark( event.getPlayer().getInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR )
+	public void onPlayerItemBreak( PlayerItemBreakEvent event ) {
+		mark( event.getPlayer().getInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR )
+	public void onPlayerDeath( PlayerDeathEvent event ) {
+		mark( event.getEntity().getInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR )
+	public void onPlayerRespawn( PlayerRespawnEvent event ) {
+		mark( event.getPlayer().getInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR )
+	public void onPlayerJoin( PlayerJoinEvent event ) {
+		trackPlayer( event.getPlayer() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR )
+	public void onPlayerQuit( PlayerQuitEvent event ) {
+		forget( event.getPlayer().getInventory() );
+		forget( event.getPlayer().getEnderChest() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR, ignoreCancelled = true )
+	public void onBlockPlace( BlockPlaceEvent event ) {
+		BlockState state = event.getBlock().getState();
+		if( state instanceof InventoryHolder ) mark( ((InventoryHolder)state).getInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR, ignoreCancelled = true )
+	public void onBlockBreak( BlockBreakEvent event ) {
+		BlockState state = event.getBlock().getState();
+		
+		// the contents are dropped after the event, the container is forgotten next tick
+		if( state instanceof InventoryHolder ) mark( ((InventoryHolder)state).getInventory() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR )
+	public void onChunkLoad( ChunkLoadEvent event ) {
+		markChunk( event.getChunk() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@EventHandler( priority = EventPriority.MONITOR, ignoreCancelled = true )
+	public void onChunkUnload( ChunkUnloadEvent event ) {
+		for( BlockState state : event.getChunk().getTileEntities() ) {
+			if( !(state instanceof InventoryHolder) ) continue;
+			Inventory inventory = ((InventoryHolder)state).getInventory();
+			if( inventory instanceof DoubleChestInventory ) {
+				forget( ((DoubleChestInventory)inventory).getLeftSide() );
+				forget( ((DoubleChestInventory)inventory).getRightSide() );
+			} else {
+				forget( inventory );
+			}
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// runs every tick, indexes marked inventories and reconciles a few others
+	void tick() {
+		flush();
+		
+		for( int i = 0; i < reconcileRate; i++ ) {
+			if( reconcileQueue.isEmpty() ) {
+				if( i > 0 ) break; // one round per tick at most
+				reconcileQueue.addAll( tracked.keySet() );
+				for( Player player : Bukkit.getOnlinePlayers() ) {
+					if( !tracked.containsKey( player.getInventory() ) ) trackPlayer( player );
+				}
+				if( reconcileQueue.isEmpty() ) break;
+			}
+			Inventory inventory = reconcileQueue.poll();
+			if( tracked.containsKey( inventory ) ) index( inventory );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void flush() {
+		if( dirty.isEmpty() ) return;
+		Inventory[] inventories = dirty.toArray( new Inventory[dirty.size()] );
+		dirty.clear();
+		for( Inventory inventory : inventories ) {
+			index( inventory );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void clear() {
+		for( Map<Object,Set<Slot>> map : slots ) {
+			map.clear();
+		}
+		tracked.clear();
+		dirty.clear();
+		reconcileQueue.clear();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// double chests are indexed as their two halves, so each chest is only indexed once
+	private void mark( Inventory inventory ) {
+		if( inventory == null ) return;
+		if( inventory instanceof DoubleChestInventory ) {
+			mark( ((DoubleChestInventory)inventory).getLeftSide() );
+			mark( ((DoubleChestInventory)inventory).getRightSide() );
+			return;
+		}
+		dirty.add( inventory );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void markChunk( Chunk chunk ) {
+		for( BlockState state : chunk.getTileEntities() ) {
+			if( state instanceof InventoryHolder ) mark( ((InventoryHolder)state).getInventory() );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void trackPlayer( Player player ) {
+		for( Inventory inventory : new Inventory[] { player.getInventory(), player.getEnderChest() } ) {
+			if( !tracked.containsKey( inventory ) ) tracked.put( inventory, new Tracked( player ) );
+			dirty.add( inventory );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void forget( Inventory inventory ) {
+		dirty.remove( inventory );
+		Tracked entry = tracked.remove( inventory );
+		if( entry == null || entry.values == null ) return;
+		for( int i = 0; i < entry.values.length; i++ ) {
+			if( entry.values[i] != null ) unlink( entry.values[i], inventory, i );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// whether an inventory still exists. containers are checked without loading their chunk,
+	// inventories without a block or entity exist while someone is viewing them
+	private static boolean isLive( Inventory inventory, Player owner ) {
+		if( owner != null ) return owner.isOnline();
+		InventoryHolder holder = inventory.getHolder();
+		if( holder instanceof BlockState ) {
+			BlockState state = (BlockState)holder;
+			return state.getWorld().isChunkLoaded( state.getX() >> 4, state.getZ() >> 4 )
+					&& state.getBlock().getType() == state.getType();
+		}
+		if( holder instanceof Entity ) return ((Entity)holder).isValid();
+		return !inventory.getViewers().isEmpty();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// reads the slots of an inventory and updates the entries that changed
+	private void index( Inventory inventory ) {
+		Tracked entry = tracked.get( inventory );
+		if( !isLive( inventory, entry == null ? null : entry.owner ) ) {
+			forget( inventory );
+			return;
+		}
+		if( entry == null ) {
+			entry = new Tracked( null );
+			tracked.put( inventory, entry );
+		}
+		
+		ItemStack[] contents = getSlots( inventory );
+		Object[][] before = entry.values;
+		Object[][] after = null;
+		int length = Math.max( contents.length, before == null ? 0 : before.length );
+		
+		for( int i = 0; i < length; i++ ) {
+			Object[] values = i < contents.length ? read( contents[i] ) : null;
+			Object[] old = before != null && i < before.length ? before[i] : null;
+			if( values != null ) {
+				if( after == null ) after = new Object[contents.length][];
+				after[i] = values;
+			}
+			if( Arrays.equals( old, values ) ) continue;
+			if( old != null ) unlink( old, inventory, i );
+			if( values != null ) link( values, inventory, i );
+		}
+		entry.values = after;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// items in an inventory by slot index. getContents leaves out the armor of a player 
+	// inventory, it is added after the main slots where getItem also finds it
+	private static ItemStack[] getSlots( Inventory inventory ) {
+		ItemStack[] contents = inventory.getContents();
+		if( !(inventory instanceof PlayerInventory) ) return contents;
+		ItemStack[] armor = ((PlayerInventory)inventory).getArmorContents();
+		ItemStack[] result = Arrays.copyOf( contents, contents.length + armor.length );
+		System.arraycopy( armor, 0, result, contents.length, armor.length );
+		return result;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// values of the indexed keys, or null if the item has none. lines that aren't cached are 
+	// read without adding them, indexing every item on the server would flush the cache
+	private Object[] read( ItemStack item ) {
+		if( item == null || !item.hasItemMeta() ) return null;
+		ItemMeta meta = item.getItemMeta();
+		if( !meta.hasLore() ) return null;
+		String data = meta.getLore().get(0);
+		
+		DecodedLore view = LoreMeta.cache.getIfPresent( data );
+		Object[] values = view == null ? MetaCodec.getValues( data, keys ) : null;
+		Object[] result = null;
+		for( int i = 0; i < keys.length; i++ ) {
+			Object value = view == null ? values[i] : view.get( keys[i] );
+			if( value == null ) continue;
+			if( result == null ) result = values != null ? values : new Object[keys.length];
+			result[i] = value;
+		}
+		return result;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void link( Object[] values, Inventory inventory, int index ) {
+		for( int i = 0; i < keys.length; i++ ) {
+			if( values[i] == null ) continue;
+			Set<Slot> set = slots[i].get( values[i] );
+			if( set == null ) {
+				set = new HashSet<Slot>( 2 );
+				slots[i].put( values[i], set );
+			}
+			set.add( new Slot( inventory, index ) );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void unlink( Object[] values, Inventory inventory, int index ) {
+		Slot slot = new Slot( inventory, index );
+		for( int i = 0; i < keys.length; i++ ) {
+			if( values[i] == null ) continue;
+			Set<Slot> set = slots[i].get( values[i] );
+			if( set == null ) continue;
+			set.remove( slot );
+			if( set.isEmpty() ) slots[i].remove( values[i] );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private int indexOf( MetaKey key ) {
+		for( int i = 0; i < keys.length; i++ ) {
+			if( keys[i].equals( key ) ) return i;
+		}
+		throw new IllegalArgumentException( "Key is not indexed." );
+	}
+}
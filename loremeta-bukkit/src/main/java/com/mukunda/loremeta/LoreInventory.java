@@ -0,0 +1,384 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+/******************************************************************************
+ * Bulk LoreMeta operations over a whole inventory.
+ * 
+ * Every function makes a single pass over the items, reading the meta of
+ * each slot once. Functions that modify items only write back the slots 
+ * that actually changed.
+ * 
+ * Each function takes either an Inventory or an ItemStack array. Array
+ * items are modified in place; for inventories the changed slots are 
+ * also set back into the inventory.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class LoreInventory {
+	
+	//---------------------------------------------------------------------------------------------
+	private LoreInventory() {}
+	
+	/**************************************************************************
+	 * Find the first item that has a data entry.
+	 * 
+	 * @param items Items to search
+	 * @param key   Key to look for
+	 * @return      Index of the first matching item, or -1 if none match.
+	 **************************************************************************/
+	public static int findFirst( ItemStack[] items, MetaKey key ) {
+		return findFirst( items, key, null );
+	}
+	
+	/**************************************************************************
+	 * Find the first item that has a data entry with a certain value.
+	 * 
+	 * @param items Items to search
+	 * @param key   Key to look for
+	 * @param value Value to match, of the key's type (e.g. a UUID for a 
+	 *              MetaKeyUUID). null matches any value.
+	 * @return      Index of the first matching item, or -1 if none match.
+	 **************************************************************************/
+	public static int findFirst( ItemStack[] items, MetaKey key, Object value ) {
+		for( int i = 0; i < items.length; i++ ) {
+			if( matches( items[i], key, value ) ) return i;
+		}
+		return -1;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int findFirst( Inventory inventory, MetaKey key ) {
+		return findFirst( inventory.getContents(), key, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int findFirst( Inventory inventory, MetaKey key, Object value ) {
+		return findFirst( inventory.getContents(), key, value );
+	}
+	
+	/**************************************************************************
+	 * Find all items that have a data entry.
+	 * 
+	 * @param items Items to search
+	 * @param key   Key to look for
+	 * @return      Indexes of the matching items, in order.
+	 **************************************************************************/
+	public static int[] findAll( ItemStack[] items, MetaKey key ) {
+		return findAll( items, key, null );
+	}
+	
+	/**************************************************************************
+	 * Find all items that have a data entry with a certain value.
+	 * 
+	 * @param items Items to search
+	 * @param key   Key to look for
+	 * @param value Value to match, null matches any value.
+	 * @return      Indexes of the matching items, in order.
+	 **************************************************************************/
+	public static int[] findAll( ItemStack[] items, MetaKey key, Object value ) {
+		int[] result = new int[items.length];
+		int count = 0;
+		for( int i = 0; i < items.length; i++ ) {
+			if( matches( items[i], key, value ) ) result[count++] = i;
+		}
+		return Arrays.copyOf( result, count );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int[] findAll( Inventory inventory, MetaKey key ) {
+		return findAll( inventory.getContents(), key, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int[] findAll( Inventory inventory, MetaKey key, Object value ) {
+		return findAll( inventory.getContents(), key, value );
+	}
+	
+	/**************************************************************************
+	 * Add up a numeric data entry over all items.
+	 * 
+	 * Each stack counts once, the stack size is not taken into account.
+	 * 
+	 * @param items Items to read
+	 * @param key   BYTE, SHORT, INT, LONG, VARINT or VARLONG key
+	 * @return      Sum of the values, 0 if no item has the key.
+	 **************************************************************************/
+	public static long sum( ItemStack[] items, MetaKey key ) {
+		checkNumeric( key );
+		long total = 0;
+		for( ItemStack item : items ) {
+			DecodedLore view = getView( item );
+			if( view != null ) total += view.getNumber( key, 0 );
+		}
+		return total;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static long sum( Inventory inventory, MetaKey key ) {
+		return sum( inventory.getContents(), key );
+	}
+	
+	/**************************************************************************
+	 * Find the lowest value of a numeric data entry.
+	 * 
+	 * @param items        Items to read
+	 * @param key          BYTE, SHORT, INT, LONG, VARINT or VARLONG key
+	 * @param defaultValue Value to return if no item has the key
+	 * @return             Lowest value found
+	 **************************************************************************/
+	public static long min( ItemStack[] items, MetaKey key, long defaultValue ) {
+		return extreme( items, key, defaultValue, false );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static long min( Inventory inventory, MetaKey key, long defaultValue ) {
+		return extreme( inventory.getContents(), key, defaultValue, false );
+	}
+	
+	/**************************************************************************
+	 * Find the highest value of a numeric data entry.
+	 * 
+	 * @param items        Items to read
+	 * @param key          BYTE, SHORT, INT, LONG, VARINT or VARLONG key
+	 * @param defaultValue Value to return if no item has the key
+	 * @return             Highest value found
+	 **************************************************************************/
+	public static long max( ItemStack[] items, MetaKey key, long defaultValue ) {
+		return extreme( items, key, defaultValue, true );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static long max( Inventory inventory, MetaKey key, long defaultValue ) {
+		return extreme( inventory.getContents(), key, defaultValue, true );
+	}
+	
+	/**************************************************************************
+	 * Change a data entry on every item that has it.
+	 * 
+	 * Items without the key, or that already have the value, are not 
+	 * touched.
+	 * 
+	 * @param items Items to modify
+	 * @param key   Key to change
+	 * @param value New value
+	 * @return      Number of items changed
+	 **************************************************************************/
+	public static int updateAll( ItemStack[] items, MetaKeyByte key, Byte value ) {
+		return updateI( items, key, value, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( ItemStack[] items, MetaKeyShort key, Short value ) {
+		return updateI( items, key, value, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( ItemStack[] items, MetaKeyInt key, Integer value ) {
+		return updateI( items, key, value, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( ItemStack[] items, MetaKeyLong key, Long value ) {
+		return updateI( items, key, value, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( ItemStack[] items, MetaKeyUUID key, UUID value ) {
+		return updateI( items, key, value, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( ItemStack[] items, MetaKeyText key, String value ) {
+		return updateI( items, key, value, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( ItemStack[] items, MetaKeyFloat key, Float value ) {
+		return updateI( items, key, value, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( ItemStack[] items, MetaKeyDouble key, Double value ) {
+		return updateI( items, key, value, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static <E extends Enum<E>> int updateAll( ItemStack[] items, MetaKeyEnum<E> key, E value ) {
+		return updateI( items, key, value, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( Inventory inventory, MetaKeyByte key, Byte value ) {
+		return updateI( inventory, key, value );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( Inventory inventory, MetaKeyShort key, Short value ) {
+		return updateI( inventory, key, value );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( Inventory inventory, MetaKeyInt key, Integer value ) {
+		return updateI( inventory, key, value );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( Inventory inventory, MetaKeyLong key, Long value ) {
+		return updateI( inventory, key, value );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( Inventory inventory, MetaKeyUUID key, UUID value ) {
+		return updateI( inventory, key, value );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( Inventory inventory, MetaKeyText key, String value ) {
+		return updateI( inventory, key, value );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( Inventory inventory, MetaKeyFloat key, Float value ) {
+		return updateI( inventory, key, value );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int updateAll( Inventory inventory, MetaKeyDouble key, Double value ) {
+		return updateI( inventory, key, value );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static <E extends Enum<E>> int updateAll( Inventory inventory, MetaKeyEnum<E> key, E value ) {
+		return updateI( inventory, key, value );
+	}
+	
+	/**************************************************************************
+	 * Remove a data entry from every item.
+	 * 
+	 * @param items Items to modify
+	 * @param key   Key to remove
+	 * @return      Number of items changed
+	 **************************************************************************/
+	public static int clearAll( ItemStack[] items, MetaKey key ) {
+		return updateI( items, key, null, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	public static int clearAll( Inventory inventory, MetaKey key ) {
+		return updateI( inventory, key, null );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static DecodedLore getView( ItemStack item ) {
+		if( item == null || !item.hasItemMeta() ) return null;
+		ItemMeta meta = item.getItemMeta();
+		if( !meta.hasLore() ) return null;
+		List<String> lore = meta.getLore();
+		if( lore.size() == 0 ) return null;
+		return LoreMeta.cache.get( lore.get(0) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static boolean matches( ItemStack item, MetaKey key, Object value ) {
+		DecodedLore view = getView( item );
+		if( view == null ) return false;
+		if( value == null ) return view.contains( key );
+		return value.equals( view.get( key ) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void checkNumeric( MetaKey key ) {
+		switch( key.getDataType() ) {
+		case BYTE:
+		case SHORT:
+		case INT:
+		case LONG:
+		case VARINT:
+		case VARLONG:
+			return;
+		default:
+			throw new IllegalArgumentException( "Key is not a number type." );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static long extreme( ItemStack[] items, MetaKey key, long defaultValue, boolean highest ) {
+		checkNumeric( key );
+		boolean found = false;
+		long result = defaultValue;
+		for( ItemStack item : items ) {
+			DecodedLore view = getView( item );
+			if( view == null || !view.contains( key ) ) continue;
+			long value = view.getNumber( key, 0 );
+			if( !found || (highest ? value > result : value < result) ) {
+				result = value;
+				found = true;
+			}
+		}
+		return result;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// changes items that have the key, null deletes it. changed is filled in if not null.
+	private static int updateI( ItemStack[] items, MetaKey key, Object value, boolean[] changed ) {
+		int count = 0;
+		for( int i = 0; i < items.length; i++ ) {
+			ItemStack item = items[i];
+			if( item == null || !item.hasItemMeta() ) continue;
+			ItemMeta meta = item.getItemMeta();
+			if( !meta.hasLore() ) continue;
+			
+			DecodedLore view = LoreMeta.cache.get( meta.getLore().get(0) );
+			if( !view.contains( key ) ) continue;
+			if( value != null && value.equals( view.get( key ) ) ) continue;
+			
+			LoreMeta.writeData( item, meta, key, value );
+			if( changed != null ) changed[i] = true;
+			count++;
+		}
+		return count;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static int updateI( Inventory inventory, MetaKey key, Object value ) {
+		ItemStack[] items = inventory.getContents();
+		boolean[] changed = new boolean[items.length];
+		int count = updateI( items, key, value, changed );
+		for( int i = 0; count > 0 && i < items.length; i++ ) {
+			if( changed[i] ) inventory.setItem( i, items[i] );
+		}
+		return count;
+	}
+}
@@ -0,0 +1,1188 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import com.mukunda.loremeta.LoreMetrics.Operation;
+
+/******************************************************************************
+ * LoreMeta interface
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class LoreMeta {
+	
+	/**************************************************************************
+	 * What happens when a write goes over the size budget.
+	 **************************************************************************/
+	public enum BudgetAction {
+		
+		/**
+		 * the write goes through and a warning is logged
+		 */
+		WARN,
+		
+		/**
+		 * the write throws LoreSizeException and the item is not changed
+		 */
+		FAIL
+	}
+	
+	/**************************************************************************
+	 * Item initialization function
+	 * 
+	 * This function scans the lore of an ItemStack, and replaces certain 
+	 * markers with embedded data.
+	 * 
+	 * ## marks a field
+	 * @@[...] marks a data initializer
+	 * 
+	 * For example, an item lore can look like this:
+	 *   Spellbook
+	 *   
+	 *   ##Charges: 3
+	 *   @@[B:POWER:3]
+	 * 
+	 * After processing, the item lore will look like this:
+	 *   Spellbook
+	 *   
+	 *   Charges: 3
+	 *   
+	 * If ## is found at the start of a line, it is hidden and that line
+	 * is marked as a field. Fields are visible data that can be modified
+	 * later. With this item, you can do setField( "Charges", x ) to change
+	 * the field value, which will be reflected in the item lore. Fields
+	 * are always stored as string values.
+	 * 
+	 * Fields cannot appear on the first line of the lore, as that would
+	 * collide with the other storage mechanism.
+	 * 
+	 * The @@ marker creates a data initializer. It's format is as follows:
+	 * 
+	 * @@[t:name:value]
+	 * 
+	 * t may be "B", "S", "I", "L", "U", "T", "F", "V", "W", "R", "D" or "E", 
+	 * which means BYTE, SHORT, INT, LONG, UUID, TEXT, FLAG, VARINT, VARLONG,
+	 * FLOAT, DOUBLE or ENUM respectively. ENUM values are ordinals, or 
+	 * constant names if the key is registered with MetaKeyEnum.of.
+	 * 
+	 * Only one data initializer can be on a line at a time, and it must be the
+	 * only text on the line. The marker @@[B:POWER:3] will create a BYTE data
+	 * entry called POWER. After initialization of the example item, 
+	 * getData( item, new MetaKeyByte(POWER) ) will return 3
+	 * 
+	 * For flags, define them as [F:name:].
+	 * 
+	 * A field can show a data entry instead of fixed text. A {name} 
+	 * placeholder in the field value binds the field to the entry created by
+	 * the initializer of that name, see bindField. {name|format} sets the
+	 * format, e.g. ##Charges: {CHARGES|%d}/10 together with @@[I:CHARGES:3]
+	 * shows "Charges: 3/10", and follows the data when CHARGES is changed.
+	 * A placeholder without a matching initializer is left as plain text.
+	 * 
+	 * Data initializer lines are removed from the lore after initialization.
+	 * 
+	 * If there is an error when processing a line, the line will remain unchanged
+	 * in the lore.
+	 * 
+	 * This function preserves any LoreMeta data already present.
+	 * 
+	 * @param item Item to initialize.
+	 **************************************************************************/
+	public static void initialize( ItemStack item ) {
+		long timer = LoreMetrics.begin( Operation.INITIALIZE, null );
+		initializeI( item );
+		LoreMetrics.end( timer, Operation.INITIALIZE, null, null );
+	}
+	
+	/**************************************************************************
+	 * Compile a lore list into a reusable template.
+	 * 
+	 * The markers described in initialize(ItemStack) are processed once,
+	 * and the template can then stamp the finished lore onto any number of
+	 * items without parsing it again. Use this when many items are created
+	 * from the same lore.
+	 * 
+	 * The data line is encoded when the template is compiled, so it uses
+	 * the directory setting at that time.
+	 * 
+	 * @param lore Lore with markers
+	 * @return     Compiled template
+	 * 
+	 * @see #initialize(ItemStack)
+	 **************************************************************************/
+	public static LoreTemplate compileTemplate( List<String> lore ) {
+		return LoreTemplate.compile( lore );
+	}
+	
+	/**************************************************************************
+	 * Read a byte from an item.
+	 * 
+	 * @param item Item to read from
+	 * @param key  Byte key to access
+	 * @return     Byte value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public static Byte getData( ItemStack item, MetaKeyByte key ) {
+		return (Byte)getDataI( item, key );
+	}
+	
+	/**************************************************************************
+	 * Read a short from an item.
+	 * 
+	 * @param item Item to read from
+	 * @param key  Short key to access
+	 * @return     Short value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public static Short getData( ItemStack item, MetaKeyShort key ) {
+		return (Short)getDataI( item, key );
+	}
+	
+	/**************************************************************************
+	 * Read an integer from an item.
+	 * 
+	 * @param item Item to read from
+	 * @param key  Integer key to access
+	 * @return     Integer value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public static Integer getData( ItemStack item, MetaKeyInt key ) {
+		return (Integer)getDataI( item, key );
+	}
+	
+	/**************************************************************************
+	 * Read a long from an item.
+	 * 
+	 * @param item Item to read from
+	 * @param key  Long key to access
+	 * @return     Long value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public static Long getData( ItemStack item, MetaKeyLong key ) {
+		return (Long)getDataI( item, key );
+	}
+	
+	/**************************************************************************
+	 * Read a UUID from an item.
+	 * 
+	 * @param item Item to read from
+	 * @param key  UUID key to access
+	 * @return     UUID value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public static UUID getData( ItemStack item, MetaKeyUUID key ) {
+		return (UUID)getDataI( item, key );
+	}
+
+	/**************************************************************************
+	 * Read a string from an item.
+	 * 
+	 * @param item Item to read from
+	 * @param key  Text key to access
+	 * @return     Content string, or null if the key doesn't exist.
+	 **************************************************************************/
+	public static String getData( ItemStack item, MetaKeyText key ) {
+		return (String)getDataI( item, key );
+	}
+	
+	/**************************************************************************
+	 * Read a float from an item.
+	 * 
+	 * @param item Item to read from
+	 * @param key  Float key to access
+	 * @return     Float value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public static Float getData( ItemStack item, MetaKeyFloat key ) {
+		return (Float)getDataI( item, key );
+	}
+	
+	/**************************************************************************
+	 * Read a double from an item.
+	 * 
+	 * @param item Item to read from
+	 * @param key  Double key to access
+	 * @return     Double value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public static Double getData( ItemStack item, MetaKeyDouble key ) {
+		return (Double)getDataI( item, key );
+	}
+	
+	/**************************************************************************
+	 * Read an enum constant from an item.
+	 * 
+	 * @param item Item to read from
+	 * @param key  Enum key to access
+	 * @return     Constant, or null if the key doesn't exist or its ordinal
+	 *             is out of range for the enum.
+	 **************************************************************************/
+	public static <E extends Enum<E>> E getData( ItemStack item, MetaKeyEnum<E> key ) {
+		return key.getEnumClass().cast( getDataI( item, key ) );
+	}
+	
+	/**************************************************************************
+	 * Check if a flag exists.
+	 * 
+	 * Equivalent, but safer than hasData( item, key ).
+	 * 
+	 * @param item Item to read from
+	 * @param key  Flag key to access
+	 * @return     true if the flag is set, false if not.
+	 **************************************************************************/
+	public static boolean getData( ItemStack item, MetaKeyFlag key ) {
+		return hasData( item, key );
+	}
+	
+	/**************************************************************************
+	 * Read a byte from an item without boxing.
+	 * 
+	 * @param item         Item to read from
+	 * @param key          Byte key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 * @return             Byte value, or defaultValue if the key doesn't exist.
+	 **************************************************************************/
+	public static byte getByte( ItemStack item, MetaKeyByte key, byte defaultValue ) {
+		DecodedLore view = lookup( item, key );
+		return view == null ? defaultValue : view.getByte( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read a short from an item without boxing.
+	 * 
+	 * @param item         Item to read from
+	 * @param key          Short key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 * @return             Short value, or defaultValue if the key doesn't exist.
+	 **************************************************************************/
+	public static short getShort( ItemStack item, MetaKeyShort key, short defaultValue ) {
+		DecodedLore view = lookup( item, key );
+		return view == null ? defaultValue : view.getShort( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read an integer from an item without boxing.
+	 * 
+	 * @param item         Item to read from
+	 * @param key          Integer key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 * @return             Integer value, or defaultValue if the key doesn't
+	 *                     exist.
+	 **************************************************************************/
+	public static int getInt( ItemStack item, MetaKeyInt key, int defaultValue ) {
+		DecodedLore view = lookup( item, key );
+		return view == null ? defaultValue : view.getInt( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read a long from an item without boxing.
+	 * 
+	 * @param item         Item to read from
+	 * @param key          Long key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 * @return             Long value, or defaultValue if the key doesn't exist.
+	 **************************************************************************/
+	public static long getLong( ItemStack item, MetaKeyLong key, long defaultValue ) {
+		DecodedLore view = lookup( item, key );
+		return view == null ? defaultValue : view.getLong( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read the most significant 64 bits of a UUID without creating a UUID.
+	 * 
+	 * @param item         Item to read from
+	 * @param key          UUID key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 * @return             UUID.getMostSignificantBits() of the stored value,
+	 *                     or defaultValue if the key doesn't exist.
+	 **************************************************************************/
+	public static long getUUIDMostBits( ItemStack item, MetaKeyUUID key, long defaultValue ) {
+		DecodedLore view = lookup( item, key );
+		return view == null ? defaultValue : view.getMostSignificantBits( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read the least significant 64 bits of a UUID without creating a UUID.
+	 * 
+	 * @param item         Item to read from
+	 * @param key          UUID key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 * @return             UUID.getLeastSignificantBits() of the stored value,
+	 *                     or defaultValue if the key doesn't exist.
+	 **************************************************************************/
+	public static long getUUIDLeastBits( ItemStack item, MetaKeyUUID key, long defaultValue ) {
+		DecodedLore view = lookup( item, key );
+		return view == null ? defaultValue : view.getLeastSignificantBits( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read all data entries and fields from an item at once.
+	 * 
+	 * The lore is scanned a single time, which is much faster than reading
+	 * each key separately when many values are needed.
+	 * 
+	 * @param item Item to read from
+	 * @return     Immutable snapshot of the item's data and fields. If the
+	 *             item has no lore, the snapshot is empty.
+	 **************************************************************************/
+	public static LoreSnapshot decodeAll( ItemStack item ) {
+		long timer = LoreMetrics.begin( Operation.DECODE, null );
+		LoreSnapshot snapshot = LoreSnapshot.capture( getLoreSafely( item ) ).decode();
+		LoreMetrics.end( timer, Operation.DECODE, null, 
+				snapshot.getLore().isEmpty() ? null : snapshot.getLore().get(0) );
+		return snapshot;
+	}
+
+	/**************************************************************************
+	 * Read several data entries from an item at once.
+	 *
+	 * The data line is parsed a single time (or taken from the cache),
+	 * which is what generated LoreSchema accessors use.
+	 *
+	 * @param item Item to read from
+	 * @param keys Keys to read
+	 * @return     Values in the same order as the keys, null for keys that
+	 *             don't exist. Flags read as Boolean.TRUE.
+	 **************************************************************************/
+	public static Object[] getValues( ItemStack item, MetaKey... keys ) {
+		long timer = LoreMetrics.begin( Operation.DECODE, null );
+		String data = getFirstLoreSafely( item );
+		Object[] values = new Object[keys.length];
+		if( data != null ) {
+			DecodedLore view = cache.get( data );
+			for( int i = 0; i < keys.length; i++ ) {
+				values[i] = view.get( keys[i] );
+			}
+		}
+		LoreMetrics.end( timer, Operation.DECODE, null, data );
+		return values;
+	}
+
+	/**************************************************************************
+	 * Take a snapshot of an item's lore without decoding it.
+	 * 
+	 * This only copies the lore list, so it is cheap to call on the main
+	 * thread. The snapshot is immutable and can be decoded and read on any
+	 * thread. Changes computed from it can be queued with 
+	 * snapshot.edit() and applied back to the item on the main thread.
+	 * 
+	 * @param item Item to read from
+	 * @return     Snapshot of the item's lore
+	 * 
+	 * @see LoreCommit
+	 **************************************************************************/
+	public static LoreSnapshot snapshot( ItemStack item ) {
+		return LoreSnapshot.capture( getLoreSafely( item ) );
+	}
+	
+	/**************************************************************************
+	 * Check if a data entry exists
+	 * 
+	 * @param item Item to check
+	 * @param key  Key to look for
+	 * @return     true if the key exists
+	 **************************************************************************/ 
+	public static boolean hasData( ItemStack item, MetaKey key ) {
+		long timer = LoreMetrics.begin( Operation.HAS, key );
+		String data = getFirstLoreSafely( item );
+		boolean result = hasDataI( data, key );
+		LoreMetrics.end( timer, Operation.HAS, key, data );
+		return result;
+	}
+
+	/**************************************************************************
+	 * Create or modify a byte data entry.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Byte key to access
+	 * @param value New value to set
+	 **************************************************************************/
+	public static void setData( ItemStack item, MetaKeyByte key, Byte value ) {
+		setDataI( item, key, value );
+	}
+	
+	/**************************************************************************
+	 * Create or modify a short data entry.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Short key to access
+	 * @param value New value to set
+	 **************************************************************************/
+	public static void setData( ItemStack item, MetaKeyShort key, Short value ) {
+		setDataI( item, key, value ); 
+	}
+	
+	/**************************************************************************
+	 * Create or modify an integer data entry.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Integer key to access
+	 * @param value New value to set
+	 **************************************************************************/
+	public static void setData( ItemStack item, MetaKeyInt key, Integer value ) {
+		setDataI( item, key, value ); 
+	}
+	
+	/**************************************************************************
+	 * Create or modify a long data entry.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Long key to access
+	 * @param value New value to set
+	 **************************************************************************/
+	public static void setData( ItemStack item, MetaKeyLong key, Long value ) {
+		setDataI( item, key, value ); 
+	}
+	
+	/**************************************************************************
+	 * Create or modify a UUID data entry.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   UUID key to access
+	 * @param value New value to set
+	 **************************************************************************/
+	public static void setData( ItemStack item, MetaKeyUUID key, UUID value ) {
+		setDataI( item, key, value ); 
+	}
+	
+	/**************************************************************************
+	 * Create or modify a text (string) data entry.
+	 * 
+	 * Any Unicode text can be stored. Latin-1 text costs a little over one
+	 * lore character per character, other text is stored as UTF-8 or 
+	 * UTF-16, and long text is compressed when that makes it smaller
+	 * (see setTextCompressionEnabled).
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Text key to access
+	 * @param value New value to set
+	 **************************************************************************/
+	public static void setData( ItemStack item, MetaKeyText key, String value ) {
+		setDataI( item, key, value ); 
+	}
+	
+	/**************************************************************************
+	 * Create or modify a float data entry.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Float key to access
+	 * @param value New value to set
+	 **************************************************************************/
+	public static void setData( ItemStack item, MetaKeyFloat key, Float value ) {
+		setDataI( item, key, value ); 
+	}
+	
+	/**************************************************************************
+	 * Create or modify a double data entry.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Double key to access
+	 * @param value New value to set
+	 **************************************************************************/
+	public static void setData( ItemStack item, MetaKeyDouble key, Double value ) {
+		setDataI( item, key, value ); 
+	}
+	
+	/**************************************************************************
+	 * Create or modify an enum data entry.
+	 * 
+	 * The constant is stored by its ordinal, so only add new constants at 
+	 * the end of the enum.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Enum key to access
+	 * @param value New value to set
+	 **************************************************************************/
+	public static <E extends Enum<E>> void setData( ItemStack item, MetaKeyEnum<E> key, E value ) {
+		setDataI( item, key, value ); 
+	}
+	
+	/**************************************************************************
+	 * Add to an integer data entry.
+	 * 
+	 * A missing entry counts as 0 and is created. An existing entry is
+	 * changed in place, only the characters of its value are touched and 
+	 * the item meta is written once. The result saturates instead of 
+	 * overflowing.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Integer key to access
+	 * @param delta Amount to add, negative to subtract
+	 * @return      The new value. For a null item nothing is written and
+	 *              the result is 0.
+	 **************************************************************************/
+	public static int increment( ItemStack item, MetaKeyInt key, int delta ) {
+		return (int)incrementI( item, key, delta, Integer.MIN_VALUE, Integer.MAX_VALUE );
+	}
+	
+	/**************************************************************************
+	 * Add to an integer data entry, keeping the result within a range.
+	 * 
+	 * For example, using a charge with increment( item, CHARGES, -1, 0, 10 )
+	 * never goes below 0.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Integer key to access
+	 * @param delta Amount to add, negative to subtract
+	 * @param min   Lowest result
+	 * @param max   Highest result
+	 * @return      The new value. For a null item nothing is written and
+	 *              the result is 0 kept within min and max.
+	 * @throws IllegalArgumentException if min is greater than max
+	 **************************************************************************/
+	public static int increment( ItemStack item, MetaKeyInt key, int delta, int min, int max ) {
+		return (int)incrementI( item, key, delta, min, max );
+	}
+	
+	/**************************************************************************
+	 * Add to a long data entry.
+	 * 
+	 * @see #increment(ItemStack, MetaKeyInt, int)
+	 **************************************************************************/
+	public static long increment( ItemStack item, MetaKeyLong key, long delta ) {
+		return incrementI( item, key, delta, Long.MIN_VALUE, Long.MAX_VALUE );
+	}
+	
+	/**************************************************************************
+	 * Add to a long data entry, keeping the result within a range.
+	 * 
+	 * @see #increment(ItemStack, MetaKeyInt, int, int, int)
+	 **************************************************************************/
+	public static long increment( ItemStack item, MetaKeyLong key, long delta, long min, long max ) {
+		return incrementI( item, key, delta, min, max );
+	}
+	
+	/**************************************************************************
+	 * Set a flag data entry.
+	 * 
+	 * @param item Item to modify
+	 * @param key  Flag key to access
+	 **************************************************************************/
+	public static void setFlag( ItemStack item, MetaKeyFlag key ) {
+		setDataI( item, key, Boolean.valueOf(true) );
+	}
+	
+	/**************************************************************************
+	 * Remove a flag data entry
+	 * 
+	 * @param item Item to modify
+	 * @param key  Flag key to remove
+	 **************************************************************************/
+	public static void clearFlag( ItemStack item, MetaKeyFlag key ) {
+		setDataI( item, key, null );
+	}
+	
+	/**************************************************************************
+	 * Read data from a Field
+	 * 
+	 * Fields are visible data in the item lore, created with the
+	 * initialization function.
+	 * 
+	 * When accessing a field, color codes are ignored, and should not be
+	 * put in the key.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Field name to read 
+	 * 
+	 * @return      Value of the field, or null if the field was not found.
+	 * 
+	 * @see #initialize(ItemStack)
+	 **************************************************************************/
+	public static String getField( ItemStack item, String key ) {
+		long timer = LoreMetrics.begin( Operation.GET_FIELD, null );
+		String result = getFieldI( item, key );
+		LoreMetrics.end( timer, Operation.GET_FIELD, null, null );
+		return result;
+	}
+	
+	/**************************************************************************
+	 * Read several fields at once.
+	 * 
+	 * @param item  Item to read from
+	 * @param keys  Field names to read
+	 * 
+	 * @return      Map of field names to values. Fields that were not found
+	 *              are left out.
+	 * 
+	 * @see #getField(ItemStack, String)
+	 **************************************************************************/
+	public static Map<String,String> getFields( ItemStack item, String... keys ) {
+		long timer = LoreMetrics.begin( Operation.GET_FIELD, null );
+		Map<String,String> result = getFieldsI( item, keys );
+		LoreMetrics.end( timer, Operation.GET_FIELD, null, null );
+		return result;
+	}
+	
+	/**************************************************************************
+	 * Set a Field.
+	 * 
+	 * Fields are visible data in the item lore, created with the
+	 * initialization function.
+	 * 
+	 * When accessing a field, color codes are ignored, and should not be
+	 * put in the key.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Field name to write to
+	 * @param value Any value you would like to set the field to, the item
+	 *              lore will display "FieldName: [value]" directly copied
+	 *              from here.
+	 * @return      true if the field was found and set
+	 * 
+	 * @see #initialize(ItemStack)
+	 **************************************************************************/
+	public static boolean setField( ItemStack item, String key, String value ) { 
+		
+		return setFields( item, Collections.singletonMap( key, value ) ) == 1;
+	}
+	
+	/**************************************************************************
+	 * Set several fields at once.
+	 * 
+	 * All fields are changed with a single pass over the lore, and the item
+	 * is only written once.
+	 * 
+	 * @param item   Item to modify
+	 * @param values Map of field names to new values
+	 * @return       Number of fields that were found and set
+	 * 
+	 * @see #setField(ItemStack, String, String)
+	 **************************************************************************/
+	public static int setFields( ItemStack item, Map<String,String> values ) {
+		long timer = LoreMetrics.begin( Operation.SET_FIELD, null );
+		int result = setFieldsI( item, values );
+		LoreMetrics.end( timer, Operation.SET_FIELD, null, null );
+		return result;
+	}
+	
+	/**************************************************************************
+	 * Remove a field from an item.
+	 * 
+	 * This deletes a matching field the item lore, and it cannot 
+	 * be brought back.
+	 * 
+	 * @param item Item to modify
+	 * @param key  Field name to delete
+	 * 
+	 * @return     true if the field was removed, false if the field didn't
+	 *             exist.
+	 **************************************************************************/
+	public static boolean removeField( ItemStack item, String key ) {
+		long timer = LoreMetrics.begin( Operation.REMOVE_FIELD, null );
+		boolean result = removeFieldI( item, key );
+		LoreMetrics.end( timer, Operation.REMOVE_FIELD, null, null );
+		return result;
+	}
+	
+	/**************************************************************************
+	 * Bind a field to a data entry.
+	 * 
+	 * The field shows the value of the entry, and whenever the entry is 
+	 * written (with setData, increment or an editor) the field is rendered
+	 * in the same pass over the lore, so the item meta is only written 
+	 * once. The binding is stored in the item data, and copies of the item
+	 * keep it.
+	 * 
+	 * The field is rendered right away. If the item doesn't have the field
+	 * the binding is kept anyway, and it's rendered once the field exists.
+	 * 
+	 * @param item   Item to modify
+	 * @param field  Field name
+	 * @param key    Entry to show in the field
+	 * @param format java.util.Formatter pattern for the value, e.g. 
+	 *               "%d/10". null shows the value as it is. A missing 
+	 *               entry shows an empty field, and FLAG entries show
+	 *               true or false.
+	 * 
+	 * @see #initialize(ItemStack)
+	 **************************************************************************/
+	public static void bindField( ItemStack item, String field, MetaKey key, String format ) {
+		if( field == null || key == null ) throw new IllegalArgumentException( "field and key cannot be null" );
+		if( format == null ) format = "%s";
+		FieldBinding.checkText( field );
+		FieldBinding.checkText( key.getName() );
+		FieldBinding.checkText( format );
+		if( item == null ) return;
+		
+		String data = getFirstLoreSafely( item );
+		Map<String,FieldBinding> bindings = FieldBinding.read( data == null ? "" : data );
+		bindings.put( field, new FieldBinding( field, key, format ) );
+		writeData( item, item.getItemMeta(), FieldBinding.KEY, FieldBinding.write( bindings.values() ) );
+	}
+	
+	/**************************************************************************
+	 * Remove the binding of a field.
+	 * 
+	 * The field keeps the last value it showed.
+	 * 
+	 * @param item  Item to modify
+	 * @param field Field name
+	 * @return      true if the field was bound
+	 **************************************************************************/
+	public static boolean unbindField( ItemStack item, String field ) {
+		String data = getFirstLoreSafely( item );
+		if( data == null ) return false;
+		
+		Map<String,FieldBinding> bindings = FieldBinding.read( data );
+		if( bindings.remove( field ) == null ) return false;
+		writeData( item, item.getItemMeta(), FieldBinding.KEY, FieldBinding.write( bindings.values() ) );
+		return true;
+	}
+
+	/**************************************************************************
+	 * Set how many parsed lore lines are kept in memory.
+	 * 
+	 * Reading data parses the first lore line of an item once, and later
+	 * reads of an identical line are served from the cache. The cache is
+	 * shared by all threads.
+	 * 
+	 * @param capacity Maximum number of cached lines, 0 disables caching.
+	 **************************************************************************/
+	public static void setCacheCapacity( int capacity ) {
+		if( capacity < 0 ) throw new IllegalArgumentException( "capacity cannot be negative" );
+		cache.setCapacity( capacity );
+	}
+	
+	/**************************************************************************
+	 * Start a batch of changes to an item.
+	 * 
+	 * The returned editor collects data and field changes, and applies all
+	 * of them to the item lore at once when committed. This is much faster
+	 * than calling setData/setField for each value, which reads and writes
+	 * the item meta every time.
+	 * 
+	 * @param item Item to modify
+	 * @return     Editor for the item. Nothing is changed until commit()
+	 *             is called.
+	 **************************************************************************/
+	public static LoreEditor edit( ItemStack item ) {
+		return new LoreEditor( item );
+	}
+	
+	/**************************************************************************
+	 * Enable or disable the entry directory.
+	 * 
+	 * When enabled, items that are written to get a small directory of 
+	 * their entries at the start of the data. Lookups on items that are 
+	 * not cached yet use it to find a single key, or to find out that it
+	 * doesn't exist, without reading the rest of the data. Each entry
+	 * costs 6 more characters in the lore.
+	 * 
+	 * Items are only changed on their next write. Disabled by default.
+	 * 
+	 * @param enabled true to write directories
+	 **************************************************************************/
+	public static void setDirectoryEnabled( boolean enabled ) {
+		LoreCodec.setDirectoryEnabled( enabled );
+	}
+	
+	/**************************************************************************
+	 * Enable or disable compression of long text values.
+	 * 
+	 * When enabled, text values of 64 bytes or more (as UTF-8) are 
+	 * compressed if that makes them smaller. Compressed values take 
+	 * longer to read and write. Enabled by default. Existing values are
+	 * read either way.
+	 * 
+	 * @param enabled true to compress text values
+	 **************************************************************************/
+	public static void setTextCompressionEnabled( boolean enabled ) {
+		LoreCodec.setCompressionEnabled( enabled );
+	}
+	
+	/**************************************************************************
+	 * Keep data entries sorted by key when items are written.
+	 * 
+	 * New entries are normally added to the end of the data, so two items
+	 * with the same data can have different lore if it was written in a 
+	 * different order, and then they don't stack or compare as similar.
+	 * When enabled, every write that adds or moves an entry leaves the 
+	 * entries sorted, so the same data always gives the same lore.
+	 * 
+	 * Items are only changed on their next write. Disabled by default.
+	 * 
+	 * @param enabled true to sort entries
+	 **************************************************************************/
+	public static void setCanonicalOrder( boolean enabled ) {
+		LoreCodec.setCanonicalOrder( enabled );
+	}
+	
+	/**************************************************************************
+	 * Compute a 64-bit fingerprint of an item's data.
+	 * 
+	 * Items with the same data entries have the same fingerprint, in any
+	 * order and format version, so it can be used as a map key or to 
+	 * compare items without decoding them. Fields, field bindings and 
+	 * other lore are not included.
+	 * 
+	 * @param item Item to read from
+	 * @return     Fingerprint of the item's data
+	 * 
+	 * @see MetaCodec#fingerprint(CharSequence)
+	 **************************************************************************/
+	public static long fingerprint( ItemStack item ) {
+		String data = getFirstLoreSafely( item );
+		return MetaCodec.fingerprint( data == null ? "" : data );
+	}
+	
+	/**************************************************************************
+	 * Compute a fingerprint of some of an item's data entries.
+	 * 
+	 * @param item Item to read from
+	 * @param keys Keys to include, others are ignored
+	 * @return     Fingerprint of the entries for the given keys
+	 **************************************************************************/
+	public static long fingerprint( ItemStack item, MetaKey... keys ) {
+		String data = getFirstLoreSafely( item );
+		return MetaCodec.fingerprint( data == null ? "" : data, keys );
+	}
+	
+	/**************************************************************************
+	 * Get the size of an item's encoded data.
+	 * 
+	 * @param item Item to check
+	 * @return     Length of the data line in characters, 0 if the item 
+	 *             has no lore.
+	 **************************************************************************/
+	public static int getDataSize( ItemStack item ) {
+		String data = getFirstLoreSafely( item );
+		return data == null ? 0 : data.length();
+	}
+	
+	/**************************************************************************
+	 * Get the size of each data entry of an item, for diagnostics.
+	 * 
+	 * @param item Item to check
+	 * @return     Map of all keys to the number of characters their entry
+	 *             takes, in the order they are stored. The header and
+	 *             directory are not included.
+	 **************************************************************************/
+	public static Map<MetaKey,Integer> getSizes( ItemStack item ) {
+		String data = getFirstLoreSafely( item );
+		if( data == null ) return new HashMap<MetaKey,Integer>();
+		return MetaCodec.getSizes( cache.get( data ) );
+	}
+	
+	/**************************************************************************
+	 * Compute the size an item's data would have after a write, without 
+	 * doing the write.
+	 * 
+	 * Nothing is encoded, so this is cheap enough to call before every 
+	 * write. Text that would be compressed is counted at its uncompressed
+	 * size.
+	 * 
+	 * @param item  Item to check
+	 * @param key   Key that would be written
+	 * @param value Value that would be written, of the key's type (Boolean 
+	 *              for flags), or null for a removal
+	 * @return      Length of the data line after the write
+	 * @throws IllegalArgumentException if the value doesn't match the key
+	 **************************************************************************/
+	public static int estimateSize( ItemStack item, MetaKey key, Object value ) {
+		String data = getFirstLoreSafely( item );
+		return MetaCodec.estimateSize( data == null ? "" : data, key, value );
+	}
+	
+	/**************************************************************************
+	 * Limit the size of the data stored on each item.
+	 * 
+	 * Writes (setData, increment and committing changes) that would make
+	 * an item's data line longer than the budget either log a warning or
+	 * fail with LoreSizeException. Writes that don't grow the line are 
+	 * always allowed, so oversized items can still be trimmed. The length
+	 * is of the whole line, so it includes the entries LoreMeta keeps for 
+	 * itself, like field bindings, which getSizes doesn't list.
+	 * 
+	 * @param chars  Maximum length of the data line, 0 for no limit
+	 * @param action What to do when a write goes over the budget
+	 **************************************************************************/
+	public static void setSizeBudget( int chars, BudgetAction action ) {
+		if( chars < 0 ) throw new IllegalArgumentException( "chars cannot be negative" );
+		if( action == null ) throw new IllegalArgumentException( "action cannot be null" );
+		budgetAction = action;
+		sizeBudget = chars;
+	}
+	
+	/**************************************************************************
+	 * Get the size budget in characters, 0 if there is no limit.
+	 **************************************************************************/
+	public static int getSizeBudget() {
+		return sizeBudget;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static String stripFieldKey( String string ) {
+ 
+		return ChatColor.stripColor( string ).trim(); 
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// returns the name of a field line, or null if the line is not a field
+	static String getFieldName( String loreEntry ) {
+		if( !loreEntry.startsWith( TAG_FIELD ) ) return null;
+		int splitter = loreEntry.indexOf( ":" );
+		if( splitter == -1 ) return null; // malformed field!
+		return stripFieldKey( loreEntry.substring( 2, splitter ) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// returns the value of a field line
+	static String getFieldValue( String loreEntry ) {
+		return loreEntry.substring( loreEntry.indexOf( ":" )+1 ).trim();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// replaces the value of a field line
+	static String formatField( String loreEntry, String value ) {
+		int splitter = loreEntry.indexOf( ":" );
+		return loreEntry.substring( 0, splitter+1 ) + " " + value;
+	}
+	
+	
+	private static final char COLOR_CHAR = '\u00A7';
+	 
+	// "fields" are prefixed by this, this replaces "##~" prefix in stock items
+	static final String TAG_FIELD = COLOR_CHAR + "\u0300";
+	
+	// default number of parsed lore lines kept in memory
+	private static final int DEFAULT_CACHE_CAPACITY = 1024;
+	
+	static final LoreCache cache = new LoreCache( DEFAULT_CACHE_CAPACITY );
+	
+	// maximum data line length, 0 for no limit
+	private static volatile int sizeBudget = 0;
+	private static volatile BudgetAction budgetAction = BudgetAction.WARN;
+	  
+	//---------------------------------------------------------------------------------------------
+	private static List<String> getLoreSafely( ItemStack item ) {
+		if( item == null ) return null;
+		if( !item.hasItemMeta() ) return null;
+		ItemMeta meta = item.getItemMeta();
+		if( !meta.hasLore() ) return null;
+		return meta.getLore();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static String getFirstLoreSafely( ItemStack item ) {
+		List<String> lore = getLoreSafely( item );
+		if( lore== null || lore.size() == 0 ) return null;
+		return lore.get(0);
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static Object getDataI( ItemStack item, MetaKey key ) {
+		DecodedLore view = lookup( item, key );
+		return view == null ? null : view.get( key );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static boolean hasDataI( String data, MetaKey key ) {
+		if( data == null ) return false;
+		
+		DecodedLore view = cache.getIfPresent( data );
+		if( view != null ) return view.contains( key );
+		
+		int index = LoreCodec.probe( data, key );
+		if( index != LoreCodec.NO_DIRECTORY ) return index != -1;
+		return cache.get( data ).contains( key );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void initializeI( ItemStack item ) {
+		ItemMeta meta = item.getItemMeta();
+		if( !meta.hasLore() ) return; // no initialization needed.
+		
+		List<String> lore = meta.getLore();
+		LoreTemplate template = LoreTemplate.compile( lore );
+		if( !template.hasMarkers() ) return;
+		
+		meta.setLore( new ArrayList<String>( template.getLore() ) );
+		item.setItemMeta( meta );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static String getFieldI( ItemStack item, String key ) {
+		List<String> lore = getLoreSafely( item );
+		if( lore == null ) return null;
+		
+		int line = cache.getFields( lore ).getLine( key );
+		if( line == -1 ) return null;
+		return getFieldValue( lore.get( line ) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static Map<String,String> getFieldsI( ItemStack item, String[] keys ) {
+		Map<String,String> result = new HashMap<String,String>();
+		List<String> lore = getLoreSafely( item );
+		if( lore == null ) return result;
+		
+		FieldIndex index = cache.getFields( lore );
+		for( String key : keys ) {
+			int line = index.getLine( key );
+			if( line == -1 ) continue;
+			result.put( key, getFieldValue( lore.get( line ) ) );
+		}
+		return result;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static int setFieldsI( ItemStack item, Map<String,String> values ) {
+		if( item == null || !item.hasItemMeta() ) return 0;
+		ItemMeta meta = item.getItemMeta();
+		if( !meta.hasLore() ) return 0;
+		List<String> lore = meta.getLore();
+		
+		FieldIndex index = cache.getFields( lore );
+		int count = 0;
+		for( Map.Entry<String,String> entry : values.entrySet() ) {
+			int line = index.getLine( entry.getKey() );
+			if( line == -1 ) continue;
+			lore.set( line, formatField( lore.get( line ), entry.getValue() ) );
+			count++;
+		}
+		if( count == 0 ) return 0;
+		
+		meta.setLore( lore );
+		item.setItemMeta( meta );
+		
+		// fields stay on the same lines, so the index is still good
+		cache.putFields( lore, index );
+		return count;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static boolean removeFieldI( ItemStack item, String key ) {
+		if( item == null || !item.hasItemMeta() ) return false;
+		ItemMeta meta = item.getItemMeta();
+		if( !meta.hasLore() ) return false;
+		List<String> lore = meta.getLore();
+		
+		int line = cache.getFields( lore ).getLine( key );
+		if( line == -1 ) return false;
+		
+		lore.remove( line );
+		meta.setLore( lore );
+		item.setItemMeta( meta );
+		return true;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// getView for the data line of an item, counted as a GET
+	private static DecodedLore lookup( ItemStack item, MetaKey key ) {
+		long timer = LoreMetrics.begin( Operation.GET, key );
+		String data = getFirstLoreSafely( item );
+		DecodedLore view = getView( data, key );
+		LoreMetrics.end( timer, Operation.GET, key, data );
+		return view;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// parsed view of a line, or null if the directory shows that the key doesn't exist
+	private static DecodedLore getView( String data, MetaKey key ) {
+		if( data == null ) return null;
+		DecodedLore view = cache.getIfPresent( data );
+		if( view != null ) return view;
+		
+		// uncached lines with a directory can answer negative lookups without parsing
+		if( LoreCodec.probe( data, key ) == -1 ) return null;
+		return cache.get( data );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void setDataI( ItemStack item, MetaKey key, Object value ) {
+		if( item == null ) return;
+		writeData( item, item.getItemMeta(), key, value );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// writes one entry using meta already read from the item
+	static void writeData( ItemStack item, ItemMeta meta, MetaKey key, Object value ) {
+		long timer = LoreMetrics.begin( Operation.SET, key );
+		List<String> lore = meta.hasLore() ? meta.getLore() : new ArrayList<String>();
+		String data = lore.size() == 0 ? "" : lore.get(0);
+		
+		StringBuilder output = new StringBuilder( data );
+		if( LoreCodec.writeEntry( output, key, value ) ) LoreCodec.updateDirectory( output );
+		checkBudget( key, data, output );
+		storeData( item, meta, lore, key, data, output );
+		LoreMetrics.end( timer, Operation.SET, key, output );
+	} 
+	
+	//---------------------------------------------------------------------------------------------
+	private static long incrementI( ItemStack item, MetaKey key, long delta, long min, long max ) {
+		MetaCodec.checkRange( min, max );
+		if( item == null ) return Math.max( min, Math.min( max, 0 ) );
+		long timer = LoreMetrics.begin( Operation.SET, key );
+		ItemMeta meta = item.getItemMeta();
+		List<String> lore = meta.hasLore() ? meta.getLore() : new ArrayList<String>();
+		String data = lore.size() == 0 ? "" : lore.get(0);
+		
+		StringBuilder output = new StringBuilder( data );
+		long result = LoreCodec.add( output, key, delta, min, max );
+		checkBudget( key, data, output );
+		storeData( item, meta, lore, key, data, output );
+		LoreMetrics.end( timer, Operation.SET, key, output );
+		return result;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// called before replacing a data line, key is null for commits of several keys
+	static void checkBudget( MetaKey key, String data, CharSequence output ) {
+		int budget = sizeBudget;
+		if( budget == 0 || output.length() <= budget || output.length() <= data.length() ) return;
+		
+		LoreSizeException e = new LoreSizeException( key, output.length(), budget );
+		if( budgetAction == BudgetAction.FAIL ) throw e;
+		Bukkit.getLogger().warning( e.getMessage() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// replaces the data line (data) with output, renders fields bound to key 
+	// and writes the meta back. The cached view of data stays, since views
+	// are keyed by content and other items may still have the same line.
+	// Nothing is written if the line didn't change, so the item still 
+	// stacks with untouched copies.
+	private static void storeData( ItemStack item, ItemMeta meta, List<String> lore, 
+			MetaKey key, String data, CharSequence output ) {
+		if( data.contentEquals( output ) ) return;
+		if( lore.size() == 0 ) {
+			lore.add( output.toString() );
+		} else {
+			lore.set( 0, output.toString() );
+		}
+		FieldBinding.render( lore, data, output, Collections.singleton( key ) );
+		
+		meta.setLore( lore );
+		item.setItemMeta( meta );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+}
@@ -0,0 +1,198 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import com.mukunda.loremeta.LoreMetrics.Operation;
+
+/******************************************************************************
+ * LoreMeta Bukkit plugin
+ * 
+ * This interface is only used to check for availability, for the
+ * /loremeta stats command, and to share the server-wide item index.
+ * The actual work is all done in static functions in the LoreMeta class
+ *  
+ * @author mukunda
+ *
+ ******************************************************************************/
+public class LoreMetaPlugin extends JavaPlugin {
+	
+	// number of hot keys listed by /loremeta stats
+	private static final int HOT_KEYS_SHOWN = 5;
+	
+	private LoreIndex index;
+	
+	@Override
+	public void onDisable() {
+		if( index != null ) index.stop();
+		index = null;
+	}
+	
+	/**************************************************************************
+	 * Enable the server-wide item index for some keys.
+	 * 
+	 * The index is shared by all plugins. Keys that are already indexed 
+	 * stay indexed; if any of the keys are new, the index is built again 
+	 * with all of them.
+	 * 
+	 * @param keys Keys to index
+	 * @return     The index
+	 * 
+	 * @see LoreIndex
+	 **************************************************************************/
+	public LoreIndex enableIndex( MetaKey... keys ) {
+		Set<MetaKey> all = new LinkedHashSet<MetaKey>();
+		if( index != null ) {
+			if( index.getKeys().containsAll( Arrays.asList( keys ) ) ) return index;
+			all.addAll( index.getKeys() );
+			index.stop();
+		}
+		all.addAll( Arrays.asList( keys ) );
+		
+		index = new LoreIndex( this, all.toArray( new MetaKey[all.size()] ) );
+		index.start();
+		return index;
+	}
+	
+	/**************************************************************************
+	 * Get the server-wide item index.
+	 * 
+	 * @return The index, or null if enableIndex wasn't called.
+	 **************************************************************************/
+	public LoreIndex getIndex() {
+		return index;
+	}
+	
+	@Override
+	public boolean onCommand( CommandSender sender, Command cmd, String label, String[] args ) {
+		if( !cmd.getName().equalsIgnoreCase( "loremeta" ) ) return false;
+		if( args.length == 0 || !args[0].equalsIgnoreCase( "stats" ) ) return false;
+		
+		if( args.length == 1 ) {
+			sendStats( sender );
+			return true;
+		}
+		
+		String option = args[1].toLowerCase();
+		if( option.equals( "on" ) ) {
+			LoreMetrics.setEnabled( true );
+			sender.sendMessage( "LoreMeta metrics enabled." );
+		} else if( option.equals( "off" ) ) {
+			LoreMetrics.setEnabled( false );
+			sender.sendMessage( "LoreMeta metrics disabled." );
+		} else if( option.equals( "reset" ) ) {
+			LoreMetrics.reset();
+			sender.sendMessage( "LoreMeta metrics cleared." );
+		} else if( option.equals( "sample" ) && args.length == 3 ) {
+			int rate;
+			try {
+				rate = Integer.parseInt( args[2] );
+			} catch( NumberFormatException e ) {
+				rate = 0;
+			}
+			if( rate < 1 ) {
+				sender.sendMessage( "Sample rate must be a number above 0." );
+				return true;
+			}
+			LoreMetrics.setSampleRate( rate );
+			sender.sendMessage( "Timing 1 in " + rate + " LoreMeta calls." );
+		} else {
+			return false;
+		}
+		return true;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void sendStats( CommandSender sender ) {
+		sender.sendMessage( ChatColor.GOLD + "LoreMeta stats" + ChatColor.RESET + " (" 
+				+ (LoreMetrics.isEnabled() ? "on" : "off") + ", 1 in " 
+				+ LoreMetrics.getSampleRate() + " calls timed, " 
+				+ (LoreMetrics.getElapsedMillis() / 1000) + "s collected)" );
+		
+		boolean any = false;
+		for( Operation operation : Operation.values() ) {
+			long calls = LoreMetrics.getCalls( operation );
+			if( calls == 0 ) continue;
+			any = true;
+			sender.sendMessage( ChatColor.YELLOW + operation.name() + ChatColor.RESET 
+					+ ": " + calls + " calls" + formatLatency( operation, null ) );
+			
+			for( DataType type : DataType.values() ) {
+				long typeCalls = LoreMetrics.getCalls( operation, type );
+				if( typeCalls == 0 ) continue;
+				sender.sendMessage( "  " + type.name() + ": " + typeCalls + " calls" 
+						+ formatLatency( operation, type ) );
+			}
+		}
+		if( !any ) {
+			sender.sendMessage( LoreMetrics.isEnabled() ? "No calls recorded yet." 
+					: "Nothing recorded, enable with /loremeta stats on" );
+			return;
+		}
+		
+		if( LoreMetrics.getLineSize( 50 ) >= 0 ) {
+			sender.sendMessage( ChatColor.YELLOW + "Data line size" + ChatColor.RESET 
+					+ ": p50 " + LoreMetrics.getLineSize( 50 ) 
+					+ ", p90 " + LoreMetrics.getLineSize( 90 )
+					+ ", max " + LoreMetrics.getLineSize( 100 ) + " chars" );
+		}
+		
+		Map<MetaKey,Long> hotKeys = LoreMetrics.getHotKeys( HOT_KEYS_SHOWN );
+		if( !hotKeys.isEmpty() ) {
+			StringBuilder line = new StringBuilder();
+			for( Map.Entry<MetaKey,Long> entry : hotKeys.entrySet() ) {
+				if( line.length() > 0 ) line.append( ", " );
+				line.append( entry.getKey().getName() ).append( " (" )
+					.append( entry.getKey().getDataType().name() ).append( ") ~" )
+					.append( entry.getValue() );
+			}
+			sender.sendMessage( ChatColor.YELLOW + "Hot keys" + ChatColor.RESET + ": " + line );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static String formatLatency( Operation operation, DataType type ) {
+		long p50 = LoreMetrics.getLatency( operation, type, 50 );
+		if( p50 < 0 ) return "";
+		return ", p50 " + formatTime( p50 ) 
+				+ ", p99 " + formatTime( LoreMetrics.getLatency( operation, type, 99 ) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static String formatTime( long nanos ) {
+		if( nanos < 1000 ) return nanos + "ns";
+		if( nanos < 1000000 ) return String.format( "%.1fus", nanos / 1000.0 );
+		return String.format( "%.1fms", nanos / 1000000.0 );
+	}
+}
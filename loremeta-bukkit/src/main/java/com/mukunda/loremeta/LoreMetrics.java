@@ -0,0 +1,385 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/******************************************************************************
+ * Usage statistics of the LoreMeta API.
+ * 
+ * When enabled, every call is counted per operation and data type, and 
+ * one in every "sample rate" calls is timed. Timed calls also record the 
+ * size of the data line they worked on and which key they used. 
+ * 
+ * Disabled by default. When disabled, the cost is one volatile read per 
+ * call. Enable with setEnabled, or "/loremeta stats on".
+ * 
+ * Latencies and sizes are kept in histograms with four buckets per power
+ * of two, so percentiles are accurate to within 25%.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class LoreMetrics {
+	
+	/**************************************************************************
+	 * Measured operations.
+	 **************************************************************************/
+	public enum Operation {
+		
+		/**
+		 * reading a data entry (getData and the primitive getters)
+		 */
+		GET,
+		
+		/**
+		 * hasData
+		 */
+		HAS,
+		
+		/**
+		 * writing or removing a data entry
+		 */
+		SET,
+		
+		/**
+		 * decodeAll
+		 */
+		DECODE,
+		
+		/**
+		 * initialize
+		 */
+		INITIALIZE,
+		
+		/**
+		 * committing an editor or a snapshot commit
+		 */
+		COMMIT,
+		
+		/**
+		 * getField and getFields
+		 */
+		GET_FIELD,
+		
+		/**
+		 * setField and setFields
+		 */
+		SET_FIELD,
+		
+		/**
+		 * removeField
+		 */
+		REMOVE_FIELD
+	}
+	
+	private static final int OPERATIONS = Operation.values().length;
+	
+	// slot 0 is for calls without a data type, the rest are DataType.getInt()
+	private static final int TYPES = DataType.values().length + 1;
+	
+	// histogram buckets, 4 per power of two up to 2^48
+	private static final int BUCKETS = 49 * 4;
+	
+	private static final int DEFAULT_SAMPLE_RATE = 64;
+	private static final int HOT_KEY_CAPACITY = 100;
+	
+	private static volatile boolean enabled = false;
+	private static volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+	private static volatile long resetTime = System.currentTimeMillis();
+	
+	private static final AtomicLongArray calls = new AtomicLongArray( OPERATIONS * TYPES );
+	private static final AtomicLongArray latencies = new AtomicLongArray( OPERATIONS * TYPES * BUCKETS );
+	private static final AtomicLongArray sizes = new AtomicLongArray( BUCKETS );
+	
+	// sampled use counts of keys, trimmed to HOT_KEY_CAPACITY (guarded by itself)
+	private static final Map<MetaKey,long[]> hotKeys = new HashMap<MetaKey,long[]>();
+	
+	//---------------------------------------------------------------------------------------------
+	private LoreMetrics() {}
+	
+	/**************************************************************************
+	 * Turn metrics on or off.
+	 * 
+	 * Collected data is kept when turning metrics off.
+	 **************************************************************************/
+	public static void setEnabled( boolean enabled ) {
+		LoreMetrics.enabled = enabled;
+	}
+	
+	/**************************************************************************
+	 * Check if metrics are being collected.
+	 **************************************************************************/
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**************************************************************************
+	 * Set how often calls are timed.
+	 * 
+	 * @param rate One in every "rate" calls is timed. 1 times every call.
+	 **************************************************************************/
+	public static void setSampleRate( int rate ) {
+		if( rate < 1 ) throw new IllegalArgumentException( "rate must be at least 1" );
+		sampleRate = rate;
+	}
+	
+	/**************************************************************************
+	 * Get how often calls are timed, see setSampleRate.
+	 **************************************************************************/
+	public static int getSampleRate() {
+		return sampleRate;
+	}
+	
+	/**************************************************************************
+	 * Clear all collected data.
+	 **************************************************************************/
+	public static void reset() {
+		clear( calls );
+		clear( latencies );
+		clear( sizes );
+		synchronized( hotKeys ) {
+			hotKeys.clear();
+		}
+		resetTime = System.currentTimeMillis();
+	}
+	
+	/**************************************************************************
+	 * Get the time data has been collected for.
+	 * 
+	 * @return Milliseconds since the last reset (or since startup).
+	 **************************************************************************/
+	public static long getElapsedMillis() {
+		return System.currentTimeMillis() - resetTime;
+	}
+	
+	/**************************************************************************
+	 * Get the number of calls of an operation, for all data types.
+	 **************************************************************************/
+	public static long getCalls( Operation operation ) {
+		long total = 0;
+		for( int type = 0; type < TYPES; type++ ) {
+			total += calls.get( operation.ordinal() * TYPES + type );
+		}
+		return total;
+	}
+	
+	/**************************************************************************
+	 * Get the number of calls of an operation for one data type.
+	 * 
+	 * @param operation Operation to look up
+	 * @param type      Data type, or null for calls without one (fields)
+	 **************************************************************************/
+	public static long getCalls( Operation operation, DataType type ) {
+		return calls.get( operation.ordinal() * TYPES + typeSlot( type ) );
+	}
+	
+	/**************************************************************************
+	 * Get a latency percentile of an operation.
+	 * 
+	 * @param operation  Operation to look up
+	 * @param type       Data type, or null to combine all types
+	 * @param percentile Percentile between 0 and 100, e.g. 99
+	 * @return           Latency in nanoseconds, or -1 if no calls were
+	 *                   timed.
+	 **************************************************************************/
+	public static long getLatency( Operation operation, DataType type, double percentile ) {
+		long[] histogram = new long[BUCKETS];
+		int first = type == null ? 0 : typeSlot( type );
+		int last = type == null ? TYPES - 1 : first;
+		for( int slot = first; slot <= last; slot++ ) {
+			int base = (operation.ordinal() * TYPES + slot) * BUCKETS;
+			for( int i = 0; i < BUCKETS; i++ ) {
+				histogram[i] += latencies.get( base + i );
+			}
+		}
+		return percentile( histogram, percentile );
+	}
+	
+	/**************************************************************************
+	 * Get a percentile of the data line sizes seen by timed calls.
+	 * 
+	 * @param percentile Percentile between 0 and 100
+	 * @return           Size in characters, or -1 if nothing was recorded.
+	 **************************************************************************/
+	public static long getLineSize( double percentile ) {
+		long[] histogram = new long[BUCKETS];
+		for( int i = 0; i < BUCKETS; i++ ) {
+			histogram[i] = sizes.get( i );
+		}
+		return percentile( histogram, percentile );
+	}
+	
+	/**************************************************************************
+	 * Get the most used keys.
+	 * 
+	 * @param count Maximum number of keys to return
+	 * @return      Keys and their estimated number of uses, most used first.
+	 *              Estimated from the timed calls.
+	 **************************************************************************/
+	public static Map<MetaKey,Long> getHotKeys( int count ) {
+		List<Map.Entry<MetaKey,long[]>> entries;
+		synchronized( hotKeys ) {
+			entries = new ArrayList<Map.Entry<MetaKey,long[]>>();
+			for( Map.Entry<MetaKey,long[]> entry : hotKeys.entrySet() ) {
+				entries.add( new AbstractMap.SimpleEntry<MetaKey,long[]>( 
+						entry.getKey(), entry.getValue().clone() ) );
+			}
+		}
+		Collections.sort( entries, new Comparator<Map.Entry<MetaKey,long[]>>() {
+			@Override
+			public int compare( Map.Entry<MetaKey,long[]> a, Map.Entry<MetaKey,long[]> b ) {
+				long x = a.getValue()[0], y = b.getValue()[0];
+				return x < y ? 1 : (x > y ? -1 : 0);
+			}
+		});
+		
+		Map<MetaKey,Long> result = new LinkedHashMap<MetaKey,Long>();
+		int rate = sampleRate;
+		for( Map.Entry<MetaKey,long[]> entry : entries ) {
+			if( result.size() >= count ) break;
+			result.put( entry.getKey(), entry.getValue()[0] * rate );
+		}
+		return result;
+	}
+	
+	/**************************************************************************
+	 * Count a call and start timing it if it is sampled.
+	 * 
+	 * @param operation Operation being called
+	 * @param key       Key used, or null if there isn't one
+	 * @return          Timer to pass to end(), 0 if the call isn't timed.
+	 **************************************************************************/
+	static long begin( Operation operation, MetaKey key ) {
+		if( !enabled ) return 0;
+		calls.incrementAndGet( operation.ordinal() * TYPES + typeSlot( key ) );
+		
+		int rate = sampleRate;
+		if( rate > 1 && ThreadLocalRandom.current().nextInt( rate ) != 0 ) return 0;
+		if( key != null ) countKey( key );
+		long now = System.nanoTime();
+		return now == 0 ? 1 : now;
+	}
+	
+	/**************************************************************************
+	 * Finish timing a call.
+	 * 
+	 * @param timer     Value returned by begin()
+	 * @param operation Operation that was called
+	 * @param key       Key used, or null if there isn't one
+	 * @param data      Data line that was read or written, or null
+	 **************************************************************************/
+	static void end( long timer, Operation operation, MetaKey key, CharSequence data ) {
+		if( timer == 0 ) return;
+		long elapsed = System.nanoTime() - timer;
+		int slot = operation.ordinal() * TYPES + typeSlot( key );
+		latencies.incrementAndGet( slot * BUCKETS + bucket( elapsed ) );
+		if( data != null ) sizes.incrementAndGet( bucket( data.length() ) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void countKey( MetaKey key ) {
+		synchronized( hotKeys ) {
+			long[] count = hotKeys.get( key );
+			if( count != null ) {
+				count[0]++;
+				return;
+			}
+			
+			// full: replace the least used key, which keeps the heavy hitters
+			long start = 0;
+			if( hotKeys.size() >= HOT_KEY_CAPACITY ) {
+				MetaKey coldest = null;
+				for( Map.Entry<MetaKey,long[]> entry : hotKeys.entrySet() ) {
+					if( coldest == null || entry.getValue()[0] < start ) {
+						coldest = entry.getKey();
+						start = entry.getValue()[0];
+					}
+				}
+				hotKeys.remove( coldest );
+			}
+			hotKeys.put( key, new long[] { start + 1 } );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static int typeSlot( MetaKey key ) {
+		return key == null ? 0 : key.getDataType().getInt();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static int typeSlot( DataType type ) {
+		return type == null ? 0 : type.getInt();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// bucket 4*n+m holds values from 2^n * (4+m)/4 up to the next bucket
+	private static int bucket( long value ) {
+		if( value < 4 ) return value < 0 ? 0 : (int)value;
+		int bits = 63 - Long.numberOfLeadingZeros( value );
+		int bucket = bits * 4 + (int)((value >>> (bits - 2)) & 3);
+		return Math.min( bucket, BUCKETS - 1 );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// highest value that falls into a bucket
+	private static long bucketLimit( int bucket ) {
+		if( bucket < 4 ) return bucket;
+		int bits = bucket / 4;
+		return ((4L + (bucket & 3) + 1) << (bits - 2)) - 1;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static long percentile( long[] histogram, double percentile ) {
+		long total = 0;
+		for( long count : histogram ) total += count;
+		if( total == 0 ) return -1;
+		
+		long target = (long)Math.ceil( total * Math.min( Math.max( percentile, 0 ), 100 ) / 100.0 );
+		if( target < 1 ) target = 1;
+		long seen = 0;
+		for( int i = 0; i < histogram.length; i++ ) {
+			seen += histogram[i];
+			if( seen >= target ) return bucketLimit( i );
+		}
+		return bucketLimit( histogram.length - 1 );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void clear( AtomicLongArray array ) {
+		for( int i = 0; i < array.length(); i++ ) {
+			array.set( i, 0 );
+		}
+	}
+}
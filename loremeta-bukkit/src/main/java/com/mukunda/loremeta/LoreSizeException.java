@@ -0,0 +1,77 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+/******************************************************************************
+ * Thrown when a write would make an item's data line larger than the size
+ * budget, and the budget is set to fail.
+ * 
+ * The item is left unchanged.
+ * 
+ * @see LoreMeta#setSizeBudget(int, LoreMeta.BudgetAction)
+ * @author mukunda
+ *
+ ******************************************************************************/
+public class LoreSizeException extends IllegalStateException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final MetaKey key;
+	private final int size;
+	private final int budget;
+	
+	//---------------------------------------------------------------------------------------------
+	LoreSizeException( MetaKey key, int size, int budget ) {
+		super( "LoreMeta data " + (key == null ? "" : "for " + key.getName() + " ") 
+				+ "would be " + size + " chars, the budget is " + budget );
+		this.key = key;
+		this.size = size;
+		this.budget = budget;
+	}
+	
+	/**************************************************************************
+	 * Get the key that was written.
+	 * 
+	 * @return Key of the write, or null if several keys were committed at
+	 *         once.
+	 **************************************************************************/
+	public MetaKey getKey() {
+		return key;
+	}
+	
+	/**************************************************************************
+	 * Get the length the data line would have had.
+	 **************************************************************************/
+	public int getSize() {
+		return size;
+	}
+	
+	/**************************************************************************
+	 * Get the budget that was exceeded.
+	 **************************************************************************/
+	public int getBudget() {
+		return budget;
+	}
+}
@@ -0,0 +1,383 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/******************************************************************************
+ * An immutable copy of all LoreMeta data on an item.
+ * 
+ * Created with LoreMeta.decodeAll( item ) or LoreMeta.snapshot( item ). 
+ * The encoded lore is walked once, and every data entry and field is 
+ * available afterwards without touching the item again. Snapshots are not
+ * updated when the item changes.
+ * 
+ * Snapshots can be used from any thread. A snapshot taken on the main
+ * thread can be handed to a worker, which decodes and reads it and queues
+ * changes with edit(). The resulting LoreCommit is then applied back on 
+ * the main thread.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class LoreSnapshot {
+	
+	static final LoreSnapshot EMPTY = new LoreSnapshot( Collections.<String>emptyList() );
+	
+	private final List<String> lore;
+	
+	// decoded on first use, a race only decodes twice
+	private volatile DecodedLore data;
+	private volatile Map<String,String> fields;
+	
+	//---------------------------------------------------------------------------------------------
+	private LoreSnapshot( List<String> lore ) {
+		this.lore = Collections.unmodifiableList( lore );
+	}
+	
+	/**************************************************************************
+	 * Capture a lore list.
+	 * 
+	 * @param lore Lore list, which must not be modified afterwards
+	 * @return     Snapshot of the lore, nothing is decoded yet.
+	 **************************************************************************/
+	static LoreSnapshot capture( List<String> lore ) {
+		if( lore == null || lore.size() == 0 ) return EMPTY;
+		return new LoreSnapshot( lore );
+	}
+	
+	/**************************************************************************
+	 * Decode the data and fields now instead of on first use.
+	 * 
+	 * @return This snapshot
+	 **************************************************************************/
+	LoreSnapshot decode() {
+		getDecoded();
+		getFields();
+		return this;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	DecodedLore getDecoded() {
+		DecodedLore result = data;
+		if( result == null ) {
+			result = LoreMeta.cache.get( lore.size() == 0 ? "" : lore.get(0) );
+			data = result;
+		}
+		return result;
+	}
+	
+	/**************************************************************************
+	 * Get the lore that this snapshot was taken from.
+	 * 
+	 * @return Read-only lore list
+	 **************************************************************************/
+	public List<String> getLore() {
+		return lore;
+	}
+	
+	/**************************************************************************
+	 * Start a set of changes based on this snapshot.
+	 * 
+	 * The changes can be queued on any thread, and must be applied on the
+	 * main thread with LoreCommit.apply( item ).
+	 * 
+	 * @return New commit
+	 **************************************************************************/
+	public LoreCommit edit() {
+		return new LoreCommit( this );
+	}
+	
+	/**************************************************************************
+	 * Read a byte.
+	 * 
+	 * @param key Byte key to access
+	 * @return    Byte value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public Byte getData( MetaKeyByte key ) {
+		return (Byte)getDecoded().get( key );
+	}
+	
+	/**************************************************************************
+	 * Read a short.
+	 * 
+	 * @param key Short key to access
+	 * @return    Short value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public Short getData( MetaKeyShort key ) {
+		return (Short)getDecoded().get( key );
+	}
+	
+	/**************************************************************************
+	 * Read an integer.
+	 * 
+	 * @param key Integer key to access
+	 * @return    Integer value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public Integer getData( MetaKeyInt key ) {
+		return (Integer)getDecoded().get( key );
+	}
+	
+	/**************************************************************************
+	 * Read a long.
+	 * 
+	 * @param key Long key to access
+	 * @return    Long value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public Long getData( MetaKeyLong key ) {
+		return (Long)getDecoded().get( key );
+	}
+	
+	/**************************************************************************
+	 * Read a UUID.
+	 * 
+	 * @param key UUID key to access
+	 * @return    UUID value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public UUID getData( MetaKeyUUID key ) {
+		return (UUID)getDecoded().get( key );
+	}
+	
+	/**************************************************************************
+	 * Read a string.
+	 * 
+	 * @param key Text key to access
+	 * @return    Content string, or null if the key doesn't exist.
+	 **************************************************************************/
+	public String getData( MetaKeyText key ) {
+		return (String)getDecoded().get( key );
+	}
+	
+	/**************************************************************************
+	 * Read a float.
+	 * 
+	 * @param key Float key to access
+	 * @return    Float value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public Float getData( MetaKeyFloat key ) {
+		return (Float)getDecoded().get( key );
+	}
+	
+	/**************************************************************************
+	 * Read a double.
+	 * 
+	 * @param key Double key to access
+	 * @return    Double value, or null if the key doesn't exist.
+	 **************************************************************************/
+	public Double getData( MetaKeyDouble key ) {
+		return (Double)getDecoded().get( key );
+	}
+	
+	/**************************************************************************
+	 * Read an enum constant.
+	 * 
+	 * @param key Enum key to access
+	 * @return    Constant, or null if the key doesn't exist or its ordinal
+	 *            is out of range for the enum.
+	 **************************************************************************/
+	@SuppressWarnings("unchecked")
+	public <E extends Enum<E>> E getData( MetaKeyEnum<E> key ) {
+		return (E)getDecoded().get( key );
+	}
+	
+	/**************************************************************************
+	 * Check if a flag is set.
+	 * 
+	 * @param key Flag key to access
+	 * @return    true if the flag is set, false if not.
+	 **************************************************************************/
+	public boolean getData( MetaKeyFlag key ) {
+		return getDecoded().contains( key );
+	}
+	
+	/**************************************************************************
+	 * Read a byte without boxing.
+	 * 
+	 * @param key          Byte key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 **************************************************************************/
+	public byte getByte( MetaKeyByte key, byte defaultValue ) {
+		return getDecoded().getByte( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read a short without boxing.
+	 * 
+	 * @param key          Short key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 **************************************************************************/
+	public short getShort( MetaKeyShort key, short defaultValue ) {
+		return getDecoded().getShort( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read an integer without boxing.
+	 * 
+	 * @param key          Integer key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 **************************************************************************/
+	public int getInt( MetaKeyInt key, int defaultValue ) {
+		return getDecoded().getInt( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read a long without boxing.
+	 * 
+	 * @param key          Long key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 **************************************************************************/
+	public long getLong( MetaKeyLong key, long defaultValue ) {
+		return getDecoded().getLong( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read the most significant 64 bits of a UUID without creating a UUID.
+	 * 
+	 * @param key          UUID key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 **************************************************************************/
+	public long getUUIDMostBits( MetaKeyUUID key, long defaultValue ) {
+		return getDecoded().getMostSignificantBits( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read the least significant 64 bits of a UUID without creating a UUID.
+	 * 
+	 * @param key          UUID key to access
+	 * @param defaultValue Value to return if the key doesn't exist
+	 **************************************************************************/
+	public long getUUIDLeastBits( MetaKeyUUID key, long defaultValue ) {
+		return getDecoded().getLeastSignificantBits( key, defaultValue );
+	}
+	
+	/**************************************************************************
+	 * Read the value of any key.
+	 * 
+	 * @param key Key to access
+	 * @return    Value matching the key's data type, or null if the key 
+	 *            doesn't exist. Flags read as Boolean.TRUE.
+	 **************************************************************************/
+	public Object getValue( MetaKey key ) {
+		return getDecoded().get( key );
+	}
+	
+	/**************************************************************************
+	 * Check if a data entry exists.
+	 **************************************************************************/
+	public boolean hasData( MetaKey key ) {
+		return getDecoded().contains( key );
+	}
+	
+	/**************************************************************************
+	 * Get the keys of all data entries, in the order they are stored.
+	 * 
+	 * Like the other views of all entries, this leaves out reserved keys
+	 * (see MetaKey), which LoreMeta uses for its own data.
+	 **************************************************************************/
+	public Set<MetaKey> getKeys() {
+		Set<MetaKey> keys = new LinkedHashSet<MetaKey>();
+		for( DecodedLore.Entry entry : getDecoded().getEntries() ) {
+			if( entry.key.isReserved() ) continue;
+			keys.add( entry.key );
+		}
+		return Collections.unmodifiableSet( keys );
+	}
+	
+	/**************************************************************************
+	 * Get all data entries, in the order they are stored.
+	 * 
+	 * @return Read-only map of keys to values. Flags map to Boolean.TRUE.
+	 **************************************************************************/
+	public Map<MetaKey,Object> getValues() {
+		Map<MetaKey,Object> values = new LinkedHashMap<MetaKey,Object>();
+		for( DecodedLore.Entry entry : getDecoded().getEntries() ) {
+			if( entry.key.isReserved() ) continue;
+			values.put( entry.key, entry.key.fromStored( entry.value ) );
+		}
+		return Collections.unmodifiableMap( values );
+	}
+	
+	/**************************************************************************
+	 * Get the number of data entries.
+	 **************************************************************************/
+	public int size() {
+		int size = 0;
+		for( DecodedLore.Entry entry : getDecoded().getEntries() ) {
+			if( !entry.key.isReserved() ) size++;
+		}
+		return size;
+	}
+	
+	/**************************************************************************
+	 * Read a field.
+	 * 
+	 * @param key Field name to read
+	 * @return    Value of the field, or null if the field was not found.
+	 **************************************************************************/
+	public String getField( String key ) {
+		return getFields().get( key );
+	}
+	
+	/**************************************************************************
+	 * Get all fields, in the order they appear in the lore.
+	 * 
+	 * @return Read-only map of field names to values.
+	 **************************************************************************/
+	public Map<String,String> getFields() {
+		Map<String,String> result = fields;
+		if( result == null ) {
+			result = new LinkedHashMap<String,String>();
+			FieldIndex index = LoreMeta.cache.getFields( lore );
+			for( String name : index.getNames() ) {
+				result.put( name, LoreMeta.getFieldValue( lore.get( index.getLine( name ) ) ) );
+			}
+			result = Collections.unmodifiableMap( result );
+			fields = result;
+		}
+		return result;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder( "LoreSnapshot{" );
+		boolean first = true;
+		for( DecodedLore.Entry entry : getDecoded().getEntries() ) {
+			if( entry.key.isReserved() ) continue;
+			if( !first ) builder.append( ", " );
+			first = false;
+			builder.append( entry.key.getDataType() ).append( ':' )
+				.append( entry.key.getName() ).append( '=' ).append( entry.value );
+		}
+		builder.append( "; fields=" ).append( getFields() ).append( '}' );
+		return builder.toString();
+	}
+}
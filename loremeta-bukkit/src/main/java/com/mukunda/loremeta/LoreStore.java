@@ -0,0 +1,800 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.ItemStack;
+
+/******************************************************************************
+ * Side store for large text values.
+ * 
+ * Values that are too big to carry around in the lore (histories, stats
+ * and so on) can be kept in a local file instead. The item only gets a 
+ * handle (a UUID entry under HANDLE_KEY), and the values are looked up 
+ * by the handle and key name:
+ * 
+ *   LoreStore store = new LoreStore( new File( getDataFolder(), "lore.store" ) );
+ *   store.setData( item, HISTORY, history );
+ *   String history = store.getData( item, HISTORY );
+ * 
+ * The file is an append-only log of records, read through a memory 
+ * mapping. Writes are kept in memory and appended by a background thread
+ * every few seconds (or sooner when a lot is waiting), and on flush() and
+ * close(). Replaced values stay in the file until it is compacted, which
+ * happens on its own once more than half the file is garbage. Recently 
+ * read values are cached, up to a size limit.
+ * 
+ * Flushing and compacting don't block the other methods while they write
+ * to the disk; values stay readable while they are being written.
+ * 
+ * Compacting replaces the file with a new one. Windows doesn't allow that
+ * while the old file is still mapped, and a mapping is only released when
+ * it is garbage collected, so compacting may fail there. The old file is
+ * kept when it does, and the store works as before, only bigger.
+ * 
+ * Copies of an item share its handle, and so its stored values. Values of
+ * items that are destroyed are not removed, as there's no way to know;
+ * call remove( handle ) when an item is known to be gone.
+ * 
+ * A store file can only be opened by one LoreStore at a time, and can't 
+ * grow past 2 GB. All methods are synchronized and can be called from 
+ * any thread.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class LoreStore implements Closeable {
+	
+	/**
+	 * Key of the handle that is written to items. The name is reserved, so
+	 * the handle is left out of decodeAll and fingerprints like the other 
+	 * entries LoreMeta keeps for itself.
+	 */
+	public static final MetaKeyUUID HANDLE_KEY = (MetaKeyUUID)MetaKey.reserved( "~store", DataType.UID );
+	
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+	
+	// "LMST" and the format version at the start of the file
+	private static final int MAGIC = 0x4C4D5354;
+	private static final int VERSION = 1;
+	private static final int FILE_HEADER = 8;
+	
+	// record length and CRC, then the body: handle, name length, name,
+	// value length (-1 for a removal) and value
+	private static final int RECORD_HEADER = 8;
+	private static final int BODY_HEADER = 16 + 2 + 4;
+	
+	private static final int DEFAULT_CACHE_CAPACITY = 4 << 20;
+	private static final long DEFAULT_FLUSH_MILLIS = 5000;
+	
+	// bytes waiting to be written that trigger an early flush
+	private static final int FLUSH_THRESHOLD = 1 << 20;
+	
+	// files smaller than this are never compacted
+	private static final long COMPACT_MIN_SIZE = 1 << 20;
+	
+	private final File file;
+	private FileChannel channel;
+	private MappedByteBuffer map;
+	private long size;
+	
+	// held while writing to the file, so only one flush or compaction runs 
+	// at a time. The fields a flush changes are changed while holding both 
+	// this and the store lock, and ioLock is always taken first.
+	private final Object ioLock = new Object();
+	
+	// bytes of records that were replaced or removed
+	private long garbage;
+	
+	// position and length of each value in the file, offset << 32 | length
+	private final Map<Slot,Long> index = new HashMap<Slot,Long>();
+	
+	// values that are not written yet, null for removals
+	private Map<Slot,String> pending = new LinkedHashMap<Slot,String>();
+	private long pendingBytes;
+	
+	// values that a flush is writing, until they are in the index
+	private Map<Slot,String> flushing = Collections.emptyMap();
+	
+	// recently read values, least recently used first
+	private final Map<Slot,String> cache = new LinkedHashMap<Slot,String>( 16, 0.75f, true );
+	private long cacheChars;
+	private long cacheCapacity = DEFAULT_CACHE_CAPACITY;
+	
+	// values up to this many chars are written to the lore, 0 for none
+	private volatile int inlineLimit;
+	
+	private final ScheduledExecutorService flusher;
+	private boolean closed;
+	
+	// cleared when compacting fails, so flushes don't keep trying
+	private boolean autoCompact = true;
+	
+	/**************************************************************************
+	 * Open a store, creating the file if it doesn't exist.
+	 * 
+	 * @param file Store file
+	 * @throws IOException if the file can't be opened, or isn't a store
+	 **************************************************************************/
+	public LoreStore( File file ) throws IOException {
+		this( file, DEFAULT_FLUSH_MILLIS );
+	}
+	
+	/**************************************************************************
+	 * Open a store, creating the file if it doesn't exist.
+	 * 
+	 * @param file        Store file
+	 * @param flushMillis How often waiting writes are appended to the file
+	 * @throws IOException if the file can't be opened, or isn't a store
+	 **************************************************************************/
+	public LoreStore( File file, long flushMillis ) throws IOException {
+		if( flushMillis <= 0 ) throw new IllegalArgumentException( "flushMillis must be above 0" );
+		this.file = file;
+		open();
+		
+		flusher = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+			@Override
+			public Thread newThread( Runnable runnable ) {
+				Thread thread = new Thread( runnable, "LoreMeta store flush" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		});
+		flusher.scheduleWithFixedDelay( flushTask, flushMillis, flushMillis, TimeUnit.MILLISECONDS );
+	}
+	
+	/**************************************************************************
+	 * Get the store handle of an item.
+	 * 
+	 * @param item Item to read from
+	 * @return     Handle, or null if nothing was stored for the item
+	 **************************************************************************/
+	public static UUID getHandle( ItemStack item ) {
+		return LoreMeta.getData( item, HANDLE_KEY );
+	}
+	
+	/**************************************************************************
+	 * Read a stored value of an item.
+	 * 
+	 * @param item Item to read from
+	 * @param key  Key of the value
+	 * @return     Value, or null if it doesn't exist
+	 **************************************************************************/
+	public String getData( ItemStack item, MetaKeyText key ) {
+		if( inlineLimit > 0 ) {
+			String value = LoreMeta.getData( item, key );
+			if( value != null ) return value;
+		}
+		UUID handle = getHandle( item );
+		return handle == null ? null : get( handle, key.getName() );
+	}
+	
+	/**************************************************************************
+	 * Check if an item has a stored value.
+	 * 
+	 * @param item Item to check
+	 * @param key  Key of the value
+	 * @return     true if the value exists
+	 **************************************************************************/
+	public boolean hasData( ItemStack item, MetaKeyText key ) {
+		if( inlineLimit > 0 && LoreMeta.hasData( item, key ) ) return true;
+		UUID handle = getHandle( item );
+		return handle != null && contains( handle, key.getName() );
+	}
+	
+	/**************************************************************************
+	 * Store a value for an item.
+	 * 
+	 * Items get a handle on their first write, which changes their lore.
+	 * The value itself is written to the file later. Values that fit in 
+	 * the inline limit are written to the lore instead.
+	 * 
+	 * @param item  Item to modify
+	 * @param key   Key of the value
+	 * @param value New value, or null to remove it
+	 **************************************************************************/
+	public void setData( ItemStack item, MetaKeyText key, String value ) {
+		UUID handle = getHandle( item );
+		if( inlineLimit > 0 ) {
+			if( value != null && MetaCodec.getEncodedSize( key, value ) <= inlineLimit ) {
+				LoreMeta.setData( item, key, value );
+				if( handle != null && contains( handle, key.getName() ) ) put( handle, key.getName(), null );
+				return;
+			}
+			if( LoreMeta.hasData( item, key ) ) LoreMeta.setData( item, key, null );
+		}
+		if( handle == null ) {
+			if( value == null ) return;
+			handle = UUID.randomUUID();
+			LoreMeta.setData( item, HANDLE_KEY, handle );
+		}
+		put( handle, key.getName(), value );
+	}
+	
+	/**************************************************************************
+	 * Read a value by handle.
+	 * 
+	 * @param handle Item handle
+	 * @param name   Key name
+	 * @return       Value, or null if it doesn't exist
+	 **************************************************************************/
+	public synchronized String get( UUID handle, String name ) {
+		checkOpen();
+		Slot slot = new Slot( handle, name );
+		if( pending.containsKey( slot ) ) return pending.get( slot );
+		if( flushing.containsKey( slot ) ) return flushing.get( slot );
+		
+		String value = cache.get( slot );
+		if( value != null ) return value;
+		
+		Long location = index.get( slot );
+		if( location == null ) return null;
+		value = new String( read( location ), UTF_8 );
+		cacheValue( slot, value );
+		return value;
+	}
+	
+	/**************************************************************************
+	 * Check if a value exists, by handle.
+	 * 
+	 * @param handle Item handle
+	 * @param name   Key name
+	 * @return       true if the value exists
+	 **************************************************************************/
+	public synchronized boolean contains( UUID handle, String name ) {
+		checkOpen();
+		Slot slot = new Slot( handle, name );
+		if( pending.containsKey( slot ) ) return pending.get( slot ) != null;
+		if( flushing.containsKey( slot ) ) return flushing.get( slot ) != null;
+		return index.containsKey( slot );
+	}
+	
+	/**************************************************************************
+	 * Write a value by handle.
+	 * 
+	 * @param handle Item handle
+	 * @param name   Key name
+	 * @param value  New value, or null to remove it
+	 **************************************************************************/
+	public synchronized void put( UUID handle, String name, String value ) {
+		checkOpen();
+		Slot slot = new Slot( handle, name );
+		uncache( slot );
+		pending.put( slot, value );
+		
+		// UTF-8 takes at most 3 bytes per char
+		pendingBytes += RECORD_HEADER + BODY_HEADER + name.length()*3 
+				+ (value == null ? 0 : value.length()*3);
+		if( pendingBytes >= FLUSH_THRESHOLD ) flusher.execute( flushTask );
+	}
+	
+	/**************************************************************************
+	 * Remove all values of a handle, e.g. when its item was destroyed.
+	 * 
+	 * @param handle Item handle
+	 * @return       Number of values removed
+	 **************************************************************************/
+	public synchronized int remove( UUID handle ) {
+		checkOpen();
+		Set<String> names = new HashSet<String>();
+		for( Slot slot : index.keySet() ) {
+			if( slot.handle.equals( handle ) ) names.add( slot.name );
+		}
+		for( Slot slot : flushing.keySet() ) {
+			if( slot.handle.equals( handle ) ) names.add( slot.name );
+		}
+		for( Slot slot : pending.keySet() ) {
+			if( slot.handle.equals( handle ) ) names.add( slot.name );
+		}
+		
+		int count = 0;
+		for( String name : names ) {
+			if( contains( handle, name ) ) count++;
+			put( handle, name, null );
+		}
+		return count;
+	}
+	
+	/**************************************************************************
+	 * Keep small values in the lore.
+	 * 
+	 * When set, values whose entry takes at most this many characters are
+	 * written to the lore like a normal TEXT entry, and only larger ones go
+	 * to the store. getData looks in both places.
+	 * 
+	 * @param chars Largest entry kept in the lore, 0 to store everything
+	 *              (the default).
+	 **************************************************************************/
+	public void setInlineLimit( int chars ) {
+		if( chars < 0 ) throw new IllegalArgumentException( "chars cannot be negative" );
+		inlineLimit = chars;
+	}
+	
+	/**************************************************************************
+	 * Set how much memory the read cache can use.
+	 * 
+	 * @param chars Total length of the cached values, 0 disables caching.
+	 **************************************************************************/
+	public synchronized void setCacheCapacity( long chars ) {
+		if( chars < 0 ) throw new IllegalArgumentException( "chars cannot be negative" );
+		cacheCapacity = chars;
+		trimCache();
+	}
+	
+	/**************************************************************************
+	 * Write all waiting values to the file.
+	 * 
+	 * This is done in the background on its own, call it to make sure 
+	 * that everything is on disk, e.g. before a backup.
+	 * 
+	 * @throws IOException if writing fails. The values stay waiting and
+	 *         are written on the next flush.
+	 **************************************************************************/
+	public void flush() throws IOException {
+		synchronized( ioLock ) {
+			checkOpen();
+			writePending();
+			if( !autoCompact || size < COMPACT_MIN_SIZE || garbage * 2 <= size ) return;
+			try {
+				rewrite();
+			} catch( IOException e ) {
+				autoCompact = false;
+				Bukkit.getLogger().warning( "LoreMeta store " + file + " could not be compacted, it won't "
+						+ "be tried again until the store is reopened: " + e.getMessage() );
+			}
+		}
+	}
+	
+	/**************************************************************************
+	 * Rewrite the file with only the current values.
+	 * 
+	 * Waiting values are written first. This is done on its own when more
+	 * than half of the file is garbage.
+	 * 
+	 * @throws IOException if the file can't be rewritten, e.g. on Windows 
+	 *         when the old file is still mapped. The old file is kept in 
+	 *         that case.
+	 **************************************************************************/
+	public void compact() throws IOException {
+		synchronized( ioLock ) {
+			checkOpen();
+			writePending();
+			rewrite();
+		}
+	}
+	
+	/**************************************************************************
+	 * Get the size of the store file in bytes.
+	 **************************************************************************/
+	public synchronized long getFileSize() {
+		return size;
+	}
+	
+	/**************************************************************************
+	 * Write waiting values and close the file.
+	 * 
+	 * @throws IOException if writing fails
+	 **************************************************************************/
+	@Override
+	public void close() throws IOException {
+		synchronized( ioLock ) {
+			synchronized( this ) {
+				if( closed ) return;
+				closed = true;
+			}
+			flusher.shutdown();
+			try {
+				writePending();
+			} finally {
+				synchronized( this ) {
+					map = null;
+					channel.close();
+				}
+			}
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				synchronized( ioLock ) {
+					if( !closed ) flush();
+				}
+			} catch( IOException e ) {
+				Bukkit.getLogger().warning( "LoreMeta store " + file + " could not be written: " 
+						+ e.getMessage() );
+			} catch( RuntimeException e ) {
+				// an exception would cancel the schedule, and nothing would be written again
+				Bukkit.getLogger().log( Level.SEVERE, "LoreMeta store " + file + " could not be written", e );
+			}
+		}
+	};
+	
+	//---------------------------------------------------------------------------------------------
+	// handle and key name of a value
+	private static final class Slot {
+		final UUID handle;
+		final String name;
+		
+		Slot( UUID handle, String name ) {
+			if( handle == null || name == null ) throw new IllegalArgumentException( "handle and name cannot be null" );
+			this.handle = handle;
+			this.name = name;
+		}
+		
+		@Override
+		public int hashCode() {
+			return handle.hashCode() * 31 + name.hashCode();
+		}
+		
+		@Override
+		public boolean equals( Object other ) {
+			if( !(other instanceof Slot) ) return false;
+			Slot slot = (Slot)other;
+			return handle.equals( slot.handle ) && name.equals( slot.name );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void checkOpen() {
+		if( closed ) throw new IllegalStateException( "store is closed" );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// opens the file and reads the index from it
+	private void open() throws IOException {
+		channel = new RandomAccessFile( file, "rw" ).getChannel();
+		try {
+			size = channel.size();
+			if( size == 0 ) {
+				size = writeFully( channel, fileHeader(), 0 );
+				return;
+			}
+			if( size > Integer.MAX_VALUE ) throw new IOException( file + " is too large" );
+			
+			ByteBuffer header = ByteBuffer.allocate( FILE_HEADER );
+			if( readFully( channel, header, 0 ) < FILE_HEADER || header.getInt(0) != MAGIC ) {
+				throw new IOException( file + " is not a LoreMeta store" );
+			}
+			if( header.getInt(4) != VERSION ) {
+				throw new IOException( file + " has an unknown version" );
+			}
+			load();
+		} catch( IOException e ) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// replays the log, and cuts off a record that was only partly written. This reads the 
+	// file instead of mapping it, as a mapped file can't be truncated on Windows
+	private void load() throws IOException {
+		long position = FILE_HEADER;
+		channel.position( position );
+		
+		// not closed, that would close the channel
+		DataInputStream input = new DataInputStream( 
+				new BufferedInputStream( Channels.newInputStream( channel ), 1 << 16 ) );
+		CRC32 crc = new CRC32();
+		while( position + RECORD_HEADER <= size ) {
+			int length = input.readInt();
+			int checksum = input.readInt();
+			if( length < BODY_HEADER || position + RECORD_HEADER + length > size ) break;
+			
+			byte[] body = new byte[length];
+			input.readFully( body );
+			crc.reset();
+			crc.update( body );
+			if( (int)crc.getValue() != checksum ) break;
+			
+			ByteBuffer record = ByteBuffer.wrap( body );
+			UUID handle = new UUID( record.getLong(), record.getLong() );
+			int nameLength = record.getShort() & 0xFFFF;
+			if( nameLength + BODY_HEADER > length ) break;
+			String name = new String( body, 18, nameLength, UTF_8 );
+			record.position( 18 + nameLength );
+			int valueLength = record.getInt();
+			if( valueLength > length - BODY_HEADER - nameLength ) break;
+			
+			Slot slot = new Slot( handle, name );
+			int recordLength = RECORD_HEADER + length;
+			Long old;
+			if( valueLength < 0 ) {
+				old = index.remove( slot );
+				garbage += recordLength;
+			} else {
+				old = index.put( slot, location( position + recordLength - valueLength, valueLength ) );
+			}
+			if( old != null ) garbage += recordSize( slot, (int)(long)old );
+			position += recordLength;
+		}
+		
+		if( position < size ) {
+			Bukkit.getLogger().warning( "LoreMeta store " + file + " has a damaged record at " 
+					+ position + ", the rest of the file is discarded." );
+			channel.truncate( position );
+			size = position;
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// appends waiting values. Called holding ioLock, the store lock is only held to take the
+	// values and to add them to the index, so get and put carry on while they are written.
+	// They go back to pending if writing fails
+	private void writePending() throws IOException {
+		Map<Slot,String> batch;
+		long batchBytes;
+		long start;
+		synchronized( this ) {
+			if( pending.isEmpty() ) return;
+			batch = pending;
+			batchBytes = pendingBytes;
+			flushing = batch;
+			pending = new LinkedHashMap<Slot,String>();
+			pendingBytes = 0;
+			start = size;
+		}
+		
+		List<ByteBuffer> records = new ArrayList<ByteBuffer>( batch.size() );
+		boolean written = false;
+		try {
+			long position = start;
+			for( Map.Entry<Slot,String> entry : batch.entrySet() ) {
+				String value = entry.getValue();
+				ByteBuffer record = record( entry.getKey(), value == null ? null : value.getBytes( UTF_8 ) );
+				records.add( record );
+				position += record.limit();
+			}
+			if( position > Integer.MAX_VALUE ) {
+				throw new IOException( file + " is full, it cannot grow past 2 GB" );
+			}
+			
+			position = start;
+			for( ByteBuffer record : records ) {
+				position += writeFully( channel, record, position );
+			}
+			channel.force( false );
+			written = true;
+		} finally {
+			if( !written ) {
+				synchronized( this ) {
+					// values that were put meanwhile are newer
+					batch.putAll( pending );
+					pending = batch;
+					pendingBytes += batchBytes;
+					flushing = Collections.emptyMap();
+				}
+			}
+		}
+		
+		synchronized( this ) {
+			long position = start;
+			Iterator<ByteBuffer> encoded = records.iterator();
+			for( Map.Entry<Slot,String> entry : batch.entrySet() ) {
+				Slot slot = entry.getKey();
+				String value = entry.getValue();
+				int recordLength = encoded.next().limit();
+				Long old;
+				if( value == null ) {
+					old = index.remove( slot );
+					garbage += recordLength;
+				} else {
+					int valueLength = recordLength - recordSize( slot, 0 );
+					old = index.put( slot, location( position + recordLength - valueLength, valueLength ) );
+					if( !pending.containsKey( slot ) ) cacheValue( slot, value );
+				}
+				if( old != null ) garbage += recordSize( slot, (int)(long)old );
+				position += recordLength;
+			}
+			size = position;
+			flushing = Collections.emptyMap();
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// copies the values to a new file and replaces the old one with it. Called holding ioLock,
+	// the copying is done without the store lock as only flushes change the index
+	private void rewrite() throws IOException {
+		File temp = new File( file.getPath() + ".tmp" );
+		Map<Slot,Long> moved = new HashMap<Slot,Long>();
+		long position = FILE_HEADER;
+		RandomAccessFile output = new RandomAccessFile( temp, "rw" );
+		try {
+			FileChannel target = output.getChannel();
+			target.truncate( 0 );
+			writeFully( target, fileHeader(), 0 );
+			for( Map.Entry<Slot,Long> entry : index.entrySet() ) {
+				Slot slot = entry.getKey();
+				long location = entry.getValue();
+				ByteBuffer value = ByteBuffer.allocate( (int)location );
+				if( readFully( channel, value, location >>> 32 ) < value.capacity() ) {
+					throw new IOException( file + " is shorter than its index" );
+				}
+				ByteBuffer record = record( slot, value.array() );
+				moved.put( slot, location( position + record.limit() - value.capacity(), value.capacity() ) );
+				position += writeFully( target, record, position );
+			}
+			target.force( true );
+		} finally {
+			output.close();
+		}
+		
+		synchronized( this ) {
+			// closing the channel doesn't unmap the file, the mapping stays until it is collected
+			channel.close();
+			map = null;
+			try {
+				Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, 
+						StandardCopyOption.ATOMIC_MOVE );
+			} catch( IOException e ) {
+				temp.delete();
+				throw e;
+			} finally {
+				channel = new RandomAccessFile( file, "rw" ).getChannel();
+			}
+			size = position;
+			garbage = 0;
+			index.putAll( moved );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// value bytes at a location from the index
+	private byte[] read( long location ) {
+		int offset = (int)(location >>> 32);
+		int length = (int)location;
+		try {
+			if( map == null || offset + length > map.capacity() ) {
+				map = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+			}
+		} catch( IOException e ) {
+			throw new IllegalStateException( "LoreMeta store " + file + " could not be read", e );
+		}
+		byte[] value = new byte[length];
+		ByteBuffer view = map.duplicate();
+		view.position( offset );
+		view.get( value );
+		return value;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static ByteBuffer fileHeader() {
+		ByteBuffer header = ByteBuffer.allocate( FILE_HEADER );
+		header.putInt( MAGIC ).putInt( VERSION ).flip();
+		return header;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// encodes a record, a null value makes a removal record
+	private static ByteBuffer record( Slot slot, byte[] value ) {
+		byte[] name = slot.name.getBytes( UTF_8 );
+		if( name.length > 0xFFFF ) throw new IllegalArgumentException( "key name is too long" );
+		int length = BODY_HEADER + name.length + (value == null ? 0 : value.length);
+		
+		ByteBuffer record = ByteBuffer.allocate( RECORD_HEADER + length );
+		record.putInt( length ).putInt( 0 );
+		record.putLong( slot.handle.getMostSignificantBits() );
+		record.putLong( slot.handle.getLeastSignificantBits() );
+		record.putShort( (short)name.length ).put( name );
+		if( value == null ) {
+			record.putInt( -1 );
+		} else {
+			record.putInt( value.length ).put( value );
+		}
+		
+		CRC32 crc = new CRC32();
+		crc.update( record.array(), RECORD_HEADER, length );
+		record.putInt( 4, (int)crc.getValue() );
+		record.flip();
+		return record;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static int recordSize( Slot slot, int valueLength ) {
+		return RECORD_HEADER + BODY_HEADER + slot.name.getBytes( UTF_8 ).length + valueLength;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static long location( long offset, int length ) {
+		return offset << 32 | (length & 0xFFFFFFFFL);
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// returns the number of bytes written
+	private static int writeFully( FileChannel target, ByteBuffer buffer, long position ) throws IOException {
+		int length = buffer.remaining();
+		while( buffer.hasRemaining() ) {
+			position += target.write( buffer, position );
+		}
+		return length;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// returns the number of bytes read, less than the buffer holds at the end of the file
+	private static int readFully( FileChannel source, ByteBuffer buffer, long position ) throws IOException {
+		int start = buffer.position();
+		while( buffer.hasRemaining() ) {
+			if( source.read( buffer, position + buffer.position() - start ) < 0 ) break;
+		}
+		return buffer.position() - start;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void cacheValue( Slot slot, String value ) {
+		uncache( slot );
+		if( value.length() > cacheCapacity ) return;
+		cache.put( slot, value );
+		cacheChars += value.length();
+		trimCache();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void uncache( Slot slot ) {
+		String old = cache.remove( slot );
+		if( old != null ) cacheChars -= old.length();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void trimCache() {
+		Iterator<String> values = cache.values().iterator();
+		while( cacheChars > cacheCapacity && values.hasNext() ) {
+			cacheChars -= values.next().length();
+			values.remove();
+		}
+	}
+}
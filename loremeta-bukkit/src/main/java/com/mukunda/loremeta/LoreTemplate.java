@@ -0,0 +1,215 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+/******************************************************************************
+ * A lore list with its initialization markers already processed.
+ * 
+ * Created with LoreMeta.compileTemplate( lore ). The ## and @@[...] 
+ * markers are parsed once, and the finished lore (with the data line 
+ * encoded) is kept, so stamping many items from the same template does
+ * no parsing or encoding at all.
+ * 
+ * Templates are immutable and can be shared between threads.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class LoreTemplate {
+	
+	private final List<String> lore;
+	private final Map<MetaKey,Object> data;
+	private final boolean changed;
+	
+	//---------------------------------------------------------------------------------------------
+	private LoreTemplate( List<String> lore, Map<MetaKey,Object> data, boolean changed ) {
+		this.lore = Collections.unmodifiableList( lore );
+		this.data = Collections.unmodifiableMap( data );
+		this.changed = changed;
+	}
+	
+	/**************************************************************************
+	 * Process the markers in a lore list.
+	 * 
+	 * @param source Lore with markers, see LoreMeta.initialize
+	 * @return       Compiled template
+	 **************************************************************************/
+	static LoreTemplate compile( List<String> source ) {
+		List<String> lore = new ArrayList<String>( source.size() );
+		Map<MetaKey,Object> data = new LinkedHashMap<MetaKey,Object>();
+		List<Integer> fields = new ArrayList<Integer>();
+		boolean changed = false;
+		
+		for( String entry : source ) {
+			if( entry.startsWith( "##" ) ) {
+				if( lore.size() > 0 ) { // field cannot be on first line.
+					entry = LoreMeta.TAG_FIELD + entry.substring( 2 );
+					fields.add( lore.size() );
+					changed = true;
+				}
+			} else if( entry.startsWith( "@@[" ) ) {
+				if( parseInitializer( entry, data ) ) {
+					changed = true;
+					continue; // initializer lines are removed
+				}
+			}
+			lore.add( entry );
+		}
+		
+		if( !data.isEmpty() ) {
+			StringBuilder builder = new StringBuilder( lore.size() == 0 ? "" : lore.get(0) );
+			boolean moved = false;
+			for( Map.Entry<MetaKey,Object> entry : data.entrySet() ) {
+				moved |= LoreCodec.writeEntry( builder, entry.getKey(), entry.getValue() );
+			}
+			
+			String bindings = parseBindings( lore, fields, data, builder );
+			if( bindings != null ) {
+				moved |= LoreCodec.writeEntry( builder, FieldBinding.KEY, bindings );
+			}
+			if( moved ) LoreCodec.updateDirectory( builder );
+			
+			if( lore.size() == 0 ) {
+				lore.add( builder.toString() );
+			} else {
+				lore.set( 0, builder.toString() );
+			}
+			if( bindings != null ) FieldBinding.render( lore, null, builder, null );
+		}
+		
+		return new LoreTemplate( lore, data, changed );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// parses "@@[t:name:value]" into data, returns false if the line is malformed
+	private static boolean parseInitializer( String entry, Map<MetaKey,Object> data ) {
+		
+		// same rules as ^@@\[([A-Z]):(.+):(.*)\]$ with a greedy name
+		int length = entry.length();
+		if( length < 8 || entry.charAt( length-1 ) != ']' ) return false;
+		char t = entry.charAt(3);
+		if( t < 'A' || t > 'Z' || entry.charAt(4) != ':' ) return false;
+		int splitter = entry.lastIndexOf( ':', length-2 );
+		if( splitter <= 5 ) return false;
+		
+		DataType type = DataType.fromCharacter( t );
+		if( type == null ) return false; // bad type
+		
+		String name = entry.substring( 5, splitter );
+		String input = entry.substring( splitter+1, length-1 );
+		Object value;
+		if( type == DataType.FLAG ) {
+			value = Boolean.valueOf(true);
+		} else {
+			value = type == DataType.ENUM ? convertEnum( name, input ) : null;
+			if( value == null ) value = type.convertString( input );
+			if( value == null ) return false; // bad value
+		}
+		
+		MetaKey key = new MetaKey( name, type );
+		data.remove( key ); // later initializers win, in their own position
+		data.put( key, value );
+		return true;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// bindings from the placeholders in the marked fields, added to the bindings already in 
+	// the data line. returns the new KEY value, or null if there are no new bindings
+	private static String parseBindings( List<String> lore, List<Integer> fields, 
+			Map<MetaKey,Object> data, CharSequence dataLine ) {
+		Map<String,FieldBinding> bindings = null;
+		for( int line : fields ) {
+			String entry = lore.get( line );
+			String name = LoreMeta.getFieldName( entry );
+			if( name == null ) continue;
+			FieldBinding binding = FieldBinding.fromMarker( name, 
+					LoreMeta.getFieldValue( entry ), data.keySet() );
+			if( binding == null ) continue; // literal text
+			if( bindings == null ) bindings = FieldBinding.read( dataLine );
+			bindings.put( name, binding );
+		}
+		return bindings == null ? null : FieldBinding.write( bindings.values() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// constant names work for keys registered with MetaKeyEnum.of, null otherwise
+	private static Object convertEnum( String name, String input ) {
+		MetaKey key = MetaKey.lookup( name, DataType.ENUM );
+		if( !(key instanceof MetaKeyEnum) ) return null;
+		for( Object constant : ((MetaKeyEnum<?>)key).getEnumClass().getEnumConstants() ) {
+			if( ((Enum<?>)constant).name().equals( input ) ) return ((Enum<?>)constant).ordinal();
+		}
+		return null;
+	}
+	
+	/**************************************************************************
+	 * Check if the source lore had any markers.
+	 **************************************************************************/
+	public boolean hasMarkers() {
+		return changed;
+	}
+	
+	/**************************************************************************
+	 * Get the finished lore.
+	 * 
+	 * @return Read-only lore list, with fields tagged, initializer lines
+	 *         removed and the data encoded in the first line.
+	 **************************************************************************/
+	public List<String> getLore() {
+		return lore;
+	}
+	
+	/**************************************************************************
+	 * Get the data entries created by the initializers.
+	 * 
+	 * @return Read-only map of keys to values, in the order they were 
+	 *         declared.
+	 **************************************************************************/
+	public Map<MetaKey,Object> getData() {
+		return data;
+	}
+	
+	/**************************************************************************
+	 * Replace the lore of an item with the finished lore.
+	 * 
+	 * Any data or lore already on the item is overwritten.
+	 * 
+	 * @param item Item to modify
+	 **************************************************************************/
+	public void stamp( ItemStack item ) {
+		ItemMeta meta = item.getItemMeta();
+		meta.setLore( new ArrayList<String>( lore ) );
+		item.setItemMeta( meta );
+	}
+}
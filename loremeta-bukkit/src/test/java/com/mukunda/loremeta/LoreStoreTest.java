@@ -0,0 +1,301 @@
+package com.mukunda.loremeta;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LoreStoreTest {
+
+	static final Charset UTF_8 = Charset.forName( "UTF-8" );
+	static final UUID A = new UUID( 1, 1 );
+	static final UUID B = new UUID( 2, 2 );
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	File file;
+	LoreStore store;
+
+	//---------------------------------------------------------------------------------------------
+	// the store logs through Bukkit, which needs a server
+	@BeforeClass
+	public static void server() {
+		if( Bukkit.getServer() != null ) return;
+		final Logger logger = Logger.getLogger( "LoreStoreTest" );
+		Bukkit.setServer( (Server)Proxy.newProxyInstance( Server.class.getClassLoader(),
+				new Class<?>[] { Server.class }, new InvocationHandler() {
+			@Override
+			public Object invoke( Object proxy, Method method, Object[] args ) {
+				return method.getName().equals( "getLogger" ) ? logger : null;
+			}
+		}));
+	}
+
+	@Before
+	public void open() throws IOException {
+		file = new File( folder.getRoot(), "lore.store" );
+		store = new LoreStore( file, 60000 );
+	}
+
+	@After
+	public void close() throws IOException {
+		store.close();
+	}
+
+	//---------------------------------------------------------------------------------------------
+	void reopen() throws IOException {
+		store.close();
+		store = new LoreStore( file, 60000 );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static String repeat( char c, int count ) {
+		char[] chars = new char[count];
+		Arrays.fill( chars, c );
+		return new String( chars );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// replaces a value in the file behind the store's back, the new value must be as long
+	void overwrite( String value, String replacement ) throws IOException {
+		byte[] data = Files.readAllBytes( file.toPath() );
+		byte[] search = value.getBytes( UTF_8 );
+		for( int i = 0; i + search.length <= data.length; i++ ) {
+			if( Arrays.equals( search, Arrays.copyOfRange( data, i, i + search.length ) ) ) {
+				RandomAccessFile output = new RandomAccessFile( file, "rw" );
+				try {
+					output.seek( i );
+					output.write( replacement.getBytes( UTF_8 ) );
+				} finally {
+					output.close();
+				}
+				return;
+			}
+		}
+		fail( value + " is not in the file" );
+	}
+
+	@Test
+	public void putGetAndReopen() throws IOException {
+		assertNull( store.get( A, "history" ) );
+		store.put( A, "history", "first" );
+		store.put( A, "note", "§ and 世界" );
+		store.put( B, "history", "other" );
+		assertEquals( "first", store.get( A, "history" ) );
+		assertTrue( store.contains( A, "note" ) );
+		assertFalse( store.contains( B, "note" ) );
+
+		store.flush();
+		store.put( A, "history", "second" );
+		store.put( B, "history", null );
+		assertEquals( "second", store.get( A, "history" ) );
+		assertFalse( store.contains( B, "history" ) );
+
+		// close writes what is waiting
+		reopen();
+		assertEquals( "second", store.get( A, "history" ) );
+		assertEquals( "§ and 世界", store.get( A, "note" ) );
+		assertNull( store.get( B, "history" ) );
+		assertEquals( file.length(), store.getFileSize() );
+	}
+
+	@Test
+	public void removeHandle() throws IOException {
+		store.put( A, "one", "1" );
+		store.put( A, "two", "2" );
+		store.put( B, "one", "3" );
+		store.flush();
+		store.put( A, "three", "4" );
+		store.put( A, "two", null );
+		assertEquals( 2, store.remove( A ) );
+		assertFalse( store.contains( A, "one" ) );
+		assertFalse( store.contains( A, "three" ) );
+
+		reopen();
+		assertFalse( store.contains( A, "one" ) );
+		assertEquals( "3", store.get( B, "one" ) );
+	}
+
+	@Test
+	public void compact() throws IOException {
+		store.put( A, "history", repeat( 'a', 1000 ) );
+		store.put( B, "history", "kept" );
+		store.flush();
+		long size = store.getFileSize();
+		store.put( A, "history", "short" );
+		store.flush();
+		assertTrue( store.getFileSize() > size );
+
+		store.compact();
+		assertTrue( store.getFileSize() < size );
+		assertEquals( file.length(), store.getFileSize() );
+		assertEquals( "short", store.get( A, "history" ) );
+
+		// values read after compacting come from the new file
+		store.setCacheCapacity( 0 );
+		assertEquals( "kept", store.get( B, "history" ) );
+		reopen();
+		assertEquals( "short", store.get( A, "history" ) );
+		assertEquals( "kept", store.get( B, "history" ) );
+	}
+
+	@Test
+	public void compactsWhenMostlyGarbage() throws IOException {
+		String large = repeat( 'x', 700000 );
+
+		// half of the file is garbage, which isn't enough
+		store.put( A, "history", large );
+		store.flush();
+		store.put( A, "history", large );
+		store.flush();
+		long size = store.getFileSize();
+		assertTrue( size > 1400000 );
+
+		// closing doesn't compact, so this counts on the garbage found when the file is read
+		store.put( A, "history", "short" );
+		reopen();
+		assertTrue( store.getFileSize() > size );
+		store.flush();
+		assertTrue( store.getFileSize() < 1000 );
+		assertEquals( "short", store.get( A, "history" ) );
+	}
+
+	@Test
+	public void damagedTailIsDiscarded() throws IOException {
+		store.put( A, "one", "first" );
+		store.put( A, "two", "second" );
+		store.flush();
+		long size = store.getFileSize();
+		store.put( A, "three", "third" );
+		store.close();
+
+		// cut the last record in half
+		RandomAccessFile output = new RandomAccessFile( file, "rw" );
+		try {
+			output.setLength( size + 12 );
+		} finally {
+			output.close();
+		}
+
+		store = new LoreStore( file, 60000 );
+		assertEquals( size, store.getFileSize() );
+		assertEquals( size, file.length() );
+		assertEquals( "second", store.get( A, "two" ) );
+		assertFalse( store.contains( A, "three" ) );
+
+		// writing carries on where the damage was
+		store.put( A, "three", "again" );
+		reopen();
+		assertEquals( "first", store.get( A, "one" ) );
+		assertEquals( "again", store.get( A, "three" ) );
+	}
+
+	@Test
+	public void badChecksumIsDiscarded() throws IOException {
+		store.put( A, "one", "first" );
+		store.flush();
+		long size = store.getFileSize();
+		store.put( A, "two", "second" );
+		store.close();
+		overwrite( "second", "sec0nd" );
+
+		store = new LoreStore( file, 60000 );
+		assertEquals( size, store.getFileSize() );
+		assertEquals( "first", store.get( A, "one" ) );
+		assertFalse( store.contains( A, "two" ) );
+	}
+
+	@Test(expected = IOException.class)
+	public void notAStore() throws IOException {
+		File other = folder.newFile( "other" );
+		Files.write( other.toPath(), "not a store".getBytes( UTF_8 ) );
+		new LoreStore( other );
+	}
+
+	@Test
+	public void cacheEviction() throws IOException {
+		store.put( A, "x", "xxxx" );
+		store.put( A, "y", "yyyy" );
+		store.put( A, "z", "zzzz" );
+		store.flush();
+
+		// the cache holds two values, x was used last
+		store.setCacheCapacity( 8 );
+		store.get( A, "x" );
+		overwrite( "xxxx", "XXXX" );
+		overwrite( "yyyy", "YYYY" );
+		overwrite( "zzzz", "ZZZZ" );
+		assertEquals( "xxxx", store.get( A, "x" ) );
+		assertEquals( "zzzz", store.get( A, "z" ) );
+		assertEquals( "YYYY", store.get( A, "y" ) );
+
+		// reading y pushed out x
+		assertEquals( "zzzz", store.get( A, "z" ) );
+		assertEquals( "XXXX", store.get( A, "x" ) );
+
+		store.setCacheCapacity( 0 );
+		assertEquals( "ZZZZ", store.get( A, "z" ) );
+	}
+
+	@Test
+	public void readsDuringFlushes() throws Exception {
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for( int t = 0; t < 4; t++ ) {
+			final UUID handle = new UUID( 10, t );
+			Thread thread = new Thread( new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for( int i = 0; i < 2000; i++ ) {
+							store.put( handle, "value", "v" + i );
+							assertEquals( "v" + i, store.get( handle, "value" ) );
+							if( i % 3 == 0 ) {
+								store.put( handle, "value", null );
+								assertFalse( store.contains( handle, "value" ) );
+							}
+						}
+						store.put( handle, "value", "done" );
+					} catch( Throwable e ) {
+						failure.compareAndSet( null, e );
+					}
+				}
+			});
+			thread.start();
+			threads.add( thread );
+		}
+		for( Thread thread : threads ) {
+			while( thread.isAlive() ) {
+				store.flush();
+			}
+		}
+		if( failure.get() != null ) throw new AssertionError( failure.get() );
+
+		reopen();
+		for( int t = 0; t < 4; t++ ) {
+			assertEquals( "done", store.get( new UUID( 10, t ), "value" ) );
+		}
+	}
+}
@@ -59,20 +59,55 @@ public enum DataType {
 	UID(5),
 	
 	/**
-	 * variable length value, ascii characters only.
+	 * variable length value, any Unicode text.
 	 */
 	TEXT(6),
 	
 	/**
 	 * flag only, no data associated with this type.
 	 */
-	FLAG(7);
+	FLAG(7),
+	
+	/**
+	 * 4 byte value stored in as few units as possible (zigzag varint),
+	 * one unit for values within -4096..4095.
+	 */
+	VARINT(8),
+	
+	/**
+	 * 8 byte value stored like VARINT.
+	 */
+	VARLONG(9),
+	
+	/**
+	 * 4 byte floating point value
+	 */
+	FLOAT(10),
+	
+	/**
+	 * 8 byte floating point value
+	 */
+	DOUBLE(11),
+	
+	/**
+	 * constant of an enum class, stored as its ordinal.
+	 */
+	ENUM(12);
 	
 	private static final char COLOR_CHAR = '\u00A7';
 	
+	// types by raw index, values() would copy the array on every lookup
+	private static final DataType[] BY_INT = new DataType[13];
+	static {
+		for( DataType t : values() ) BY_INT[t.type] = t;
+	}
+	
 	int type;
+	private final String tag;
+	
 	private DataType(int type) {
 		this.type = type;
+		tag = "" + COLOR_CHAR + (char)(0x200+type);
 	}
 	
 	/**************************************************************************
@@ -97,12 +132,40 @@ public enum DataType {
 			return TEXT;
 		case 'F':
 			return FLAG;
+		case 'V':
+			return VARINT;
+		case 'W':
+			return VARLONG;
+		case 'R':
+			return FLOAT;
+		case 'D':
+			return DOUBLE;
+		case 'E':
+			return ENUM;
 		default:
 			return null;				
 		}
 		
 	}
 	
+	/**************************************************************************
+	 * Convert a raw type index to a type.
+	 *
+	 * @param type raw type index
+	 * @return     type associated with the index, or null if invalid
+	 **************************************************************************/
+	public static DataType fromInt( int type ) {
+		if( type < 0 || type >= BY_INT.length ) return null;
+		return BY_INT[type];
+	}
+
+	/**************************************************************************
+	 * Get the number of raw type indexes, for tables indexed by getInt().
+	 **************************************************************************/
+	static int count() {
+		return BY_INT.length;
+	}
+	
 	/**************************************************************************
 	 * Get the raw type index.
 	 **************************************************************************/
@@ -116,12 +179,14 @@ public enum DataType {
 	 * @return Tag string
 	 **************************************************************************/
 	public String getTag() {
-		return "" + COLOR_CHAR + (char)(0x200+type);
+		return tag;
 	}
 	
 	/**************************************************************************
 	 * Convert a string to data according to this type.
 	 * 
+	 * ENUM values are converted to their ordinal, which can't be negative.
+	 * 
 	 * @param input String to convert
 	 * @return      converted value or null if the string was invalid.
 	 **************************************************************************/
@@ -133,9 +198,18 @@ public enum DataType {
 			case SHORT:
 				return Short.parseShort( input );
 			case INT:
+			case VARINT:
 				return Integer.parseInt( input );
+			case ENUM:
+				int ordinal = Integer.parseInt( input );
+				return ordinal < 0 ? null : ordinal;
 			case LONG:
+			case VARLONG:
 				return Long.parseLong( input );
+			case FLOAT:
+				return Float.parseFloat( input );
+			case DOUBLE:
+				return Double.parseDouble( input );
 			case UID:
 				return UUID.fromString( input );
 			case TEXT:
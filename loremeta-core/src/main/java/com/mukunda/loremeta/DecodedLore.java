@@ -0,0 +1,306 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import static com.mukunda.loremeta.LoreCodec.COLOR_CHAR;
+import static com.mukunda.loremeta.LoreCodec.DATA_BASE;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/******************************************************************************
+ * A parsed view of an encoded lore line.
+ * 
+ * The line is walked once, and each data entry found is recorded with its
+ * position in the line and its decoded value. Instances are never modified
+ * after parsing, so they can be shared between threads and cached by the
+ * encoded string they were created from.
+ * 
+ * Both format versions are understood, see LoreCodec.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+final class DecodedLore {
+	
+	/**************************************************************************
+	 * A single data entry found in the line.
+	 **************************************************************************/
+	static final class Entry {
+		final MetaKey key;
+		
+		// index of the entry tag
+		final int start;
+		
+		// index of the first value character (the color char before it)
+		final int valueStart;
+		
+		// index after the last character of the entry
+		final int end;
+		
+		final Object value;
+		
+		Entry( MetaKey key, int start, int valueStart, int end, Object value ) {
+			this.key = key;
+			this.start = start;
+			this.valueStart = valueStart;
+			this.end = end;
+			this.value = value;
+		}
+	}
+	
+	private final CharSequence data;
+	private final int version;
+	private final Map<MetaKey,Entry> entries;
+	
+	//---------------------------------------------------------------------------------------------
+	private DecodedLore( CharSequence data, int version, Map<MetaKey,Entry> entries ) {
+		this.data = data;
+		this.version = version;
+		this.entries = entries;
+	}
+	
+	/**************************************************************************
+	 * Find an entry.
+	 * 
+	 * @param key Key to look for
+	 * @return    Entry matching the key, or null if it doesn't exist.
+	 **************************************************************************/
+	Entry getEntry( MetaKey key ) {
+		return entries.get( key );
+	}
+	
+	/**************************************************************************
+	 * Read the decoded value of an entry.
+	 * 
+	 * @param key Key to look for
+	 * @return    Decoded value, or null if the key doesn't exist.
+	 **************************************************************************/
+	Object get( MetaKey key ) {
+		Entry entry = entries.get( key );
+		return entry == null ? null : key.fromStored( entry.value );
+	}
+	
+	/**************************************************************************
+	 * Read a byte value without boxing it.
+	 * 
+	 * The primitive readers decode straight from the encoded line. The key
+	 * must have the matching data type.
+	 * 
+	 * @param key          Key to look for
+	 * @param defaultValue Value to return if the key doesn't exist
+	 **************************************************************************/
+	byte getByte( MetaKey key, byte defaultValue ) {
+		Entry entry = entries.get( key );
+		if( entry == null ) return defaultValue;
+		if( version == 1 ) return (byte)(data.charAt( entry.valueStart+1 ) - DATA_BASE);
+		return (byte)LoreCodec.unit( data, entry.valueStart );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	short getShort( MetaKey key, short defaultValue ) {
+		Entry entry = entries.get( key );
+		if( entry == null ) return defaultValue;
+		if( version == 1 ) return LoreCodec.getPackedShort( data, entry.valueStart+1 );
+		return (short)LoreCodec.readUnits( data, entry.valueStart, 2 );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	int getInt( MetaKey key, int defaultValue ) {
+		Entry entry = entries.get( key );
+		if( entry == null ) return defaultValue;
+		if( version == 1 ) return LoreCodec.getPackedInt( data, entry.valueStart+1 );
+		return (int)LoreCodec.readInteger( data, entry.valueStart, key.getDataType() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	long getLong( MetaKey key, long defaultValue ) {
+		Entry entry = entries.get( key );
+		if( entry == null ) return defaultValue;
+		if( version == 1 ) return LoreCodec.getPackedLong( data, entry.valueStart+1 );
+		return LoreCodec.readInteger( data, entry.valueStart, key.getDataType() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	long getMostSignificantBits( MetaKey key, long defaultValue ) {
+		Entry entry = entries.get( key );
+		if( entry == null ) return defaultValue;
+		if( version == 1 ) return LoreCodec.getPackedLong( data, entry.valueStart+17 );
+		return LoreCodec.readUnits( data, entry.valueStart+10, 5 );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	long getLeastSignificantBits( MetaKey key, long defaultValue ) {
+		Entry entry = entries.get( key );
+		if( entry == null ) return defaultValue;
+		if( version == 1 ) return LoreCodec.getPackedLong( data, entry.valueStart+1 );
+		return LoreCodec.readUnits( data, entry.valueStart, 5 );
+	}
+	
+	/**************************************************************************
+	 * Read any integer type value without boxing it.
+	 * 
+	 * @param key          BYTE, SHORT, INT, LONG, VARINT or VARLONG key to 
+	 *                     look for
+	 * @param defaultValue Value to return if the key doesn't exist
+	 **************************************************************************/
+	long getNumber( MetaKey key, long defaultValue ) {
+		switch( key.getDataType() ) {
+		case BYTE:
+			return contains( key ) ? getByte( key, (byte)0 ) : defaultValue;
+		case SHORT:
+			return contains( key ) ? getShort( key, (short)0 ) : defaultValue;
+		case INT:
+		case VARINT:
+			return contains( key ) ? getInt( key, 0 ) : defaultValue;
+		case LONG:
+		case VARLONG:
+			return getLong( key, defaultValue );
+		default:
+			throw new IllegalArgumentException( "Key is not a number type." );
+		}
+	}
+	
+	/**************************************************************************
+	 * Check if an entry exists.
+	 **************************************************************************/
+	boolean contains( MetaKey key ) {
+		return entries.containsKey( key );
+	}
+	
+	/**************************************************************************
+	 * Get all entries, in the order they appear in the line.
+	 **************************************************************************/
+	Collection<Entry> getEntries() {
+		return Collections.unmodifiableCollection( entries.values() );
+	}
+	
+	/**************************************************************************
+	 * Get the number of entries in the line.
+	 **************************************************************************/
+	int size() {
+		return entries.size();
+	}
+	
+	/**************************************************************************
+	 * Get the format version of the line.
+	 **************************************************************************/
+	int getVersion() {
+		return version;
+	}
+	
+	/**************************************************************************
+	 * Parse an encoded lore line.
+	 * 
+	 * Characters that are not part of a data entry (such as the visible
+	 * text at the start of the line) are skipped. If an entry is cut
+	 * short, parsing stops there.
+	 * 
+	 * @param data Encoded lore line, which must not change while the view 
+	 *             is in use
+	 * @return     Parsed view of the line
+	 **************************************************************************/
+	static DecodedLore parse( CharSequence data ) {
+		int header = LoreCodec.findHeader( data );
+		if( header == -1 ) return parseV1( data );
+		header += LoreCodec.HEADER.length();
+		return parseV2( data, header + LoreCodec.getDirectoryLength( data, header ) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// keys found in a line, registered ones are reused
+	private static MetaKey createKey( String name, DataType type ) {
+		MetaKey key = MetaKey.lookup( name, type );
+		return key != null ? key : new MetaKey( name, type );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static DecodedLore parseV2( CharSequence data, int index ) {
+		Map<MetaKey,Entry> entries = new LinkedHashMap<MetaKey,Entry>();
+		int length = data.length();
+		
+		while( index < length - 1 ) {
+			DataType type = LoreCodec.getTagType( data, index );
+			if( type == null ) {
+				index++;
+				continue;
+			}
+			
+			int entryLength = LoreCodec.getEntryLength( data, index );
+			if( entryLength < 0 ) break; // truncated
+			
+			MetaKey key = createKey( LoreCodec.readName( data, index ), type );
+			int valueStart = LoreCodec.getValueStart( data, index );
+			if( !entries.containsKey( key ) ) {
+				entries.put( key, new Entry( key, index, valueStart, index + entryLength,
+						LoreCodec.readValue( data, valueStart, type ) ) );
+			}
+			index += entryLength;
+		}
+		
+		return new DecodedLore( data, 2, entries );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static DecodedLore parseV1( CharSequence data ) {
+		Map<MetaKey,Entry> entries = new LinkedHashMap<MetaKey,Entry>();
+		int length = data.length();
+		int index = 0;
+		
+		while( index < length - 1 ) {
+			DataType type = LoreCodec.getTagType( data, index );
+			if( type == null ) {
+				index++;
+				continue;
+			}
+			
+			int start = index;
+			index += 2;
+			
+			// key name, stops at the first data character or the next tag
+			StringBuilder name = new StringBuilder();
+			while( index < length - 1 && data.charAt(index) == COLOR_CHAR
+					&& data.charAt(index+1) < DATA_BASE ) {
+				name.append( data.charAt(index+1) );
+				index += 2;
+			}
+			
+			int valueStart = index;
+			int valueLength = LoreCodec.getValueLengthV1( data, valueStart, type );
+			if( valueLength < 0 || valueStart + valueLength > length ) break; // truncated
+			
+			MetaKey key = createKey( name.toString(), type );
+			if( !entries.containsKey( key ) ) {
+				entries.put( key, new Entry( key, start, valueStart, valueStart + valueLength,
+						LoreCodec.readValueV1( data, valueStart + 1, type ) ) );
+			}
+			index = valueStart + valueLength;
+		}
+		
+		return new DecodedLore( data, 1, entries );
+	}
+}
@@ -0,0 +1,1646 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/******************************************************************************
+ * Character level encoding of LoreMeta data.
+ * 
+ * Data is hidden in the first lore line by prefixing every character with
+ * the color character, which makes the client treat it as an (unknown) 
+ * formatting code. Each hidden character therefore costs two characters 
+ * in the lore line.
+ * 
+ * Version 1 (no header) stores one byte per hidden character, offset by
+ * DATA_BASE, and every character of the key name separately.
+ * 
+ * Version 2 starts with a header (color char + HEADER_BASE+2). After it,
+ * every hidden character is a 14-bit unit offset by UNIT_BASE. An entry 
+ * is laid out as:
+ * 
+ *   tag         TAG_BASE + type
+ *   name length (length << 1) | wide
+ *   name        7 bits per character, or 16 if wide, packed into units
+ *   value       BYTE 1 unit, SHORT 2, INT 3, LONG 5, UID 10 (least
+ *               significant half first), FLAG none, FLOAT 3, DOUBLE 5 
+ *               (raw IEEE bits), TEXT see below.
+ *               VARINT and VARLONG are zigzag encoded, ENUM (ordinal) is
+ *               not. They use 13 bits per unit, low bits first, with 
+ *               VAR_MORE set on every unit but the last.
+ * 
+ * TEXT values have two formats. The short format is one length unit
+ * followed by 8 bits per character, for Latin-1 text. The extended 
+ * format starts with TEXT_EXTENDED in place of the length:
+ * 
+ *   marker      TEXT_EXTENDED
+ *   mode        TEXT_UTF8, TEXT_UTF16 or TEXT_DEFLATE
+ *   count       2 units, payload size in bytes (chars for UTF16)
+ *   raw length  2 units, UTF-8 size before compression. DEFLATE only.
+ *   payload     UTF-8 bytes packed 8 bits each, UTF-16 chars packed 16 
+ *               bits each, or raw deflated UTF-8 bytes packed 8 bits each.
+ * 
+ * The writer picks whichever format is smallest.
+ * 
+ * Both versions are read. Writing always produces version 2, and a
+ * version 1 line is converted as a whole on its first write.
+ * 
+ * A version 2 line may have a directory right after the header, which 
+ * lets a single key be found without walking the entries:
+ * 
+ *   tag         DIRECTORY_TAG
+ *   count       number of slots
+ *   slots       3 units each: key hash, type, offset of the entry in 
+ *               units from the end of the directory. Sorted by hash.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+final class LoreCodec {
+	
+	static final char COLOR_CHAR = '\u00A7';
+	
+	// offset added to data when setting char values (version 1)
+	static final int DATA_BASE = 0x100;
+	
+	// offset added to the type index in entry tags
+	static final int TAG_BASE = 0x200;
+	
+	// offset added to the format version in the header
+	static final int HEADER_BASE = 0x2F0;
+	
+	// offset added to unit values (version 2)
+	static final int UNIT_BASE = 0x4000;
+	static final int UNIT_BITS = 14;
+	static final int UNIT_MASK = (1<<UNIT_BITS)-1;
+	
+	// marks the entry directory
+	static final char DIRECTORY_TAG = 0x2E0;
+	
+	// returned by probe when a line has no directory
+	static final int NO_DIRECTORY = -2;
+	
+	// write a directory when a line is modified
+	private static volatile boolean directoryEnabled = false;
+	
+	// sort entries by key when a line is modified
+	private static volatile boolean canonicalOrder = false;
+	
+	// format version that is written
+	static final int VERSION = 2;
+	static final String HEADER = "" + COLOR_CHAR + (char)(HEADER_BASE + VERSION);
+	
+	// set on varint units that are followed by another
+	static final int VAR_MORE = 1 << (UNIT_BITS-1);
+	
+	// FNV-1a offset basis, fingerprints start from it
+	private static final long FINGERPRINT_SEED = 0xCBF29CE484222325L;
+	
+	// first TEXT unit that marks the extended format, instead of a length
+	static final int TEXT_EXTENDED = UNIT_MASK;
+	
+	// longest TEXT value in the short format
+	static final int MAX_SHORT_TEXT = UNIT_MASK - 1;
+	
+	// extended TEXT modes
+	static final int TEXT_UTF8 = 0;
+	static final int TEXT_UTF16 = 1;
+	static final int TEXT_DEFLATE = 2;
+	
+	// largest extended TEXT payload (two units)
+	static final int MAX_TEXT_PAYLOAD = (1 << (UNIT_BITS*2)) - 1;
+	
+	// UTF-8 size from which compressing TEXT values is tried
+	static final int COMPRESS_THRESHOLD = 64;
+	
+	// compress long TEXT values when it makes them smaller
+	private static volatile boolean compressionEnabled = true;
+	
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+	
+	//---------------------------------------------------------------------------------------------
+	private LoreCodec() {}
+	
+	/**************************************************************************
+	 * Find the version header in a line.
+	 * 
+	 * @return Index of the header, or -1 if the line is version 1.
+	 **************************************************************************/
+	static int findHeader( CharSequence data ) {
+		char header = HEADER.charAt(1);
+		for( int i = 0; i < data.length() - 1; i++ ) {
+			if( data.charAt(i) == COLOR_CHAR && data.charAt(i+1) == header ) return i;
+		}
+		return -1;
+	}
+	
+	/**************************************************************************
+	 * Read the type of an entry tag.
+	 * 
+	 * @return Type of the tag at index, or null if there isn't a tag there.
+	 **************************************************************************/
+	static DataType getTagType( CharSequence data, int index ) {
+		if( index + 1 >= data.length() ) return null;
+		if( data.charAt(index) != COLOR_CHAR ) return null;
+		return DataType.fromInt( data.charAt(index+1) - TAG_BASE );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// version 1
+	//---------------------------------------------------------------------------------------------
+	static short getPackedShort( CharSequence data, int offset ) {
+		return	(short)( ((data.charAt(offset+0) - DATA_BASE)    ) |
+				((data.charAt(offset+2) - DATA_BASE)<<8 ) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static int getPackedInt( CharSequence data, int offset ) {
+		return	((data.charAt(offset+0) - DATA_BASE)    ) | 
+				((data.charAt(offset+2) - DATA_BASE)<<8 ) |
+				((data.charAt(offset+4) - DATA_BASE)<<16) |
+				((data.charAt(offset+6) - DATA_BASE)<<24);
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static long getPackedLong( CharSequence data, int offset ) {
+		return	( ((long)getPackedInt( data, offset   ))&0xFFFFFFFFL )| 
+				( ((long)getPackedInt( data, offset+8 ))<<32 );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// number of characters used by a value, index points to the first value color char
+	static int getValueLengthV1( CharSequence data, int index, DataType type ) {
+		switch( type ) {
+		case TEXT:
+			if( index + 1 >= data.length() ) return -1;
+			return (data.charAt( index+1 ) - DATA_BASE)*2 + 2;
+		case BYTE:
+			return 2;
+		case SHORT:
+			return 4;
+		case INT:
+			return 8;
+		case LONG:
+			return 16;
+		case UID:
+			return 32;
+		case FLAG:
+			return 0;
+		default:
+			return -1;
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// index points to the first data char (after the color char)
+	static Object readValueV1( CharSequence data, int index, DataType type ) {
+		switch( type ) {
+		case TEXT:
+			int length = data.charAt( index ) - DATA_BASE;
+			index += 2;
+			StringBuilder string = new StringBuilder( length );
+			for( int i = 0; i < length; i++ ) {
+				string.append( data.charAt(index+i*2) );
+			}
+			return string.toString();
+		case BYTE:
+			return (byte)(data.charAt(index) - DATA_BASE) ;
+		case SHORT:
+			return getPackedShort( data, index );
+		case INT:
+			return getPackedInt( data, index );
+		case LONG:
+			return getPackedLong( data, index );
+		case UID:
+			return new UUID( getPackedLong( data, index+16 ), getPackedLong( data, index ) );
+		case FLAG:
+			return Boolean.valueOf(true);
+		default:
+			return null;
+		}
+	}
+	
+	/**************************************************************************
+	 * Find an entry in a version 1 line.
+	 * 
+	 * @param data Version 1 line
+	 * @param key  Key to look for
+	 * @return     Index of the first value character (the color char 
+	 *             before it), or -1 if not found.
+	 **************************************************************************/
+	static int findValueV1( CharSequence data, MetaKey key ) {
+		char[] formatted = key.getFormattedChars();
+		int length = data.length();
+		int index = 0;
+		
+		while( index < length - 1 ) {
+			DataType type = getTagType( data, index );
+			if( type == null ) {
+				index++;
+				continue;
+			}
+			
+			int start = index;
+			index += 2;
+			
+			// key name, stops at the first data character or the next tag
+			while( index < length - 1 && data.charAt(index) == COLOR_CHAR
+					&& data.charAt(index+1) < DATA_BASE ) {
+				index += 2;
+			}
+			
+			int valueLength = getValueLengthV1( data, index, type );
+			if( valueLength < 0 || index + valueLength > length ) return -1; // truncated
+			
+			if( index - start == formatted.length && regionMatches( data, start, formatted ) ) {
+				return index;
+			}
+			index += valueLength;
+		}
+		return -1;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// version 2
+	//---------------------------------------------------------------------------------------------
+	
+	// index points to the color char before the unit
+	static int unit( CharSequence data, int index ) {
+		return (data.charAt(index+1) - UNIT_BASE) & UNIT_MASK;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void appendUnit( StringBuilder output, int value ) {
+		output.append( COLOR_CHAR );
+		output.append( (char)(UNIT_BASE + (value & UNIT_MASK)) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static long readUnits( CharSequence data, int index, int count ) {
+		long value = 0;
+		for( int i = 0; i < count; i++ ) {
+			value |= ((long)unit( data, index + i*2 )) << (i*UNIT_BITS);
+		}
+		return value;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void writeUnits( StringBuilder output, long value, int count ) {
+		for( int i = 0; i < count; i++ ) {
+			appendUnit( output, (int)(value >>> (i*UNIT_BITS)) );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// number of units needed to hold count values of the given bit size
+	static int packedUnits( int count, int bits ) {
+		return (int)(((long)count * bits + UNIT_BITS - 1) / UNIT_BITS);
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void writePacked( StringBuilder output, CharSequence string, int bits ) {
+		int mask = (1<<bits)-1;
+		long buffer = 0;
+		int count = 0;
+		for( int i = 0; i < string.length(); i++ ) {
+			char c = string.charAt(i);
+			if( c > mask ) c = '?';
+			buffer |= ((long)c) << count;
+			count += bits;
+			while( count >= UNIT_BITS ) {
+				appendUnit( output, (int)buffer );
+				buffer >>>= UNIT_BITS;
+				count -= UNIT_BITS;
+			}
+		}
+		if( count > 0 ) appendUnit( output, (int)buffer );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void readPacked( CharSequence data, int index, int length, int bits, StringBuilder output ) {
+		int mask = (1<<bits)-1;
+		long buffer = 0;
+		int count = 0;
+		for( int i = 0; i < length; i++ ) {
+			while( count < bits ) {
+				buffer |= ((long)unit( data, index )) << count;
+				index += 2;
+				count += UNIT_BITS;
+			}
+			output.append( (char)(buffer & mask) );
+			buffer >>>= bits;
+			count -= bits;
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void writePacked( StringBuilder output, byte[] bytes, int length ) {
+		long buffer = 0;
+		int count = 0;
+		for( int i = 0; i < length; i++ ) {
+			buffer |= ((long)(bytes[i] & 0xFF)) << count;
+			count += 8;
+			while( count >= UNIT_BITS ) {
+				appendUnit( output, (int)buffer );
+				buffer >>>= UNIT_BITS;
+				count -= UNIT_BITS;
+			}
+		}
+		if( count > 0 ) appendUnit( output, (int)buffer );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void readPacked( CharSequence data, int index, byte[] output, int length ) {
+		long buffer = 0;
+		int count = 0;
+		for( int i = 0; i < length; i++ ) {
+			while( count < 8 ) {
+				buffer |= ((long)unit( data, index )) << count;
+				index += 2;
+				count += UNIT_BITS;
+			}
+			output[i] = (byte)buffer;
+			buffer >>>= 8;
+			count -= 8;
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static boolean isLatin1( CharSequence string ) {
+		for( int i = 0; i < string.length(); i++ ) {
+			if( string.charAt(i) > 0xFF ) return false;
+		}
+		return true;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// false if the string has an unpaired surrogate, which UTF-8 can't hold
+	private static boolean isWellFormed( CharSequence string ) {
+		for( int i = 0; i < string.length(); i++ ) {
+			char c = string.charAt(i);
+			if( !Character.isSurrogate( c ) ) continue;
+			if( !Character.isHighSurrogate( c ) || i + 1 == string.length()
+					|| !Character.isLowSurrogate( string.charAt(i+1) ) ) return false;
+			i++;
+		}
+		return true;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static boolean isAscii( CharSequence string ) {
+		for( int i = 0; i < string.length(); i++ ) {
+			if( string.charAt(i) >= 0x80 ) return false;
+		}
+		return true;
+	}
+	
+	/**************************************************************************
+	 * Compute the directory hash of an encoded key.
+	 **************************************************************************/
+	static int hashKey( String encodedKey ) {
+		return foldHash( encodedKey.hashCode() );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// same as hashKey, for an encoded key inside a line
+	private static int hashKey( CharSequence data, int start, int end ) {
+		int hash = 0;
+		for( int i = start; i < end; i++ ) {
+			hash = 31*hash + data.charAt(i);
+		}
+		return foldHash( hash );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static int foldHash( int hash ) {
+		return (hash ^ (hash >>> UNIT_BITS) ^ (hash >>> (UNIT_BITS*2))) & UNIT_MASK;
+	}
+	
+	/**************************************************************************
+	 * Encode the tag and name of a key.
+	 * 
+	 * Every entry written for the key starts with this string.
+	 **************************************************************************/
+	static String encodeKey( String name, DataType type ) {
+		boolean wide = !isAscii( name );
+		StringBuilder output = new StringBuilder();
+		output.append( COLOR_CHAR ).append( (char)(TAG_BASE + type.getInt()) );
+		appendUnit( output, (name.length() << 1) | (wide ? 1 : 0) );
+		writePacked( output, name, wide ? 16 : 7 );
+		return output.toString();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// index points to an entry tag
+	static int getNameLength( CharSequence data, int index ) {
+		return unit( data, index+2 ) >> 1;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static String readName( CharSequence data, int index ) {
+		int header = unit( data, index+2 );
+		StringBuilder name = new StringBuilder( header >> 1 );
+		readPacked( data, index+4, header >> 1, (header & 1) != 0 ? 16 : 7, name );
+		return name.toString();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// index points to a complete entry, checks the first character of its
+	// name without decoding the rest, see MetaKey.isReserved
+	static boolean isReservedEntry( CharSequence data, int index ) {
+		int header = unit( data, index+2 );
+		if( header >> 1 == 0 ) return false;
+		int bits = (header & 1) != 0 ? 16 : 7;
+		long buffer = unit( data, index+4 );
+		if( bits > UNIT_BITS ) buffer |= ((long)unit( data, index+6 )) << UNIT_BITS;
+		return (char)(buffer & ((1<<bits)-1)) == MetaKey.RESERVED_PREFIX;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// index points to an entry tag, returns the index of the first value unit
+	static int getValueStart( CharSequence data, int index ) {
+		int header = unit( data, index+2 );
+		return index + 4 + packedUnits( header >> 1, (header & 1) != 0 ? 16 : 7 ) * 2;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// number of units used by fixed size values, -1 for variable size
+	static int getValueUnits( DataType type ) {
+		switch( type ) {
+		case BYTE:
+			return 1;
+		case SHORT:
+			return 2;
+		case INT:
+			return 3;
+		case LONG:
+			return 5;
+		case UID:
+			return 10;
+		case FLAG:
+			return 0;
+		case FLOAT:
+			return 3;
+		case DOUBLE:
+			return 5;
+		default:
+			return -1;
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// number of units in a value, -1 if it is malformed or cut short
+	static int getValueUnits( CharSequence data, int valueStart, DataType type ) {
+		switch( type ) {
+		case TEXT:
+			return getTextUnits( data, valueStart );
+		case VARINT:
+		case VARLONG:
+		case ENUM:
+			return getVarUnits( data, valueStart );
+		default:
+			return getValueUnits( type );
+		}
+	}
+	
+	/**************************************************************************
+	 * Measure an entry.
+	 * 
+	 * @param data  Version 2 line
+	 * @param index Index of the entry tag
+	 * @return      Number of characters used by the entry, or -1 if it is
+	 *              malformed or cut short.
+	 **************************************************************************/
+	static int getEntryLength( CharSequence data, int index ) {
+		int length = data.length();
+		DataType type = getTagType( data, index );
+		if( type == null || index + 4 > length ) return -1;
+		
+		int valueStart = getValueStart( data, index );
+		int units = getValueUnits( data, valueStart, type );
+		if( units < 0 ) return -1;
+		
+		int end = valueStart + units*2;
+		if( end > length ) return -1;
+		return end - index;
+	}
+	
+	/**************************************************************************
+	 * Decode the value of an entry.
+	 * 
+	 * @param data       Version 2 line
+	 * @param valueStart Index of the first value unit
+	 * @param type       Type of the entry
+	 * @return           Decoded value
+	 **************************************************************************/
+	static Object readValue( CharSequence data, int valueStart, DataType type ) {
+		switch( type ) {
+		case TEXT:
+			return readText( data, valueStart );
+		case BYTE:
+			return (byte)unit( data, valueStart );
+		case SHORT:
+			return (short)readUnits( data, valueStart, 2 );
+		case INT:
+			return (int)readUnits( data, valueStart, 3 );
+		case LONG:
+			return readUnits( data, valueStart, 5 );
+		case UID:
+			return new UUID( readUnits( data, valueStart+10, 5 ), readUnits( data, valueStart, 5 ) );
+		case FLAG:
+			return Boolean.valueOf(true);
+		case VARINT:
+			return (int)unzigzag( readVar( data, valueStart ) );
+		case VARLONG:
+			return unzigzag( readVar( data, valueStart ) );
+		case FLOAT:
+			return Float.intBitsToFloat( (int)readUnits( data, valueStart, 3 ) );
+		case DOUBLE:
+			return Double.longBitsToDouble( readUnits( data, valueStart, 5 ) );
+		case ENUM:
+			return (int)readVar( data, valueStart );
+		default:
+			return null;
+		}
+	}
+	
+	/**************************************************************************
+	 * Read an INT, LONG, VARINT or VARLONG value without boxing it.
+	 * 
+	 * @param data       Version 2 line
+	 * @param valueStart Index of the first value unit
+	 * @param type       Type of the entry
+	 * @return           Decoded value, INT and VARINT are sign extended
+	 **************************************************************************/
+	static long readInteger( CharSequence data, int valueStart, DataType type ) {
+		switch( type ) {
+		case INT:
+			return (int)readUnits( data, valueStart, 3 );
+		case VARINT:
+			return (int)unzigzag( readVar( data, valueStart ) );
+		case VARLONG:
+			return unzigzag( readVar( data, valueStart ) );
+		default:
+			return readUnits( data, valueStart, 5 );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// number of units in a varint, -1 if it is cut short or too long
+	static int getVarUnits( CharSequence data, int valueStart ) {
+		int length = data.length();
+		for( int i = 0; i < 5; i++ ) {
+			int index = valueStart + i*2;
+			if( index + 2 > length ) return -1;
+			if( (unit( data, index ) & VAR_MORE) == 0 ) return i + 1;
+		}
+		return -1;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static long readVar( CharSequence data, int index ) {
+		long value = 0;
+		for( int shift = 0; ; shift += UNIT_BITS-1, index += 2 ) {
+			int unit = unit( data, index );
+			value |= ((long)(unit & (VAR_MORE-1))) << shift;
+			if( (unit & VAR_MORE) == 0 ) return value;
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void writeVar( StringBuilder output, long value ) {
+		do {
+			int unit = (int)value & (VAR_MORE-1);
+			value >>>= UNIT_BITS-1;
+			appendUnit( output, value != 0 ? unit | VAR_MORE : unit );
+		} while( value != 0 );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static long zigzag( long value ) {
+		return (value << 1) ^ (value >> 63);
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static long unzigzag( long value ) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	/**************************************************************************
+	 * Compute the size of an entry without encoding it.
+	 * 
+	 * @param key   Key of the entry
+	 * @param value Value of the entry
+	 * @return      Number of characters the entry takes in a version 2 
+	 *              line. For text that may be compressed, this is the size
+	 *              before compression.
+	 **************************************************************************/
+	static int getEntrySize( MetaKey key, Object value ) {
+		return key.getEncodedChars().length + getValueSize( key.getDataType(), value );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// characters used by a value, see getEntrySize
+	static int getValueSize( DataType type, Object value ) {
+		switch( type ) {
+		case TEXT:
+			return getTextSize( (String)value );
+		case VARINT:
+			return getVarUnits( zigzag( (Integer)value ) & 0xFFFFFFFFL ) * 2;
+		case VARLONG:
+			return getVarUnits( zigzag( (Long)value ) ) * 2;
+		case ENUM:
+			return getVarUnits( value instanceof Enum ? ((Enum<?>)value).ordinal() : (Integer)value ) * 2;
+		default:
+			return getValueUnits( type ) * 2;
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// number of units writeVar uses for a value
+	static int getVarUnits( long value ) {
+		int units = 1;
+		while( (value >>>= UNIT_BITS-1) != 0 ) units++;
+		return units;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// characters appendText uses when it doesn't compress
+	private static int getTextSize( String value ) {
+		int length = value.length();
+		if( length <= MAX_SHORT_TEXT && isLatin1( value ) ) {
+			return (1 + packedUnits( length, 8 )) * 2;
+		}
+		
+		int utf8 = 0;
+		for( int i = 0; i < length; i++ ) {
+			char c = value.charAt(i);
+			if( c < 0x80 ) {
+				utf8 += 1;
+			} else if( c < 0x800 ) {
+				utf8 += 2;
+			} else if( Character.isHighSurrogate( c ) && i + 1 < length 
+					&& Character.isLowSurrogate( value.charAt(i+1) ) ) {
+				utf8 += 4;
+				i++;
+			} else if( Character.isSurrogate( c ) ) {
+				return (4 + packedUnits( length, 16 )) * 2; // unpaired, only UTF-16 keeps it
+			} else {
+				utf8 += 3;
+			}
+		}
+		if( utf8 <= length * 2 ) return (4 + packedUnits( utf8, 8 )) * 2;
+		return (4 + packedUnits( length, 16 )) * 2;
+	}
+	
+	/**************************************************************************
+	 * Compute the length a line would have after writing an entry.
+	 * 
+	 * Version 2 lines are measured without encoding anything. Version 1 
+	 * lines are converted on a copy, as their first write converts them.
+	 * 
+	 * @param data  Encoded line
+	 * @param key   Key of the entry
+	 * @param value New value, or null to delete the entry
+	 * @return      Length of the line after the write. For text that may
+	 *              be compressed, the size before compression is used.
+	 **************************************************************************/
+	static int estimateWrite( CharSequence data, MetaKey key, Object value ) {
+		int header = findHeader( data );
+		if( header == -1 ) {
+			if( value == null && locate( data, key ) == -1 ) return data.length();
+			StringBuilder copy = new StringBuilder( data );
+			if( writeEntry( copy, key, value ) ) updateDirectory( copy );
+			return copy.length();
+		}
+		
+		int at = locate( data, key );
+		int oldSize = 0;
+		if( at != -1 ) {
+			oldSize = key.getEncodedChars().length 
+					+ getValueUnits( data, at >> 1, key.getDataType() ) * 2;
+		}
+		if( value == null && at == -1 ) return data.length();
+		
+		int newSize = value == null ? 0 : getEntrySize( key, value );
+		if( at != -1 && newSize == oldSize ) return data.length(); // overwritten in place
+		
+		int start = header + HEADER.length();
+		int directory = getDirectoryLength( data, start );
+		int newDirectory = 0;
+		if( directoryEnabled ) {
+			int count = countEntries( data, start + directory );
+			if( at == -1 ) count++;
+			if( value == null ) count--;
+			if( count > 0 ) newDirectory = 4 + count*6;
+		}
+		return data.length() - oldSize + newSize - directory + newDirectory;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// number of entries in a version 2 line, index is right after the directory
+	private static int countEntries( CharSequence data, int index ) {
+		int count = 0;
+		while( index < data.length() - 1 ) {
+			if( getTagType( data, index ) == null ) {
+				index++;
+				continue;
+			}
+			int length = getEntryLength( data, index );
+			if( length < 0 ) break;
+			count++;
+			index += length;
+		}
+		return count;
+	}
+	
+	/**************************************************************************
+	 * Measure a TEXT value.
+	 * 
+	 * @param data       Version 2 line
+	 * @param valueStart Index of the first value unit
+	 * @return           Number of units in the value, or -1 if it is 
+	 *                   malformed or cut short.
+	 **************************************************************************/
+	static int getTextUnits( CharSequence data, int valueStart ) {
+		int length = data.length();
+		if( valueStart + 2 > length ) return -1;
+		int first = unit( data, valueStart );
+		if( first != TEXT_EXTENDED ) return 1 + packedUnits( first, 8 );
+		
+		if( valueStart + 8 > length ) return -1;
+		int count = (int)readUnits( data, valueStart+4, 2 );
+		switch( unit( data, valueStart+2 ) ) {
+		case TEXT_UTF8:
+			return 4 + packedUnits( count, 8 );
+		case TEXT_UTF16:
+			return 4 + packedUnits( count, 16 );
+		case TEXT_DEFLATE:
+			return 6 + packedUnits( count, 8 );
+		default:
+			return -1;
+		}
+	}
+	
+	/**************************************************************************
+	 * Decode a TEXT value.
+	 * 
+	 * @param data       Version 2 line
+	 * @param valueStart Index of the first value unit
+	 * @return           Decoded text, or null if compressed text is corrupt.
+	 **************************************************************************/
+	static String readText( CharSequence data, int valueStart ) {
+		int first = unit( data, valueStart );
+		if( first != TEXT_EXTENDED ) {
+			StringBuilder string = new StringBuilder( first );
+			readPacked( data, valueStart+2, first, 8, string );
+			return string.toString();
+		}
+		
+		int mode = unit( data, valueStart+2 );
+		int count = (int)readUnits( data, valueStart+4, 2 );
+		if( mode == TEXT_UTF16 ) {
+			StringBuilder string = new StringBuilder( count );
+			readPacked( data, valueStart+8, count, 16, string );
+			return string.toString();
+		}
+		if( mode == TEXT_UTF8 ) {
+			byte[] bytes = new byte[count];
+			readPacked( data, valueStart+8, bytes, count );
+			return new String( bytes, UTF_8 );
+		}
+		
+		int rawLength = (int)readUnits( data, valueStart+8, 2 );
+		byte[] bytes = new byte[count + 1]; // extra byte for the inflater, see Inflater(boolean)
+		readPacked( data, valueStart+12, bytes, count );
+		byte[] raw = inflate( bytes, rawLength );
+		return raw == null ? null : new String( raw, UTF_8 );
+	}
+	
+	/**************************************************************************
+	 * Encode a TEXT value in its smallest format.
+	 * 
+	 * @param output Where to append the value
+	 * @param value  Text to encode
+	 * @throws IllegalArgumentException if the text is too long to store
+	 **************************************************************************/
+	static void appendText( StringBuilder output, String value ) {
+		appendText( output, value, compressionEnabled );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void appendText( StringBuilder output, String value, boolean compress ) {
+		int length = value.length();
+		boolean latin1 = length <= MAX_SHORT_TEXT && isLatin1( value );
+		
+		// short Latin-1 text is already dense
+		if( latin1 && !(compress && length >= COMPRESS_THRESHOLD) ) {
+			appendUnit( output, length );
+			writePacked( output, value, 8 );
+			return;
+		}
+		
+		int mode;
+		int units;
+		byte[] utf8 = value.getBytes( UTF_8 );
+		boolean wellFormed = latin1 || isWellFormed( value );
+		if( latin1 ) {
+			mode = -1;
+			units = 1 + packedUnits( length, 8 );
+		} else if( wellFormed && utf8.length <= length * 2 ) {
+			mode = TEXT_UTF8;
+			units = 4 + packedUnits( utf8.length, 8 );
+		} else {
+			mode = TEXT_UTF16;
+			units = 4 + packedUnits( length, 16 );
+		}
+		
+		byte[] deflated = null;
+		if( compress && wellFormed && utf8.length >= COMPRESS_THRESHOLD && utf8.length <= MAX_TEXT_PAYLOAD ) {
+			deflated = deflate( utf8 );
+			if( 6 + packedUnits( deflated.length, 8 ) < units ) {
+				mode = TEXT_DEFLATE;
+			}
+		}
+		
+		switch( mode ) {
+		case TEXT_UTF8:
+			if( utf8.length > MAX_TEXT_PAYLOAD ) break;
+			appendUnit( output, TEXT_EXTENDED );
+			appendUnit( output, TEXT_UTF8 );
+			writeUnits( output, utf8.length, 2 );
+			writePacked( output, utf8, utf8.length );
+			return;
+		case TEXT_UTF16:
+			if( length > MAX_TEXT_PAYLOAD ) break;
+			appendUnit( output, TEXT_EXTENDED );
+			appendUnit( output, TEXT_UTF16 );
+			writeUnits( output, length, 2 );
+			writePacked( output, value, 16 );
+			return;
+		case TEXT_DEFLATE:
+			appendUnit( output, TEXT_EXTENDED );
+			appendUnit( output, TEXT_DEFLATE );
+			writeUnits( output, deflated.length, 2 );
+			writeUnits( output, utf8.length, 2 );
+			writePacked( output, deflated, deflated.length );
+			return;
+		default:
+			appendUnit( output, length );
+			writePacked( output, value, 8 );
+			return;
+		}
+		throw new IllegalArgumentException( "Text value is too long." );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void setCompressionEnabled( boolean enabled ) {
+		compressionEnabled = enabled;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static boolean isCompressionEnabled() {
+		return compressionEnabled;
+	}
+	
+	/**************************************************************************
+	 * Append an entry to a version 2 line.
+	 **************************************************************************/
+	static void appendEntry( StringBuilder output, MetaKey key, Object value ) {
+		output.append( key.getEncodedKey() );
+		appendValue( output, key.getDataType(), value );
+	}
+	
+	/**************************************************************************
+	 * Append the value part of an entry.
+	 * 
+	 * ENUM values may be the enum constant or its ordinal.
+	 **************************************************************************/
+	static void appendValue( StringBuilder output, DataType type, Object value ) {
+		switch( type ) {
+		case TEXT:
+			appendText( output, (String)value );
+			break;
+		case BYTE:
+			writeUnits( output, (Byte)value, 1 );
+			break;
+		case SHORT:
+			writeUnits( output, (Short)value, 2 );
+			break;
+		case INT:
+			writeUnits( output, (Integer)value, 3 );
+			break;
+		case LONG:
+			writeUnits( output, (Long)value, 5 );
+			break;
+		case UID:
+			writeUnits( output, ((UUID)value).getLeastSignificantBits(), 5 );
+			writeUnits( output, ((UUID)value).getMostSignificantBits(), 5 );
+			break;
+		case FLAG:
+			// no data for flags.
+			break;
+		case VARINT:
+			writeVar( output, zigzag( (Integer)value ) & 0xFFFFFFFFL );
+			break;
+		case VARLONG:
+			writeVar( output, zigzag( (Long)value ) );
+			break;
+		case FLOAT:
+			writeUnits( output, Float.floatToIntBits( (Float)value ), 3 );
+			break;
+		case DOUBLE:
+			writeUnits( output, Double.doubleToLongBits( (Double)value ), 5 );
+			break;
+		case ENUM:
+			writeVar( output, value instanceof Enum ? ((Enum<?>)value).ordinal() : (Integer)value );
+			break;
+		default:
+			break;
+		}
+	}
+	
+
+	//---------------------------------------------------------------------------------------------
+	private static boolean regionMatches( CharSequence data, int index, char[] chars ) {
+		if( index + chars.length > data.length() ) return false;
+		for( int i = 0; i < chars.length; i++ ) {
+			if( data.charAt(index+i) != chars[i] ) return false;
+		}
+		return true;
+	}
+	
+	/**************************************************************************
+	 * Find an entry in a version 2 line.
+	 * 
+	 * @param data  Version 2 line
+	 * @param index Where to start searching (after the header)
+	 * @param key   Key to look for
+	 * @return      Index of the entry tag, or -1 if not found.
+	 **************************************************************************/
+	static int findEntry( CharSequence data, int index, MetaKey key ) {
+		char[] encodedKey = key.getEncodedChars();
+		while( index < data.length() - 1 ) {
+			if( getTagType( data, index ) == null ) {
+				index++;
+				continue;
+			}
+			int length = getEntryLength( data, index );
+			if( length < 0 ) return -1;
+			if( regionMatches( data, index, encodedKey ) ) return index;
+			index += length;
+		}
+		return -1;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void setDirectoryEnabled( boolean enabled ) {
+		directoryEnabled = enabled;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static boolean isDirectoryEnabled() {
+		return directoryEnabled;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void setCanonicalOrder( boolean enabled ) {
+		canonicalOrder = enabled;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static boolean isCanonicalOrder() {
+		return canonicalOrder;
+	}
+	
+	/**************************************************************************
+	 * Measure the directory.
+	 * 
+	 * @param data  Version 2 line
+	 * @param index Index right after the header
+	 * @return      Number of characters used by the directory, 0 if there
+	 *              isn't one.
+	 **************************************************************************/
+	static int getDirectoryLength( CharSequence data, int index ) {
+		if( index + 4 > data.length() ) return 0;
+		if( data.charAt(index) != COLOR_CHAR || data.charAt(index+1) != DIRECTORY_TAG ) return 0;
+		int length = 4 + unit( data, index+2 ) * 6;
+		return index + length <= data.length() ? length : 0;
+	}
+	
+	/**************************************************************************
+	 * Find an entry with the directory.
+	 * 
+	 * @param data Encoded line
+	 * @param key  Key to look for
+	 * @return     Index of the entry tag, -1 if the key doesn't exist, or
+	 *             NO_DIRECTORY if the line doesn't have a directory.
+	 **************************************************************************/
+	static int probe( CharSequence data, MetaKey key ) {
+		int header = findHeader( data );
+		if( header == -1 ) return NO_DIRECTORY;
+		return probe( data, header, key );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// header is the index of the version 2 header
+	private static int probe( CharSequence data, int header, MetaKey key ) {
+		int directory = header + HEADER.length();
+		int directoryLength = getDirectoryLength( data, directory );
+		if( directoryLength == 0 ) return NO_DIRECTORY;
+		
+		int slots = directory + 4;
+		int count = unit( data, directory+2 );
+		int entries = directory + directoryLength;
+		int hash = key.getKeyHash();
+		
+		// find the first slot with a matching hash
+		int low = 0, high = count;
+		while( low < high ) {
+			int middle = (low + high) >>> 1;
+			if( unit( data, slots + middle*6 ) < hash ) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		
+		for( int slot = low; slot < count; slot++ ) {
+			int index = slots + slot*6;
+			if( unit( data, index ) != hash ) break;
+			if( unit( data, index+2 ) != key.getDataType().getInt() ) continue;
+			int entry = entries + unit( data, index+4 )*2;
+			if( !regionMatches( data, entry, key.getEncodedChars() ) ) continue;
+			// the directory may outlive the end of a cut line
+			return getEntryLength( data, entry ) < 0 ? -1 : entry;
+		}
+		return -1;
+	}
+	
+	/**************************************************************************
+	 * Rebuild the directory of a line.
+	 * 
+	 * Any existing directory is removed, and a new one is written if 
+	 * directories are enabled. The directory is skipped when an entry
+	 * starts too far into the line to be addressed by one unit. In
+	 * canonical order mode the entries are sorted first.
+	 * 
+	 * @param data Line to update
+	 **************************************************************************/
+	static void updateDirectory( StringBuilder data ) {
+		int header = findHeader( data );
+		if( header == -1 ) return;
+		int directory = header + HEADER.length();
+		data.delete( directory, directory + getDirectoryLength( data, directory ) );
+		if( canonicalOrder ) sortEntries( data, directory );
+		if( !directoryEnabled ) return;
+		
+		// slots are packed as hash:type:offset so they sort by hash
+		long[] slots = new long[8];
+		int count = 0;
+		int index = directory;
+		while( index < data.length() - 1 ) {
+			DataType type = getTagType( data, index );
+			if( type == null ) {
+				index++;
+				continue;
+			}
+			int length = getEntryLength( data, index );
+			if( length < 0 ) break;
+			
+			int offset = index - directory;
+			if( (offset & 1) != 0 || (offset >> 1) > UNIT_MASK ) return;
+			
+			if( count == slots.length ) slots = Arrays.copyOf( slots, count * 2 );
+			slots[count++] = ((long)hashKey( data, index, getValueStart( data, index ) ) << 32)
+					| ((long)type.getInt() << 16) | (offset >> 1);
+			index += length;
+		}
+		if( count == 0 ) return;
+		
+		Arrays.sort( slots, 0, count );
+		StringBuilder output = new StringBuilder( 4 + count*6 );
+		output.append( COLOR_CHAR ).append( DIRECTORY_TAG );
+		appendUnit( output, count );
+		for( int i = 0; i < count; i++ ) {
+			appendUnit( output, (int)(slots[i] >>> 32) );
+			appendUnit( output, (int)(slots[i] >>> 16) );
+			appendUnit( output, (int)slots[i] );
+		}
+		data.insert( directory, output );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// sorts the entries of a version 2 line by encoded key, index is right after the directory.
+	// Lines with other characters before or between the entries are left alone, as there is
+	// no right place to move them to.
+	static void sortEntries( StringBuilder data, int index ) {
+		List<int[]> entries = new ArrayList<int[]>();
+		boolean sorted = true;
+		int start = index;
+		int end = index;
+		while( index < data.length() - 1 ) {
+			if( getTagType( data, index ) == null ) {
+				index++;
+				continue;
+			}
+			int length = getEntryLength( data, index );
+			if( length < 0 ) break;
+			if( index != end ) return;
+			
+			int[] entry = { index, getValueStart( data, index ), index + length };
+			if( !entries.isEmpty() && compareKeys( data, entries.get( entries.size()-1 ), entry ) > 0 ) {
+				sorted = false;
+			}
+			entries.add( entry );
+			index += length;
+			end = index;
+		}
+		if( sorted ) return;
+		
+		final CharSequence source = data.toString();
+		Collections.sort( entries, new Comparator<int[]>() {
+			@Override
+			public int compare( int[] a, int[] b ) {
+				return compareKeys( source, a, b );
+			}
+		});
+		
+		// anything after the last readable entry is kept at the end
+		String rest = source.subSequence( end, source.length() ).toString();
+		data.setLength( start );
+		for( int[] entry : entries ) {
+			data.append( source, entry[0], entry[2] );
+		}
+		data.append( rest );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// entries are {start, valueStart, end}
+	private static int compareKeys( CharSequence data, int[] a, int[] b ) {
+		int length = Math.min( a[1] - a[0], b[1] - b[0] );
+		for( int i = 0; i < length; i++ ) {
+			int diff = data.charAt( a[0]+i ) - data.charAt( b[0]+i );
+			if( diff != 0 ) return diff;
+		}
+		return (a[1] - a[0]) - (b[1] - b[0]);
+	}
+	
+	/**************************************************************************
+	 * Compute a fingerprint of the entries in a line.
+	 * 
+	 * Entries are hashed as they are encoded, so nothing is decoded except
+	 * compressed text, which is hashed as if it were stored uncompressed.
+	 * The order of the entries doesn't matter, and version 1 lines give 
+	 * the same result as their version 2 conversion.
+	 * 
+	 * @param data Encoded line
+	 * @param keys Keys to include, or null for every entry except the
+	 *             reserved ones
+	 * @return     64-bit fingerprint; lines with the same entries have the
+	 *             same fingerprint.
+	 **************************************************************************/
+	static long fingerprint( CharSequence data, MetaKey[] keys ) {
+		int header = findHeader( data );
+		long sum = 0;
+		int count = 0;
+		
+		if( header == -1 ) {
+			for( DecodedLore.Entry entry : DecodedLore.parse( data ).getEntries() ) {
+				if( keys == null ? entry.key.isReserved() : !contains( keys, entry.key ) ) continue;
+				StringBuilder encoded = new StringBuilder();
+				encoded.append( entry.key.getEncodedChars() );
+				if( entry.value != null ) {
+					if( entry.key.getDataType() == DataType.TEXT ) {
+						appendText( encoded, (String)entry.value, false );
+					} else {
+						appendValue( encoded, entry.key.getDataType(), entry.value );
+					}
+				}
+				sum += mix64( hashChars( FINGERPRINT_SEED, encoded, 0, encoded.length() ) );
+				count++;
+			}
+		} else if( keys != null ) {
+			for( MetaKey key : keys ) {
+				int at = locate( data, key );
+				if( at == -1 ) continue;
+				char[] encodedKey = key.getEncodedChars();
+				long hash = hashChars( FINGERPRINT_SEED, CharBuffer.wrap( encodedKey ), 0, encodedKey.length );
+				sum += mix64( hashValue( hash, data, at >> 1, key.getDataType() ) );
+				count++;
+			}
+		} else {
+			int index = header + HEADER.length();
+			index += getDirectoryLength( data, index );
+			while( index < data.length() - 1 ) {
+				DataType type = getTagType( data, index );
+				if( type == null ) {
+					index++;
+					continue;
+				}
+				int length = getEntryLength( data, index );
+				if( length < 0 ) break;
+				if( isReservedEntry( data, index ) ) {
+					index += length;
+					continue;
+				}
+				
+				int valueStart = getValueStart( data, index );
+				long hash = hashChars( FINGERPRINT_SEED, data, index, valueStart );
+				sum += mix64( hashValue( hash, data, valueStart, type ) );
+				count++;
+				index += length;
+			}
+		}
+		return mix64( sum + count );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// continues an entry hash over its value
+	private static long hashValue( long hash, CharSequence data, int valueStart, DataType type ) {
+		int end = valueStart + getValueUnits( data, valueStart, type ) * 2;
+		if( type == DataType.TEXT && end - valueStart >= 4 
+				&& unit( data, valueStart ) == TEXT_EXTENDED 
+				&& unit( data, valueStart+2 ) == TEXT_DEFLATE ) {
+			String text = readText( data, valueStart );
+			if( text != null ) {
+				StringBuilder raw = new StringBuilder();
+				appendText( raw, text, false );
+				return hashChars( hash, raw, 0, raw.length() );
+			}
+		}
+		return hashChars( hash, data, valueStart, end );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// FNV-1a over chars
+	private static long hashChars( long hash, CharSequence data, int start, int end ) {
+		for( int i = start; i < end; i++ ) {
+			hash = (hash ^ data.charAt(i)) * 0x100000001B3L;
+		}
+		return hash;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// finalizer from MurmurHash3, spreads entry hashes before they are summed
+	private static long mix64( long hash ) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static boolean contains( MetaKey[] keys, MetaKey key ) {
+		for( MetaKey k : keys ) {
+			if( key.equals( k ) ) return true;
+		}
+		return false;
+	}
+	
+	/**************************************************************************
+	 * Find the value of an entry, in a line of either version.
+	 * 
+	 * Only the entry is read, the rest of the line is skipped over or 
+	 * (with a directory) not looked at.
+	 * 
+	 * @param data Encoded line
+	 * @param key  Key to look for
+	 * @return     Index of the first value character (the color char
+	 *             before it) shifted left by one, with the lowest bit set 
+	 *             for a version 1 line. -1 if the key doesn't exist.
+	 **************************************************************************/
+	static int locate( CharSequence data, MetaKey key ) {
+		int header = findHeader( data );
+		if( header == -1 ) {
+			int index = findValueV1( data, key );
+			return index == -1 ? -1 : (index << 1) | 1;
+		}
+		
+		int entry = probe( data, header, key );
+		if( entry == NO_DIRECTORY ) {
+			int start = header + HEADER.length();
+			entry = findEntry( data, start + getDirectoryLength( data, start ), key );
+		}
+		return entry == -1 ? -1 : getValueStart( data, entry ) << 1;
+	}
+	
+	/**************************************************************************
+	 * Find the values of several entries with a single pass over a line.
+	 * 
+	 * @param data      Encoded line
+	 * @param keys      Keys to look for
+	 * @param positions Receives the position of each key in the format 
+	 *                  returned by locate(), or -1 if it doesn't exist.
+	 **************************************************************************/
+	static void locateAll( CharSequence data, MetaKey[] keys, int[] positions ) {
+		Arrays.fill( positions, 0, keys.length, -1 );
+		int header = findHeader( data );
+		if( header == -1 ) {
+			locateAllV1( data, keys, positions );
+			return;
+		}
+		
+		int index = header + HEADER.length();
+		index += getDirectoryLength( data, index );
+		int remaining = keys.length;
+		while( remaining > 0 && index < data.length() - 1 ) {
+			if( getTagType( data, index ) == null ) {
+				index++;
+				continue;
+			}
+			int length = getEntryLength( data, index );
+			if( length < 0 ) return;
+			
+			for( int i = 0; i < keys.length; i++ ) {
+				if( positions[i] == -1 && regionMatches( data, index, keys[i].getEncodedChars() ) ) {
+					positions[i] = getValueStart( data, index ) << 1;
+					remaining--;
+				}
+			}
+			index += length;
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void locateAllV1( CharSequence data, MetaKey[] keys, int[] positions ) {
+		int length = data.length();
+		int index = 0;
+		int remaining = keys.length;
+		
+		while( remaining > 0 && index < length - 1 ) {
+			DataType type = getTagType( data, index );
+			if( type == null ) {
+				index++;
+				continue;
+			}
+			
+			int start = index;
+			index += 2;
+			while( index < length - 1 && data.charAt(index) == COLOR_CHAR
+					&& data.charAt(index+1) < DATA_BASE ) {
+				index += 2;
+			}
+			
+			int valueLength = getValueLengthV1( data, index, type );
+			if( valueLength < 0 || index + valueLength > length ) return;
+			
+			for( int i = 0; i < keys.length; i++ ) {
+				char[] formatted = keys[i].getFormattedChars();
+				if( positions[i] == -1 && index - start == formatted.length 
+						&& regionMatches( data, start, formatted ) ) {
+					positions[i] = (index << 1) | 1;
+					remaining--;
+				}
+			}
+			index += valueLength;
+		}
+	}
+	
+	/**************************************************************************
+	 * Convert a line to version 2.
+	 * 
+	 * Version 1 entries are removed from the line and written again in 
+	 * version 2 after the header. Any other text in the line is kept.
+	 * 
+	 * @param data Line to convert
+	 * @return     Index of the version 2 header
+	 **************************************************************************/
+	static int upgrade( StringBuilder data ) {
+		int header = findHeader( data );
+		if( header != -1 ) return header;
+		
+		List<DecodedLore.Entry> entries = new ArrayList<DecodedLore.Entry>(
+				DecodedLore.parse( data ).getEntries() );
+		
+		// delete from the end so the earlier offsets stay valid
+		Collections.reverse( entries );
+		for( DecodedLore.Entry entry : entries ) {
+			data.delete( entry.start, entry.end );
+		}
+		Collections.reverse( entries );
+		
+		header = data.length();
+		data.append( HEADER );
+		for( DecodedLore.Entry entry : entries ) {
+			appendEntry( data, entry.key, entry.value );
+		}
+		return header;
+	}
+	
+	/**************************************************************************
+	 * Replace an entry in a line.
+	 * 
+	 * If the new value has the same encoded size as the old one (fixed
+	 * size types, flags, and text of the same length) it is written over 
+	 * the old value in place and nothing else in the line changes. 
+	 * Otherwise the line is converted to version 2 if needed and any 
+	 * directory is removed. An existing entry keeps its position, and new
+	 * entries are added to the end; in canonical order mode updateDirectory
+	 * then sorts them. Removing an entry that doesn't exist leaves the line
+	 * as it is, so lines without data don't get a header.
+	 * 
+	 * @param data  Line to modify
+	 * @param key   Key of the entry
+	 * @param value New value, or null to delete the entry
+	 * @return      true if entries were moved, in which case updateDirectory
+	 *              must be called after the last change to the line.
+	 **************************************************************************/
+	static boolean writeEntry( StringBuilder data, MetaKey key, Object value ) {
+		if( value != null && overwrite( data, key, value ) ) return false;
+		if( value == null && locate( data, key ) == -1 ) return false;
+		
+		int header = upgrade( data ) + HEADER.length();
+		data.delete( header, header + getDirectoryLength( data, header ) );
+		int index = findEntry( data, header, key );
+		if( value == null ) {
+			if( index != -1 ) data.delete( index, index + getEntryLength( data, index ) );
+		} else if( index == -1 ) {
+			appendEntry( data, key, value );
+		} else {
+			StringBuilder entry = new StringBuilder();
+			appendEntry( entry, key, value );
+			data.replace( index, index + getEntryLength( data, index ), entry.toString() );
+		}
+		return true;
+	}
+	
+	/**************************************************************************
+	 * Write a value over an existing one without moving anything.
+	 * 
+	 * @param data  Line to modify
+	 * @param key   Key of the entry
+	 * @param value New value
+	 * @return      true if the value was written. false if the entry 
+	 *              doesn't exist, is in a version 1 line, or the new value
+	 *              has a different size.
+	 **************************************************************************/
+	static boolean overwrite( StringBuilder data, MetaKey key, Object value ) {
+		int at = locate( data, key );
+		if( at == -1 || (at & 1) != 0 ) return false;
+		int index = at >> 1;
+		
+		switch( key.getDataType() ) {
+		case BYTE:
+			setUnits( data, index, (Byte)value, 1 );
+			return true;
+		case SHORT:
+			setUnits( data, index, (Short)value, 2 );
+			return true;
+		case INT:
+			setUnits( data, index, (Integer)value, 3 );
+			return true;
+		case LONG:
+			setUnits( data, index, (Long)value, 5 );
+			return true;
+		case UID:
+			setUnits( data, index, ((UUID)value).getLeastSignificantBits(), 5 );
+			setUnits( data, index+10, ((UUID)value).getMostSignificantBits(), 5 );
+			return true;
+		case FLAG:
+			return true;
+		case FLOAT:
+			setUnits( data, index, Float.floatToIntBits( (Float)value ), 3 );
+			return true;
+		case DOUBLE:
+			setUnits( data, index, Double.doubleToLongBits( (Double)value ), 5 );
+			return true;
+		default:
+			// variable size, only if the new value encodes to the same size
+			int units = getValueUnits( data, index, key.getDataType() );
+			StringBuilder encoded = new StringBuilder( units * 2 );
+			appendValue( encoded, key.getDataType(), value );
+			if( units < 0 || encoded.length() != units * 2 ) return false;
+			data.replace( index, index + encoded.length(), encoded.toString() );
+			return true;
+		}
+	}
+	
+	/**************************************************************************
+	 * Add to an integer entry.
+	 * 
+	 * The result is clamped to [min, max]. A missing entry counts as 0 and
+	 * is created. An existing version 2 entry is changed in place.
+	 * 
+	 * @param data  Line to modify
+	 * @param key   INT, LONG, VARINT or VARLONG key
+	 * @param delta Amount to add, negative to subtract
+	 * @param min   Lowest result
+	 * @param max   Highest result
+	 * @return      The new value
+	 **************************************************************************/
+	static long add( StringBuilder data, MetaKey key, long delta, long min, long max ) {
+		DataType type = key.getDataType();
+		int at = locate( data, key );
+		long value = 0;
+		if( at != -1 ) {
+			value = ((Number)((at & 1) != 0 
+					? readValueV1( data, (at >> 1) + 1, type )
+					: readValue( data, at >> 1, type ))).longValue();
+		}
+		
+		long result = value + delta;
+		if( ((value ^ result) & (delta ^ result)) < 0 ) {
+			result = delta < 0 ? Long.MIN_VALUE : Long.MAX_VALUE; // overflow
+		}
+		result = Math.max( min, Math.min( max, result ) );
+		
+		boolean isInt = type == DataType.INT || type == DataType.VARINT;
+		Object stored = isInt ? (Object)(int)result : (Object)result;
+		if( writeEntry( data, key, stored ) ) updateDirectory( data );
+		return result;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// raw deflate, without the zlib header and checksum
+	private static byte[] deflate( byte[] input ) {
+		Deflater deflater = new Deflater( Deflater.BEST_COMPRESSION, true );
+		try {
+			deflater.setInput( input );
+			deflater.finish();
+			byte[] output = new byte[input.length / 2 + 64];
+			int length = 0;
+			while( !deflater.finished() ) {
+				if( length == output.length ) output = Arrays.copyOf( output, length * 2 );
+				length += deflater.deflate( output, length, output.length - length );
+			}
+			return Arrays.copyOf( output, length );
+		} finally {
+			deflater.end();
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// null if the data is corrupt or doesn't inflate to exactly rawLength bytes
+	private static byte[] inflate( byte[] input, int rawLength ) {
+		Inflater inflater = new Inflater( true );
+		try {
+			byte[] output = new byte[rawLength];
+			return inflate( inflater, input, input.length, output, rawLength ) ? output : null;
+		} finally {
+			inflater.end();
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// inflates into output with a reset inflater (raw deflate), false if the data is corrupt
+	static boolean inflate( Inflater inflater, byte[] input, int inputLength, byte[] output, int rawLength ) {
+		try {
+			inflater.setInput( input, 0, inputLength );
+			int length = 0;
+			while( length < rawLength ) {
+				int count = inflater.inflate( output, length, rawLength - length );
+				if( count == 0 && (inflater.finished() || inflater.needsInput() 
+						|| inflater.needsDictionary()) ) {
+					return false;
+				}
+				length += count;
+			}
+			return true;
+		} catch( DataFormatException e ) {
+			return false;
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// overwrite units starting at index (the color char before the first unit)
+	private static void setUnits( StringBuilder data, int index, long value, int count ) {
+		for( int i = 0; i < count; i++ ) {
+			data.setCharAt( index + 1 + i*2, (char)(UNIT_BASE + ((int)(value >>> (i*UNIT_BITS)) & UNIT_MASK)) );
+		}
+	}
+}
@@ -24,54 +24,28 @@
 
 package com.mukunda.loremeta;
 
-import org.bukkit.ChatColor; 
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 
 /******************************************************************************
- * A "key" used to identify embedded data in item lore.
+ * Sets the key name of a method in a LoreSchema interface.
+ * 
+ * Without it, the method name is used. Needed to match existing data 
+ * whose keys aren't valid method names, such as "POWER-LEVEL".
  * 
  * @author mukunda
  *
  ******************************************************************************/
-public class MetaKey {
-	private String formatted;
-	private String name;
-	private final DataType type;
-	
-	public MetaKey( String key, DataType type ) {
-		name = key;
-		this.type = type;
-		StringBuilder builder = new StringBuilder();
-		builder.append( type.getTag() );
-		for( int i = 0; i < key.length(); i++ ) {
-			builder.append( "" + ChatColor.COLOR_CHAR + key.charAt(i) );
-		}
-		formatted = builder.toString() ;
-	}
-	
-	public String getFormattedKey() {
-		return formatted;
-	}
-	
-	public String getName() {
-		return name;
-	}
-	
-	public DataType getDataType() {
-		return type;
-		
-	}
-	
-	@Override
-	public int hashCode() {
-		return formatted.hashCode();
-	}
+@Documented
+@Retention( RetentionPolicy.SOURCE )
+@Target( ElementType.METHOD )
+public @interface LoreKey {
 	
-	@Override
-	public boolean equals( Object obj ) {
-		if( this == obj ) return true;
-		if( obj == null ) return false;
-		if( !(obj instanceof MetaKey) ) return false;
-		MetaKey key = (MetaKey)obj;
-		return formatted.equals(key.formatted);
-	}
+	/**
+	 * key name to store the value under
+	 */
+	String value();
 }
@@ -0,0 +1,76 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/******************************************************************************
+ * Marks an interface as a set of LoreMeta keys.
+ * 
+ * Each method of the interface declares one key. The method name is the
+ * key name (unless changed with @LoreKey) and the return type picks the
+ * data type:
+ * 
+ *   byte BYTE, short SHORT, int INT, long LONG, UUID UID, String TEXT, 
+ *   boolean FLAG, float FLOAT, double DOUBLE, any enum ENUM
+ * 
+ * With loremeta-processor on the annotation processor path, a class 
+ * named after the interface with "Accessor" appended is generated in 
+ * the same package. For example:
+ * 
+ *   {@literal @}LoreSchema 
+ *   public interface Spellbook {
+ *       int power();
+ *       short charges();
+ *       UUID owner();
+ *   }
+ *   
+ *   SpellbookAccessor book = SpellbookAccessor.read( item );
+ *   book.charges( (short)(book.charges() - 1) );
+ *   book.writeTo( item );
+ * 
+ * The accessor reads every key with one pass over the data, keeps them
+ * in primitive fields, and writes the changed ones back with a single
+ * encode. Missing values read as 0, false or null, and have() methods 
+ * tell if they exist.
+ * 
+ * Methods with parameters or other return types are compile errors. So
+ * are names that clash with what the accessor generates, e.g. power() 
+ * with hasPower(), or fooBar() with foo_bar(), which both get a KEY_FOO_BAR
+ * constant; use @LoreKey to keep the key name when renaming one.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+@Documented
+@Retention( RetentionPolicy.SOURCE )
+@Target( ElementType.TYPE )
+public @interface LoreSchema {
+	
+}
@@ -0,0 +1,675 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.nio.CharBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/******************************************************************************
+ * Reads and writes LoreMeta data on plain text.
+ * 
+ * This is the encoding used by LoreMeta for item lore, without any server
+ * classes. Pass the first lore line of an item (or any string holding
+ * LoreMeta data) to read values, and a StringBuilder to change them. A 
+ * char array can be read with wrap().
+ * 
+ * Single value reads only look at the entry being read and don't allocate
+ * for primitive types, so they can be used in tight loops. MetaCursor 
+ * walks every entry of a line the same way. All methods are safe to 
+ * call from any thread, as long as the text isn't modified during the 
+ * call.
+ * 
+ * Writes always produce the current format; older data in the text is
+ * converted on the first write. An entry directory is written when it is
+ * enabled with LoreMeta.setDirectoryEnabled, and entries are kept sorted
+ * when LoreMeta.setCanonicalOrder is enabled.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class MetaCodec {
+	
+	//---------------------------------------------------------------------------------------------
+	private MetaCodec() {}
+	
+	/**************************************************************************
+	 * View part of a char array as text that can be read by this class.
+	 * 
+	 * The array is not copied, changes to it are seen by the view.
+	 * 
+	 * @param data   Array holding the encoded data
+	 * @param offset Index of the first character
+	 * @param length Number of characters
+	 * @return       View of the characters
+	 **************************************************************************/
+	public static CharSequence wrap( char[] data, int offset, int length ) {
+		return CharBuffer.wrap( data, offset, length );
+	}
+	
+	/**************************************************************************
+	 * Check if the text contains a value for a key.
+	 * 
+	 * @param data Encoded text
+	 * @param key  Key to look for
+	 * @return     true if an entry exists for the key (with the same type)
+	 **************************************************************************/
+	public static boolean hasData( CharSequence data, MetaKey key ) {
+		return LoreCodec.locate( data, key ) != -1;
+	}
+	
+	/**************************************************************************
+	 * Read a value of any type.
+	 * 
+	 * @param data Encoded text
+	 * @param key  Key to read
+	 * @return     Value of the entry, or null if it doesn't exist. Flags 
+	 *             read as Boolean.TRUE.
+	 **************************************************************************/
+	public static Object getValue( CharSequence data, MetaKey key ) {
+		return key.fromStored( readAt( data, LoreCodec.locate( data, key ), key.getDataType() ) );
+	}
+	
+	/**************************************************************************
+	 * Read several values with a single pass over the text.
+	 * 
+	 * @param data Encoded text
+	 * @param keys Keys to read
+	 * @return     Values in the same order as the keys, null for keys that
+	 *             don't exist. Flags read as Boolean.TRUE, MetaKeyEnum 
+	 *             keys as their constant.
+	 **************************************************************************/
+	public static Object[] getValues( CharSequence data, MetaKey... keys ) {
+		int[] positions = new int[keys.length];
+		LoreCodec.locateAll( data, keys, positions );
+		Object[] values = new Object[keys.length];
+		for( int i = 0; i < keys.length; i++ ) {
+			values[i] = keys[i].fromStored( readAt( data, positions[i], keys[i].getDataType() ) );
+		}
+		return values;
+	}
+	
+	/**************************************************************************
+	 * Read a byte value.
+	 * 
+	 * @return Value, or null if the entry doesn't exist.
+	 **************************************************************************/
+	public static Byte getData( CharSequence data, MetaKeyByte key ) {
+		return (Byte)getValue( data, key );
+	}
+	
+	/**************************************************************************
+	 * Read a short value.
+	 * 
+	 * @return Value, or null if the entry doesn't exist.
+	 **************************************************************************/
+	public static Short getData( CharSequence data, MetaKeyShort key ) {
+		return (Short)getValue( data, key );
+	}
+	
+	/**************************************************************************
+	 * Read an int value.
+	 * 
+	 * @return Value, or null if the entry doesn't exist.
+	 **************************************************************************/
+	public static Integer getData( CharSequence data, MetaKeyInt key ) {
+		return (Integer)getValue( data, key );
+	}
+	
+	/**************************************************************************
+	 * Read a long value.
+	 * 
+	 * @return Value, or null if the entry doesn't exist.
+	 **************************************************************************/
+	public static Long getData( CharSequence data, MetaKeyLong key ) {
+		return (Long)getValue( data, key );
+	}
+	
+	/**************************************************************************
+	 * Read a UUID value.
+	 * 
+	 * @return Value, or null if the entry doesn't exist.
+	 **************************************************************************/
+	public static UUID getData( CharSequence data, MetaKeyUUID key ) {
+		return (UUID)getValue( data, key );
+	}
+	
+	/**************************************************************************
+	 * Read a text value.
+	 * 
+	 * @return Value, or null if the entry doesn't exist.
+	 **************************************************************************/
+	public static String getData( CharSequence data, MetaKeyText key ) {
+		return (String)getValue( data, key );
+	}
+	
+	/**************************************************************************
+	 * Read a float value.
+	 * 
+	 * @return Value, or null if the entry doesn't exist.
+	 **************************************************************************/
+	public static Float getData( CharSequence data, MetaKeyFloat key ) {
+		return (Float)getValue( data, key );
+	}
+	
+	/**************************************************************************
+	 * Read a double value.
+	 * 
+	 * @return Value, or null if the entry doesn't exist.
+	 **************************************************************************/
+	public static Double getData( CharSequence data, MetaKeyDouble key ) {
+		return (Double)getValue( data, key );
+	}
+	
+	/**************************************************************************
+	 * Read an enum value.
+	 * 
+	 * @return Value, or null if the entry doesn't exist or its ordinal is
+	 *         out of range for the enum.
+	 **************************************************************************/
+	public static <E extends Enum<E>> E getData( CharSequence data, MetaKeyEnum<E> key ) {
+		return key.getEnumClass().cast( getValue( data, key ) );
+	}
+	
+	/**************************************************************************
+	 * Check if a flag is set.
+	 * 
+	 * @return true if the flag exists.
+	 **************************************************************************/
+	public static boolean getData( CharSequence data, MetaKeyFlag key ) {
+		return hasData( data, key );
+	}
+	
+	/**************************************************************************
+	 * Read a byte value without boxing it.
+	 * 
+	 * @param data         Encoded text
+	 * @param key          Key to read
+	 * @param defaultValue Value to return if the entry doesn't exist
+	 **************************************************************************/
+	public static byte getByte( CharSequence data, MetaKeyByte key, byte defaultValue ) {
+		int at = LoreCodec.locate( data, key );
+		if( at == -1 ) return defaultValue;
+		if( (at & 1) != 0 ) return (byte)(data.charAt( (at >> 1) + 1 ) - LoreCodec.DATA_BASE);
+		return (byte)LoreCodec.unit( data, at >> 1 );
+	}
+	
+	/**************************************************************************
+	 * Read a short value without boxing it.
+	 * 
+	 * @see #getByte(CharSequence, MetaKeyByte, byte)
+	 **************************************************************************/
+	public static short getShort( CharSequence data, MetaKeyShort key, short defaultValue ) {
+		int at = LoreCodec.locate( data, key );
+		if( at == -1 ) return defaultValue;
+		if( (at & 1) != 0 ) return LoreCodec.getPackedShort( data, (at >> 1) + 1 );
+		return (short)LoreCodec.readUnits( data, at >> 1, 2 );
+	}
+	
+	/**************************************************************************
+	 * Read an int value without boxing it.
+	 * 
+	 * @see #getByte(CharSequence, MetaKeyByte, byte)
+	 **************************************************************************/
+	public static int getInt( CharSequence data, MetaKeyInt key, int defaultValue ) {
+		int at = LoreCodec.locate( data, key );
+		if( at == -1 ) return defaultValue;
+		if( (at & 1) != 0 ) return LoreCodec.getPackedInt( data, (at >> 1) + 1 );
+		return (int)LoreCodec.readInteger( data, at >> 1, key.getDataType() );
+	}
+	
+	/**************************************************************************
+	 * Read a long value without boxing it.
+	 * 
+	 * @see #getByte(CharSequence, MetaKeyByte, byte)
+	 **************************************************************************/
+	public static long getLong( CharSequence data, MetaKeyLong key, long defaultValue ) {
+		int at = LoreCodec.locate( data, key );
+		if( at == -1 ) return defaultValue;
+		if( (at & 1) != 0 ) return LoreCodec.getPackedLong( data, (at >> 1) + 1 );
+		return LoreCodec.readInteger( data, at >> 1, key.getDataType() );
+	}
+	
+	/**************************************************************************
+	 * Read the most significant bits of a UUID value.
+	 * 
+	 * @see #getByte(CharSequence, MetaKeyByte, byte)
+	 **************************************************************************/
+	public static long getUUIDMostBits( CharSequence data, MetaKeyUUID key, long defaultValue ) {
+		int at = LoreCodec.locate( data, key );
+		if( at == -1 ) return defaultValue;
+		if( (at & 1) != 0 ) return LoreCodec.getPackedLong( data, (at >> 1) + 17 );
+		return LoreCodec.readUnits( data, (at >> 1) + 10, 5 );
+	}
+	
+	/**************************************************************************
+	 * Read the least significant bits of a UUID value.
+	 * 
+	 * @see #getByte(CharSequence, MetaKeyByte, byte)
+	 **************************************************************************/
+	public static long getUUIDLeastBits( CharSequence data, MetaKeyUUID key, long defaultValue ) {
+		int at = LoreCodec.locate( data, key );
+		if( at == -1 ) return defaultValue;
+		if( (at & 1) != 0 ) return LoreCodec.getPackedLong( data, (at >> 1) + 1 );
+		return LoreCodec.readUnits( data, at >> 1, 5 );
+	}
+	
+	/**************************************************************************
+	 * Read every entry.
+	 * 
+	 * Entries with reserved keys (see MetaKey) are left out.
+	 * 
+	 * @param data Encoded text
+	 * @return     Map of all keys to their values, in the order they
+	 *             appear in the text. Flags have the value Boolean.TRUE.
+	 **************************************************************************/
+	public static Map<MetaKey,Object> decodeAll( CharSequence data ) {
+		Map<MetaKey,Object> result = new LinkedHashMap<MetaKey,Object>();
+		for( DecodedLore.Entry entry : DecodedLore.parse( data ).getEntries() ) {
+			if( entry.key.isReserved() ) continue;
+			result.put( entry.key, entry.key.fromStored( entry.value ) );
+		}
+		return result;
+	}
+	
+	/**************************************************************************
+	 * Set a byte value.
+	 * 
+	 * @param data  Encoded text to modify
+	 * @param key   Key to write
+	 * @param value Value to write, or null to remove the entry
+	 **************************************************************************/
+	public static void setData( StringBuilder data, MetaKeyByte key, Byte value ) {
+		write( data, key, value );
+	}
+	
+	/**************************************************************************
+	 * Set a short value.
+	 * 
+	 * @see #setData(StringBuilder, MetaKeyByte, Byte)
+	 **************************************************************************/
+	public static void setData( StringBuilder data, MetaKeyShort key, Short value ) {
+		write( data, key, value );
+	}
+	
+	/**************************************************************************
+	 * Set an int value.
+	 * 
+	 * @see #setData(StringBuilder, MetaKeyByte, Byte)
+	 **************************************************************************/
+	public static void setData( StringBuilder data, MetaKeyInt key, Integer value ) {
+		write( data, key, value );
+	}
+	
+	/**************************************************************************
+	 * Set a long value.
+	 * 
+	 * @see #setData(StringBuilder, MetaKeyByte, Byte)
+	 **************************************************************************/
+	public static void setData( StringBuilder data, MetaKeyLong key, Long value ) {
+		write( data, key, value );
+	}
+	
+	/**************************************************************************
+	 * Set a UUID value.
+	 * 
+	 * @see #setData(StringBuilder, MetaKeyByte, Byte)
+	 **************************************************************************/
+	public static void setData( StringBuilder data, MetaKeyUUID key, UUID value ) {
+		write( data, key, value );
+	}
+	
+	/**************************************************************************
+	 * Set a text value.
+	 * 
+	 * Any Unicode text can be stored. Latin-1 text costs a little over one
+	 * character per character, other text is stored as UTF-8 or UTF-16, 
+	 * and long text is compressed when that makes it smaller.
+	 * 
+	 * @throws IllegalArgumentException if the text is too long to store
+	 * @see #setData(StringBuilder, MetaKeyByte, Byte)
+	 **************************************************************************/
+	public static void setData( StringBuilder data, MetaKeyText key, String value ) {
+		write( data, key, value );
+	}
+	
+	/**************************************************************************
+	 * Set a float value.
+	 * 
+	 * @see #setData(StringBuilder, MetaKeyByte, Byte)
+	 **************************************************************************/
+	public static void setData( StringBuilder data, MetaKeyFloat key, Float value ) {
+		write( data, key, value );
+	}
+	
+	/**************************************************************************
+	 * Set a double value.
+	 * 
+	 * @see #setData(StringBuilder, MetaKeyByte, Byte)
+	 **************************************************************************/
+	public static void setData( StringBuilder data, MetaKeyDouble key, Double value ) {
+		write( data, key, value );
+	}
+	
+	/**************************************************************************
+	 * Set an enum value.
+	 * 
+	 * @see #setData(StringBuilder, MetaKeyByte, Byte)
+	 **************************************************************************/
+	public static <E extends Enum<E>> void setData( StringBuilder data, MetaKeyEnum<E> key, E value ) {
+		write( data, key, value );
+	}
+	
+	/**************************************************************************
+	 * Set a flag.
+	 **************************************************************************/
+	public static void setFlag( StringBuilder data, MetaKeyFlag key ) {
+		write( data, key, Boolean.TRUE );
+	}
+	
+	/**************************************************************************
+	 * Clear a flag.
+	 **************************************************************************/
+	public static void clearFlag( StringBuilder data, MetaKeyFlag key ) {
+		write( data, key, null );
+	}
+	
+	/**************************************************************************
+	 * Add to an int value.
+	 * 
+	 * A missing entry counts as 0 and is created. An existing entry is
+	 * changed in place without moving the rest of the text. The result
+	 * saturates instead of overflowing.
+	 * 
+	 * @param data  Encoded text to modify
+	 * @param key   Key to change
+	 * @param delta Amount to add, negative to subtract
+	 * @return      The new value
+	 **************************************************************************/
+	public static int increment( StringBuilder data, MetaKeyInt key, int delta ) {
+		return increment( data, key, delta, Integer.MIN_VALUE, Integer.MAX_VALUE );
+	}
+	
+	/**************************************************************************
+	 * Add to an int value, keeping the result within a range.
+	 * 
+	 * @param min Lowest result
+	 * @param max Highest result
+	 * @throws IllegalArgumentException if min is greater than max
+	 * @see #increment(StringBuilder, MetaKeyInt, int)
+	 **************************************************************************/
+	public static int increment( StringBuilder data, MetaKeyInt key, int delta, int min, int max ) {
+		checkRange( min, max );
+		return (int)LoreCodec.add( data, key, delta, min, max );
+	}
+	
+	/**************************************************************************
+	 * Add to a long value.
+	 * 
+	 * @see #increment(StringBuilder, MetaKeyInt, int)
+	 **************************************************************************/
+	public static long increment( StringBuilder data, MetaKeyLong key, long delta ) {
+		return increment( data, key, delta, Long.MIN_VALUE, Long.MAX_VALUE );
+	}
+	
+	/**************************************************************************
+	 * Add to a long value, keeping the result within a range.
+	 * 
+	 * @see #increment(StringBuilder, MetaKeyInt, int, int, int)
+	 **************************************************************************/
+	public static long increment( StringBuilder data, MetaKeyLong key, long delta, long min, long max ) {
+		checkRange( min, max );
+		return LoreCodec.add( data, key, delta, min, max );
+	}
+	
+	/**************************************************************************
+	 * Remove an entry of any type.
+	 * 
+	 * @param data Encoded text to modify
+	 * @param key  Key to remove
+	 * @return     true if the entry existed
+	 **************************************************************************/
+	public static boolean removeData( StringBuilder data, MetaKey key ) {
+		if( !hasData( data, key ) ) return false;
+		write( data, key, null );
+		return true;
+	}
+	
+	/**************************************************************************
+	 * Write several values at once.
+	 * 
+	 * Faster than setting them one by one, as the directory is only
+	 * rebuilt once.
+	 * 
+	 * @param data   Encoded text to modify
+	 * @param values Keys and their values. Each value must be of the key's
+	 *               type (Byte for BYTE, and so on, Boolean for FLAG, the
+	 *               enum constant for a MetaKeyEnum). A null value (or 
+	 *               false for a flag) removes the entry.
+	 * @throws IllegalArgumentException if a value doesn't match its key
+	 **************************************************************************/
+	public static void setAll( StringBuilder data, Map<? extends MetaKey,?> values ) {
+		for( Map.Entry<? extends MetaKey,?> entry : values.entrySet() ) {
+			checkValue( entry.getKey(), entry.getValue() );
+		}
+		boolean moved = false;
+		for( Map.Entry<? extends MetaKey,?> entry : values.entrySet() ) {
+			moved |= LoreCodec.writeEntry( data, entry.getKey(), toStored( entry.getValue() ) );
+		}
+		if( moved ) LoreCodec.updateDirectory( data );
+	}
+	
+	/**************************************************************************
+	 * Encode a set of values as new text.
+	 * 
+	 * @param values Keys and their values, see setAll
+	 * @return       Encoded text holding only the given values
+	 **************************************************************************/
+	public static String encode( Map<? extends MetaKey,?> values ) {
+		StringBuilder data = new StringBuilder();
+		setAll( data, values );
+		return data.toString();
+	}
+	
+	/**************************************************************************
+	 * Compute the encoded size of an entry, without encoding it.
+	 * 
+	 * Text that would be compressed is measured before compression, so
+	 * the result is an upper bound for long text.
+	 * 
+	 * @param key   Key of the entry
+	 * @param value Value of the entry, see setAll
+	 * @return      Number of characters the entry takes, 0 if the value
+	 *              removes the entry
+	 * @throws IllegalArgumentException if the value doesn't match the key
+	 **************************************************************************/
+	public static int getEncodedSize( MetaKey key, Object value ) {
+		checkValue( key, value );
+		value = toStored( value );
+		if( value == null ) return 0;
+		return LoreCodec.getEntrySize( key, value );
+	}
+	
+	/**************************************************************************
+	 * Compute the length encoded text would have after a write, without
+	 * doing the write.
+	 * 
+	 * @param data  Encoded text
+	 * @param key   Key to write
+	 * @param value Value to write, see setAll
+	 * @return      Length of the text after the write
+	 * @throws IllegalArgumentException if the value doesn't match the key
+	 **************************************************************************/
+	public static int estimateSize( CharSequence data, MetaKey key, Object value ) {
+		checkValue( key, value );
+		return LoreCodec.estimateWrite( data, key, toStored( value ) );
+	}
+	
+	/**************************************************************************
+	 * Get the size of every entry, for diagnostics.
+	 * 
+	 * The sizes don't include the header, the directory or entries with
+	 * reserved keys, so they may add up to less than the length of the 
+	 * text.
+	 * 
+	 * @param data Encoded text
+	 * @return     Map of all keys to the number of characters their entry
+	 *             takes, in the order they appear in the text.
+	 **************************************************************************/
+	public static Map<MetaKey,Integer> getSizes( CharSequence data ) {
+		return getSizes( DecodedLore.parse( data ) );
+	}
+	
+	/**************************************************************************
+	 * Compute a 64-bit fingerprint of the entries in encoded text.
+	 * 
+	 * Text with the same entries has the same fingerprint, no matter what
+	 * order they were written in or which format version the text is in.
+	 * Values aren't decoded (except compressed text), so this is much
+	 * cheaper than comparing the results of decodeAll. Entries with 
+	 * reserved keys are not included, like in decodeAll.
+	 * 
+	 * @param data Encoded text
+	 * @return     Fingerprint of all entries
+	 **************************************************************************/
+	public static long fingerprint( CharSequence data ) {
+		return LoreCodec.fingerprint( data, null );
+	}
+	
+	/**************************************************************************
+	 * Compute a fingerprint of some entries in encoded text.
+	 * 
+	 * @param data Encoded text
+	 * @param keys Keys to include, others are ignored
+	 * @return     Fingerprint of the entries for the given keys
+	 * 
+	 * @see #fingerprint(CharSequence)
+	 **************************************************************************/
+	public static long fingerprint( CharSequence data, MetaKey... keys ) {
+		return LoreCodec.fingerprint( data, keys );
+	}
+	
+	/**************************************************************************
+	 * Rewrite encoded text with its entries sorted by key.
+	 * 
+	 * Text with the same entries is identical after this, which the order
+	 * of writes doesn't guarantee otherwise. LoreMeta.setCanonicalOrder 
+	 * keeps text sorted as it is written. Text with other characters 
+	 * mixed in between the entries is not sorted, so nothing is lost.
+	 * 
+	 * @param data Encoded text to modify
+	 **************************************************************************/
+	public static void canonicalize( StringBuilder data ) {
+		if( LoreCodec.findHeader( data ) == -1 && DecodedLore.parse( data ).getEntries().isEmpty() ) return;
+		int header = LoreCodec.upgrade( data ) + LoreCodec.HEADER.length();
+		LoreCodec.sortEntries( data, header + LoreCodec.getDirectoryLength( data, header ) );
+		LoreCodec.updateDirectory( data );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static Map<MetaKey,Integer> getSizes( DecodedLore decoded ) {
+		Map<MetaKey,Integer> result = new LinkedHashMap<MetaKey,Integer>();
+		for( DecodedLore.Entry entry : decoded.getEntries() ) {
+			if( entry.key.isReserved() ) continue;
+			result.put( entry.key, entry.end - entry.start );
+		}
+		return result;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// at is a position returned by LoreCodec.locate
+	private static Object readAt( CharSequence data, int at, DataType type ) {
+		if( at == -1 ) return null;
+		if( (at & 1) != 0 ) return LoreCodec.readValueV1( data, (at >> 1) + 1, type );
+		return LoreCodec.readValue( data, at >> 1, type );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void write( StringBuilder data, MetaKey key, Object value ) {
+		if( LoreCodec.writeEntry( data, key, value ) ) LoreCodec.updateDirectory( data );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void checkRange( long min, long max ) {
+		if( min > max ) throw new IllegalArgumentException( "min is greater than max." );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// flags are written as any non-null value
+	private static Object toStored( Object value ) {
+		return Boolean.FALSE.equals( value ) ? null : value;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void checkValue( MetaKey key, Object value ) {
+		if( value == null ) return;
+		Class<?> expected;
+		switch( key.getDataType() ) {
+		case BYTE:
+			expected = Byte.class;
+			break;
+		case SHORT:
+			expected = Short.class;
+			break;
+		case INT:
+		case VARINT:
+			expected = Integer.class;
+			break;
+		case LONG:
+		case VARLONG:
+			expected = Long.class;
+			break;
+		case FLOAT:
+			expected = Float.class;
+			break;
+		case DOUBLE:
+			expected = Double.class;
+			break;
+		case ENUM:
+			expected = key instanceof MetaKeyEnum ? ((MetaKeyEnum<?>)key).getEnumClass() : Integer.class;
+			break;
+		case UID:
+			expected = UUID.class;
+			break;
+		case TEXT:
+			expected = String.class;
+			break;
+		case FLAG:
+			expected = Boolean.class;
+			break;
+		default:
+			expected = null;
+			break;
+		}
+		if( !expected.isInstance( value ) ) {
+			throw new IllegalArgumentException( "Value for " + key.getName() + " must be a " 
+					+ expected.getSimpleName() );
+		}
+		if( value instanceof Integer && key.getDataType() == DataType.ENUM && (Integer)value < 0 ) {
+			throw new IllegalArgumentException( "Ordinal for " + key.getName() + " can't be negative." );
+		}
+	}
+}
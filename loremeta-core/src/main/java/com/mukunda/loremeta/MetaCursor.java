@@ -0,0 +1,481 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.Charset;
+import java.util.zip.Inflater;
+
+/******************************************************************************
+ * Walks the entries of encoded text without allocating.
+ * 
+ * A cursor can be reused for any number of lines, so scanning many items
+ * makes no garbage once its buffers have grown to fit:
+ * 
+ *   MetaCursor cursor = new MetaCursor();
+ *   for( String line : lines ) {
+ *     cursor.reset( line );
+ *     while( cursor.next() ) {
+ *       if( cursor.is( CHARGES ) && cursor.getInt() > 100 ) ...
+ *     }
+ *   }
+ * 
+ * The name and text views returned by getName and getText are reused, 
+ * and are only valid until the next call to next() or reset(). Call 
+ * toString() on them to keep a copy. Names, and text that is stored as
+ * Latin-1 or UTF-16, are read straight from the line. UTF-8 and 
+ * compressed text is decoded into a buffer owned by the cursor.
+ * 
+ * A cursor is not thread safe, use one per thread.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class MetaCursor {
+	
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+	
+	private CharSequence data;
+	private int version;
+	
+	// where next() continues
+	private int index;
+	
+	// current entry, valueStart is the first value unit (version 2) or 
+	// the color char before the first data char (version 1)
+	private DataType type;
+	private int entryStart;
+	private int valueStart;
+	
+	private final View name = new View();
+	private final View text = new View();
+	
+	// decoding buffers for UTF-8 and compressed text, grown as needed
+	private ByteBuffer bytes = ByteBuffer.allocate( 0 );
+	private ByteBuffer raw = ByteBuffer.allocate( 0 );
+	private CharBuffer chars = CharBuffer.allocate( 0 );
+	private Inflater inflater;
+	private CharsetDecoder decoder;
+	
+	/**************************************************************************
+	 * Create a cursor with no text, call reset to start.
+	 **************************************************************************/
+	public MetaCursor() {}
+	
+	/**************************************************************************
+	 * Create a cursor over encoded text.
+	 * 
+	 * @param data Encoded text, e.g. the first lore line of an item
+	 **************************************************************************/
+	public MetaCursor( CharSequence data ) {
+		reset( data );
+	}
+	
+	/**************************************************************************
+	 * Start over on new text.
+	 * 
+	 * @param data Encoded text; it must not be modified while the cursor 
+	 *             is used on it.
+	 * @return     This cursor
+	 **************************************************************************/
+	public MetaCursor reset( CharSequence data ) {
+		this.data = data;
+		type = null;
+		int header = LoreCodec.findHeader( data );
+		if( header == -1 ) {
+			version = 1;
+			index = 0;
+		} else {
+			version = LoreCodec.VERSION;
+			index = header + LoreCodec.HEADER.length();
+			index += LoreCodec.getDirectoryLength( data, index );
+		}
+		return this;
+	}
+	
+	/**************************************************************************
+	 * Move to the next entry.
+	 * 
+	 * @return true if there is an entry, false at the end of the data or 
+	 *         when the rest of it is malformed.
+	 **************************************************************************/
+	public boolean next() {
+		type = null;
+		if( data == null ) return false;
+		return version == 1 ? nextV1() : nextV2();
+	}
+	
+	/**************************************************************************
+	 * Get the type of the current entry.
+	 **************************************************************************/
+	public DataType getType() {
+		checkEntry();
+		return type;
+	}
+	
+	/**************************************************************************
+	 * Get the key name of the current entry.
+	 * 
+	 * @return View of the name, valid until the cursor moves.
+	 **************************************************************************/
+	public CharSequence getName() {
+		checkEntry();
+		return name;
+	}
+	
+	/**************************************************************************
+	 * Check if the current entry is for a key.
+	 * 
+	 * The name and type are compared as they are encoded, nothing is
+	 * decoded.
+	 * 
+	 * @param key Key to compare to
+	 * @return    true if the entry has the key's name and type
+	 **************************************************************************/
+	public boolean is( MetaKey key ) {
+		checkEntry();
+		if( key.getDataType() != type ) return false;
+		char[] chars = version == 1 ? key.getFormattedChars() : key.getEncodedChars();
+		if( valueStart - entryStart != chars.length ) return false;
+		for( int i = 0; i < chars.length; i++ ) {
+			if( data.charAt( entryStart + i ) != chars[i] ) return false;
+		}
+		return true;
+	}
+	
+	/**************************************************************************
+	 * Read a BYTE, SHORT, INT, VARINT or ENUM value.
+	 * 
+	 * @return Value of the entry. ENUM values are ordinals.
+	 * @throws IllegalStateException if the entry has another type
+	 **************************************************************************/
+	public int getInt() {
+		checkEntry();
+		switch( type ) {
+		case BYTE:
+		case SHORT:
+		case INT:
+		case VARINT:
+		case ENUM:
+			return (int)getLong();
+		default:
+			throw wrongType();
+		}
+	}
+	
+	/**************************************************************************
+	 * Read any integer value (BYTE, SHORT, INT, LONG, VARINT, VARLONG or 
+	 * ENUM).
+	 * 
+	 * @return Value of the entry, sign extended. ENUM values are ordinals.
+	 * @throws IllegalStateException if the entry has another type
+	 **************************************************************************/
+	public long getLong() {
+		checkEntry();
+		if( version == 1 ) {
+			int at = valueStart + 1;
+			switch( type ) {
+			case BYTE:
+				return (byte)(data.charAt(at) - LoreCodec.DATA_BASE);
+			case SHORT:
+				return LoreCodec.getPackedShort( data, at );
+			case INT:
+				return LoreCodec.getPackedInt( data, at );
+			case LONG:
+				return LoreCodec.getPackedLong( data, at );
+			default:
+				throw wrongType();
+			}
+		}
+		switch( type ) {
+		case BYTE:
+			return (byte)LoreCodec.unit( data, valueStart );
+		case SHORT:
+			return (short)LoreCodec.readUnits( data, valueStart, 2 );
+		case INT:
+		case LONG:
+		case VARINT:
+		case VARLONG:
+			return LoreCodec.readInteger( data, valueStart, type );
+		case ENUM:
+			return (int)LoreCodec.readVar( data, valueStart );
+		default:
+			throw wrongType();
+		}
+	}
+	
+	/**************************************************************************
+	 * Read a FLOAT value.
+	 * 
+	 * @throws IllegalStateException if the entry has another type
+	 **************************************************************************/
+	public float getFloat() {
+		checkEntry();
+		if( type != DataType.FLOAT ) throw wrongType();
+		return Float.intBitsToFloat( (int)LoreCodec.readUnits( data, valueStart, 3 ) );
+	}
+	
+	/**************************************************************************
+	 * Read a FLOAT or DOUBLE value.
+	 * 
+	 * @throws IllegalStateException if the entry has another type
+	 **************************************************************************/
+	public double getDouble() {
+		checkEntry();
+		if( type == DataType.FLOAT ) return getFloat();
+		if( type != DataType.DOUBLE ) throw wrongType();
+		return Double.longBitsToDouble( LoreCodec.readUnits( data, valueStart, 5 ) );
+	}
+	
+	/**************************************************************************
+	 * Read the most significant bits of a UUID value.
+	 * 
+	 * @throws IllegalStateException if the entry has another type
+	 **************************************************************************/
+	public long getUUIDMostBits() {
+		checkEntry();
+		if( type != DataType.UID ) throw wrongType();
+		if( version == 1 ) return LoreCodec.getPackedLong( data, valueStart + 17 );
+		return LoreCodec.readUnits( data, valueStart+10, 5 );
+	}
+	
+	/**************************************************************************
+	 * Read the least significant bits of a UUID value.
+	 * 
+	 * @throws IllegalStateException if the entry has another type
+	 **************************************************************************/
+	public long getUUIDLeastBits() {
+		checkEntry();
+		if( type != DataType.UID ) throw wrongType();
+		if( version == 1 ) return LoreCodec.getPackedLong( data, valueStart + 1 );
+		return LoreCodec.readUnits( data, valueStart, 5 );
+	}
+	
+	/**************************************************************************
+	 * Read a TEXT value.
+	 * 
+	 * @return View of the text, valid until the cursor moves, or null if 
+	 *         compressed text is corrupt.
+	 * @throws IllegalStateException if the entry has another type
+	 **************************************************************************/
+	public CharSequence getText() {
+		checkEntry();
+		if( type != DataType.TEXT ) throw wrongType();
+		if( version == 1 ) {
+			text.setStrided( valueStart + 3, data.charAt( valueStart+1 ) - LoreCodec.DATA_BASE );
+			return text;
+		}
+		
+		int first = LoreCodec.unit( data, valueStart );
+		if( first != LoreCodec.TEXT_EXTENDED ) {
+			text.setPacked( valueStart+2, first, 8 );
+			return text;
+		}
+		
+		int mode = LoreCodec.unit( data, valueStart+2 );
+		int count = (int)LoreCodec.readUnits( data, valueStart+4, 2 );
+		if( mode == LoreCodec.TEXT_UTF16 ) {
+			text.setPacked( valueStart+8, count, 16 );
+			return text;
+		}
+		if( mode == LoreCodec.TEXT_UTF8 ) {
+			bytes = grow( bytes, count );
+			LoreCodec.readPacked( data, valueStart+8, bytes.array(), count );
+			return decode( bytes, count );
+		}
+		
+		int rawLength = (int)LoreCodec.readUnits( data, valueStart+8, 2 );
+		bytes = grow( bytes, count + 1 ); // extra byte for the inflater
+		LoreCodec.readPacked( data, valueStart+12, bytes.array(), count );
+		bytes.array()[count] = 0;
+		raw = grow( raw, rawLength );
+		if( inflater == null ) {
+			inflater = new Inflater( true );
+		} else {
+			inflater.reset();
+		}
+		if( !LoreCodec.inflate( inflater, bytes.array(), count + 1, raw.array(), rawLength ) ) return null;
+		return decode( raw, rawLength );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// reusable view of a name or text value
+	private final class View implements CharSequence {
+		
+		private int start;
+		private int length;
+		
+		// bits per char for packed units, 0 for every other char of the 
+		// line (version 1), -1 for the decoding buffer
+		private int bits;
+		
+		void setPacked( int start, int length, int bits ) {
+			this.start = start;
+			this.length = length;
+			this.bits = bits;
+		}
+		
+		void setStrided( int start, int length ) {
+			setPacked( start, length, 0 );
+		}
+		
+		void setBuffer( int length ) {
+			setPacked( 0, length, -1 );
+		}
+		
+		@Override
+		public int length() {
+			return length;
+		}
+		
+		@Override
+		public char charAt( int i ) {
+			if( i < 0 || i >= length ) throw new IndexOutOfBoundsException( "index " + i );
+			if( bits == -1 ) return chars.get( i );
+			if( bits == 0 ) return data.charAt( start + i*2 );
+			
+			// same layout as LoreCodec.readPacked, starting at the unit holding char i
+			long bit = (long)i * bits;
+			int index = start + (int)(bit / LoreCodec.UNIT_BITS) * 2;
+			int shift = (int)(bit % LoreCodec.UNIT_BITS);
+			long buffer = 0;
+			for( int count = 0; count < shift + bits; count += LoreCodec.UNIT_BITS, index += 2 ) {
+				buffer |= ((long)LoreCodec.unit( data, index )) << count;
+			}
+			return (char)((buffer >>> shift) & ((1 << bits) - 1));
+		}
+		
+		@Override
+		public CharSequence subSequence( int start, int end ) {
+			return toString().subSequence( start, end );
+		}
+		
+		@Override
+		public String toString() {
+			return new StringBuilder( length ).append( this ).toString();
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private boolean nextV2() {
+		while( index < data.length() - 1 ) {
+			DataType tag = LoreCodec.getTagType( data, index );
+			if( tag == null ) {
+				index++;
+				continue;
+			}
+			int length = LoreCodec.getEntryLength( data, index );
+			if( length < 0 ) break;
+			
+			int header = LoreCodec.unit( data, index+2 );
+			name.setPacked( index+4, header >> 1, (header & 1) != 0 ? 16 : 7 );
+			type = tag;
+			entryStart = index;
+			valueStart = LoreCodec.getValueStart( data, index );
+			index += length;
+			return true;
+		}
+		index = data.length();
+		return false;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// same walk as LoreCodec.findValueV1
+	private boolean nextV1() {
+		int length = data.length();
+		while( index < length - 1 ) {
+			DataType tag = LoreCodec.getTagType( data, index );
+			if( tag == null ) {
+				index++;
+				continue;
+			}
+			
+			int start = index;
+			index += 2;
+			while( index < length - 1 && data.charAt(index) == LoreCodec.COLOR_CHAR
+					&& data.charAt(index+1) < LoreCodec.DATA_BASE ) {
+				index += 2;
+			}
+			
+			int valueLength = LoreCodec.getValueLengthV1( data, index, tag );
+			if( valueLength < 0 || index + valueLength > length ) break;
+			
+			name.setStrided( start + 3, (index - start - 2) / 2 );
+			type = tag;
+			entryStart = start;
+			valueStart = index;
+			index += valueLength;
+			return true;
+		}
+		index = length;
+		return false;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// UTF-8 into the char buffer, malformed input is replaced like new String() does
+	private CharSequence decode( ByteBuffer input, int length ) {
+		if( decoder == null ) {
+			decoder = UTF_8.newDecoder()
+					.onMalformedInput( CodingErrorAction.REPLACE )
+					.onUnmappableCharacter( CodingErrorAction.REPLACE );
+		}
+		
+		// UTF-8 never decodes to more chars than bytes
+		chars = grow( chars, length );
+		input.clear();
+		input.limit( length );
+		chars.clear();
+		decoder.reset();
+		decoder.decode( input, chars, true );
+		decoder.flush( chars );
+		text.setBuffer( chars.position() );
+		return text;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void checkEntry() {
+		if( type == null ) throw new IllegalStateException( "The cursor is not on an entry." );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private IllegalStateException wrongType() {
+		return new IllegalStateException( "The current entry is " + type.name() + "." );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static ByteBuffer grow( ByteBuffer buffer, int length ) {
+		if( buffer.capacity() >= length ) return buffer;
+		return ByteBuffer.allocate( Math.max( length, buffer.capacity() * 2 ) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static CharBuffer grow( CharBuffer buffer, int length ) {
+		if( buffer.capacity() >= length ) return buffer;
+		return CharBuffer.allocate( Math.max( length, buffer.capacity() * 2 ) );
+	}
+}
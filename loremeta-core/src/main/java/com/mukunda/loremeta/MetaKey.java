@@ -0,0 +1,251 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/******************************************************************************
+ * A "key" used to identify embedded data in item lore.
+ * 
+ * Keys can be created with the constructors, or taken from the registry
+ * with MetaKey.of( name, type ) or MetaKeyInt.of( name ) etc. Registered 
+ * keys are created once and then shared, so looking one up allocates 
+ * nothing, and data lines that are parsed reuse them too. Use the 
+ * registry for keys with fixed names; every key that is registered stays
+ * in memory.
+ * 
+ * Names starting with "~" are reserved for data LoreMeta keeps for
+ * itself, such as field bindings. The registry doesn't hand out keys with
+ * those names, and decodeAll, getSizes and fingerprints leave their 
+ * entries out. Don't construct keys with reserved names either; writing 
+ * one can break what LoreMeta stores under it.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public class MetaKey {
+	
+	// names starting with this are used by LoreMeta itself
+	static final char RESERVED_PREFIX = '~';
+	
+	// registered keys by type index and name
+	@SuppressWarnings({"unchecked","rawtypes"})
+	private static final ConcurrentMap<String,MetaKey>[] registry = new ConcurrentMap[DataType.count()];
+	static {
+		for( int i = 0; i < registry.length; i++ ) {
+			registry[i] = new ConcurrentHashMap<String,MetaKey>();
+		}
+	}
+	
+	private final String name;
+	private final DataType type;
+	
+	// tag and name in the version 1 format
+	private final String formatted;
+	private final char[] formattedChars;
+	
+	// tag and name in the current format
+	private final String encoded;
+	private final char[] encodedChars;
+	
+	private final int keyHash;
+	private final int hash;
+	
+	public MetaKey( String key, DataType type ) {
+		name = key;
+		this.type = type;
+		
+		char[] chars = new char[2 + key.length()*2];
+		chars[0] = LoreCodec.COLOR_CHAR;
+		chars[1] = (char)(LoreCodec.TAG_BASE + type.getInt());
+		for( int i = 0; i < key.length(); i++ ) {
+			chars[2+i*2] = LoreCodec.COLOR_CHAR;
+			chars[3+i*2] = key.charAt(i);
+		}
+		formattedChars = chars;
+		formatted = new String( chars );
+		
+		encoded = LoreCodec.encodeKey( key, type );
+		encodedChars = encoded.toCharArray();
+		keyHash = LoreCodec.hashKey( encoded );
+		hash = formatted.hashCode();
+	}
+	
+	/**************************************************************************
+	 * Get the registered key for a name and type.
+	 * 
+	 * The key is created and registered on first use. It is an instance of
+	 * the MetaKey subclass for the type, e.g. MetaKeyInt for INT.
+	 * 
+	 * @param name Key name
+	 * @param type Key type
+	 * @return     Shared key instance
+	 * @throws IllegalArgumentException for ENUM, which needs the enum
+	 *         class, see MetaKeyEnum.of, or for a reserved name
+	 **************************************************************************/
+	public static MetaKey of( String name, DataType type ) {
+		checkName( name );
+		MetaKey key = registry[type.getInt()].get( name );
+		if( key != null ) return key;
+		return register( create( name, type ) );
+	}
+	
+	/**************************************************************************
+	 * Check if a name is reserved for LoreMeta's own entries.
+	 * 
+	 * @param name Key name, e.g. from MetaCursor.getName
+	 * @return     true if the name starts with "~"
+	 **************************************************************************/
+	public static boolean isReserved( CharSequence name ) {
+		return name.length() > 0 && name.charAt( 0 ) == RESERVED_PREFIX;
+	}
+	
+	/**************************************************************************
+	 * Check if this key has a reserved name.
+	 * 
+	 * @see #isReserved(CharSequence)
+	 **************************************************************************/
+	public boolean isReserved() {
+		return isReserved( name );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// registered key for LoreMeta's own data, the name must be reserved
+	static MetaKey reserved( String name, DataType type ) {
+		if( !isReserved( name ) ) {
+			throw new IllegalArgumentException( "Key " + name + " is not a reserved name." );
+		}
+		MetaKey key = registry[type.getInt()].get( name );
+		return key != null ? key : register( create( name, type ) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void checkName( String name ) {
+		if( isReserved( name ) ) {
+			throw new IllegalArgumentException( "Key names starting with " 
+					+ RESERVED_PREFIX + " are reserved: " + name );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// adds a key to the registry, or returns the one already there
+	static MetaKey register( MetaKey key ) {
+		MetaKey existing = registry[key.getDataType().getInt()].putIfAbsent( key.getName(), key );
+		return existing == null ? key : existing;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// registered key, or null if there isn't one. Never adds keys, so 
+	// arbitrary names read from items can't fill the registry.
+	static MetaKey lookup( String name, DataType type ) {
+		return registry[type.getInt()].get( name );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static MetaKey create( String name, DataType type ) {
+		switch( type ) {
+		case BYTE:
+			return new MetaKeyByte( name );
+		case SHORT:
+			return new MetaKeyShort( name );
+		case INT:
+			return new MetaKeyInt( name );
+		case LONG:
+			return new MetaKeyLong( name );
+		case UID:
+			return new MetaKeyUUID( name );
+		case TEXT:
+			return new MetaKeyText( name );
+		case FLAG:
+			return new MetaKeyFlag( name );
+		case VARINT:
+			return new MetaKeyVarInt( name );
+		case VARLONG:
+			return new MetaKeyVarLong( name );
+		case FLOAT:
+			return new MetaKeyFloat( name );
+		case DOUBLE:
+			return new MetaKeyDouble( name );
+		case ENUM:
+			throw new IllegalArgumentException( "ENUM keys need an enum class, use MetaKeyEnum.of." );
+		default:
+			return new MetaKey( name, type );
+		}
+	}
+	
+	public String getFormattedKey() {
+		return formatted;
+	}
+	
+	// getFormattedKey as characters, must not be modified
+	char[] getFormattedChars() {
+		return formattedChars;
+	}
+	
+	// tag and name in the current format
+	String getEncodedKey() {
+		return encoded;
+	}
+	
+	// getEncodedKey as characters, must not be modified
+	char[] getEncodedChars() {
+		return encodedChars;
+	}
+	
+	// hash used in the entry directory
+	int getKeyHash() {
+		return keyHash;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public DataType getDataType() {
+		return type;
+		
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public boolean equals( Object obj ) {
+		if( this == obj ) return true;
+		if( obj == null ) return false;
+		if( !(obj instanceof MetaKey) ) return false;
+		MetaKey key = (MetaKey)obj;
+		return hash == key.hash && formatted.equals(key.formatted);
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// converts a decoded value to what the typed API returns, see MetaKeyEnum
+	Object fromStored( Object value ) {
+		return value;
+	}
+}
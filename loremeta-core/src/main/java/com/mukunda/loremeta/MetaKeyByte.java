@@ -5,4 +5,9 @@ public class MetaKeyByte extends MetaKey {
 	public MetaKeyByte( String key ) {
 		super( key, DataType.BYTE );
 	}
+	
+	// registered key, see MetaKey.of
+	public static MetaKeyByte of( String key ) {
+		return (MetaKeyByte)MetaKey.of( key, DataType.BYTE );
+	}
 }
\ No newline at end of file
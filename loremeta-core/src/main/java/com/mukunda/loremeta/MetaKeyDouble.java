@@ -0,0 +1,13 @@
+package com.mukunda.loremeta;
+
+//---------------------------------------------------------------------------------------------
+public class MetaKeyDouble extends MetaKey {
+	public MetaKeyDouble( String key ) {
+		super( key, DataType.DOUBLE );
+	}
+	
+	// registered key, see MetaKey.of
+	public static MetaKeyDouble of( String key ) {
+		return (MetaKeyDouble)MetaKey.of( key, DataType.DOUBLE );
+	}
+}
@@ -0,0 +1,43 @@
+package com.mukunda.loremeta;
+
+//---------------------------------------------------------------------------------------------
+// constants are stored by ordinal, so only add new ones at the end of the enum
+public class MetaKeyEnum<E extends Enum<E>> extends MetaKey {
+	private final Class<E> enumClass;
+	private final E[] constants;
+	
+	public MetaKeyEnum( String key, Class<E> enumClass ) {
+		super( key, DataType.ENUM );
+		this.enumClass = enumClass;
+		constants = enumClass.getEnumConstants();
+	}
+	
+	// registered key, see MetaKey.of. A name can only be registered with one enum class.
+	@SuppressWarnings("unchecked")
+	public static <E extends Enum<E>> MetaKeyEnum<E> of( String key, Class<E> enumClass ) {
+		MetaKey.checkName( key );
+		MetaKey registered = MetaKey.lookup( key, DataType.ENUM );
+		if( registered == null ) {
+			registered = MetaKey.register( new MetaKeyEnum<E>( key, enumClass ) );
+		}
+		if( ((MetaKeyEnum<?>)registered).enumClass != enumClass ) {
+			throw new IllegalArgumentException( "Key " + key + " is registered with " 
+					+ ((MetaKeyEnum<?>)registered).enumClass.getName() + "." );
+		}
+		return (MetaKeyEnum<E>)registered;
+	}
+	
+	public Class<E> getEnumClass() {
+		return enumClass;
+	}
+	
+	// constant for an ordinal, null if it is out of range
+	public E fromOrdinal( int ordinal ) {
+		return ordinal >= 0 && ordinal < constants.length ? constants[ordinal] : null;
+	}
+	
+	@Override
+	Object fromStored( Object value ) {
+		return value instanceof Integer ? fromOrdinal( (Integer)value ) : value;
+	}
+}
@@ -4,4 +4,9 @@ public class MetaKeyFlag extends MetaKey {
 	public MetaKeyFlag( String key ) {
 		super( key, DataType.FLAG );
 	}
+	
+	// registered key, see MetaKey.of
+	public static MetaKeyFlag of( String key ) {
+		return (MetaKeyFlag)MetaKey.of( key, DataType.FLAG );
+	}
 }
@@ -0,0 +1,13 @@
+package com.mukunda.loremeta;
+
+//---------------------------------------------------------------------------------------------
+public class MetaKeyFloat extends MetaKey {
+	public MetaKeyFloat( String key ) {
+		super( key, DataType.FLOAT );
+	}
+	
+	// registered key, see MetaKey.of
+	public static MetaKeyFloat of( String key ) {
+		return (MetaKeyFloat)MetaKey.of( key, DataType.FLOAT );
+	}
+}
@@ -0,0 +1,18 @@
+package com.mukunda.loremeta;
+
+//---------------------------------------------------------------------------------------------
+public class MetaKeyInt extends MetaKey {
+	public MetaKeyInt( String key ) {
+		super( key, DataType.INT );
+	}
+	
+	// for the variable length subclass
+	MetaKeyInt( String key, DataType type ) {
+		super( key, type );
+	}
+	
+	// registered key, see MetaKey.of
+	public static MetaKeyInt of( String key ) {
+		return (MetaKeyInt)MetaKey.of( key, DataType.INT );
+	}
+}
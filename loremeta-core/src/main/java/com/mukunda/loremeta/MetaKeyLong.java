@@ -0,0 +1,18 @@
+package com.mukunda.loremeta;
+
+//---------------------------------------------------------------------------------------------
+public class MetaKeyLong extends MetaKey {
+	public MetaKeyLong( String key ) {
+		super( key, DataType.LONG );
+	}
+	
+	// for the variable length subclass
+	MetaKeyLong( String key, DataType type ) {
+		super( key, type );
+	}
+	
+	// registered key, see MetaKey.of
+	public static MetaKeyLong of( String key ) {
+		return (MetaKeyLong)MetaKey.of( key, DataType.LONG );
+	}
+}
\ No newline at end of file
@@ -5,4 +5,9 @@ public class MetaKeyShort extends MetaKey {
 	public MetaKeyShort( String key ) {
 		super( key, DataType.SHORT );
 	}
+	
+	// registered key, see MetaKey.of
+	public static MetaKeyShort of( String key ) {
+		return (MetaKeyShort)MetaKey.of( key, DataType.SHORT );
+	}
 }
@@ -5,4 +5,9 @@ public class MetaKeyText extends MetaKey {
 	public MetaKeyText( String key ) {
 		super( key, DataType.TEXT );
 	}
+	
+	// registered key, see MetaKey.of
+	public static MetaKeyText of( String key ) {
+		return (MetaKeyText)MetaKey.of( key, DataType.TEXT );
+	}
 }
@@ -4,4 +4,9 @@ public class MetaKeyUUID extends MetaKey {
 	public MetaKeyUUID( String key ) {
 		super( key, DataType.UID );
 	}
+	
+	// registered key, see MetaKey.of
+	public static MetaKeyUUID of( String key ) {
+		return (MetaKeyUUID)MetaKey.of( key, DataType.UID );
+	}
 }
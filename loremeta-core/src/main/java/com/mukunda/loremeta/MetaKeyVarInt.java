@@ -0,0 +1,14 @@
+package com.mukunda.loremeta;
+
+//---------------------------------------------------------------------------------------------
+// an int key stored as a varint, works everywhere a MetaKeyInt does
+public class MetaKeyVarInt extends MetaKeyInt {
+	public MetaKeyVarInt( String key ) {
+		super( key, DataType.VARINT );
+	}
+	
+	// registered key, see MetaKey.of
+	public static MetaKeyVarInt of( String key ) {
+		return (MetaKeyVarInt)MetaKey.of( key, DataType.VARINT );
+	}
+}
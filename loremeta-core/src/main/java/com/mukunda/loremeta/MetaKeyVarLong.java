@@ -0,0 +1,14 @@
+package com.mukunda.loremeta;
+
+//---------------------------------------------------------------------------------------------
+// a long key stored as a varint, works everywhere a MetaKeyLong does
+public class MetaKeyVarLong extends MetaKeyLong {
+	public MetaKeyVarLong( String key ) {
+		super( key, DataType.VARLONG );
+	}
+	
+	// registered key, see MetaKey.of
+	public static MetaKeyVarLong of( String key ) {
+		return (MetaKeyVarLong)MetaKey.of( key, DataType.VARLONG );
+	}
+}
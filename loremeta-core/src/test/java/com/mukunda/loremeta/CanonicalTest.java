@@ -0,0 +1,150 @@
+package com.mukunda.loremeta;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class CanonicalTest {
+
+	static final MetaKeyInt A = MetaKeyInt.of( "a" );
+	static final MetaKeyText B = MetaKeyText.of( "b" );
+	static final MetaKeyFlag C = MetaKeyFlag.of( "c" );
+	static final MetaKeyLong D = MetaKeyLong.of( "d" );
+
+	@After
+	public void restore() {
+		LoreCodec.setCanonicalOrder( false );
+		LoreCodec.setDirectoryEnabled( false );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static Map<MetaKey,Object> values( MetaKey... order ) {
+		Map<MetaKey,Object> all = new LinkedHashMap<MetaKey,Object>();
+		all.put( A, 1 );
+		all.put( B, "two" );
+		all.put( C, true );
+		all.put( D, 4L );
+		Map<MetaKey,Object> values = new LinkedHashMap<MetaKey,Object>();
+		for( MetaKey key : order ) {
+			values.put( key, all.get( key ) );
+		}
+		return values;
+	}
+
+	@Test
+	public void fingerprintIgnoresOrder() {
+		String forward = MetaCodec.encode( values( A, B, C, D ) );
+		String backward = MetaCodec.encode( values( D, C, B, A ) );
+		assertNotEquals( forward, backward );
+		assertEquals( MetaCodec.fingerprint( forward ), MetaCodec.fingerprint( backward ) );
+		assertEquals( MetaCodec.fingerprint( "prefix" + forward ), MetaCodec.fingerprint( backward ) );
+	}
+
+	@Test
+	public void fingerprintSeesValues() {
+		String data = MetaCodec.encode( values( A, B, C, D ) );
+		StringBuilder changed = new StringBuilder( data );
+		MetaCodec.setData( changed, A, 2 );
+		assertNotEquals( MetaCodec.fingerprint( data ), MetaCodec.fingerprint( changed ) );
+		assertEquals( MetaCodec.fingerprint( data, B, C ), MetaCodec.fingerprint( changed, B, C ) );
+		assertNotEquals( MetaCodec.fingerprint( data ), MetaCodec.fingerprint( MetaCodec.encode( values( A, B, C ) ) ) );
+
+		// same name and value, different type
+		StringBuilder other = new StringBuilder();
+		MetaCodec.setData( other, MetaKeyLong.of( "a" ), 1L );
+		assertNotEquals( MetaCodec.fingerprint( MetaCodec.encode( values( A ) ) ), MetaCodec.fingerprint( other ) );
+	}
+
+	@Test
+	public void fingerprintOfV1() {
+		StringBuilder upgraded = new StringBuilder( V1.line( "" ) );
+		LoreCodec.upgrade( upgraded );
+		assertEquals( MetaCodec.fingerprint( V1.line( "" ) ), MetaCodec.fingerprint( upgraded ) );
+		assertEquals( MetaCodec.fingerprint( V1.line( "" ) ), MetaCodec.fingerprint( MetaCodec.encode( V1.values() ) ) );
+	}
+
+	@Test
+	public void canonicalize() {
+		List<MetaKey> keys = new ArrayList<MetaKey>( values( A, B, C, D ).keySet() );
+		String expected = null;
+		for( int i = 0; i < 8; i++ ) {
+			Collections.rotate( keys, 1 );
+			if( i == 4 ) Collections.reverse( keys );
+			StringBuilder data = new StringBuilder( "Name" );
+			MetaCodec.setAll( data, values( keys.toArray( new MetaKey[0] ) ) );
+			MetaCodec.canonicalize( data );
+			if( expected == null ) expected = data.toString();
+			assertEquals( expected, data.toString() );
+		}
+		assertTrue( expected.startsWith( "Name" ) );
+		assertEquals( values( A, B, C, D ), MetaCodec.decodeAll( expected ) );
+	}
+
+	@Test
+	public void canonicalizeV1() {
+		StringBuilder data = new StringBuilder( V1.line( "Old" ) );
+		MetaCodec.canonicalize( data );
+		assertEquals( "Old".length(), LoreCodec.findHeader( data ) );
+		assertEquals( V1.values(), MetaCodec.decodeAll( data ) );
+
+		StringBuilder plain = new StringBuilder( "No data" );
+		MetaCodec.canonicalize( plain );
+		assertEquals( "No data", plain.toString() );
+	}
+
+	@Test
+	public void canonicalOrderMode() {
+		LoreCodec.setCanonicalOrder( true );
+		LoreCodec.setDirectoryEnabled( true );
+		StringBuilder first = new StringBuilder();
+		StringBuilder second = new StringBuilder();
+		for( Map.Entry<MetaKey,Object> entry : values( A, B, C, D ).entrySet() ) {
+			Map<MetaKey,Object> one = new LinkedHashMap<MetaKey,Object>();
+			one.put( entry.getKey(), entry.getValue() );
+			MetaCodec.setAll( first, one );
+		}
+		for( Map.Entry<MetaKey,Object> entry : values( D, B, A, C ).entrySet() ) {
+			Map<MetaKey,Object> one = new LinkedHashMap<MetaKey,Object>();
+			one.put( entry.getKey(), entry.getValue() );
+			MetaCodec.setAll( second, one );
+		}
+		assertEquals( first.toString(), second.toString() );
+		assertEquals( "two", MetaCodec.getData( first, B ) );
+	}
+
+	@Test
+	public void otherCharactersAreKept() {
+		StringBuilder data = new StringBuilder( MetaCodec.encode( values( D, C, B, A ) ) );
+		data.insert( data.indexOf( B.getEncodedKey() ), "between" );
+		data.append( "after" );
+		String before = data.toString();
+
+		MetaCodec.canonicalize( data );
+		assertEquals( before, data.toString() );
+		assertEquals( values( D, C, B, A ), MetaCodec.decodeAll( data ) );
+
+		LoreCodec.setCanonicalOrder( true );
+		MetaCodec.setData( data, A, 5 );
+		MetaCodec.setData( data, MetaKeyInt.of( "e" ), 6 );
+		assertTrue( data.indexOf( "between" ) != -1 );
+		assertTrue( data.indexOf( "after" ) != -1 );
+		assertEquals( Integer.valueOf( 6 ), MetaCodec.getData( data, MetaKeyInt.of( "e" ) ) );
+	}
+
+	@Test
+	public void trailingTextIsKept() {
+		StringBuilder data = new StringBuilder( MetaCodec.encode( values( D, C, B, A ) ) );
+		data.append( "ab" );
+		MetaCodec.canonicalize( data );
+		assertTrue( data.toString().endsWith( "ab" ) );
+		assertEquals( values( A, B, C, D ), MetaCodec.decodeAll( data ) );
+		assertEquals( A, MetaCodec.decodeAll( data ).keySet().iterator().next() );
+	}
+}
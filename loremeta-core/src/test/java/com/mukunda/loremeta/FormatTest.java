@@ -0,0 +1,227 @@
+package com.mukunda.loremeta;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class FormatTest {
+
+	enum Color { RED, GREEN, BLUE }
+
+	static final UUID ID = new UUID( 0x1122334455667788L, 0x99AABBCCDDEEFF00L );
+
+	//---------------------------------------------------------------------------------------------
+	// one entry of every type, with values that use all the bits
+	static Map<MetaKey,Object> allTypes() {
+		Map<MetaKey,Object> values = new LinkedHashMap<MetaKey,Object>();
+		values.put( MetaKeyByte.of( "byte" ), (byte)-128 );
+		values.put( MetaKeyShort.of( "short" ), (short)-12345 );
+		values.put( MetaKeyInt.of( "int" ), 0x89ABCDEF );
+		values.put( MetaKeyLong.of( "long" ), 0xFEDCBA9876543210L );
+		values.put( MetaKeyUUID.of( "uuid" ), ID );
+		values.put( MetaKeyText.of( "text" ), "Text § with é and 世界" );
+		values.put( MetaKeyFlag.of( "flag" ), Boolean.TRUE );
+		values.put( MetaKeyVarInt.of( "varint" ), -300 );
+		values.put( MetaKeyVarLong.of( "varlong" ), Long.MIN_VALUE );
+		values.put( MetaKeyFloat.of( "float" ), -1.5e-7f );
+		values.put( MetaKeyDouble.of( "double" ), Math.PI );
+		values.put( MetaKeyEnum.of( "enum", Color.class ), Color.BLUE );
+		return values;
+	}
+
+	@After
+	public void restore() {
+		LoreCodec.setDirectoryEnabled( false );
+	}
+
+	@Test
+	public void everyTypeIsCovered() {
+		assertEquals( DataType.values().length, allTypes().size() );
+	}
+
+	@Test
+	public void roundTripV2() {
+		checkRoundTrip( false );
+	}
+
+	@Test
+	public void roundTripV2Directory() {
+		checkRoundTrip( true );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	private void checkRoundTrip( boolean directory ) {
+		LoreCodec.setDirectoryEnabled( directory );
+		Map<MetaKey,Object> values = allTypes();
+		String data = MetaCodec.encode( values );
+
+		int header = LoreCodec.findHeader( data ) + LoreCodec.HEADER.length();
+		assertEquals( directory, LoreCodec.getDirectoryLength( data, header ) > 0 );
+		assertEquals( values, MetaCodec.decodeAll( data ) );
+		for( Map.Entry<MetaKey,Object> entry : values.entrySet() ) {
+			assertEquals( entry.getValue(), MetaCodec.getValue( data, entry.getKey() ) );
+		}
+		MetaKey[] keys = values.keySet().toArray( new MetaKey[0] );
+		assertArrayEquals( values.values().toArray(), MetaCodec.getValues( data, keys ) );
+
+		// written one at a time, in reverse, around other text
+		StringBuilder built = new StringBuilder( "Lore line" );
+		for( int i = keys.length - 1; i >= 0; i-- ) {
+			Map<MetaKey,Object> one = new LinkedHashMap<MetaKey,Object>();
+			one.put( keys[i], values.get( keys[i] ) );
+			MetaCodec.setAll( built, one );
+		}
+		assertTrue( built.toString().startsWith( "Lore line" ) );
+		assertEquals( values, MetaCodec.decodeAll( built ) );
+		assertEquals( MetaCodec.fingerprint( data ), MetaCodec.fingerprint( built ) );
+	}
+
+	@Test
+	public void directoryDoesNotChangeValues() {
+		String plain = MetaCodec.encode( allTypes() );
+		LoreCodec.setDirectoryEnabled( true );
+		String indexed = MetaCodec.encode( allTypes() );
+		assertTrue( indexed.length() > plain.length() );
+		assertEquals( MetaCodec.decodeAll( plain ), MetaCodec.decodeAll( indexed ) );
+		assertEquals( MetaCodec.fingerprint( plain ), MetaCodec.fingerprint( indexed ) );
+	}
+
+	@Test
+	public void readV1() {
+		String data = V1.line( "Old item" );
+		Map<MetaKey,Object> values = V1.values();
+		assertEquals( values, MetaCodec.decodeAll( data ) );
+		for( Map.Entry<MetaKey,Object> entry : values.entrySet() ) {
+			assertEquals( entry.getValue(), MetaCodec.getValue( data, entry.getKey() ) );
+		}
+		MetaKey[] keys = values.keySet().toArray( new MetaKey[0] );
+		assertArrayEquals( values.values().toArray(), MetaCodec.getValues( data, keys ) );
+		assertEquals( -1, LoreCodec.findHeader( data ) );
+	}
+
+	@Test
+	public void upgradeV1() {
+		checkUpgrade( false );
+	}
+
+	@Test
+	public void upgradeV1Directory() {
+		checkUpgrade( true );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	private void checkUpgrade( boolean directory ) {
+		LoreCodec.setDirectoryEnabled( directory );
+		StringBuilder data = new StringBuilder( V1.line( "Old item" ) );
+		Map<MetaKey,Object> values = V1.values();
+		long fingerprint = MetaCodec.fingerprint( data );
+
+		MetaCodec.setData( data, MetaKeyDouble.of( "new" ), 2.5 );
+		values.put( MetaKeyDouble.of( "new" ), 2.5 );
+
+		assertTrue( data.toString().startsWith( "Old item" ) );
+		assertEquals( "Old item".length(), LoreCodec.findHeader( data ) );
+		assertEquals( values, MetaCodec.decodeAll( data ) );
+
+		MetaCodec.removeData( data, MetaKeyDouble.of( "new" ) );
+		assertEquals( fingerprint, MetaCodec.fingerprint( data ) );
+	}
+
+	@Test
+	public void upgradeV1OnRemove() {
+		StringBuilder data = new StringBuilder( V1.line( "" ) );
+		assertTrue( MetaCodec.removeData( data, MetaKeyText.of( "T" ) ) );
+		Map<MetaKey,Object> values = V1.values();
+		values.remove( MetaKeyText.of( "T" ) );
+		assertEquals( values, MetaCodec.decodeAll( data ) );
+	}
+
+	@Test
+	public void truncatedLines() {
+		checkTruncated( V1.line( "x" ), V1.values() );
+		checkTruncated( MetaCodec.encode( allTypes() ), allTypes() );
+		LoreCodec.setDirectoryEnabled( true );
+		checkTruncated( MetaCodec.encode( allTypes() ), allTypes() );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// every prefix must read without errors, and any entry it reads must be
+	// right. A flag cut inside its name is still a valid flag, so only known
+	// keys are compared.
+	private void checkTruncated( String data, Map<MetaKey,Object> values ) {
+		MetaKey[] keys = values.keySet().toArray( new MetaKey[0] );
+		for( int length = 0; length < data.length(); length++ ) {
+			String prefix = data.substring( 0, length );
+			for( Map.Entry<MetaKey,Object> entry : MetaCodec.decodeAll( prefix ).entrySet() ) {
+				if( !values.containsKey( entry.getKey() ) ) {
+					assertEquals( DataType.FLAG, entry.getKey().getDataType() );
+					continue;
+				}
+				assertEquals( values.get( entry.getKey() ), entry.getValue() );
+			}
+			Object[] read = MetaCodec.getValues( prefix, keys );
+			for( int i = 0; i < keys.length; i++ ) {
+				Object single = MetaCodec.getValue( prefix, keys[i] );
+				assertEquals( read[i], single );
+				if( single != null ) assertEquals( values.get( keys[i] ), single );
+			}
+			MetaCodec.fingerprint( prefix );
+			MetaCodec.getSizes( prefix );
+
+			// writing after a cut entry must not lose the entries before it
+			StringBuilder copy = new StringBuilder( prefix );
+			MetaCodec.setData( copy, MetaKeyInt.of( "after" ), 1 );
+			Map<MetaKey,Object> after = MetaCodec.decodeAll( copy );
+			for( int i = 0; i < keys.length; i++ ) {
+				if( read[i] != null ) assertEquals( read[i], after.get( keys[i] ) );
+			}
+		}
+	}
+
+	@Test
+	public void garbageLines() {
+		Random random = new Random( 1234 );
+		MetaKey[] keys = allTypes().keySet().toArray( new MetaKey[0] );
+		String valid = MetaCodec.encode( allTypes() );
+		for( int n = 0; n < 2000; n++ ) {
+			StringBuilder data = new StringBuilder();
+			int length = random.nextInt( 40 );
+			for( int i = 0; i < length; i++ ) {
+				switch( random.nextInt( 4 ) ) {
+				case 0:
+					data.append( LoreCodec.COLOR_CHAR );
+					break;
+				case 1:
+					data.append( valid.charAt( random.nextInt( valid.length() ) ) );
+					break;
+				default:
+					data.append( (char)random.nextInt( 0x10000 ) );
+					break;
+				}
+			}
+			if( n % 2 == 0 ) data.insert( random.nextInt( data.length() + 1 ), LoreCodec.HEADER );
+
+			MetaCodec.decodeAll( data );
+			MetaCodec.getValues( data, keys );
+			MetaCodec.fingerprint( data );
+			MetaCodec.getSizes( data );
+			MetaCursor cursor = new MetaCursor( data );
+			while( cursor.next() ) {
+				cursor.getName();
+			}
+		}
+	}
+
+	@Test
+	public void plainTextIsNotData() {
+		assertTrue( MetaCodec.decodeAll( "§aGreen §lbold text" ).isEmpty() );
+		assertNull( MetaCodec.getData( "§", MetaKeyInt.of( "int" ) ) );
+		assertNull( MetaCodec.getData( LoreCodec.HEADER, MetaKeyInt.of( "int" ) ) );
+	}
+}
@@ -0,0 +1,345 @@
+package com.mukunda.loremeta;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MetaCodecTest {
+
+	static final MetaKeyByte BYTE = MetaKeyByte.of( "b" );
+	static final MetaKeyShort SHORT = MetaKeyShort.of( "s" );
+	static final MetaKeyInt INT = MetaKeyInt.of( "i" );
+	static final MetaKeyLong LONG = MetaKeyLong.of( "l" );
+	static final MetaKeyUUID UID = MetaKeyUUID.of( "u" );
+	static final MetaKeyText TEXT = MetaKeyText.of( "t" );
+	static final MetaKeyFlag FLAG = MetaKeyFlag.of( "f" );
+
+	@After
+	public void restore() {
+		LoreCodec.setDirectoryEnabled( false );
+	}
+
+	@Test
+	public void emptyTextHasNoData() {
+		assertNull( MetaCodec.getData( "", INT ) );
+		assertFalse( MetaCodec.getData( "", FLAG ) );
+		assertFalse( MetaCodec.hasData( "plain lore", TEXT ) );
+		assertTrue( MetaCodec.decodeAll( "plain lore" ).isEmpty() );
+	}
+
+	@Test
+	public void setAndGet() {
+		UUID id = UUID.randomUUID();
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, BYTE, (byte)-7 );
+		MetaCodec.setData( data, SHORT, (short)31000 );
+		MetaCodec.setData( data, INT, Integer.MIN_VALUE );
+		MetaCodec.setData( data, LONG, Long.MAX_VALUE );
+		MetaCodec.setData( data, UID, id );
+		MetaCodec.setData( data, TEXT, "hello" );
+		MetaCodec.setFlag( data, FLAG );
+
+		assertEquals( Byte.valueOf( (byte)-7 ), MetaCodec.getData( data, BYTE ) );
+		assertEquals( Short.valueOf( (short)31000 ), MetaCodec.getData( data, SHORT ) );
+		assertEquals( Integer.valueOf( Integer.MIN_VALUE ), MetaCodec.getData( data, INT ) );
+		assertEquals( Long.valueOf( Long.MAX_VALUE ), MetaCodec.getData( data, LONG ) );
+		assertEquals( id, MetaCodec.getData( data, UID ) );
+		assertEquals( "hello", MetaCodec.getData( data, TEXT ) );
+		assertTrue( MetaCodec.getData( data, FLAG ) );
+		assertEquals( 7, MetaCodec.decodeAll( data ).size() );
+	}
+
+	@Test
+	public void replaceKeepsOtherEntries() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, INT, 1 );
+		MetaCodec.setData( data, TEXT, "short" );
+		MetaCodec.setData( data, LONG, 2L );
+		MetaCodec.setData( data, TEXT, "a much longer value" );
+		MetaCodec.setData( data, INT, 3 );
+
+		assertEquals( Integer.valueOf( 3 ), MetaCodec.getData( data, INT ) );
+		assertEquals( "a much longer value", MetaCodec.getData( data, TEXT ) );
+		assertEquals( Long.valueOf( 2 ), MetaCodec.getData( data, LONG ) );
+		assertEquals( 3, MetaCodec.decodeAll( data ).size() );
+	}
+
+	@Test
+	public void sameSizeWriteIsInPlace() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, INT, 1 );
+		MetaCodec.setData( data, TEXT, "abc" );
+		String before = data.toString();
+		MetaCodec.setData( data, TEXT, "xyz" );
+		assertEquals( before.length(), data.length() );
+		assertEquals( before.substring( 0, before.indexOf( TEXT.getEncodedKey() ) ),
+				data.substring( 0, before.indexOf( TEXT.getEncodedKey() ) ) );
+		assertEquals( "xyz", MetaCodec.getData( data, TEXT ) );
+	}
+
+	@Test
+	public void removeData() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, INT, 5 );
+		MetaCodec.setFlag( data, FLAG );
+
+		assertTrue( MetaCodec.removeData( data, INT ) );
+		assertFalse( MetaCodec.removeData( data, INT ) );
+		assertNull( MetaCodec.getData( data, INT ) );
+		assertTrue( MetaCodec.getData( data, FLAG ) );
+
+		MetaCodec.clearFlag( data, FLAG );
+		assertFalse( MetaCodec.getData( data, FLAG ) );
+
+		MetaCodec.setData( data, TEXT, "x" );
+		MetaCodec.setData( data, TEXT, null );
+		assertFalse( MetaCodec.hasData( data, TEXT ) );
+	}
+
+	@Test
+	public void typesAreSeparate() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, MetaKeyInt.of( "same" ), 1 );
+		MetaCodec.setData( data, MetaKeyText.of( "same" ), "one" );
+		assertEquals( Integer.valueOf( 1 ), MetaCodec.getData( data, MetaKeyInt.of( "same" ) ) );
+		assertEquals( "one", MetaCodec.getData( data, MetaKeyText.of( "same" ) ) );
+		assertNull( MetaCodec.getData( data, MetaKeyLong.of( "same" ) ) );
+	}
+
+	@Test
+	public void textAroundDataIsKept() {
+		StringBuilder data = new StringBuilder( "Sword of Testing" );
+		MetaCodec.setData( data, INT, 12 );
+		assertTrue( data.toString().startsWith( "Sword of Testing" ) );
+		assertEquals( Integer.valueOf( 12 ), MetaCodec.getData( data, INT ) );
+	}
+
+	@Test
+	public void encodeAndGetValues() {
+		Map<MetaKey,Object> values = new LinkedHashMap<MetaKey,Object>();
+		values.put( INT, 42 );
+		values.put( TEXT, "name" );
+		values.put( FLAG, true );
+		String data = MetaCodec.encode( values );
+
+		assertEquals( values, MetaCodec.decodeAll( data ) );
+		assertArrayEquals( new Object[] { "name", null, 42, Boolean.TRUE },
+				MetaCodec.getValues( data, TEXT, LONG, INT, FLAG ) );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// every way of removing a missing entry must leave the line as it was
+	static void checkRemoveMissing( String line ) {
+		StringBuilder data = new StringBuilder( line );
+		MetaCodec.setData( data, INT, null );
+		MetaCodec.clearFlag( data, FLAG );
+		assertFalse( MetaCodec.removeData( data, TEXT ) );
+		Map<MetaKey,Object> values = new LinkedHashMap<MetaKey,Object>();
+		values.put( LONG, null );
+		values.put( FLAG, false );
+		MetaCodec.setAll( data, values );
+		assertEquals( line, data.toString() );
+	}
+
+	@Test
+	public void removingMissingKeyKeepsLine() {
+		checkRemoveMissing( "" );
+		checkRemoveMissing( "Spellbook" );
+		checkRemoveMissing( V1.line( "Old" ) );
+		checkRemoveMissing( MetaCodec.encode( FormatTest.allTypes() ) );
+		LoreCodec.setDirectoryEnabled( true );
+		checkRemoveMissing( "Lore" + MetaCodec.encode( FormatTest.allTypes() ) );
+	}
+
+	@Test
+	public void setAllRemovesNullAndFalse() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, INT, 1 );
+		MetaCodec.setFlag( data, FLAG );
+
+		Map<MetaKey,Object> values = new LinkedHashMap<MetaKey,Object>();
+		values.put( INT, null );
+		values.put( FLAG, false );
+		values.put( LONG, 9L );
+		MetaCodec.setAll( data, values );
+
+		assertEquals( 1, MetaCodec.decodeAll( data ).size() );
+		assertEquals( Long.valueOf( 9 ), MetaCodec.getData( data, LONG ) );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void setAllRejectsWrongType() {
+		Map<MetaKey,Object> values = new LinkedHashMap<MetaKey,Object>();
+		values.put( INT, "not an int" );
+		MetaCodec.setAll( new StringBuilder(), values );
+	}
+
+	@Test
+	public void incrementCreatesAndSaturates() {
+		StringBuilder data = new StringBuilder();
+		assertEquals( 5, MetaCodec.increment( data, INT, 5 ) );
+		assertEquals( 2, MetaCodec.increment( data, INT, -3 ) );
+		assertEquals( Integer.valueOf( 2 ), MetaCodec.getData( data, INT ) );
+
+		MetaCodec.setData( data, INT, Integer.MAX_VALUE - 1 );
+		assertEquals( Integer.MAX_VALUE, MetaCodec.increment( data, INT, 10 ) );
+		MetaCodec.setData( data, LONG, Long.MIN_VALUE + 1 );
+		assertEquals( Long.MIN_VALUE, MetaCodec.increment( data, LONG, -10L ) );
+		assertEquals( Long.valueOf( Long.MIN_VALUE ), MetaCodec.getData( data, LONG ) );
+	}
+
+	@Test
+	public void incrementRange() {
+		StringBuilder data = new StringBuilder();
+		assertEquals( 0, MetaCodec.increment( data, INT, -1, 0, 10 ) );
+		assertEquals( 10, MetaCodec.increment( data, INT, 50, 0, 10 ) );
+		assertEquals( 3, MetaCodec.increment( data, MetaKeyVarInt.of( "vi" ), 1, 3, 10 ) );
+		assertEquals( Integer.valueOf( 3 ), MetaCodec.getData( data, MetaKeyVarInt.of( "vi" ) ) );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void incrementRejectsBadRange() {
+		MetaCodec.increment( new StringBuilder(), INT, 1, 5, 4 );
+	}
+
+	@Test
+	public void incrementIsInPlace() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, TEXT, "before" );
+		MetaCodec.setData( data, INT, 1 );
+		MetaCodec.setData( data, LONG, 1L );
+		String before = data.toString();
+		MetaCodec.increment( data, INT, 1000000 );
+		MetaCodec.increment( data, LONG, -1L << 50 );
+
+		assertEquals( before.length(), data.length() );
+		int value = before.indexOf( INT.getEncodedKey() );
+		assertEquals( before.substring( 0, value ), data.substring( 0, value ) );
+		assertEquals( Integer.valueOf( 1000001 ), MetaCodec.getData( data, INT ) );
+		assertEquals( Long.valueOf( 1 - (1L << 50) ), MetaCodec.getData( data, LONG ) );
+		assertEquals( "before", MetaCodec.getData( data, TEXT ) );
+	}
+
+	@Test
+	public void incrementUpgradesV1() {
+		StringBuilder data = new StringBuilder( V1.line( "" ) );
+		assertEquals( -99998, MetaCodec.increment( data, MetaKeyInt.of( "I" ), 1 ) );
+		assertEquals( Integer.valueOf( -99998 ), MetaCodec.getData( data, MetaKeyInt.of( "I" ) ) );
+		assertEquals( "abc", MetaCodec.getData( data, MetaKeyText.of( "T" ) ) );
+	}
+
+	@Test
+	public void sizes() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, INT, 1 );
+		MetaCodec.setData( data, TEXT, "abcdef" );
+
+		Map<MetaKey,Integer> sizes = MetaCodec.getSizes( data );
+		assertEquals( Integer.valueOf( MetaCodec.getEncodedSize( INT, 1 ) ), sizes.get( INT ) );
+		assertEquals( Integer.valueOf( MetaCodec.getEncodedSize( TEXT, "abcdef" ) ), sizes.get( TEXT ) );
+		assertEquals( 0, MetaCodec.getEncodedSize( TEXT, null ) );
+
+		int estimate = MetaCodec.estimateSize( data, LONG, 5L );
+		MetaCodec.setData( data, LONG, 5L );
+		assertEquals( data.length(), estimate );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// the estimate must match the length after the write, for each key set and removed
+	static void checkEstimates( String line ) {
+		Map<MetaKey,Object> values = new LinkedHashMap<MetaKey,Object>();
+		values.put( INT, 8 );
+		values.put( TEXT, "estimated" );
+		values.put( FLAG, true );
+		values.put( MetaKeyInt.of( "I" ), 5 );
+		values.put( MetaKeyText.of( "T" ), "abcd" );
+		values.put( MetaKeyVarInt.of( "varint" ), 1 << 20 );
+		values.put( MetaKeyFlag.of( "F" ), true );
+		for( Map.Entry<MetaKey,Object> entry : values.entrySet() ) {
+			for( Object value : new Object[] { entry.getValue(), null } ) {
+				StringBuilder data = new StringBuilder( line );
+				int estimate = MetaCodec.estimateSize( data, entry.getKey(), value );
+				MetaCodec.setAll( data, Collections.singletonMap( entry.getKey(), value ) );
+				assertEquals( line + " " + entry.getKey().getName() + "=" + value, data.length(), estimate );
+			}
+		}
+	}
+
+	@Test
+	public void estimateMatchesWrite() {
+		checkEstimates( "" );
+		checkEstimates( "Spellbook" );
+		checkEstimates( V1.line( "Old" ) );
+		checkEstimates( MetaCodec.encode( FormatTest.allTypes() ) );
+		LoreCodec.setDirectoryEnabled( true );
+		checkEstimates( "Spellbook" );
+		checkEstimates( V1.line( "Old" ) );
+		checkEstimates( "Lore" + MetaCodec.encode( FormatTest.allTypes() ) );
+	}
+
+	@Test
+	public void wrappedArray() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, INT, 77 );
+		char[] chars = ("xx" + data + "yy").toCharArray();
+		assertEquals( Integer.valueOf( 77 ), MetaCodec.getData( MetaCodec.wrap( chars, 2, data.length() ), INT ) );
+	}
+
+	@Test
+	public void registeredKeysAreShared() {
+		assertSame( INT, MetaKeyInt.of( "i" ) );
+		assertSame( INT, MetaKey.of( "i", DataType.INT ) );
+		assertNotSame( INT, new MetaKeyInt( "i" ) );
+		assertEquals( INT, new MetaKeyInt( "i" ) );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void reservedNameIsRejected() {
+		MetaKey.of( "~mine", DataType.INT );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void reservedEnumNameIsRejected() {
+		MetaKeyEnum.of( "~mine", FormatTest.Color.class );
+	}
+
+	@Test
+	public void reservedNames() {
+		assertTrue( MetaKey.isReserved( "~x" ) );
+		assertFalse( MetaKey.isReserved( "x~" ) );
+		assertFalse( MetaKey.isReserved( "" ) );
+		assertTrue( MetaKey.reserved( "~x", DataType.TEXT ).isReserved() );
+		assertFalse( TEXT.isReserved() );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// reserved entries must not show up in any view of all entries
+	static void checkHidden( MetaKey key, Object value ) {
+		StringBuilder plain = new StringBuilder( "Lore" );
+		MetaCodec.setData( plain, INT, 3 );
+		MetaCodec.setData( plain, MetaKeyText.of( "世~" ), "kept" );
+		StringBuilder data = new StringBuilder( plain );
+		MetaCodec.setAll( data, Collections.singletonMap( key, value ) );
+
+		assertEquals( value, MetaCodec.getValue( data, key ) );
+		assertEquals( MetaCodec.decodeAll( plain ), MetaCodec.decodeAll( data ) );
+		assertEquals( MetaCodec.getSizes( plain ), MetaCodec.getSizes( data ) );
+		assertEquals( MetaCodec.fingerprint( plain ), MetaCodec.fingerprint( data ) );
+		assertNotEquals( MetaCodec.fingerprint( plain, key ), MetaCodec.fingerprint( data, key ) );
+	}
+
+	@Test
+	public void reservedEntriesAreHidden() {
+		checkHidden( MetaKey.reserved( "~hidden", DataType.TEXT ), "value" );
+		checkHidden( MetaKey.reserved( "~世", DataType.INT ), 5 );
+		LoreCodec.setDirectoryEnabled( true );
+		checkHidden( MetaKey.reserved( "~hidden", DataType.TEXT ), "value" );
+		checkHidden( MetaKey.reserved( "~世", DataType.INT ), 5 );
+	}
+}
@@ -0,0 +1,137 @@
+package com.mukunda.loremeta;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MetaCursorTest {
+
+	@After
+	public void restore() {
+		LoreCodec.setDirectoryEnabled( false );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// reads the current entry with the getter for its type
+	static Object read( MetaCursor cursor ) {
+		switch( cursor.getType() ) {
+		case BYTE:
+			return (byte)cursor.getInt();
+		case SHORT:
+			return (short)cursor.getInt();
+		case INT:
+		case VARINT:
+			return cursor.getInt();
+		case LONG:
+		case VARLONG:
+			return cursor.getLong();
+		case FLOAT:
+			return cursor.getFloat();
+		case DOUBLE:
+			return cursor.getDouble();
+		case UID:
+			return new UUID( cursor.getUUIDMostBits(), cursor.getUUIDLeastBits() );
+		case TEXT:
+			return cursor.getText().toString();
+		case FLAG:
+			return Boolean.TRUE;
+		case ENUM:
+			return FormatTest.Color.values()[cursor.getInt()];
+		default:
+			return null;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// the cursor must see the same entries as decodeAll, in the same order
+	static void checkMatches( MetaCursor cursor, CharSequence data ) {
+		Map<MetaKey,Object> expected = MetaCodec.decodeAll( data );
+		Iterator<Map.Entry<MetaKey,Object>> entries = expected.entrySet().iterator();
+		cursor.reset( data );
+		while( cursor.next() ) {
+			Map.Entry<MetaKey,Object> entry = entries.next();
+			assertTrue( cursor.is( entry.getKey() ) );
+			assertEquals( entry.getKey().getName(), cursor.getName().toString() );
+			assertEquals( entry.getKey().getDataType(), cursor.getType() );
+			assertEquals( entry.getValue(), read( cursor ) );
+		}
+		assertFalse( entries.hasNext() );
+		assertFalse( cursor.next() );
+	}
+
+	@Test
+	public void everyType() {
+		checkMatches( new MetaCursor(), MetaCodec.encode( FormatTest.allTypes() ) );
+	}
+
+	@Test
+	public void everyTypeDirectory() {
+		LoreCodec.setDirectoryEnabled( true );
+		checkMatches( new MetaCursor(), "Lore" + MetaCodec.encode( FormatTest.allTypes() ) );
+	}
+
+	@Test
+	public void version1() {
+		checkMatches( new MetaCursor(), V1.line( "Old item" ) );
+	}
+
+	@Test
+	public void textModes() {
+		String[] values = { "", "Latin-1 ÿ", "Mostly ASCII with one 世", "世界", "\uD800 lone",
+				TextTest.repeat( "Repeated lore text. ", 100 ), TextTest.repeat( "世界 ", 200 ) };
+		MetaCursor cursor = new MetaCursor();
+		for( String value : values ) {
+			StringBuilder data = new StringBuilder();
+			MetaCodec.setData( data, TextTest.TEXT, value );
+			cursor.reset( data );
+			assertTrue( cursor.next() );
+			assertEquals( value, cursor.getText().toString() );
+		}
+	}
+
+	@Test
+	public void reuse() {
+		MetaCursor cursor = new MetaCursor();
+		assertFalse( cursor.next() );
+		assertFalse( cursor.reset( "" ).next() );
+		assertFalse( cursor.reset( "no data here" ).next() );
+		checkMatches( cursor, MetaCodec.encode( FormatTest.allTypes() ) );
+		checkMatches( cursor, V1.line( "" ) );
+		checkMatches( cursor, MetaCodec.encode( FormatTest.allTypes() ) );
+	}
+
+	@Test
+	public void wrappedArray() {
+		String data = MetaCodec.encode( FormatTest.allTypes() );
+		char[] chars = ("xx" + data).toCharArray();
+		checkMatches( new MetaCursor(), MetaCodec.wrap( chars, 2, data.length() ) );
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void noEntry() {
+		new MetaCursor( "" ).getInt();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void wrongType() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, TextTest.TEXT, "text" );
+		MetaCursor cursor = new MetaCursor( data );
+		assertTrue( cursor.next() );
+		cursor.getInt();
+	}
+
+	@Test
+	public void truncated() {
+		String data = MetaCodec.encode( FormatTest.allTypes() );
+		MetaCursor cursor = new MetaCursor();
+		for( int length = 0; length < data.length(); length++ ) {
+			checkMatches( cursor, data.substring( 0, length ) );
+		}
+	}
+}
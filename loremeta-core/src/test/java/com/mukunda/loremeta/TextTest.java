@@ -0,0 +1,153 @@
+package com.mukunda.loremeta;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TextTest {
+
+	static final MetaKeyText TEXT = MetaKeyText.of( "text" );
+
+	// stands for plain short text in mode()
+	static final int SHORT = -1;
+
+	@After
+	public void restore() {
+		LoreCodec.setCompressionEnabled( true );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static String repeat( String part, int count ) {
+		StringBuilder result = new StringBuilder();
+		for( int i = 0; i < count; i++ ) {
+			result.append( part );
+		}
+		return result.toString();
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// writes a value, checks it reads back and returns its storage mode
+	static int check( String value ) {
+		StringBuilder data = new StringBuilder( "Lore" );
+		MetaCodec.setData( data, TEXT, value );
+		MetaCodec.setData( data, MetaKeyInt.of( "after" ), 7 );
+		assertEquals( value, MetaCodec.getData( data, TEXT ) );
+		assertEquals( Integer.valueOf( 7 ), MetaCodec.getData( data, MetaKeyInt.of( "after" ) ) );
+		assertEquals( value, MetaCodec.decodeAll( data ).get( TEXT ) );
+		return mode( data );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static int mode( CharSequence data ) {
+		int valueStart = LoreCodec.locate( data, TEXT ) >> 1;
+		if( LoreCodec.unit( data, valueStart ) != LoreCodec.TEXT_EXTENDED ) return SHORT;
+		return LoreCodec.unit( data, valueStart + 2 );
+	}
+
+	@Test
+	public void latin1() {
+		assertEquals( SHORT, check( "" ) );
+		assertEquals( SHORT, check( "Plain text, § and ÿ" ) );
+		assertEquals( SHORT, check( repeat( "é", LoreCodec.COMPRESS_THRESHOLD - 1 ) ) );
+	}
+
+	@Test
+	public void utf8() {
+		assertEquals( LoreCodec.TEXT_UTF8, check( "Mostly ASCII with one 世" ) );
+		assertEquals( LoreCodec.TEXT_UTF8, check( "Ωμέγα" ) );
+	}
+
+	@Test
+	public void utf16() {
+		assertEquals( LoreCodec.TEXT_UTF16, check( "世界" ) );
+		assertEquals( LoreCodec.TEXT_UTF8, check( "😀😁 emoji" ) );
+		assertEquals( LoreCodec.TEXT_UTF16, check( "\uD800 lone surrogate" ) );
+		assertEquals( LoreCodec.TEXT_UTF16, check( "cut pair \uD83D" ) );
+		assertEquals( LoreCodec.TEXT_UTF16, check( repeat( "\uDE00 repeated", 100 ) ) );
+	}
+
+	@Test
+	public void longTextIsCompressed() {
+		String value = repeat( "Repeated lore text. ", 100 );
+		assertEquals( LoreCodec.TEXT_DEFLATE, check( value ) );
+
+		StringBuilder compressed = new StringBuilder();
+		MetaCodec.setData( compressed, TEXT, value );
+		LoreCodec.setCompressionEnabled( false );
+		StringBuilder plain = new StringBuilder();
+		MetaCodec.setData( plain, TEXT, value );
+
+		assertTrue( compressed.length() * 4 < plain.length() );
+		assertEquals( value, MetaCodec.getData( plain, TEXT ) );
+		assertEquals( MetaCodec.fingerprint( compressed ), MetaCodec.fingerprint( plain ) );
+		assertTrue( MetaCodec.getEncodedSize( TEXT, value ) >= compressed.length() - LoreCodec.HEADER.length() );
+	}
+
+	@Test
+	public void compressedUnicode() {
+		assertEquals( LoreCodec.TEXT_DEFLATE, check( repeat( "世界 ", 200 ) ) );
+	}
+
+	@Test
+	public void compressionDisabled() {
+		LoreCodec.setCompressionEnabled( false );
+		assertEquals( SHORT, check( repeat( "a", 5000 ) ) );
+		assertEquals( LoreCodec.TEXT_UTF16, check( repeat( "世界", 500 ) ) );
+	}
+
+	@Test
+	public void randomTextIsNotCompressed() {
+		Random random = new Random( 99 );
+		StringBuilder value = new StringBuilder();
+		for( int i = 0; i < 500; i++ ) {
+			value.append( (char)(0x4E00 + random.nextInt( 0x5000 )) );
+		}
+		assertEquals( LoreCodec.TEXT_UTF16, check( value.toString() ) );
+	}
+
+	@Test
+	public void longLatin1() {
+		LoreCodec.setCompressionEnabled( false );
+		String value = repeat( "é", LoreCodec.MAX_SHORT_TEXT + 1 );
+		assertEquals( LoreCodec.TEXT_UTF8, check( value ) );
+	}
+
+	@Test
+	public void sizeMatchesWhenNotCompressed() {
+		String[] values = { "", "abc", "世界", "Mostly ASCII with one 世", "\uD800 lone surrogate" };
+		for( String value : values ) {
+			StringBuilder data = new StringBuilder();
+			MetaCodec.setData( data, TEXT, value );
+			assertEquals( Integer.valueOf( MetaCodec.getEncodedSize( TEXT, value ) ), MetaCodec.getSizes( data ).get( TEXT ) );
+		}
+	}
+
+	@Test
+	public void sameLengthIsInPlace() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, TEXT, "世界" );
+		MetaCodec.setData( data, MetaKeyInt.of( "after" ), 1 );
+		int length = data.length();
+		MetaCodec.setData( data, TEXT, "大地" );
+		assertEquals( length, data.length() );
+		assertEquals( "大地", MetaCodec.getData( data, TEXT ) );
+		assertEquals( Integer.valueOf( 1 ), MetaCodec.getData( data, MetaKeyInt.of( "after" ) ) );
+	}
+
+	@Test
+	public void corruptCompressedText() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, TEXT, repeat( "Repeated lore text. ", 100 ) );
+		Random random = new Random( 5 );
+		int valueStart = LoreCodec.locate( data, TEXT ) >> 1;
+		for( int n = 0; n < 200; n++ ) {
+			StringBuilder copy = new StringBuilder( data );
+			int index = valueStart + 12 + random.nextInt( (copy.length() - valueStart - 12) / 2 ) * 2 + 1;
+			copy.setCharAt( index, (char)(LoreCodec.UNIT_BASE + random.nextInt( 1 << LoreCodec.UNIT_BITS )) );
+			MetaCodec.getData( copy, TEXT );
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.mukunda.loremeta;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class TypesTest {
+
+	enum Rarity { COMMON, RARE, EPIC }
+	enum Other { A }
+
+	static final MetaKeyFloat FLOAT = MetaKeyFloat.of( "float" );
+	static final MetaKeyDouble DOUBLE = MetaKeyDouble.of( "double" );
+	static final MetaKeyEnum<Rarity> RARITY = MetaKeyEnum.of( "rarity", Rarity.class );
+	static final MetaKeyVarInt VARINT = MetaKeyVarInt.of( "varint" );
+	static final MetaKeyVarLong VARLONG = MetaKeyVarLong.of( "varlong" );
+
+	@Test
+	public void floats() {
+		float[] values = { 0f, -0f, 1.25f, Float.MIN_VALUE, Float.MAX_VALUE,
+				Float.NEGATIVE_INFINITY, Float.NaN };
+		for( float value : values ) {
+			StringBuilder data = new StringBuilder();
+			MetaCodec.setData( data, FLOAT, value );
+			assertEquals( Float.floatToRawIntBits( value ), Float.floatToRawIntBits( MetaCodec.getData( data, FLOAT ) ) );
+		}
+	}
+
+	@Test
+	public void doubles() {
+		double[] values = { 0, -0.0, Math.E, Double.MIN_VALUE, -Double.MAX_VALUE,
+				Double.POSITIVE_INFINITY, Double.NaN };
+		for( double value : values ) {
+			StringBuilder data = new StringBuilder();
+			MetaCodec.setData( data, DOUBLE, value );
+			assertEquals( Double.doubleToRawLongBits( value ), Double.doubleToRawLongBits( MetaCodec.getData( data, DOUBLE ) ) );
+		}
+	}
+
+	@Test
+	public void floatIsNotInt() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, FLOAT, 1f );
+		assertFalse( MetaCodec.hasData( data, MetaKeyInt.of( "float" ) ) );
+	}
+
+	@Test
+	public void enums() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, RARITY, Rarity.EPIC );
+		assertEquals( Rarity.EPIC, MetaCodec.getData( data, RARITY ) );
+		assertEquals( Rarity.EPIC, MetaCodec.decodeAll( data ).get( RARITY ) );
+
+		MetaCodec.setData( data, RARITY, null );
+		assertNull( MetaCodec.getData( data, RARITY ) );
+	}
+
+	@Test
+	public void enumOrdinalOutOfRange() {
+		Map<MetaKey,Object> values = new LinkedHashMap<MetaKey,Object>();
+		values.put( new MetaKey( "rarity", DataType.ENUM ), 7 );
+		String data = MetaCodec.encode( values );
+		assertNull( MetaCodec.getData( data, RARITY ) );
+		assertEquals( Integer.valueOf( 7 ), MetaCodec.getValue( data, new MetaKey( "rarity", DataType.ENUM ) ) );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void enumOrdinalNotNegative() {
+		Map<MetaKey,Object> values = new LinkedHashMap<MetaKey,Object>();
+		values.put( new MetaKey( "rarity", DataType.ENUM ), -1 );
+		MetaCodec.encode( values );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void enumKeyHasOneClass() {
+		MetaKeyEnum.of( "rarity", Other.class );
+	}
+
+	@Test
+	public void varints() {
+		int[] values = { 0, 1, -1, 8191, -8192, 8192, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		for( int value : values ) {
+			StringBuilder data = new StringBuilder();
+			MetaCodec.setData( data, VARINT, value );
+			assertEquals( Integer.valueOf( value ), MetaCodec.getData( data, VARINT ) );
+			assertEquals( Integer.valueOf( MetaCodec.getEncodedSize( VARINT, value ) ), MetaCodec.getSizes( data ).get( VARINT ) );
+		}
+		assertTrue( MetaCodec.getEncodedSize( VARINT, 5 ) < MetaCodec.getEncodedSize( MetaKeyInt.of( "int" ), 5 ) );
+
+		long[] longs = { 0, -1, Long.MAX_VALUE, Long.MIN_VALUE, 1L << 40 };
+		for( long value : longs ) {
+			StringBuilder data = new StringBuilder();
+			MetaCodec.setData( data, VARLONG, value );
+			assertEquals( Long.valueOf( value ), MetaCodec.getData( data, VARLONG ) );
+		}
+	}
+
+	@Test
+	public void convertString() {
+		assertEquals( (byte)-3, DataType.BYTE.convertString( "-3" ) );
+		assertEquals( 70000, DataType.VARINT.convertString( "70000" ) );
+		assertEquals( 1.5f, DataType.FLOAT.convertString( "1.5" ) );
+		assertEquals( -2.25, DataType.DOUBLE.convertString( "-2.25" ) );
+		assertEquals( 2, DataType.ENUM.convertString( "2" ) );
+		assertEquals( new UUID( 0, 1 ), DataType.UID.convertString( "00000000-0000-0000-0000-000000000001" ) );
+
+		assertNull( DataType.ENUM.convertString( "-1" ) );
+		assertNull( DataType.BYTE.convertString( "300" ) );
+		assertNull( DataType.FLOAT.convertString( "x" ) );
+		assertNull( DataType.FLAG.convertString( "1" ) );
+	}
+}
@@ -0,0 +1,71 @@
+package com.mukunda.loremeta;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+//---------------------------------------------------------------------------------------------
+// writer for the version 1 format, which the codec only reads now
+final class V1 {
+	private V1() {}
+
+	static final UUID ID = new UUID( 0x1122334455667788L, 0x99AABBCCDDEEFF00L );
+
+	//---------------------------------------------------------------------------------------------
+	static void key( StringBuilder output, String name, DataType type ) {
+		output.append( LoreCodec.COLOR_CHAR ).append( (char)(LoreCodec.TAG_BASE + type.getInt()) );
+		for( char c : name.toCharArray() ) {
+			output.append( LoreCodec.COLOR_CHAR ).append( c );
+		}
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// little endian, one byte per color char pair
+	static void bytes( StringBuilder output, long value, int count ) {
+		for( int i = 0; i < count; i++ ) {
+			output.append( LoreCodec.COLOR_CHAR ).append( (char)(((value >> (8*i)) & 0xFF) + LoreCodec.DATA_BASE) );
+		}
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static void text( StringBuilder output, String value ) {
+		bytes( output, value.length(), 1 );
+		for( char c : value.toCharArray() ) {
+			output.append( LoreCodec.COLOR_CHAR ).append( c );
+		}
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// a line with one entry of every version 1 type, see values
+	static String line( String prefix ) {
+		StringBuilder output = new StringBuilder( prefix );
+		key( output, "B", DataType.BYTE );
+		bytes( output, -5, 1 );
+		key( output, "S", DataType.SHORT );
+		bytes( output, 1234, 2 );
+		key( output, "I", DataType.INT );
+		bytes( output, -99999, 4 );
+		key( output, "L", DataType.LONG );
+		bytes( output, 1L << 40, 8 );
+		key( output, "U", DataType.UID );
+		bytes( output, ID.getLeastSignificantBits(), 8 );
+		bytes( output, ID.getMostSignificantBits(), 8 );
+		key( output, "T", DataType.TEXT );
+		text( output, "abc" );
+		key( output, "F", DataType.FLAG );
+		return output.toString();
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static Map<MetaKey,Object> values() {
+		Map<MetaKey,Object> values = new LinkedHashMap<MetaKey,Object>();
+		values.put( MetaKeyByte.of( "B" ), (byte)-5 );
+		values.put( MetaKeyShort.of( "S" ), (short)1234 );
+		values.put( MetaKeyInt.of( "I" ), -99999 );
+		values.put( MetaKeyLong.of( "L" ), 1L << 40 );
+		values.put( MetaKeyUUID.of( "U" ), ID );
+		values.put( MetaKeyText.of( "T" ), "abc" );
+		values.put( MetaKeyFlag.of( "F" ), Boolean.TRUE );
+		return values;
+	}
+}
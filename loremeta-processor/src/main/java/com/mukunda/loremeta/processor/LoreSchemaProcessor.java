@@ -0,0 +1,590 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+import com.mukunda.loremeta.LoreKey;
+import com.mukunda.loremeta.LoreSchema;
+
+/******************************************************************************
+ * Generates an accessor class for each interface marked with @LoreSchema.
+ * 
+ * See LoreSchema for what the interfaces look like and how the generated
+ * classes are used. Problems with a schema are reported as compile errors
+ * on the method that caused them, and no accessor is written for it.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+@SupportedAnnotationTypes( "com.mukunda.loremeta.LoreSchema" )
+public class LoreSchemaProcessor extends AbstractProcessor {
+	
+	// one bit per property in the generated present/changed masks
+	private static final int MAX_PROPERTIES = 64;
+	
+	private static final String ACCESSOR_SUFFIX = "Accessor";
+	
+	// fields of the generated class that properties can't share names with. generated 
+	// parameters and locals start with $, which is reserved too
+	private static final Set<String> RESERVED = new HashSet<String>( 
+			Arrays.asList( "present", "changed", "KEYS" ) );
+	
+	// ItemStack methods are only generated when the Bukkit plugin is on the classpath
+	private static final String ITEM_STACK = "org.bukkit.inventory.ItemStack";
+	private static final String LORE_META = "com.mukunda.loremeta.LoreMeta";
+	
+	/**
+	 * Supported return types and the code used for them.
+	 */
+	private enum Kind {
+		BYTE  ( "byte",    "Byte",    "MetaKeyByte",  "0"     ),
+		SHORT ( "short",   "Short",   "MetaKeyShort", "0"     ),
+		INT   ( "int",     "Integer", "MetaKeyInt",   "0"     ),
+		LONG  ( "long",    "Long",    "MetaKeyLong",  "0"     ),
+		UID   ( "UUID",    "UUID",    "MetaKeyUUID",  "null"  ),
+		TEXT  ( "String",  "String",  "MetaKeyText",  "null"  ),
+		FLAG  ( "boolean", "Boolean", "MetaKeyFlag",  "false" ),
+		FLOAT ( "float",   "Float",   "MetaKeyFloat", "0"     ),
+		DOUBLE( "double",  "Double",  "MetaKeyDouble","0"     ),
+		
+		// type and key class are filled in from the enum, see Property
+		ENUM  ( null,      null,      "MetaKeyEnum",  "null"  );
+		
+		final String type;
+		final String boxed;
+		final String keyClass;
+		final String empty;
+		
+		Kind( String type, String boxed, String keyClass, String empty ) {
+			this.type = type;
+			this.boxed = boxed;
+			this.keyClass = keyClass;
+			this.empty = empty;
+		}
+		
+		boolean isPrimitive() {
+			return !empty.equals( "null" );
+		}
+	}
+	
+	/**
+	 * A schema method and the key it maps to.
+	 */
+	private static final class Property {
+		final ExecutableElement element;
+		final String method;
+		final String key;
+		final Kind kind;
+		
+		// names of the generated has/remove methods and the key constant
+		final String has;
+		final String remove;
+		final String constant;
+		
+		// Java type of the value and its boxed form
+		final String type;
+		final String boxed;
+		
+		// declared type of the key constant and the expression creating it
+		final String keyType;
+		final String keyInit;
+		
+		Property( ExecutableElement element, String key, Kind kind, String enumType ) {
+			this.element = element;
+			this.method = element.getSimpleName().toString();
+			this.key = key;
+			this.kind = kind;
+			
+			String suffix = Character.toUpperCase( method.charAt(0) ) + method.substring(1);
+			has = "has" + suffix;
+			remove = "remove" + suffix;
+			
+			// KEY_ and the method name in upper snake case
+			StringBuilder name = new StringBuilder( "KEY_" );
+			for( int i = 0; i < method.length(); i++ ) {
+				char c = method.charAt(i);
+				if( Character.isUpperCase( c ) && i > 0 ) name.append( '_' );
+				name.append( Character.toUpperCase( c ) );
+			}
+			constant = name.toString();
+			if( kind == Kind.ENUM ) {
+				type = boxed = enumType;
+				keyType = kind.keyClass + "<" + enumType + ">";
+				keyInit = kind.keyClass + ".of( " + AccessorWriter.quote( key ) + ", " + enumType + ".class )";
+			} else {
+				type = kind.type;
+				boxed = kind.boxed;
+				keyType = kind.keyClass;
+				keyInit = kind.keyClass + ".of( " + AccessorWriter.quote( key ) + " )";
+			}
+		}
+	}
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment round ) {
+		for( Element element : round.getElementsAnnotatedWith( LoreSchema.class ) ) {
+			if( element.getKind() != ElementKind.INTERFACE ) {
+				error( element, "@LoreSchema can only be used on interfaces." );
+				continue;
+			}
+			
+			TypeElement schema = (TypeElement)element;
+			List<Property> properties = readProperties( schema );
+			if( properties == null ) continue;
+			
+			try {
+				writeAccessor( schema, properties );
+			} catch( IOException e ) {
+				error( schema, "Couldn't write the accessor: " + e.getMessage() );
+			}
+		}
+		return true;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// properties of a schema, or null if there were errors
+	private List<Property> readProperties( TypeElement schema ) {
+		boolean valid = true;
+		if( schema.getModifiers().contains( Modifier.PRIVATE ) ) {
+			error( schema, "@LoreSchema interfaces can't be private." );
+			valid = false;
+		}
+		if( !schema.getTypeParameters().isEmpty() ) {
+			error( schema, "@LoreSchema interfaces can't be generic." );
+			valid = false;
+		}
+		
+		List<Property> properties = new ArrayList<Property>();
+		Set<String> keys = new HashSet<String>();
+		
+		for( ExecutableElement method : ElementFilter.methodsIn( 
+				processingEnv.getElementUtils().getAllMembers( schema ) ) ) {
+			
+			// Object methods and default/static methods aren't keys
+			if( method.getEnclosingElement().getKind() != ElementKind.INTERFACE ) continue;
+			if( !method.getModifiers().contains( Modifier.ABSTRACT ) ) continue;
+			
+			String name = method.getSimpleName().toString();
+			if( !method.getParameters().isEmpty() ) {
+				error( method, "Schema method " + name + " can't have parameters." );
+				valid = false;
+				continue;
+			}
+			
+			if( RESERVED.contains( name ) || name.startsWith( "$" ) ) {
+				error( method, "Schema method " + name + " has a reserved name. Rename it and "
+						+ "use @LoreKey to keep the key name." );
+				valid = false;
+				continue;
+			}
+			
+			Kind kind = getKind( method.getReturnType() );
+			if( kind == null ) {
+				error( method, "Schema method " + name + " returns " + method.getReturnType() 
+						+ ", which isn't a LoreMeta type. Use byte, short, int, long, "
+						+ "float, double, UUID, String, boolean or an enum." );
+				valid = false;
+				continue;
+			}
+			
+			LoreKey override = method.getAnnotation( LoreKey.class );
+			String key = override == null ? name : override.value();
+			if( key.isEmpty() ) {
+				error( method, "Key names can't be empty." );
+				valid = false;
+				continue;
+			}
+			if( !keys.add( kind + ":" + key ) ) {
+				error( method, "Key \"" + key + "\" of type " + kind + " is used more than once." );
+				valid = false;
+				continue;
+			}
+			
+			String enumType = kind == Kind.ENUM 
+					? ((TypeElement)((DeclaredType)method.getReturnType()).asElement())
+							.getQualifiedName().toString()
+					: null;
+			properties.add( new Property( method, key, kind, enumType ) );
+		}
+		
+		if( !checkGeneratedNames( properties ) ) valid = false;
+		if( properties.size() > MAX_PROPERTIES ) {
+			error( schema, "A schema can have at most " + MAX_PROPERTIES + " keys." );
+			valid = false;
+		}
+		return valid ? properties : null;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// the has/remove methods and KEY_ constants generated for each property must not clash 
+	// with the schema methods or with each other, or the accessor wouldn't compile. clashes
+	// are reported on the schema method, returns false if there were any
+	private boolean checkGeneratedNames( List<Property> properties ) {
+		
+		// no-argument methods and fields of the accessor, and the property they come from
+		Map<String,Property> methods = new HashMap<String,Property>();
+		Map<String,Property> fields = new HashMap<String,Property>();
+		for( Property p : properties ) {
+			methods.put( p.method, p );
+			fields.put( p.method, p );
+		}
+		
+		// only the first clash of each property is reported
+		boolean valid = true;
+		for( Property p : properties ) {
+			if( !checkName( methods, p, p.has, "method" ) 
+					|| !checkName( methods, p, p.remove, "method" ) 
+					|| !checkName( fields, p, p.constant, "constant" ) ) {
+				valid = false;
+			}
+		}
+		return valid;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private boolean checkName( Map<String,Property> names, Property p, String name, String what ) {
+		Property owner = names.get( name );
+		if( owner == null ) {
+			names.put( name, p );
+			return true;
+		}
+		
+		// a schema method named like the helper gets the error, otherwise the later property
+		Property blamed = owner.method.equals( name ) ? owner : p;
+		Property other = blamed == p ? owner : p;
+		error( blamed.element, "Schema method " + blamed.method + " clashes with the " + what 
+				+ " " + name + " generated for " + other.method
+				+ ". Rename it and use @LoreKey to keep the key name." );
+		return false;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static Kind getKind( TypeMirror type ) {
+		switch( type.getKind() ) {
+		case BYTE:
+			return Kind.BYTE;
+		case SHORT:
+			return Kind.SHORT;
+		case INT:
+			return Kind.INT;
+		case LONG:
+			return Kind.LONG;
+		case BOOLEAN:
+			return Kind.FLAG;
+		case FLOAT:
+			return Kind.FLOAT;
+		case DOUBLE:
+			return Kind.DOUBLE;
+		case DECLARED:
+			if( ((DeclaredType)type).asElement().getKind() == ElementKind.ENUM ) return Kind.ENUM;
+			String name = type.toString();
+			if( name.equals( "java.util.UUID" ) ) return Kind.UID;
+			if( name.equals( "java.lang.String" ) ) return Kind.TEXT;
+			return null;
+		default:
+			return null;
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void writeAccessor( TypeElement schema, List<Property> properties ) throws IOException {
+		String packageName = processingEnv.getElementUtils().getPackageOf( schema )
+				.getQualifiedName().toString();
+		
+		// nested schemas are named after the enclosing types, e.g. Items_SpellbookAccessor
+		String className = schema.getSimpleName().toString();
+		for( Element outer = schema.getEnclosingElement(); outer.getKind() != ElementKind.PACKAGE; 
+				outer = outer.getEnclosingElement() ) {
+			className = outer.getSimpleName() + "_" + className;
+		}
+		className += ACCESSOR_SUFFIX;
+		
+		String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+		boolean bukkit = processingEnv.getElementUtils().getTypeElement( ITEM_STACK ) != null
+				&& processingEnv.getElementUtils().getTypeElement( LORE_META ) != null;
+		
+		PrintWriter out = new PrintWriter( 
+				processingEnv.getFiler().createSourceFile( qualifiedName, schema ).openWriter() );
+		try {
+			new AccessorWriter( out, schema.getQualifiedName().toString(), className, 
+					properties, bukkit ).write( packageName );
+		} finally {
+			out.close();
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void error( Element element, String message ) {
+		processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR, message, element );
+	}
+	
+	/**
+	 * Writes the source of one accessor.
+	 */
+	private static final class AccessorWriter {
+		private final PrintWriter out;
+		private final String schema;
+		private final String className;
+		private final List<Property> properties;
+		private final boolean bukkit;
+		
+		AccessorWriter( PrintWriter out, String schema, String className, 
+				List<Property> properties, boolean bukkit ) {
+			this.out = out;
+			this.schema = schema;
+			this.className = className;
+			this.properties = properties;
+			this.bukkit = bukkit;
+		}
+		
+		void write( String packageName ) {
+			if( !packageName.isEmpty() ) {
+				out.println( "package " + packageName + ";" );
+				out.println();
+			}
+			out.println( "import java.util.LinkedHashMap;" );
+			out.println( "import java.util.Map;" );
+			out.println( "import java.util.UUID;" );
+			out.println();
+			if( bukkit ) {
+				out.println( "import org.bukkit.inventory.ItemStack;" );
+				out.println();
+				out.println( "import com.mukunda.loremeta.LoreChanges;" );
+				out.println( "import com.mukunda.loremeta.LoreEditor;" );
+				out.println( "import com.mukunda.loremeta.LoreMeta;" );
+			}
+			out.println( "import com.mukunda.loremeta.MetaCodec;" );
+			out.println( "import com.mukunda.loremeta.MetaKey;" );
+			for( Kind kind : Kind.values() ) {
+				out.println( "import com.mukunda.loremeta." + kind.keyClass + ";" );
+			}
+			out.println();
+			out.println( "/**" );
+			out.println( " * Typed LoreMeta accessor for " + schema + "." );
+			out.println( " * " );
+			out.println( " * Generated by the LoreMeta schema processor. Do not edit." );
+			out.println( " */" );
+			out.println( "@SuppressWarnings( \"unused\" )" );
+			out.println( "public final class " + className + " implements " + schema + " {" );
+			out.println();
+			
+			writeKeys();
+			writeFields();
+			writeRead();
+			writeProperties();
+			writeWrite();
+			
+			out.println( "}" );
+		}
+		
+		private void writeKeys() {
+			for( Property p : properties ) {
+				out.println( "\tpublic static final " + p.keyType + " " + p.constant 
+						+ " = " + p.keyInit + ";" );
+			}
+			out.println();
+			out.print( "\tprivate static final MetaKey[] KEYS = {" );
+			for( int i = 0; i < properties.size(); i++ ) {
+				out.print( (i == 0 ? " " : ", ") + properties.get(i).constant );
+			}
+			out.println( " };" );
+			out.println();
+		}
+		
+		private void writeFields() {
+			for( Property p : properties ) {
+				out.println( "\tprivate " + p.type + " " + p.method + ";" );
+			}
+			out.println();
+			out.println( "\t// bit per key, in KEYS order" );
+			out.println( "\tprivate long present;" );
+			out.println( "\tprivate long changed;" );
+			out.println();
+			out.println( "\t/** Create an accessor with no values. */" );
+			out.println( "\tpublic " + className + "() {}" );
+			out.println();
+		}
+		
+		private void writeRead() {
+			out.println( "\t/** Read all keys from encoded text with one pass. */" );
+			out.println( "\tpublic static " + className + " read( CharSequence $data ) {" );
+			out.println( "\t\treturn new " + className + "().load( MetaCodec.getValues( $data, KEYS ) );" );
+			out.println( "\t}" );
+			out.println();
+			if( bukkit ) {
+				out.println( "\t/** Read all keys from an item with one pass. */" );
+				out.println( "\tpublic static " + className + " read( ItemStack $item ) {" );
+				out.println( "\t\treturn new " + className + "().load( LoreMeta.getValues( $item, KEYS ) );" );
+				out.println( "\t}" );
+				out.println();
+			}
+			out.println( "\tprivate " + className + " load( Object[] $values ) {" );
+			for( int i = 0; i < properties.size(); i++ ) {
+				Property p = properties.get(i);
+				out.println( "\t\tif( $values[" + i + "] != null ) {" );
+				out.println( "\t\t\tthis." + p.method + " = (" + p.boxed + ")$values[" + i + "];" );
+				out.println( "\t\t\tpresent |= " + bit( i ) + ";" );
+				out.println( "\t\t}" );
+			}
+			out.println( "\t\treturn this;" );
+			out.println( "\t}" );
+			out.println();
+		}
+		
+		private void writeProperties() {
+			for( int i = 0; i < properties.size(); i++ ) {
+				Property p = properties.get(i);
+				String bit = bit( i );
+				
+				out.println( "\t@Override" );
+				out.println( "\tpublic " + p.type + " " + p.method + "() {" );
+				out.println( "\t\treturn this." + p.method + ";" );
+				out.println( "\t}" );
+				out.println();
+				
+				out.println( "\tpublic boolean " + p.has + "() {" );
+				out.println( "\t\treturn (present & " + bit + ") != 0;" );
+				out.println( "\t}" );
+				out.println();
+				
+				out.println( "\tpublic " + className + " " + p.method + "( " + p.type + " $value ) {" );
+				out.println( "\t\tthis." + p.method + " = $value;" );
+				if( p.kind == Kind.FLAG ) {
+					out.println( "\t\tpresent = $value ? present | " + bit + " : present & ~" + bit + ";" );
+				} else if( !p.kind.isPrimitive() ) {
+					out.println( "\t\tpresent = $value != null ? present | " + bit + " : present & ~" + bit + ";" );
+				} else {
+					out.println( "\t\tpresent |= " + bit + ";" );
+				}
+				out.println( "\t\tchanged |= " + bit + ";" );
+				out.println( "\t\treturn this;" );
+				out.println( "\t}" );
+				out.println();
+				
+				out.println( "\tpublic " + className + " " + p.remove + "() {" );
+				out.println( "\t\tthis." + p.method + " = " + p.kind.empty + ";" );
+				out.println( "\t\tpresent &= ~" + bit + ";" );
+				out.println( "\t\tchanged |= " + bit + ";" );
+				out.println( "\t\treturn this;" );
+				out.println( "\t}" );
+				out.println();
+			}
+		}
+		
+		private void writeWrite() {
+			out.println( "\t/** Write the changed values to encoded text with one encode. */" );
+			out.println( "\tpublic void writeTo( StringBuilder $data ) {" );
+			out.println( "\t\tMap<MetaKey,Object> $values = new LinkedHashMap<MetaKey,Object>();" );
+			for( int i = 0; i < properties.size(); i++ ) {
+				Property p = properties.get(i);
+				String value = p.kind.isPrimitive() 
+						? p.boxed + ".valueOf( this." + p.method + " )" : "this." + p.method;
+				out.println( "\t\tif( (changed & " + bit( i ) + ") != 0 ) {" );
+				out.println( "\t\t\t$values.put( " + p.constant + ", (present & " + bit( i ) 
+						+ ") != 0 ? " + value + " : null );" );
+				out.println( "\t\t}" );
+			}
+			out.println( "\t\tMetaCodec.setAll( $data, $values );" );
+			out.println( "\t\tchanged = 0;" );
+			out.println( "\t}" );
+			out.println();
+			
+			if( !bukkit ) return;
+			
+			out.println( "\t/** Queue the changed values on an editor or commit. */" );
+			out.println( "\tpublic void stage( LoreChanges<?> $changes ) {" );
+			for( int i = 0; i < properties.size(); i++ ) {
+				Property p = properties.get(i);
+				out.println( "\t\tif( (changed & " + bit( i ) + ") != 0 ) {" );
+				if( p.kind == Kind.FLAG ) {
+					out.println( "\t\t\tif( this." + p.method + " ) $changes.setFlag( " + p.constant 
+							+ " ); else $changes.clearFlag( " + p.constant + " );" );
+				} else {
+					out.println( "\t\t\tif( (present & " + bit( i ) + ") != 0 ) $changes.setData( " 
+							+ p.constant + ", this." + p.method + " ); else $changes.removeData( " 
+							+ p.constant + " );" );
+				}
+				out.println( "\t\t}" );
+			}
+			out.println( "\t\tchanged = 0;" );
+			out.println( "\t}" );
+			out.println();
+			
+			out.println( "\t/** Write the changed values to an item with one encode. */" );
+			out.println( "\tpublic void writeTo( ItemStack $item ) {" );
+			out.println( "\t\tLoreEditor $editor = LoreMeta.edit( $item );" );
+			out.println( "\t\tstage( $editor );" );
+			out.println( "\t\t$editor.commit();" );
+			out.println( "\t}" );
+		}
+		
+		private static String bit( int index ) {
+			return "(1L << " + index + ")";
+		}
+		
+		static String quote( String value ) {
+			StringBuilder result = new StringBuilder( "\"" );
+			for( int i = 0; i < value.length(); i++ ) {
+				char c = value.charAt(i);
+				if( c == '"' || c == '\\' ) {
+					result.append( '\\' ).append( c );
+				} else if( c < 0x20 || c > 0x7E ) {
+					result.append( String.format( "\\u%04X", (int)c ) );
+				} else {
+					result.append( c );
+				}
+			}
+			return result.append( '"' ).toString();
+		}
+	}
+}
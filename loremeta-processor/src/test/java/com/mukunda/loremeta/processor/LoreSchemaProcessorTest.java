@@ -0,0 +1,197 @@
+package com.mukunda.loremeta.processor;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mukunda.loremeta.LoreSchema;
+
+public class LoreSchemaProcessorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	//---------------------------------------------------------------------------------------------
+	// source file held in memory
+	static final class Source extends SimpleJavaFileObject {
+		final String code;
+
+		Source( String className, String code ) {
+			super( URI.create( "string:///" + className.replace( '.', '/' ) + Kind.SOURCE.extension ), Kind.SOURCE );
+			this.code = code;
+		}
+
+		@Override
+		public CharSequence getCharContent( boolean ignoreEncodingErrors ) {
+			return code;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// schema interface test.Spellbook with the given members
+	static Source schema( String... members ) {
+		StringBuilder code = new StringBuilder();
+		code.append( "package test;\n" );
+		code.append( "import java.util.UUID;\n" );
+		code.append( "import com.mukunda.loremeta.LoreKey;\n" );
+		code.append( "import com.mukunda.loremeta.LoreSchema;\n" );
+		code.append( "@LoreSchema\n" );
+		code.append( "public interface Spellbook {\n" );
+		for( String member : members ) {
+			code.append( "\t" ).append( member ).append( "\n" );
+		}
+		code.append( "}\n" );
+		return new Source( "test.Spellbook", code.toString() );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// loremeta-core, which the schemas and the accessors use
+	static String classPath() throws Exception {
+		return new File( LoreSchema.class.getProtectionDomain().getCodeSource().getLocation().toURI() ).getPath();
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// compiles sources with the processor, returns the errors
+	List<Diagnostic<? extends JavaFileObject>> compile( Source... sources ) throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager files = compiler.getStandardFileManager( diagnostics, Locale.ROOT, null );
+		try {
+			files.setLocation( StandardLocation.CLASS_OUTPUT, Collections.singleton( folder.getRoot() ) );
+			files.setLocation( StandardLocation.SOURCE_OUTPUT, Collections.singleton( folder.getRoot() ) );
+			JavaCompiler.CompilationTask task = compiler.getTask( null, files, diagnostics,
+					Arrays.asList( "-classpath", classPath(), "-proc:only" ),
+					null, Arrays.asList( sources ) );
+			task.setProcessors( Collections.singleton( new LoreSchemaProcessor() ) );
+			task.call();
+
+			// then compile what was generated, without the processor
+			List<Diagnostic<? extends JavaFileObject>> errors = errors( diagnostics );
+			if( !errors.isEmpty() ) return errors;
+			List<File> generated = new ArrayList<File>();
+			collect( folder.getRoot(), generated );
+			List<JavaFileObject> all = new ArrayList<JavaFileObject>( Arrays.asList( sources ) );
+			for( JavaFileObject file : files.getJavaFileObjectsFromFiles( generated ) ) {
+				all.add( file );
+			}
+			compiler.getTask( null, files, diagnostics,
+					Arrays.asList( "-classpath", classPath(), "-proc:none" ),
+					null, all ).call();
+			return errors( diagnostics );
+		} finally {
+			files.close();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static List<Diagnostic<? extends JavaFileObject>> errors( DiagnosticCollector<JavaFileObject> diagnostics ) {
+		List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+		for( Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics() ) {
+			if( diagnostic.getKind() == Diagnostic.Kind.ERROR ) errors.add( diagnostic );
+		}
+		return errors;
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static void collect( File directory, List<File> output ) {
+		for( File file : directory.listFiles() ) {
+			if( file.isDirectory() ) collect( file, output );
+			else if( file.getName().endsWith( ".java" ) ) output.add( file );
+		}
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// the schema must fail with one error on the line of the named method, and no accessor
+	void checkError( String method, String message, String... members ) throws Exception {
+		Source source = schema( members );
+		List<Diagnostic<? extends JavaFileObject>> errors = compile( source );
+		assertEquals( errors.toString(), 1, errors.size() );
+		Diagnostic<? extends JavaFileObject> error = errors.get(0);
+		assertSame( source, error.getSource() );
+		String line = source.code.split( "\n" )[(int)error.getLineNumber() - 1];
+		assertTrue( line, line.contains( " " + method + "(" ) );
+		assertTrue( error.getMessage( Locale.ROOT ), error.getMessage( Locale.ROOT ).contains( message ) );
+		assertFalse( new File( folder.getRoot(), "test/SpellbookAccessor.java" ).exists() );
+	}
+
+	@Test
+	public void accessorCompilesAndWorks() throws Exception {
+		Source color = new Source( "test.Color", "package test; public enum Color { RED, BLUE }" );
+		assertEquals( Collections.emptyList(), compile( color, schema(
+				"int power();", "short charges();", "UUID owner();", "boolean bound();",
+				"@LoreKey( \"n\" ) String name();", "Color color();", "double weight();",
+				"long value();", "String data();", "int item();" ) ) );
+
+		ClassLoader loader = new URLClassLoader( new URL[] { folder.getRoot().toURI().toURL() },
+				getClass().getClassLoader() );
+		Class<?> type = loader.loadClass( "test.SpellbookAccessor" );
+		Object accessor = type.getConstructor().newInstance();
+		type.getMethod( "power", int.class ).invoke( accessor, 12 );
+		type.getMethod( "name", String.class ).invoke( accessor, "Tome" );
+		StringBuilder data = new StringBuilder( "Book" );
+		type.getMethod( "writeTo", StringBuilder.class ).invoke( accessor, data );
+
+		Object read = type.getMethod( "read", CharSequence.class ).invoke( null, data );
+		assertEquals( 12, type.getMethod( "power" ).invoke( read ) );
+		assertEquals( "Tome", type.getMethod( "name" ).invoke( read ) );
+		assertEquals( true, type.getMethod( "hasPower" ).invoke( read ) );
+		assertEquals( false, type.getMethod( "hasCharges" ).invoke( read ) );
+		assertNotNull( type.getField( "KEY_POWER" ).get( null ) );
+	}
+
+	@Test
+	public void clashWithHas() throws Exception {
+		checkError( "hasPower", "hasPower", "int power();", "boolean hasPower();" );
+		checkError( "hasPower", "hasPower", "boolean hasPower();", "int power();" );
+	}
+
+	@Test
+	public void clashWithRemove() throws Exception {
+		checkError( "removePower", "removePower", "int power();", "boolean removePower();" );
+	}
+
+	@Test
+	public void clashingConstants() throws Exception {
+		checkError( "foo_bar", "KEY_FOO_BAR", "int fooBar();", "long foo_bar();" );
+		checkError( "KEY_POWER", "KEY_POWER", "int power();", "int KEY_POWER();" );
+	}
+
+	@Test
+	public void clashingHelpers() throws Exception {
+		checkError( "Power", "hasPower", "int power();", "long Power();" );
+	}
+
+	@Test
+	public void reservedNames() throws Exception {
+		checkError( "present", "reserved", "int present();" );
+		checkError( "$value", "reserved", "int $value();" );
+	}
+
+	@Test
+	public void badMethods() throws Exception {
+		checkError( "power", "parameters", "int power( int x );" );
+		checkError( "power", "isn't a LoreMeta type", "Object power();" );
+		checkError( "other", "more than once", "int power();", "@LoreKey( \"power\" ) int other();" );
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.scanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import com.mukunda.loremeta.MetaCursor;
+import com.mukunda.loremeta.MetaKey;
+
+/******************************************************************************
+ * Conditions an item's data must meet to be reported.
+ * 
+ * Entries are matched by name, since the scanner doesn't know the keys 
+ * the plugins on the server register. A condition either needs an entry
+ * to exist, or to have a certain value when written as text (see 
+ * format). With no conditions, every item with LoreMeta data matches.
+ * 
+ * Filters are immutable once built and can be shared between threads;
+ * the cursor passed in carries the per-thread state.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+final class ItemFilter {
+	
+	// conditions are tracked with a bit each while matching
+	private static final int MAX_CONDITIONS = 64;
+	
+	private final List<String> names = new ArrayList<String>();
+	
+	// value to match for each name, null if the entry just has to exist
+	private final List<String> values = new ArrayList<String>();
+	
+	/**************************************************************************
+	 * Add a condition.
+	 * 
+	 * @param condition "NAME" to require an entry, or "NAME=VALUE" to
+	 *                  require a value.
+	 * @return          This filter
+	 **************************************************************************/
+	ItemFilter require( String condition ) {
+		int splitter = condition.indexOf( '=' );
+		String name = splitter == -1 ? condition : condition.substring( 0, splitter );
+		if( name.isEmpty() ) throw new IllegalArgumentException( "Missing entry name in \"" + condition + "\"." );
+		if( names.size() == MAX_CONDITIONS ) throw new IllegalArgumentException( "Too many conditions." );
+		names.add( name );
+		values.add( splitter == -1 ? null : condition.substring( splitter+1 ) );
+		return this;
+	}
+	
+	/**************************************************************************
+	 * Check if a data line matches every condition.
+	 * 
+	 * @param cursor Cursor to read the line with
+	 * @param data   First lore line of an item
+	 * @return       true if the line has LoreMeta data that matches
+	 **************************************************************************/
+	boolean matches( MetaCursor cursor, CharSequence data ) {
+		cursor.reset( data );
+		int count = names.size();
+		boolean any = false;
+		long found = 0;
+		
+		while( cursor.next() ) {
+			CharSequence name = cursor.getName();
+			if( MetaKey.isReserved( name ) ) continue;
+			any = true;
+			for( int i = 0; i < count; i++ ) {
+				if( !contentEquals( names.get(i), name ) ) continue;
+				String value = values.get(i);
+				if( value != null && !value.equals( format( cursor ) ) ) return false;
+				found |= 1L << i;
+			}
+		}
+		if( !any ) return false;
+		
+		return found == (count == MAX_CONDITIONS ? -1L : (1L << count) - 1);
+	}
+	
+	/**************************************************************************
+	 * Write every entry of a data line as tab separated NAME=VALUE pairs.
+	 * 
+	 * Tabs, line breaks and backslashes in text are escaped. Entries with
+	 * reserved keys are left out.
+	 * 
+	 * @param cursor Cursor to read the line with
+	 * @param data   Data line
+	 * @param output Where to append the entries
+	 **************************************************************************/
+	static void formatAll( MetaCursor cursor, CharSequence data, StringBuilder output ) {
+		cursor.reset( data );
+		while( cursor.next() ) {
+			if( MetaKey.isReserved( cursor.getName() ) ) continue;
+			output.append( '\t' );
+			escape( cursor.getName(), output );
+			output.append( '=' );
+			escape( format( cursor ), output );
+		}
+	}
+	
+	/**************************************************************************
+	 * Write the value of the current entry as text.
+	 * 
+	 * Numbers are written in decimal (ENUM entries as their ordinal), UUIDs
+	 * in the usual form, and flags as "true".
+	 * 
+	 * @param cursor Cursor on an entry
+	 * @return       Text of the value, empty for corrupt compressed text
+	 **************************************************************************/
+	static String format( MetaCursor cursor ) {
+		switch( cursor.getType() ) {
+		case BYTE:
+		case SHORT:
+		case INT:
+		case VARINT:
+		case ENUM:
+			return Integer.toString( cursor.getInt() );
+		case LONG:
+		case VARLONG:
+			return Long.toString( cursor.getLong() );
+		case FLOAT:
+			return Float.toString( cursor.getFloat() );
+		case DOUBLE:
+			return Double.toString( cursor.getDouble() );
+		case UID:
+			return new UUID( cursor.getUUIDMostBits(), cursor.getUUIDLeastBits() ).toString();
+		case TEXT: {
+			CharSequence text = cursor.getText();
+			return text == null ? "" : text.toString();
+		}
+		default:
+			return "true";
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static boolean contentEquals( String a, CharSequence b ) {
+		if( a.length() != b.length() ) return false;
+		for( int i = 0; i < a.length(); i++ ) {
+			if( a.charAt(i) != b.charAt(i) ) return false;
+		}
+		return true;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	static void escape( CharSequence text, StringBuilder output ) {
+		for( int i = 0; i < text.length(); i++ ) {
+			char c = text.charAt(i);
+			switch( c ) {
+			case '\t':
+				output.append( "\\t" );
+				break;
+			case '\n':
+				output.append( "\\n" );
+				break;
+			case '\r':
+				output.append( "\\r" );
+				break;
+			case '\\':
+				output.append( "\\\\" );
+				break;
+			default:
+				output.append( c );
+			}
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.scanner;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/******************************************************************************
+ * Minimal reader for Minecraft's NBT format.
+ * 
+ * Compounds are read into maps and lists into lists. Byte, int and long
+ * arrays are skipped without being copied, since items never live in
+ * them, and so are the block and tick lists at the top of a chunk, which
+ * are most of its size.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+final class Nbt {
+	
+	static final byte END        = 0;
+	static final byte BYTE       = 1;
+	static final byte SHORT      = 2;
+	static final byte INT        = 3;
+	static final byte LONG       = 4;
+	static final byte FLOAT      = 5;
+	static final byte DOUBLE     = 6;
+	static final byte BYTE_ARRAY = 7;
+	static final byte STRING     = 8;
+	static final byte LIST       = 9;
+	static final byte COMPOUND   = 10;
+	static final byte INT_ARRAY  = 11;
+	static final byte LONG_ARRAY = 12;
+	
+	// same limit as the game
+	private static final int MAX_DEPTH = 512;
+	
+	// tags near the root of a chunk that can't hold items
+	private static final int SKIP_DEPTH = 2;
+	private static final Set<String> SKIPPED = new HashSet<String>( Arrays.asList( 
+			"Sections", "sections", "Heightmaps", "TileTicks", "LiquidTicks", "block_ticks",
+			"fluid_ticks", "PostProcessing", "Lights", "ToBeTicked", "LiquidsToBeTicked",
+			"CarvingMasks", "structures", "Structures" ) );
+	
+	//---------------------------------------------------------------------------------------------
+	private Nbt() {}
+	
+	/**************************************************************************
+	 * Read the root compound.
+	 * 
+	 * @param buffer Uncompressed NBT, read from its position
+	 * @return       The root compound
+	 * @throws IOException if the data is malformed
+	 **************************************************************************/
+	static Map<String,Object> read( ByteBuffer buffer ) throws IOException {
+		try {
+			if( buffer.get() != COMPOUND ) throw new IOException( "Root tag is not a compound." );
+			skipString( buffer );
+			return readCompound( buffer, 0 );
+		} catch( BufferUnderflowException e ) {
+			throw new IOException( "NBT data is truncated." );
+		} catch( IllegalArgumentException e ) {
+			throw new IOException( "NBT data is malformed." );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static Map<String,Object> readCompound( ByteBuffer buffer, int depth ) throws IOException {
+		if( depth > MAX_DEPTH ) throw new IOException( "NBT data is nested too deep." );
+		Map<String,Object> compound = new HashMap<String,Object>();
+		for(;;) {
+			byte type = buffer.get();
+			if( type == END ) return compound;
+			String name = readString( buffer );
+			if( depth <= SKIP_DEPTH && SKIPPED.contains( name ) ) {
+				skip( buffer, type, depth+1 );
+				continue;
+			}
+			Object value = readPayload( buffer, type, depth+1 );
+			if( value != null ) compound.put( name, value );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// arrays read as null
+	private static Object readPayload( ByteBuffer buffer, byte type, int depth ) throws IOException {
+		switch( type ) {
+		case BYTE:
+			return buffer.get();
+		case SHORT:
+			return buffer.getShort();
+		case INT:
+			return buffer.getInt();
+		case LONG:
+			return buffer.getLong();
+		case FLOAT:
+			return buffer.getFloat();
+		case DOUBLE:
+			return buffer.getDouble();
+		case STRING:
+			return readString( buffer );
+		case LIST: {
+			byte elementType = buffer.get();
+			int length = readLength( buffer );
+			List<Object> list = new ArrayList<Object>( Math.min( length, 64 ) );
+			for( int i = 0; i < length; i++ ) {
+				list.add( readPayload( buffer, elementType, depth+1 ) );
+			}
+			return list;
+		}
+		case COMPOUND:
+			return readCompound( buffer, depth );
+		case BYTE_ARRAY:
+		case INT_ARRAY:
+		case LONG_ARRAY:
+			skip( buffer, type, depth );
+			return null;
+		default:
+			throw new IOException( "Unknown NBT tag type " + type + "." );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void skip( ByteBuffer buffer, byte type, int depth ) throws IOException {
+		if( depth > MAX_DEPTH ) throw new IOException( "NBT data is nested too deep." );
+		switch( type ) {
+		case BYTE:
+			advance( buffer, 1 );
+			return;
+		case SHORT:
+			advance( buffer, 2 );
+			return;
+		case INT:
+		case FLOAT:
+			advance( buffer, 4 );
+			return;
+		case LONG:
+		case DOUBLE:
+			advance( buffer, 8 );
+			return;
+		case STRING:
+			skipString( buffer );
+			return;
+		case BYTE_ARRAY:
+			advance( buffer, readLength( buffer ) );
+			return;
+		case INT_ARRAY:
+			advance( buffer, readLength( buffer ) * 4L );
+			return;
+		case LONG_ARRAY:
+			advance( buffer, readLength( buffer ) * 8L );
+			return;
+		case LIST: {
+			byte elementType = buffer.get();
+			int length = readLength( buffer );
+			for( int i = 0; i < length; i++ ) {
+				skip( buffer, elementType, depth+1 );
+			}
+			return;
+		}
+		case COMPOUND:
+			for(;;) {
+				byte tag = buffer.get();
+				if( tag == END ) return;
+				skipString( buffer );
+				skip( buffer, tag, depth+1 );
+			}
+		default:
+			throw new IOException( "Unknown NBT tag type " + type + "." );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static int readLength( ByteBuffer buffer ) throws IOException {
+		int length = buffer.getInt();
+		if( length < 0 ) throw new IOException( "Negative NBT length." );
+		return length;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void advance( ByteBuffer buffer, long count ) {
+		if( count > buffer.remaining() ) throw new BufferUnderflowException();
+		buffer.position( buffer.position() + (int)count );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static void skipString( ByteBuffer buffer ) {
+		advance( buffer, buffer.getShort() & 0xFFFF );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// strings are Java's modified UTF-8, so each char is one to three bytes
+	private static String readString( ByteBuffer buffer ) throws IOException {
+		int length = buffer.getShort() & 0xFFFF;
+		if( length > buffer.remaining() ) throw new BufferUnderflowException();
+		char[] chars = new char[length];
+		int count = 0;
+		int end = buffer.position() + length;
+		
+		while( buffer.position() < end ) {
+			int b = buffer.get() & 0xFF;
+			if( b < 0x80 ) {
+				chars[count++] = (char)b;
+			} else if( (b & 0xE0) == 0xC0 && buffer.position() < end ) {
+				chars[count++] = (char)(((b & 0x1F) << 6) | (buffer.get() & 0x3F));
+			} else if( (b & 0xF0) == 0xE0 && buffer.position() + 1 < end ) {
+				int b2 = buffer.get() & 0x3F;
+				chars[count++] = (char)(((b & 0x0F) << 12) | (b2 << 6) | (buffer.get() & 0x3F));
+			} else {
+				throw new IOException( "Malformed NBT string." );
+			}
+		}
+		return new String( chars, 0, count );
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.scanner;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/******************************************************************************
+ * Entry point of loremeta-scanner.jar.
+ * 
+ *   java -jar loremeta-scanner.jar [options] world-or-file...
+ * 
+ * Lists items with LoreMeta data in worlds that aren't loaded by a 
+ * running server, see WorldScanner for what is read and the output 
+ * format. Options:
+ * 
+ *   -k NAME[=VALUE]  Only items with an entry called NAME, with the value
+ *                    VALUE if it's given. Can be used several times, 
+ *                    items must match all of them.
+ *   -o FILE          Write matches to FILE instead of stdout.
+ *   -t THREADS       Number of threads, the number of cores by default.
+ * 
+ * A summary is printed on stderr when done. Paths that don't exist or 
+ * can't be read are reported there too, and the other paths are still 
+ * scanned.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+public final class ScannerMain {
+	
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+	
+	private static final String USAGE = 
+			  "usage: java -jar loremeta-scanner.jar [options] world-or-file...\n"
+			+ "  -k NAME[=VALUE]  only items with entry NAME (with VALUE), can repeat\n"
+			+ "  -o FILE          write matches to FILE instead of stdout\n"
+			+ "  -t THREADS       number of threads, default is the number of cores";
+	
+	private ScannerMain() {}
+	
+	public static void main( String[] args ) throws Exception {
+		ItemFilter filter = new ItemFilter();
+		Path outputFile = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<Path> paths = new ArrayList<Path>();
+		
+		try {
+			for( int i = 0; i < args.length; i++ ) {
+				String arg = args[i];
+				if( arg.equals( "-k" ) ) {
+					filter.require( getValue( args, ++i ) );
+				} else if( arg.equals( "-o" ) ) {
+					outputFile = Paths.get( getValue( args, ++i ) );
+				} else if( arg.equals( "-t" ) ) {
+					threads = Integer.parseInt( getValue( args, ++i ) );
+				} else if( arg.startsWith( "-" ) ) {
+					throw new IllegalArgumentException( "Unknown option " + arg + "." );
+				} else {
+					paths.add( Paths.get( arg ) );
+				}
+			}
+			if( paths.isEmpty() ) throw new IllegalArgumentException( "Nothing to scan." );
+			if( threads < 1 ) throw new IllegalArgumentException( "Need at least one thread." );
+		} catch( IllegalArgumentException e ) { // includes NumberFormatException
+			System.err.println( e.getMessage() );
+			System.err.println( USAGE );
+			System.exit( 2 );
+			return;
+		}
+		
+		long start = System.nanoTime();
+		Writer output = outputFile == null 
+				? new BufferedWriter( new OutputStreamWriter( System.out, UTF_8 ) )
+				: Files.newBufferedWriter( outputFile, UTF_8 );
+		WorldScanner scanner = new WorldScanner( filter, output, threads );
+		try {
+			for( Path path : paths ) {
+				scanner.scan( path );
+			}
+			scanner.finish();
+		} finally {
+			// the pool threads would keep the JVM running after an error
+			scanner.close();
+			if( outputFile != null ) output.close();
+		}
+		
+		System.err.println( String.format( "Scanned %d files, %d chunks and %d items in %.1fs: %d matches, %d errors.",
+				scanner.files.get(), scanner.chunks.get(), scanner.items.get(),
+				(System.nanoTime() - start) / 1e9, scanner.matches.get(), scanner.errors.get() ) );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static String getValue( String[] args, int index ) {
+		if( index >= args.length ) throw new IllegalArgumentException( args[index-1] + " needs a value." );
+		return args[index];
+	}
+}
@@ -0,0 +1,476 @@
+/*
+ * LoreMeta
+ *
+ * Copyright (c) 2014 Mukunda Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.mukunda.loremeta.scanner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import com.mukunda.loremeta.MetaCursor;
+
+/******************************************************************************
+ * Finds items with LoreMeta data in world files.
+ * 
+ * Region files (.mca, and the older .mcr) are memory mapped, and their 
+ * chunks are decompressed and read by a pool of threads; big region 
+ * files are split between several threads. Other .dat files, like 
+ * playerdata, are read whole. Any compound with an id, a count and a 
+ * tag.display.Lore list is treated as an item, so items in containers,
+ * entities, player inventories, ender chests and nested containers are 
+ * all found.
+ * 
+ * Each match is written as one line:
+ * 
+ *   file TAB location TAB id xCount TAB NAME=VALUE TAB NAME=VALUE...
+ * 
+ * where the location is the path to the item, e.g. 
+ * "chunk 3,-2 > minecraft:chest@51,64,-20 > Items[4]". Matches are 
+ * written as each part of a file is done, so the order of the lines 
+ * depends on the threads.
+ * 
+ * Problems with single files or chunks are reported on stderr and the 
+ * scan goes on.
+ * 
+ * @author mukunda
+ *
+ ******************************************************************************/
+final class WorldScanner {
+	
+	private static final int SECTOR = 4096;
+	private static final int CHUNKS = 1024;
+	
+	// region files bigger than this are split between threads
+	private static final long SPLIT_SIZE = 1 << 20;
+	private static final int CHUNKS_PER_TASK = 256;
+	
+	// chunk compression types, EXTERNAL marks a chunk stored in its own .mcc file
+	private static final int GZIP = 1;
+	private static final int ZLIB = 2;
+	private static final int NONE = 3;
+	private static final int EXTERNAL = 0x80;
+	
+	// matches a thread collects before writing them out
+	private static final int OUTPUT_BATCH = 1 << 16;
+	
+	private static final String NEWLINE = System.getProperty( "line.separator" );
+	
+	private final ItemFilter filter;
+	private final Writer output;
+	private final ThreadPoolExecutor executor;
+	private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+		@Override
+		protected Worker initialValue() {
+			return new Worker();
+		}
+	};
+	private volatile IOException outputError;
+	
+	final AtomicLong files = new AtomicLong();
+	final AtomicLong chunks = new AtomicLong();
+	final AtomicLong items = new AtomicLong();
+	final AtomicLong matches = new AtomicLong();
+	final AtomicLong errors = new AtomicLong();
+	
+	//---------------------------------------------------------------------------------------------
+	// buffers for one thread
+	private static final class Worker {
+		final Inflater inflater = new Inflater();
+		final MetaCursor cursor = new MetaCursor();
+		final StringBuilder matches = new StringBuilder();
+		byte[] input = new byte[SECTOR * 16];
+		byte[] output = new byte[SECTOR * 64];
+		
+		//---------------------------------------------------------------------------------------------
+		byte[] input( int length ) {
+			if( input.length < length ) input = new byte[Math.max( length, input.length * 2 )];
+			return input;
+		}
+		
+		//---------------------------------------------------------------------------------------------
+		ByteBuffer inflate( byte[] data, int length ) throws IOException {
+			inflater.reset();
+			inflater.setInput( data, 0, length );
+			int total = 0;
+			try {
+				while( !inflater.finished() ) {
+					if( total == output.length ) output = Arrays.copyOf( output, output.length * 2 );
+					int count = inflater.inflate( output, total, output.length - total );
+					if( count == 0 && (inflater.needsInput() || inflater.needsDictionary()) ) {
+						throw new IOException( "Compressed data is truncated." );
+					}
+					total += count;
+				}
+			} catch( DataFormatException e ) {
+				throw new IOException( "Compressed data is corrupt." );
+			}
+			return ByteBuffer.wrap( output, 0, total );
+		}
+		
+		//---------------------------------------------------------------------------------------------
+		ByteBuffer gunzip( byte[] data, int length ) throws IOException {
+			InputStream in = new GZIPInputStream( new ByteArrayInputStream( data, 0, length ) );
+			int total = 0;
+			for(;;) {
+				if( total == output.length ) output = Arrays.copyOf( output, output.length * 2 );
+				int count = in.read( output, total, output.length - total );
+				if( count == -1 ) break;
+				total += count;
+			}
+			return ByteBuffer.wrap( output, 0, total );
+		}
+	}
+	
+	/**************************************************************************
+	 * Create a scanner.
+	 * 
+	 * @param filter  Items to report
+	 * @param output  Where to write matches. Writes are synchronized on 
+	 *                the scanner.
+	 * @param threads Number of threads reading files
+	 **************************************************************************/
+	WorldScanner( ItemFilter filter, Writer output, int threads ) {
+		if( threads < 1 ) throw new IllegalArgumentException( "Need at least one thread." );
+		this.filter = filter;
+		this.output = output;
+		
+		// a full queue makes the thread walking the directories scan files too, 
+		// so huge worlds don't queue up a task for every file
+		executor = new ThreadPoolExecutor( threads, threads, 0, TimeUnit.MILLISECONDS, 
+				new ArrayBlockingQueue<Runnable>( threads * 4 ), 
+				new ThreadPoolExecutor.CallerRunsPolicy() );
+	}
+	
+	/**************************************************************************
+	 * Scan a world directory or a single file.
+	 * 
+	 * Directories are searched recursively for region and .dat files. 
+	 * This returns once every file is queued, call finish() to wait for 
+	 * the results. A path that doesn't exist or can't be read is reported
+	 * like any other file error.
+	 * 
+	 * @param path Directory or file
+	 **************************************************************************/
+	void scan( Path path ) {
+		try {
+			if( !Files.isDirectory( path ) ) {
+				submit( path, Files.size( path ) );
+				return;
+			}
+			
+			Files.walkFileTree( path, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile( Path file, BasicFileAttributes attributes ) {
+					submit( file, attributes.size() );
+					return FileVisitResult.CONTINUE;
+				}
+				
+				@Override
+				public FileVisitResult visitFileFailed( Path file, IOException e ) {
+					error( file, e.toString() );
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch( IOException e ) {
+			error( path, e.toString() );
+		}
+	}
+	
+	/**************************************************************************
+	 * Wait for every queued file to be scanned and flush the output.
+	 * 
+	 * @throws IOException if writing the output failed
+	 * @throws InterruptedException if interrupted while waiting
+	 **************************************************************************/
+	void finish() throws IOException, InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+		synchronized( this ) {
+			if( outputError != null ) throw outputError;
+			output.flush();
+		}
+	}
+	
+	/**************************************************************************
+	 * Stop the threads without waiting, files that haven't been started 
+	 * are skipped. Does nothing after finish().
+	 **************************************************************************/
+	void close() {
+		executor.shutdownNow();
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void submit( final Path file, long size ) {
+		String name = file.getFileName().toString();
+		if( name.endsWith( ".mca" ) || name.endsWith( ".mcr" ) ) {
+			files.incrementAndGet();
+			int step = size > SPLIT_SIZE ? CHUNKS_PER_TASK : CHUNKS;
+			for( int first = 0; first < CHUNKS; first += step ) {
+				final int start = first;
+				final int end = first + step;
+				executor.execute( new Runnable() {
+					@Override
+					public void run() {
+						scanRegion( file, start, end );
+					}
+				});
+			}
+		} else if( name.endsWith( ".dat" ) ) {
+			files.incrementAndGet();
+			executor.execute( new Runnable() {
+				@Override
+				public void run() {
+					scanData( file );
+				}
+			});
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// scans the chunks of a region file from index first up to last
+	private void scanRegion( Path file, int first, int last ) {
+		Worker worker = workers.get();
+		int[] region = getRegion( file );
+		
+		try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) ) {
+			long size = channel.size();
+			if( size < SECTOR * 2 ) return; // no chunks
+			if( size > Integer.MAX_VALUE ) throw new IOException( "File is too large." );
+			MappedByteBuffer map = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+			
+			for( int i = first; i < last; i++ ) {
+				int location = map.getInt( i * 4 );
+				if( location == 0 ) continue; // not generated
+				
+				int x = region[0] * 32 + (i & 31);
+				int z = region[1] * 32 + (i >> 5);
+				String where = "chunk " + x + "," + z;
+				try {
+					ByteBuffer nbt = readChunk( worker, file, map, (long)(location >>> 8) * SECTOR, x, z );
+					chunks.incrementAndGet();
+					walk( worker, file, Nbt.read( nbt ), where );
+				} catch( IOException e ) {
+					error( file, where + ": " + e.getMessage() );
+				}
+			}
+		} catch( IOException e ) {
+			error( file, e.toString() );
+		}
+		flush( worker, 0 );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private ByteBuffer readChunk( Worker worker, Path file, MappedByteBuffer map, long offset, 
+			int x, int z ) throws IOException {
+		if( offset < SECTOR * 2 || offset + 5 > map.limit() ) throw new IOException( "Chunk is outside the file." );
+		int length = map.getInt( (int)offset ) - 1; // the length includes the compression byte
+		int compression = map.get( (int)offset + 4 ) & 0xFF;
+		
+		byte[] data;
+		if( (compression & EXTERNAL) != 0 ) {
+			data = Files.readAllBytes( file.resolveSibling( "c." + x + "." + z + ".mcc" ) );
+			length = data.length;
+			compression &= ~EXTERNAL;
+		} else {
+			if( length < 0 || offset + 5 + length > map.limit() ) throw new IOException( "Chunk length is out of range." );
+			data = worker.input( length );
+			map.position( (int)offset + 5 );
+			map.get( data, 0, length );
+		}
+		
+		switch( compression ) {
+		case GZIP:
+			return worker.gunzip( data, length );
+		case ZLIB:
+			return worker.inflate( data, length );
+		case NONE:
+			return ByteBuffer.wrap( data, 0, length );
+		default:
+			throw new IOException( "Unsupported chunk compression " + compression + "." );
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// playerdata and other NBT files, gzipped or not
+	private void scanData( Path file ) {
+		Worker worker = workers.get();
+		try {
+			byte[] data = Files.readAllBytes( file );
+			boolean gzip = data.length > 1 && (data[0] & 0xFF) == 0x1F && (data[1] & 0xFF) == 0x8B;
+			ByteBuffer nbt = gzip ? worker.gunzip( data, data.length ) : ByteBuffer.wrap( data );
+			walk( worker, file, Nbt.read( nbt ), "" );
+		} catch( IOException e ) {
+			error( file, e.toString() );
+		}
+		flush( worker, 0 );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// region coordinates from an r.X.Z.mca name, 0,0 if the name is different
+	private static int[] getRegion( Path file ) {
+		String[] parts = file.getFileName().toString().split( "\\." );
+		if( parts.length == 4 && parts[0].equals( "r" ) ) {
+			try {
+				return new int[] { Integer.parseInt( parts[1] ), Integer.parseInt( parts[2] ) };
+			} catch( NumberFormatException e ) {
+				// fall through
+			}
+		}
+		return new int[] { 0, 0 };
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// checks a compound and everything in it for items, where is the path down to the compound
+	@SuppressWarnings("unchecked")
+	private void walk( Worker worker, Path file, Map<String,Object> compound, String where ) {
+		if( isItem( compound ) ) {
+			items.incrementAndGet();
+			checkItem( worker, file, compound, where );
+		}
+		
+		for( Map.Entry<String,Object> entry : compound.entrySet() ) {
+			Object value = entry.getValue();
+			if( value instanceof Map ) {
+				Map<String,Object> child = (Map<String,Object>)value;
+				walk( worker, file, child, getPath( where, entry.getKey(), -1, child ) );
+			} else if( value instanceof List ) {
+				List<?> list = (List<?>)value;
+				for( int i = 0; i < list.size(); i++ ) {
+					if( !(list.get(i) instanceof Map) ) continue;
+					Map<String,Object> child = (Map<String,Object>)list.get(i);
+					walk( worker, file, child, getPath( where, entry.getKey(), i, child ) );
+				}
+			}
+		}
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// path to a child compound. items add "Key[slot]", block entities and entities add 
+	// "id@x,y,z", anything else keeps the path of its parent
+	private static String getPath( String where, String key, int index, Map<String,Object> child ) {
+		String segment;
+		if( isItem( child ) ) {
+			Object slot = child.get( "Slot" );
+			if( slot instanceof Number ) index = ((Number)slot).intValue();
+			segment = index == -1 ? key : key + "[" + index + "]";
+		} else {
+			String position = getPosition( child );
+			if( position == null ) return where;
+			segment = child.get( "id" ) + "@" + position;
+		}
+		return where.isEmpty() ? segment : where + " > " + segment;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// block position of a block entity or an entity, or null
+	private static String getPosition( Map<String,Object> compound ) {
+		Object x = compound.get( "x" ), y = compound.get( "y" ), z = compound.get( "z" );
+		if( x instanceof Integer && y instanceof Integer && z instanceof Integer ) {
+			return x + "," + y + "," + z;
+		}
+		Object pos = compound.get( "Pos" );
+		if( pos instanceof List && ((List<?>)pos).size() == 3 ) {
+			StringBuilder result = new StringBuilder();
+			for( Object coordinate : (List<?>)pos ) {
+				if( !(coordinate instanceof Number) ) return null;
+				if( result.length() > 0 ) result.append( ',' );
+				result.append( (long)Math.floor( ((Number)coordinate).doubleValue() ) );
+			}
+			return result.toString();
+		}
+		return null;
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private static boolean isItem( Map<String,Object> compound ) {
+		return compound.containsKey( "id" ) 
+				&& (compound.containsKey( "Count" ) || compound.containsKey( "count" ));
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void checkItem( Worker worker, Path file, Map<String,Object> item, String where ) {
+		Object tag = item.get( "tag" );
+		if( !(tag instanceof Map) ) return;
+		Object display = ((Map<?,?>)tag).get( "display" );
+		if( !(display instanceof Map) ) return;
+		Object lore = ((Map<?,?>)display).get( "Lore" );
+		if( !(lore instanceof List) || ((List<?>)lore).isEmpty() ) return;
+		Object data = ((List<?>)lore).get(0);
+		if( !(data instanceof String) ) return;
+		
+		if( !filter.matches( worker.cursor, (String)data ) ) return;
+		matches.incrementAndGet();
+		
+		Object count = item.containsKey( "Count" ) ? item.get( "Count" ) : item.get( "count" );
+		StringBuilder line = worker.matches;
+		line.append( file ).append( '\t' ).append( where ).append( '\t' )
+			.append( item.get( "id" ) ).append( " x" ).append( count );
+		ItemFilter.formatAll( worker.cursor, (String)data, line );
+		line.append( NEWLINE );
+		flush( worker, OUTPUT_BATCH );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	// writes out a thread's matches once there are more than threshold chars
+	private void flush( Worker worker, int threshold ) {
+		StringBuilder text = worker.matches;
+		if( text.length() == 0 || text.length() < threshold ) return;
+		synchronized( this ) {
+			try {
+				if( outputError == null ) output.append( text );
+			} catch( IOException e ) {
+				outputError = e;
+			}
+		}
+		text.setLength( 0 );
+	}
+	
+	//---------------------------------------------------------------------------------------------
+	private void error( Path file, String message ) {
+		errors.incrementAndGet();
+		synchronized( System.err ) {
+			System.err.println( file + ": " + message );
+		}
+	}
+}
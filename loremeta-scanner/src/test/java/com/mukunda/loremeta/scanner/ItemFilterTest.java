@@ -0,0 +1,94 @@
+package com.mukunda.loremeta.scanner;
+
+import static org.junit.Assert.*;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.mukunda.loremeta.MetaCodec;
+import com.mukunda.loremeta.MetaCursor;
+import com.mukunda.loremeta.MetaKeyFlag;
+import com.mukunda.loremeta.MetaKeyInt;
+import com.mukunda.loremeta.MetaKeyText;
+import com.mukunda.loremeta.MetaKeyUUID;
+
+public class ItemFilterTest {
+
+	static final UUID OWNER = new UUID( 1, 2 );
+
+	//---------------------------------------------------------------------------------------------
+	static String line() {
+		StringBuilder data = new StringBuilder( "Sword" );
+		MetaCodec.setData( data, MetaKeyInt.of( "charges" ), 12 );
+		MetaCodec.setData( data, MetaKeyUUID.of( "owner" ), OWNER );
+		MetaCodec.setData( data, MetaKeyText.of( "note" ), "tab\there\\" );
+		MetaCodec.setFlag( data, MetaKeyFlag.of( "bound" ) );
+		return data.toString();
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static boolean matches( String data, String... conditions ) {
+		ItemFilter filter = new ItemFilter();
+		for( String condition : conditions ) {
+			filter.require( condition );
+		}
+		return filter.matches( new MetaCursor(), data );
+	}
+
+	@Test
+	public void noConditions() {
+		assertTrue( matches( line() ) );
+		assertFalse( matches( "Plain lore" ) );
+		assertFalse( matches( "" ) );
+	}
+
+	@Test
+	public void byName() {
+		assertTrue( matches( line(), "charges" ) );
+		assertTrue( matches( line(), "bound", "owner" ) );
+		assertFalse( matches( line(), "charges", "missing" ) );
+		assertFalse( matches( line(), "charge" ) );
+	}
+
+	@Test
+	public void byValue() {
+		assertTrue( matches( line(), "charges=12" ) );
+		assertTrue( matches( line(), "owner=" + OWNER, "bound=true" ) );
+		assertTrue( matches( line(), "note=tab\there\\" ) );
+		assertFalse( matches( line(), "charges=13" ) );
+		assertFalse( matches( line(), "charges=12", "owner=" + new UUID( 0, 0 ) ) );
+	}
+
+	@Test
+	public void reservedEntriesAreIgnored() {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, new MetaKeyText( "~fields" ), "bindings" );
+		assertFalse( matches( data.toString() ) );
+		assertFalse( matches( data.toString(), "~fields" ) );
+
+		MetaCodec.setData( data, MetaKeyInt.of( "charges" ), 1 );
+		StringBuilder output = new StringBuilder();
+		ItemFilter.formatAll( new MetaCursor(), data, output );
+		assertEquals( "\tcharges=1", output.toString() );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missingName() {
+		new ItemFilter().require( "=5" );
+	}
+
+	@Test
+	public void formatAll() {
+		StringBuilder output = new StringBuilder();
+		ItemFilter.formatAll( new MetaCursor(), line(), output );
+		assertEquals( "\tcharges=12\towner=" + OWNER + "\tnote=tab\\there\\\\\tbound=true", output.toString() );
+	}
+
+	@Test
+	public void escape() {
+		StringBuilder output = new StringBuilder();
+		ItemFilter.escape( "a\tb\nc\rd\\e", output );
+		assertEquals( "a\\tb\\nc\\rd\\\\e", output.toString() );
+	}
+}
@@ -0,0 +1,103 @@
+package com.mukunda.loremeta.scanner;
+
+import static com.mukunda.loremeta.scanner.NbtWriter.compound;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class NbtTest {
+
+	//---------------------------------------------------------------------------------------------
+	static Map<String,Object> roundTrip( Map<String,Object> root ) throws IOException {
+		return Nbt.read( ByteBuffer.wrap( NbtWriter.write( root ) ) );
+	}
+
+	@Test
+	public void everyType() throws IOException {
+		Map<String,Object> root = compound(
+				"byte", (byte)-1, "short", (short)300, "int", 70000, "long", 1L << 40,
+				"float", 1.5f, "double", -0.25, "string", "text",
+				"list", Arrays.asList( 1, 2, 3 ), "empty", Collections.emptyList(),
+				"compound", compound( "inner", "value" ),
+				"compounds", Arrays.asList( compound( "a", 1 ), compound( "b", 2 ) ) );
+		assertEquals( root, roundTrip( root ) );
+	}
+
+	@Test
+	public void arraysAreSkipped() throws IOException {
+		Map<String,Object> result = roundTrip( compound(
+				"bytes", new byte[] { 1, 2, 3 }, "ints", new int[] { 4, 5 }, "longs", new long[] { 6 },
+				"after", "kept" ) );
+		assertEquals( compound( "after", "kept" ), result );
+	}
+
+	@Test
+	public void modifiedUtf8() throws IOException {
+		String[] values = { "", "plain", "null \u0000 char", "é and §", "世界", "emoji 😀" };
+		for( String value : values ) {
+			assertEquals( value, roundTrip( compound( "s", value ) ).get( "s" ) );
+		}
+	}
+
+	@Test
+	public void chunkListsAreSkipped() throws IOException {
+		Map<String,Object> result = roundTrip( compound(
+				"Level", compound( "Sections", Arrays.asList( compound( "Y", (byte)0 ) ),
+						"TileEntities", Collections.emptyList() ),
+				"deep", compound( "a", compound( "b", compound( "Sections", "kept" ) ) ) ) );
+		assertEquals( compound( "TileEntities", Collections.emptyList() ), result.get( "Level" ) );
+		assertEquals( compound( "a", compound( "b", compound( "Sections", "kept" ) ) ), result.get( "deep" ) );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static void checkMalformed( byte[] data ) {
+		try {
+			Nbt.read( ByteBuffer.wrap( data ) );
+			fail( "read malformed NBT" );
+		} catch( IOException e ) {
+			// expected
+		}
+	}
+
+	@Test
+	public void truncated() {
+		byte[] data = NbtWriter.write( compound( "string", "text", "list", Arrays.asList( 1L, 2L ),
+				"compound", compound( "skipped", new int[] { 1 } ) ) );
+		for( int length = 0; length < data.length; length++ ) {
+			checkMalformed( Arrays.copyOf( data, length ) );
+		}
+	}
+
+	@Test
+	public void rootMustBeCompound() {
+		checkMalformed( new byte[] { Nbt.STRING, 0, 0, 0, 0 } );
+	}
+
+	@Test
+	public void unknownType() {
+		checkMalformed( new byte[] { Nbt.COMPOUND, 0, 0, 99, 0, 1, 'x', 0 } );
+	}
+
+	@Test
+	public void nestedTooDeep() {
+		Map<String,Object> root = compound();
+		Map<String,Object> inner = root;
+		for( int i = 0; i < 600; i++ ) {
+			Map<String,Object> child = compound();
+			inner.put( "c", child );
+			inner = child;
+		}
+		checkMalformed( NbtWriter.write( root ) );
+	}
+
+	@Test
+	public void malformedString() {
+		checkMalformed( new byte[] { Nbt.COMPOUND, 0, 0, Nbt.STRING, 0, 1, 's', 0, 1, (byte)0xFF, 0 } );
+	}
+}
@@ -0,0 +1,114 @@
+package com.mukunda.loremeta.scanner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//---------------------------------------------------------------------------------------------
+// writes maps and lists as NBT, the tag types are picked from the Java types like Nbt reads them
+final class NbtWriter {
+	private NbtWriter() {}
+
+	//---------------------------------------------------------------------------------------------
+	// compound from name, value pairs
+	static Map<String,Object> compound( Object... pairs ) {
+		Map<String,Object> compound = new LinkedHashMap<String,Object>();
+		for( int i = 0; i < pairs.length; i += 2 ) {
+			compound.put( (String)pairs[i], pairs[i+1] );
+		}
+		return compound;
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static byte[] write( Map<String,Object> root ) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream( bytes );
+			output.writeByte( Nbt.COMPOUND );
+			output.writeUTF( "" );
+			payload( output, root );
+			return bytes.toByteArray();
+		} catch( IOException e ) {
+			throw new AssertionError( e );
+		}
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static byte type( Object value ) {
+		if( value instanceof Byte ) return Nbt.BYTE;
+		if( value instanceof Short ) return Nbt.SHORT;
+		if( value instanceof Integer ) return Nbt.INT;
+		if( value instanceof Long ) return Nbt.LONG;
+		if( value instanceof Float ) return Nbt.FLOAT;
+		if( value instanceof Double ) return Nbt.DOUBLE;
+		if( value instanceof String ) return Nbt.STRING;
+		if( value instanceof List ) return Nbt.LIST;
+		if( value instanceof Map ) return Nbt.COMPOUND;
+		if( value instanceof byte[] ) return Nbt.BYTE_ARRAY;
+		if( value instanceof int[] ) return Nbt.INT_ARRAY;
+		if( value instanceof long[] ) return Nbt.LONG_ARRAY;
+		throw new IllegalArgumentException( "No NBT type for " + value );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	@SuppressWarnings("unchecked")
+	static void payload( DataOutputStream output, Object value ) throws IOException {
+		switch( type( value ) ) {
+		case Nbt.BYTE:
+			output.writeByte( (Byte)value );
+			break;
+		case Nbt.SHORT:
+			output.writeShort( (Short)value );
+			break;
+		case Nbt.INT:
+			output.writeInt( (Integer)value );
+			break;
+		case Nbt.LONG:
+			output.writeLong( (Long)value );
+			break;
+		case Nbt.FLOAT:
+			output.writeFloat( (Float)value );
+			break;
+		case Nbt.DOUBLE:
+			output.writeDouble( (Double)value );
+			break;
+		case Nbt.STRING:
+			output.writeUTF( (String)value ); // modified UTF-8, like the game
+			break;
+		case Nbt.LIST: {
+			List<Object> list = (List<Object>)value;
+			output.writeByte( list.isEmpty() ? Nbt.END : type( list.get(0) ) );
+			output.writeInt( list.size() );
+			for( Object element : list ) {
+				payload( output, element );
+			}
+			break;
+		}
+		case Nbt.COMPOUND:
+			for( Map.Entry<String,Object> entry : ((Map<String,Object>)value).entrySet() ) {
+				output.writeByte( type( entry.getValue() ) );
+				output.writeUTF( entry.getKey() );
+				payload( output, entry.getValue() );
+			}
+			output.writeByte( Nbt.END );
+			break;
+		case Nbt.BYTE_ARRAY:
+			output.writeInt( ((byte[])value).length );
+			output.write( (byte[])value );
+			break;
+		case Nbt.INT_ARRAY:
+			output.writeInt( ((int[])value).length );
+			for( int element : (int[])value ) output.writeInt( element );
+			break;
+		case Nbt.LONG_ARRAY:
+			output.writeInt( ((long[])value).length );
+			for( long element : (long[])value ) output.writeLong( element );
+			break;
+		default:
+			throw new AssertionError();
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.mukunda.loremeta.scanner;
+
+import static com.mukunda.loremeta.scanner.NbtWriter.compound;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mukunda.loremeta.MetaCodec;
+import com.mukunda.loremeta.MetaKeyInt;
+
+public class WorldScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	//---------------------------------------------------------------------------------------------
+	static String data( int charges ) {
+		StringBuilder data = new StringBuilder();
+		MetaCodec.setData( data, MetaKeyInt.of( "charges" ), charges );
+		return data.toString();
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static Map<String,Object> item( int slot, String lore ) {
+		return compound( "Slot", (byte)slot, "id", "minecraft:stick", "Count", (byte)1,
+				"tag", compound( "display", compound( "Lore", Arrays.asList( lore, "second line" ) ) ) );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// chunk with a chest holding items
+	@SafeVarargs
+	static Map<String,Object> chunk( Map<String,Object>... items ) {
+		Map<String,Object> chest = compound( "id", "minecraft:chest", "x", 1, "y", 64, "z", -3,
+				"Items", Arrays.asList( items ) );
+		return compound( "Level", compound( "Sections", Collections.emptyList(),
+				"TileEntities", Arrays.asList( chest ) ) );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static byte[] zlib( byte[] data ) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DeflaterOutputStream output = new DeflaterOutputStream( bytes );
+		output.write( data );
+		output.close();
+		return bytes.toByteArray();
+	}
+
+	//---------------------------------------------------------------------------------------------
+	static byte[] gzip( byte[] data ) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream output = new GZIPOutputStream( bytes );
+		output.write( data );
+		output.close();
+		return bytes.toByteArray();
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// region file with one chunk per entry of chunks, at the chunk index of the entry.
+	// the compression byte is 2 (zlib) unless the data is gzipped
+	static byte[] region( Map<Integer,byte[]> chunks ) {
+		ByteBuffer file = ByteBuffer.allocate( 4096 * (2 + chunks.size() * 2) );
+		int sector = 2;
+		for( Map.Entry<Integer,byte[]> chunk : chunks.entrySet() ) {
+			byte[] data = chunk.getValue();
+			int sectors = (data.length + 5 + 4095) / 4096;
+			file.putInt( chunk.getKey() * 4, (sector << 8) | sectors );
+			file.position( sector * 4096 );
+			file.putInt( data.length + 1 );
+			file.put( (byte)((data[0] & 0xFF) == 0x1F ? 1 : 2) );
+			file.put( data );
+			sector += sectors;
+		}
+		return Arrays.copyOf( file.array(), sector * 4096 );
+	}
+
+	//---------------------------------------------------------------------------------------------
+	String scan( WorldScanner scanner, StringWriter output, Path... paths ) throws Exception {
+		for( Path path : paths ) {
+			scanner.scan( path );
+		}
+		scanner.finish();
+		return output.toString();
+	}
+
+	@Test
+	public void regionFile() throws Exception {
+		Map<Integer,byte[]> chunks = new LinkedHashMap<Integer,byte[]>();
+		chunks.put( 0, zlib( NbtWriter.write( chunk( item( 4, data( 7 ) ), item( 5, "Plain lore" ) ) ) ) );
+		chunks.put( 33, gzip( NbtWriter.write( chunk( item( 0, data( 9 ) ) ) ) ) );
+		File world = folder.newFolder( "world" );
+		File regions = new File( world, "region" );
+		assertTrue( regions.mkdir() );
+		Path file = new File( regions, "r.1.-1.mca" ).toPath();
+		Files.write( file, region( chunks ) );
+
+		StringWriter output = new StringWriter();
+		WorldScanner scanner = new WorldScanner( new ItemFilter(), output, 2 );
+		List<String> lines = Arrays.asList( scan( scanner, output, world.toPath() ).split( "\\r?\\n" ) );
+		Collections.sort( lines );
+
+		assertEquals( Arrays.asList(
+				file + "\tchunk 32,-32 > minecraft:chest@1,64,-3 > Items[4]\tminecraft:stick x1\tcharges=7",
+				file + "\tchunk 33,-31 > minecraft:chest@1,64,-3 > Items[0]\tminecraft:stick x1\tcharges=9" ),
+				lines );
+		assertEquals( 1, scanner.files.get() );
+		assertEquals( 2, scanner.chunks.get() );
+		assertEquals( 3, scanner.items.get() );
+		assertEquals( 2, scanner.matches.get() );
+		assertEquals( 0, scanner.errors.get() );
+	}
+
+	@Test
+	public void playerData() throws Exception {
+		Path file = folder.newFile( "player.dat" ).toPath();
+		Files.write( file, gzip( NbtWriter.write( compound( "Inventory", Arrays.asList( item( 2, data( 1 ) ) ),
+				"EnderItems", Arrays.asList( item( 3, data( 2 ) ) ) ) ) ) );
+
+		StringWriter output = new StringWriter();
+		ItemFilter filter = new ItemFilter().require( "charges=2" );
+		WorldScanner scanner = new WorldScanner( filter, output, 1 );
+		assertEquals( file + "\tEnderItems[3]\tminecraft:stick x1\tcharges=2" + System.getProperty( "line.separator" ),
+				scan( scanner, output, file ) );
+		assertEquals( 2, scanner.items.get() );
+	}
+
+	@Test
+	public void damagedChunksAndMissingPaths() throws Exception {
+		Map<Integer,byte[]> chunks = new LinkedHashMap<Integer,byte[]>();
+		chunks.put( 0, new byte[] { 1, 2, 3, 4 } );
+		byte[] region = region( chunks );
+		ByteBuffer.wrap( region ).putInt( 4, (50 << 8) | 1 ); // chunk 1 is outside the file
+		Path file = folder.newFile( "r.0.0.mca" ).toPath();
+		Files.write( file, region );
+
+		StringWriter output = new StringWriter();
+		WorldScanner scanner = new WorldScanner( new ItemFilter(), output, 1 );
+		assertEquals( "", scan( scanner, output, file, folder.getRoot().toPath().resolve( "missing" ) ) );
+		assertEquals( 3, scanner.errors.get() );
+		assertEquals( 0, scanner.chunks.get() );
+	}
+}
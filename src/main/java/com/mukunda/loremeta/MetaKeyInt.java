@@ -1,8 +0,0 @@
-package com.mukunda.loremeta;
-
-//---------------------------------------------------------------------------------------------
-public class MetaKeyInt extends MetaKey {
-	public MetaKeyInt( String key ) {
-		super( key, DataType.INT );
-	}
-}
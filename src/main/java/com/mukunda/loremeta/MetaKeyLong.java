@@ -1,8 +0,0 @@
-package com.mukunda.loremeta;
-
-//---------------------------------------------------------------------------------------------
-public class MetaKeyLong extends MetaKey {
-	public MetaKeyLong( String key ) {
-		super( key, DataType.LONG );
-	}
-}
\ No newline at end of file